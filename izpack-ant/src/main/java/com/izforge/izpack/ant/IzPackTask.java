@@ -74,6 +74,21 @@ public class IzPackTask extends Task implements PackagerListener
      */
     private int compressionLevel;
 
+    /**
+     * Holds value of property buildCache.
+     */
+    private String buildCache;
+
+    /**
+     * Holds value of property buildCacheMaxSize.
+     */
+    private int buildCacheMaxSize = 1024;
+
+    /**
+     * Holds value of property buildReport.
+     */
+    private Boolean buildReport = false;
+
     /**
      * Holds value of property installerType.
      */
@@ -204,7 +219,7 @@ public class IzPackTask extends Task implements PackagerListener
             ClassLoader loader = new URLClassLoader(getUrlsForClassloader());
             Class runableClass = loader.loadClass("com.izforge.izpack.ant.IzpackAntRunnable");
             Constructor constructor = runableClass.getConstructors()[0];
-            Object instance = constructor.newInstance(compression, kind, input, configText, basedir, output, compressionLevel, properties, inheritAll, getProject().getProperties(), izPackDir);
+            Object instance = constructor.newInstance(compression, kind, input, configText, basedir, output, compressionLevel, properties, inheritAll, getProject().getProperties(), izPackDir, buildCache, buildCacheMaxSize, buildReport);
             final Thread thread = new Thread((Runnable) instance);
             thread.setContextClassLoader(loader);
             thread.start();
@@ -341,6 +356,36 @@ public class IzPackTask extends Task implements PackagerListener
         this.compressionLevel = compressionLevel;
     }
 
+    /**
+     * Setter for property buildCache.
+     *
+     * @param buildCache The directory of the pack build cache, packs which did not change are copied from it.
+     */
+    public void setBuildCache(String buildCache)
+    {
+        this.buildCache = buildCache;
+    }
+
+    /**
+     * Setter for property buildCacheMaxSize.
+     *
+     * @param buildCacheMaxSize Megabytes of packs kept in the build cache, the least recently used are evicted past this size.
+     */
+    public void setBuildCacheMaxSize(int buildCacheMaxSize)
+    {
+        this.buildCacheMaxSize = buildCacheMaxSize;
+    }
+
+    /**
+     * Setter for property buildReport.
+     *
+     * @param buildReport Whether the time and throughput of the compiler phases are written next to the installer.
+     */
+    public void setBuildReport(boolean buildReport)
+    {
+        this.buildReport = buildReport;
+    }
+
     /**
      * Ant will call this for each &lt;property&gt; tag to the IzPack task.
      */
@@ -21,14 +21,17 @@ public class IzpackAntRunnable implements Runnable
     private final Boolean inheritAll;
     private Hashtable projectProps;
 
-    public IzpackAntRunnable(String compression, String kind, String input, String configText, String basedir, String output, int compressionLevel, Properties properties, Boolean inheritAll, Hashtable antProjectProperties, String izPackDir)
+    public IzpackAntRunnable(String compression, String kind, String input, String configText, String basedir, String output, int compressionLevel, Properties properties, Boolean inheritAll, Hashtable antProjectProperties, String izPackDir, String buildCache, int buildCacheMaxSize, Boolean buildReport)
     {
         this.compilerData = new CompilerData(compression, kind, input, configText, basedir, output, compressionLevel);
+        this.compilerData.setBuildCache(buildCache);
+        this.compilerData.setBuildCacheMaxSize(buildCacheMaxSize);
+        this.compilerData.setBuildReport(buildReport);
         this.input = input;
         this.properties = properties;
         this.inheritAll = inheritAll;
         this.projectProps = antProjectProperties;
-        CompilerData.setIzpackHome(izPackDir);
+        this.compilerData.setHome(izPackDir);
     }
 
 
@@ -29,8 +29,11 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.regex.Pattern;
 
@@ -49,16 +52,49 @@ public class XMLElementImpl implements IXMLElement
     private Element element;
 
     /**
-     * A flag to notice any changement made to the element.
-     * It is used to generate the childrenList.
+     * Key of the user data holding the {@link ChildrenIndex} of an element.
+     * It is kept by the dom element, so that all the XMLElements embedding it share it, and
+     * dropped by any changement made to its children.
      */
-    private boolean hasChanged = true;
+    private static final String CHILDREN_INDEX = "izpack.childrenIndex";
 
     /**
-     * List of the children elements.
-     * It is generated as it is called.
+     * Children elements of an element, in document order and by name.
+     * The lists are never modified once built, a changement builds a new index.
      */
-    private List<IXMLElement> childrenList;
+    private static class ChildrenIndex
+    {
+        private final List<IXMLElement> children;
+
+        private final Map<String, List<IXMLElement>> childrenByName;
+
+        ChildrenIndex(Element element)
+        {
+            List<IXMLElement> list = new ArrayList<IXMLElement>();
+            Map<String, List<IXMLElement>> byName = new HashMap<String, List<IXMLElement>>();
+            for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling())
+            {
+                if (child.getNodeType() == Node.ELEMENT_NODE)
+                {
+                    IXMLElement xmlElement = new XMLElementImpl(child);
+                    list.add(xmlElement);
+                    List<IXMLElement> named = byName.get(child.getNodeName());
+                    if (named == null)
+                    {
+                        named = new ArrayList<IXMLElement>(1);
+                        byName.put(child.getNodeName(), named);
+                    }
+                    named.add(xmlElement);
+                }
+            }
+            for (Map.Entry<String, List<IXMLElement>> entry : byName.entrySet())
+            {
+                entry.setValue(Collections.unmodifiableList(entry.getValue()));
+            }
+            children = Collections.unmodifiableList(list);
+            childrenByName = byName;
+        }
+    }
 
     /**
      * Create a new root element in a new document.
@@ -128,13 +164,19 @@ public class XMLElementImpl implements IXMLElement
 
     public void addChild(IXMLElement child)
     {
-        hasChanged = true;
+        Node previousParent = child.getElement().getParentNode();
+        if (previousParent != null)
+        {
+            // the child is moved
+            invalidateChildren(previousParent);
+        }
+        invalidateChildren(element);
         element.appendChild(child.getElement());
     }
 
     public void removeChild(IXMLElement child)
     {
-        hasChanged = true;
+        invalidateChildren(element);
         element.removeChild(child.getElement());
     }
 
@@ -150,62 +192,54 @@ public class XMLElementImpl implements IXMLElement
         return false;
     }
 
-    private void initChildrenList()
+    /**
+     * Gets the index of the children, building it the first time it is needed after a changement.
+     */
+    private ChildrenIndex getChildrenIndex()
     {
-        if (hasChanged)
+        ChildrenIndex index = (ChildrenIndex) element.getUserData(CHILDREN_INDEX);
+        if (index == null)
         {
-            hasChanged = false;
-            childrenList = new ArrayList<IXMLElement>();
-            for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling())
-            {
-                if (child.getNodeType() == Node.ELEMENT_NODE)
-                {
-                    childrenList.add(new XMLElementImpl(child));
-                }
-            }
+            index = new ChildrenIndex(element);
+            element.setUserData(CHILDREN_INDEX, index, null);
         }
+        return index;
+    }
+
+    private static void invalidateChildren(Node node)
+    {
+        node.setUserData(CHILDREN_INDEX, null, null);
     }
 
     public int getChildrenCount()
     {
-        initChildrenList();
-        return childrenList.size();
+        return getChildrenIndex().children.size();
     }
 
     public List<IXMLElement> getChildren()
     {
-        initChildrenList();
-        return childrenList;
+        return getChildrenIndex().children;
     }
 
     public IXMLElement getChildAtIndex(int index)
     {
-        initChildrenList();
-        return childrenList.get(index);
+        return getChildrenIndex().children.get(index);
     }
 
     public IXMLElement getFirstChildNamed(String name)
     {
-        XMLElementImpl res = null;
-        NodeList nodeList = element.getElementsByTagName(name);
-        if (nodeList.getLength() > 0)
-        {
-            res = new XMLElementImpl(nodeList.item(0));
-        }
-        return res;
+        List<IXMLElement> named = getChildrenIndex().childrenByName.get(name);
+        return named == null ? null : named.get(0);
     }
 
     public List<IXMLElement> getChildrenNamed(String name)
     {
-        List<IXMLElement> res = new ArrayList<IXMLElement>();
-        for (IXMLElement child : getChildren())
+        List<IXMLElement> named = getChildrenIndex().childrenByName.get(name);
+        if (named == null)
         {
-            if (child.getName() != null && child.getName().equals(name))
-            {
-                res.add(new XMLElementImpl(child.getElement()));
-            }
+            return Collections.emptyList();
         }
-        return res;
+        return named;
     }
 
     public String getAttribute(String name)
@@ -320,6 +354,7 @@ public class XMLElementImpl implements IXMLElement
 
     public void setContent(String content)
     {
+        invalidateChildren(element);
         Node child;
         while ((child = this.element.getFirstChild()) != null)
         {
@@ -30,6 +30,7 @@ import org.w3c.dom.Node;
 import org.xml.sax.InputSource;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLFilter;
 import org.xml.sax.XMLReader;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -96,13 +97,26 @@ public class XMLParser implements IXMLParser
     private String parsedItem = null;
 
     public XMLParser()
+    {
+        this(null);
+    }
+
+    /**
+     * Creates a parser reading the documents through a filter, which may leave elements out of the
+     * parsed tree.
+     *
+     * @param xmlFilter the filter, whose parent is set by the parser, or null
+     */
+    public XMLParser(XMLFilter xmlFilter)
     {
         try
         {
-            SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
-            saxParserFactory.setNamespaceAware(true);
-            saxParserFactory.setXIncludeAware(true);
-            XMLReader xmlReader = saxParserFactory.newSAXParser().getXMLReader();
+            XMLReader xmlReader = createXMLReader();
+            if (xmlFilter != null)
+            {
+                xmlFilter.setParent(xmlReader);
+                xmlReader = xmlFilter;
+            }
             filter = new LineNumberFilter(xmlReader);
 
         }
@@ -116,6 +130,17 @@ public class XMLParser implements IXMLParser
         }
     }
 
+    /**
+     * Creates the reader of the parsers, which processes the XInclude elements.
+     */
+    public static XMLReader createXMLReader() throws ParserConfigurationException, SAXException
+    {
+        SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+        saxParserFactory.setNamespaceAware(true);
+        saxParserFactory.setXIncludeAware(true);
+        return saxParserFactory.newSAXParser().getXMLReader();
+    }
+
     private IXMLElement searchFirstElement(DOMResult domResult)
     {
         for (Node child = domResult.getNode().getFirstChild(); child != null; child = child.getNextSibling())
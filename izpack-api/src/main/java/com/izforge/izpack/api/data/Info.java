@@ -23,6 +23,7 @@ package com.izforge.izpack.api.data;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -54,6 +55,31 @@ public class Info implements Serializable
      */
     public static final int REBOOT_ACTION_ALWAYS = 3;
 
+    /**
+     * Write the installed files through a stream, with a small buffer
+     */
+    public static final String UNPACKER_WRITE_ENGINE_STREAM = "stream";
+
+    /**
+     * Write the installed files through a file channel, with a direct buffer sized to the files
+     */
+    public static final String UNPACKER_WRITE_ENGINE_NIO = "nio";
+
+    /**
+     * Extensions of the files stored uncompressed when none are given
+     */
+    public static final String DEFAULT_UNCOMPRESSED_EXTENSIONS = "jar,war,ear,zip,gz,tgz,bz2,xz,7z,png,jpg,jpeg,gif";
+
+    /**
+     * Entropy above which a file is stored uncompressed when no threshold is given
+     */
+    public static final double DEFAULT_UNCOMPRESSED_ENTROPY = 7.5;
+
+    /**
+     * Size below which a file is kept in its pack when no minimum is given
+     */
+    public static final long DEFAULT_UNCOMPRESSED_MIN_SIZE = 65536;
+
     /**
      * The application name and version
      */
@@ -125,6 +151,46 @@ public class Info implements Serializable
 
     private boolean pack200Compression;
 
+    /**
+     * Extensions of the files stored uncompressed, <code>null</code> if all files are compressed.
+     */
+    private List<String> uncompressedExtensions = null;
+
+    /**
+     * Entropy, in bits per byte, of the first block of a file above which the file is stored
+     * uncompressed.
+     */
+    private double uncompressedEntropy = DEFAULT_UNCOMPRESSED_ENTROPY;
+
+    /**
+     * Size in bytes below which a file is kept in its pack, even if already compressed.
+     */
+    private long uncompressedMinSize = DEFAULT_UNCOMPRESSED_MIN_SIZE;
+
+    /**
+     * Patterns of the classes kept in a shrunk skeleton installer, <code>null</code> if the
+     * skeleton is not shrunk.
+     */
+    private List<String> skeletonKeeps = null;
+
+    /**
+     * Number of threads writing the installed files behind the thread decoding the packs, 0 to
+     * write them on the decoding thread.
+     */
+    private int unpackerWriteThreads = 0;
+
+    /**
+     * Number of packs unpacked at the same time, 0 or 1 to unpack them one after the other.
+     */
+    private int unpackerPackThreads = 0;
+
+    private String unpackerWriteEngine = UNPACKER_WRITE_ENGINE_STREAM;
+
+    /**
+     * Whether the unpacker keeps a journal of the installed files, to resume an installation.
+     */
+    private boolean unpackerJournal = false;
+
     private boolean requirePrivilegedExecution = false;
 
     private boolean requirePrivilegedExecutionUninstaller = false;
@@ -398,6 +464,134 @@ public class Info implements Serializable
         return pack200Compression;
     }
 
+    /**
+     * Sets the extensions of the files that are already compressed, such files are stored
+     * uncompressed outside of the packs.
+     *
+     * @param uncompressedExtensions the lower case extensions, <code>null</code> to compress all files
+     */
+    public void setUncompressedExtensions(List<String> uncompressedExtensions)
+    {
+        this.uncompressedExtensions = uncompressedExtensions;
+    }
+
+    public List<String> getUncompressedExtensions()
+    {
+        return uncompressedExtensions;
+    }
+
+    public boolean isUncompressedStorage()
+    {
+        return uncompressedExtensions != null;
+    }
+
+    /**
+     * Sets the entropy of the first block of a file above which the file is considered compressed,
+     * a value above 8 bits per byte disables the probe.
+     */
+    public void setUncompressedEntropy(double uncompressedEntropy)
+    {
+        this.uncompressedEntropy = uncompressedEntropy;
+    }
+
+    public double getUncompressedEntropy()
+    {
+        return uncompressedEntropy;
+    }
+
+    /**
+     * Sets the size below which a file is kept in its pack, a small file not being worth an
+     * entry of its own.
+     */
+    public void setUncompressedMinSize(long uncompressedMinSize)
+    {
+        this.uncompressedMinSize = uncompressedMinSize;
+    }
+
+    public long getUncompressedMinSize()
+    {
+        return uncompressedMinSize;
+    }
+
+    /**
+     * Sets the patterns of the classes kept in the skeleton installer whether they are reachable
+     * or not, for the classes only loaded by reflection. The framework classes not reachable from
+     * the installer are left out of the skeleton.
+     *
+     * @param skeletonKeeps the class name patterns, <code>null</code> to keep the whole skeleton
+     */
+    public void setSkeletonKeeps(List<String> skeletonKeeps)
+    {
+        this.skeletonKeeps = skeletonKeeps;
+    }
+
+    public List<String> getSkeletonKeeps()
+    {
+        return skeletonKeeps;
+    }
+
+    public boolean isShrinkSkeleton()
+    {
+        return skeletonKeeps != null;
+    }
+
+    /**
+     * Sets the number of threads writing the installed files, while the packs are decoded on the
+     * unpacker thread. With 0 threads, the files are written by the unpacker thread.
+     */
+    public void setUnpackerWriteThreads(int unpackerWriteThreads)
+    {
+        this.unpackerWriteThreads = unpackerWriteThreads;
+    }
+
+    public int getUnpackerWriteThreads()
+    {
+        return unpackerWriteThreads;
+    }
+
+    /**
+     * Sets the number of packs unpacked at the same time, each on its own thread. The packs are
+     * still unpacked one after the other when installer listeners are registered.
+     */
+    public void setUnpackerPackThreads(int unpackerPackThreads)
+    {
+        this.unpackerPackThreads = unpackerPackThreads;
+    }
+
+    public int getUnpackerPackThreads()
+    {
+        return unpackerPackThreads;
+    }
+
+    /**
+     * Sets the engine writing the installed files on the threads decoding the packs, one of
+     * {@link #UNPACKER_WRITE_ENGINE_STREAM} or {@link #UNPACKER_WRITE_ENGINE_NIO}.
+     */
+    public void setUnpackerWriteEngine(String unpackerWriteEngine)
+    {
+        this.unpackerWriteEngine = unpackerWriteEngine;
+    }
+
+    public String getUnpackerWriteEngine()
+    {
+        return unpackerWriteEngine;
+    }
+
+    /**
+     * Sets whether the unpacker keeps a journal of the installed files under the installation
+     * path, so that an installation killed while unpacking can be resumed without installing the
+     * files already there again.
+     */
+    public void setUnpackerJournal(boolean unpackerJournal)
+    {
+        this.unpackerJournal = unpackerJournal;
+    }
+
+    public boolean isUnpackerJournal()
+    {
+        return unpackerJournal;
+    }
+
     /**
      * This class represents an author.
      *
@@ -29,6 +29,7 @@ import java.io.FileNotFoundException;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.ZipEntry;
 
 /**
  * Encloses information about a packed file. This class abstracts the way file data is stored to
@@ -112,6 +113,11 @@ public class PackFile implements Serializable
      */
     private boolean pack200Jar = false;
 
+    /**
+     * True if the file is already compressed and stored uncompressed outside of the pack.
+     */
+    private boolean uncompressed = false;
+
     /**
      * condition for this packfile
      */
@@ -152,14 +158,7 @@ public class PackFile implements Serializable
             throw new FileNotFoundException("No such file: " + src);
         }
 
-        if ('/' != File.separatorChar)
-        {
-            target = target.replace(File.separatorChar, '/');
-        }
-        if (target.endsWith("/"))
-        {
-            target = target.substring(0, target.length() - 1);
-        }
+        target = normalizeTarget(target);
 
         this.sourcePath = src.getPath().replace(File.separatorChar, '/');
         this.relativePath = (relativeSourcePath != null) ? relativeSourcePath.replace(File.separatorChar, '/') : relativeSourcePath;
@@ -184,6 +183,73 @@ public class PackFile implements Serializable
         }
     }
 
+    /**
+     * Constructs and initializes from an entry of a zip archive.
+     *
+     * @param archive     the archive holding the entry
+     * @param entry       the entry which this PackFile describes, read from the archive central directory
+     * @param target      the path to install the file to
+     * @param osList      OS constraints
+     * @param override    what to do when the file already exists
+     * @param additionals additional attributes
+     * @throws FileNotFoundException if the specified archive does not exist.
+     */
+    public PackFile(File archive, ZipEntry entry, String target, List<OsModel> osList, OverrideType override, String overrideRenameTo, Blockable blockable, Map additionals)
+            throws FileNotFoundException
+    {
+        if (!archive.exists())
+        {
+            throw new FileNotFoundException("No such file: " + archive);
+        }
+        target = normalizeTarget(target);
+
+        this.sourcePath = archive.getPath().replace(File.separatorChar, '/') + "!/" + entry.getName();
+        this.targetPath = target;
+        this.osConstraints = osList;
+        this.override = override;
+        this.overrideRenameTo = overrideRenameTo;
+        this.blockable = blockable;
+
+        this.isDirectory = entry.isDirectory();
+        this.length = isDirectory ? 0 : entry.getSize();
+        this.size = this.length;
+        this.mtime = entry.getTime();
+        this.additionals = additionals;
+    }
+
+    /**
+     * Constructs from the fields read from a pack table.
+     */
+    PackFile(String targetPath, String relativePath, long length, long mtime, boolean isDirectory,
+             List<OsModel> osList, OverrideType override, String overrideRenameTo, Blockable blockable,
+             Map additionals)
+    {
+        this.targetPath = targetPath;
+        this.relativePath = relativePath;
+        this.length = length;
+        this.size = length;
+        this.mtime = mtime;
+        this.isDirectory = isDirectory;
+        this.osConstraints = osList;
+        this.override = override;
+        this.overrideRenameTo = overrideRenameTo;
+        this.blockable = blockable;
+        this.additionals = additionals;
+    }
+
+    private static String normalizeTarget(String target)
+    {
+        if ('/' != File.separatorChar)
+        {
+            target = target.replace(File.separatorChar, '/');
+        }
+        if (target.endsWith("/"))
+        {
+            target = target.substring(0, target.length() - 1);
+        }
+        return target;
+    }
+
     /**
      * Constructs and initializes from a source file.
      *
@@ -368,6 +434,16 @@ public class PackFile implements Serializable
         this.pack200Jar = pack200Jar;
     }
 
+    public boolean isUncompressed()
+    {
+        return uncompressed;
+    }
+
+    public void setUncompressed(boolean uncompressed)
+    {
+        this.uncompressed = uncompressed;
+    }
+
     public void setLoosePackInfo(boolean loose)
     {
         if (loose)
@@ -0,0 +1,461 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.data;
+
+import com.izforge.izpack.api.data.binding.OsModel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The file table written at the head of a pack stream.
+ * <p/>
+ * A pack stream starts with {@link #MAGIC}, the format version and the length of the header. The
+ * header holds a dictionary of the strings used by the files, one binary record per file and the
+ * serialized parsable, executable and update check descriptors. The data of the files stored in
+ * the pack follows the header, and each record gives the offset of its data in this region, so the
+ * whole table is read in one go and the data of a file is reached by skipping to it.
+ * <p/>
+ * Packs written before this format are a Java serialization stream, starting with its own magic
+ * number.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class PackTable
+{
+    /**
+     * First bytes of a pack stream holding a pack table ("IZPT")
+     */
+    public static final int MAGIC = 0x495A5054;
+
+    /**
+     * Version of the pack format written by this class
+     */
+    public static final int VERSION = 2;
+
+    private static final int DIRECTORY = 1;
+
+    private static final int BACK_REFERENCE = 1 << 1;
+
+    private static final int PACK200 = 1 << 2;
+
+    private static final int UNCOMPRESSED = 1 << 3;
+
+    private static final int STORED = 1 << 4;
+
+    private static final int STREAM_KEY = 1 << 5;
+
+    private static final int CONDITION = 1 << 6;
+
+    private static final int RELATIVE_PATH = 1 << 7;
+
+    private static final int OVERRIDE_RENAME = 1 << 8;
+
+    private static final int OS_CONSTRAINTS = 1 << 9;
+
+    private static final int ADDITIONALS = 1 << 10;
+
+    private final List<PackFile> files = new ArrayList<PackFile>();
+
+    private long[] offsets = new long[16];
+
+    private int[] streamKeys = new int[16];
+
+    private byte[] metadata = new byte[0];
+
+    /**
+     * Adds a file to the table.
+     *
+     * @param file      the file
+     * @param offset    the offset of the file data in the data region, or -1 if the data is not in this pack
+     * @param streamKey the number of the entry holding the data of a pack200 or uncompressed file, or -1
+     */
+    public void addFile(PackFile file, long offset, int streamKey)
+    {
+        int index = files.size();
+        if (index == offsets.length)
+        {
+            offsets = Arrays.copyOf(offsets, index * 2);
+            streamKeys = Arrays.copyOf(streamKeys, index * 2);
+        }
+        files.add(file);
+        offsets[index] = offset;
+        streamKeys[index] = streamKey;
+    }
+
+    public int size()
+    {
+        return files.size();
+    }
+
+    public PackFile getFile(int index)
+    {
+        return files.get(index);
+    }
+
+    public List<PackFile> getFiles()
+    {
+        return Collections.unmodifiableList(files);
+    }
+
+    /**
+     * Gets the offset of the data of a file in the data region.
+     *
+     * @return the offset, or -1 if the data is not stored in this pack
+     */
+    public long getOffset(int index)
+    {
+        return offsets[index];
+    }
+
+    /**
+     * Gets the number of the entry holding the data of a pack200 or uncompressed file.
+     *
+     * @return the entry number, or -1 if the data is read from a pack
+     */
+    public int getStreamKey(int index)
+    {
+        return streamKeys[index];
+    }
+
+    /**
+     * Gets the serialized parsable, executable and update check descriptors of the pack.
+     */
+    public byte[] getMetadata()
+    {
+        return metadata;
+    }
+
+    public void setMetadata(byte[] metadata)
+    {
+        this.metadata = metadata;
+    }
+
+    /**
+     * Writes the magic number, the version and the header. The data region must follow.
+     *
+     * @param out the pack stream
+     * @throws IOException if the table cannot be written
+     */
+    public void write(OutputStream out) throws IOException
+    {
+        Map<String, Integer> indexes = new HashMap<String, Integer>();
+        List<String> strings = new ArrayList<String>();
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream records = new DataOutputStream(recordBytes);
+        for (int i = 0; i < files.size(); i++)
+        {
+            writeRecord(records, files.get(i), offsets[i], streamKeys[i], indexes, strings);
+        }
+        records.writeInt(metadata.length);
+        records.write(metadata);
+        records.flush();
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(strings.size());
+        for (String string : strings)
+        {
+            header.writeUTF(string);
+        }
+        header.writeInt(files.size());
+        recordBytes.writeTo(header);
+        header.flush();
+
+        DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(MAGIC);
+        dataOut.writeInt(VERSION);
+        dataOut.writeInt(headerBytes.size());
+        headerBytes.writeTo(dataOut);
+        dataOut.flush();
+    }
+
+    private static void writeRecord(DataOutputStream out, PackFile file, long offset, int streamKey,
+                                    Map<String, Integer> indexes, List<String> strings) throws IOException
+    {
+        int flags = 0;
+        flags |= file.isDirectory() ? DIRECTORY : 0;
+        flags |= file.isBackReference() ? BACK_REFERENCE : 0;
+        flags |= file.isPack200Jar() ? PACK200 : 0;
+        flags |= file.isUncompressed() ? UNCOMPRESSED : 0;
+        flags |= offset >= 0 ? STORED : 0;
+        flags |= streamKey >= 0 ? STREAM_KEY : 0;
+        flags |= file.hasCondition() ? CONDITION : 0;
+        flags |= file.getRelativeSourcePath() != null ? RELATIVE_PATH : 0;
+        flags |= file.overrideRenameTo() != null ? OVERRIDE_RENAME : 0;
+        flags |= file.osConstraints() != null && !file.osConstraints().isEmpty() ? OS_CONSTRAINTS : 0;
+        flags |= file.getAdditionals() != null ? ADDITIONALS : 0;
+        out.writeInt(flags);
+
+        // the directories of the targets are shared by the files they hold
+        String target = file.getTargetPath();
+        int separator = target.lastIndexOf('/');
+        out.writeInt(indexOf(target.substring(0, separator + 1), indexes, strings));
+        out.writeInt(indexOf(target.substring(separator + 1), indexes, strings));
+        out.writeLong(file.length());
+        out.writeLong(file.lastModified());
+        out.writeInt(indexOf(file.override() == null ? null : file.override().getAttribute(), indexes, strings));
+        out.writeInt(indexOf(file.blockable() == null ? null : file.blockable().getAttribute(), indexes, strings));
+
+        if ((flags & CONDITION) != 0)
+        {
+            out.writeInt(indexOf(file.getCondition(), indexes, strings));
+        }
+        if ((flags & RELATIVE_PATH) != 0)
+        {
+            out.writeInt(indexOf(file.getRelativeSourcePath(), indexes, strings));
+        }
+        if ((flags & OVERRIDE_RENAME) != 0)
+        {
+            out.writeInt(indexOf(file.overrideRenameTo(), indexes, strings));
+        }
+        if ((flags & BACK_REFERENCE) != 0)
+        {
+            out.writeInt(indexOf(file.previousPackId, indexes, strings));
+            out.writeLong(file.offsetInPreviousPack);
+        }
+        if ((flags & STREAM_KEY) != 0)
+        {
+            out.writeInt(streamKey);
+        }
+        if ((flags & STORED) != 0)
+        {
+            out.writeLong(offset);
+        }
+        if ((flags & OS_CONSTRAINTS) != 0)
+        {
+            out.writeInt(file.osConstraints().size());
+            for (OsModel osModel : file.osConstraints())
+            {
+                out.writeInt(indexOf(osModel.getArch(), indexes, strings));
+                out.writeInt(indexOf(osModel.getFamily(), indexes, strings));
+                out.writeInt(indexOf(osModel.getJre(), indexes, strings));
+                out.writeInt(indexOf(osModel.getName(), indexes, strings));
+                out.writeInt(indexOf(osModel.getVersion(), indexes, strings));
+            }
+        }
+        if ((flags & ADDITIONALS) != 0)
+        {
+            // free form attributes of the custom actions, only these need Java serialization
+            ByteArrayOutputStream additionals = new ByteArrayOutputStream();
+            ObjectOutputStream objOut = new ObjectOutputStream(additionals);
+            objOut.writeObject(file.getAdditionals());
+            objOut.close();
+            out.writeInt(additionals.size());
+            additionals.writeTo(out);
+        }
+    }
+
+    private static int indexOf(String string, Map<String, Integer> indexes, List<String> strings)
+    {
+        if (string == null)
+        {
+            return -1;
+        }
+        Integer index = indexes.get(string);
+        if (index == null)
+        {
+            index = strings.size();
+            indexes.put(string, index);
+            strings.add(string);
+        }
+        return index;
+    }
+
+    /**
+     * Tells if a pack stream starts with a pack table, reading its first four bytes.
+     *
+     * @param magic the first four bytes of the stream, as an int
+     */
+    public static boolean isPackTable(int magic)
+    {
+        return magic == MAGIC;
+    }
+
+    /**
+     * Reads the magic number, the version and the header of a pack stream, leaving the stream at
+     * the start of the data region.
+     *
+     * @param in the pack stream
+     * @return the table
+     * @throws IOException if the stream does not start with a pack table of a supported version
+     */
+    public static PackTable read(InputStream in) throws IOException
+    {
+        DataInputStream header = new DataInputStream(new ByteArrayInputStream(readHeader(in)));
+        String[] strings = new String[header.readInt()];
+        for (int i = 0; i < strings.length; i++)
+        {
+            strings[i] = header.readUTF();
+        }
+
+        PackTable table = new PackTable();
+        int count = header.readInt();
+        table.offsets = new long[Math.max(count, 1)];
+        table.streamKeys = new int[Math.max(count, 1)];
+        for (int i = 0; i < count; i++)
+        {
+            readRecord(header, strings, table, i);
+        }
+        byte[] metadata = new byte[header.readInt()];
+        header.readFully(metadata);
+        table.metadata = metadata;
+        return table;
+    }
+
+    /**
+     * Skips the magic number, the version and the header of a pack stream, leaving the stream at
+     * the start of the data region.
+     *
+     * @param in the pack stream
+     * @throws IOException if the stream does not start with a pack table of a supported version
+     */
+    public static void skip(InputStream in) throws IOException
+    {
+        DataInputStream dataIn = new DataInputStream(in);
+        long length = readHeaderLength(dataIn);
+        while (length > 0)
+        {
+            long skipped = dataIn.skip(length);
+            if (skipped <= 0)
+            {
+                // some streams only skip what is buffered
+                if (dataIn.read() == -1)
+                {
+                    throw new IOException("Unexpected end of pack table");
+                }
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+
+    private static byte[] readHeader(InputStream in) throws IOException
+    {
+        DataInputStream dataIn = new DataInputStream(in);
+        byte[] header = new byte[readHeaderLength(dataIn)];
+        dataIn.readFully(header);
+        return header;
+    }
+
+    private static int readHeaderLength(DataInputStream in) throws IOException
+    {
+        int magic = in.readInt();
+        if (!isPackTable(magic))
+        {
+            throw new IOException("Not a pack table: " + Integer.toHexString(magic));
+        }
+        int version = in.readInt();
+        if (version > VERSION)
+        {
+            throw new IOException("Unsupported pack format version " + version);
+        }
+        return in.readInt();
+    }
+
+    private static void readRecord(DataInputStream in, String[] strings, PackTable table, int index)
+            throws IOException
+    {
+        int flags = in.readInt();
+        String target = string(strings, in.readInt()) + string(strings, in.readInt());
+        long length = in.readLong();
+        long mtime = in.readLong();
+        OverrideType override = OverrideType.getOverrideTypeFromAttribute(string(strings, in.readInt()));
+        Blockable blockable = Blockable.getBlockableFromAttribute(string(strings, in.readInt()));
+
+        String condition = (flags & CONDITION) != 0 ? string(strings, in.readInt()) : null;
+        String relativePath = (flags & RELATIVE_PATH) != 0 ? string(strings, in.readInt()) : null;
+        String overrideRenameTo = (flags & OVERRIDE_RENAME) != 0 ? string(strings, in.readInt()) : null;
+        String previousPackId = null;
+        long offsetInPreviousPack = -1;
+        if ((flags & BACK_REFERENCE) != 0)
+        {
+            previousPackId = string(strings, in.readInt());
+            offsetInPreviousPack = in.readLong();
+        }
+        table.streamKeys[index] = (flags & STREAM_KEY) != 0 ? in.readInt() : -1;
+        table.offsets[index] = (flags & STORED) != 0 ? in.readLong() : -1;
+
+        List<OsModel> osConstraints = null;
+        if ((flags & OS_CONSTRAINTS) != 0)
+        {
+            int count = in.readInt();
+            osConstraints = new ArrayList<OsModel>(count);
+            for (int i = 0; i < count; i++)
+            {
+                String arch = string(strings, in.readInt());
+                String family = string(strings, in.readInt());
+                String jre = string(strings, in.readInt());
+                String name = string(strings, in.readInt());
+                String version = string(strings, in.readInt());
+                osConstraints.add(new OsModel(arch, family, jre, name, version));
+            }
+        }
+        Map additionals = null;
+        if ((flags & ADDITIONALS) != 0)
+        {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            ObjectInputStream objIn = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            try
+            {
+                additionals = (Map) objIn.readObject();
+            }
+            catch (ClassNotFoundException e)
+            {
+                throw new IOException("Cannot read the additional attributes of " + target, e);
+            }
+            finally
+            {
+                objIn.close();
+            }
+        }
+
+        PackFile file = new PackFile(target, relativePath, length, mtime, (flags & DIRECTORY) != 0,
+                osConstraints, override, overrideRenameTo, blockable, additionals);
+        file.setCondition(condition);
+        file.setPack200Jar((flags & PACK200) != 0);
+        file.setUncompressed((flags & UNCOMPRESSED) != 0);
+        if (previousPackId != null)
+        {
+            file.setPreviousPackFileRef(previousPackId, offsetInPreviousPack);
+        }
+        table.files.add(file);
+    }
+
+    private static String string(String[] strings, int index)
+    {
+        return index < 0 ? null : strings[index];
+    }
+}
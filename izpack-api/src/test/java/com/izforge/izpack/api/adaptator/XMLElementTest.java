@@ -118,4 +118,42 @@ public class XMLElementTest
         List<IXMLElement> list = element.getChildrenNamed("modifier");
         Assert.assertEquals(list.size(), 7);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetFirstChildNamedOnlySearchesChildren()
+    {
+        Assert.assertNull(root.getFirstChildNamed("langpack"));
+        Assert.assertEquals(root.getFirstChildNamed("locale").getFirstChildNamed("langpack").getAttribute("iso3"), "eng");
+    }
+
+    @Test
+    public void testChildrenAreSharedBetweenLookups()
+    {
+        IXMLElement locale = root.getFirstChildNamed("locale");
+        Assert.assertSame(locale, root.getChildrenNamed("locale").get(0));
+        Assert.assertSame(locale.getChildrenNamed("langpack"), locale.getChildrenNamed("langpack"));
+        Assert.assertEquals(new XMLElementImpl(locale.getElement()).getChildrenNamed("langpack").size(), 26);
+    }
+
+    @Test
+    public void testChildrenNamedFollowChanges()
+    {
+        IXMLElement locale = root.getFirstChildNamed("locale");
+        List<IXMLElement> langpacks = locale.getChildrenNamed("langpack");
+        IXMLElement langpack = new XMLElementImpl("langpack", root);
+        langpack.setAttribute("iso3", "tur");
+        new XMLElementImpl(locale.getElement()).addChild(langpack);
+        Assert.assertEquals(langpacks.size(), 26);
+        Assert.assertEquals(locale.getChildrenNamed("langpack").size(), 27);
+
+        // moved to another parent
+        IXMLElement packs = root.getFirstChildNamed("packs");
+        packs.addChild(langpack);
+        Assert.assertEquals(locale.getChildrenNamed("langpack").size(), 26);
+        Assert.assertEquals(packs.getFirstChildNamed("langpack").getAttribute("iso3"), "tur");
+
+        locale.setContent("");
+        Assert.assertNull(locale.getFirstChildNamed("langpack"));
+        Assert.assertEquals(locale.getChildrenCount(), 0);
+    }
+}
@@ -0,0 +1,104 @@
+package com.izforge.izpack.api.data;
+
+import com.izforge.izpack.api.data.binding.OsModel;
+import org.hamcrest.core.Is;
+import org.hamcrest.core.IsNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test of the pack table
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class PackTableTest
+{
+    private File file;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        file = File.createTempFile("packtable", ".txt");
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        file.delete();
+    }
+
+    @Test
+    public void tableShouldBeReadBack() throws Exception
+    {
+        Map<String, String> additionals = new HashMap<String, String>();
+        additionals.put("permissions", "755");
+        PackFile stored = new PackFile(file.getParentFile(), file, "$INSTALL_PATH/lib/stored.txt",
+                Arrays.asList(new OsModel(null, "unix", null, null, null)), OverrideType.OVERRIDE_UPDATE, null,
+                Blockable.BLOCKABLE_NONE, additionals);
+        stored.setCondition("withStored");
+        PackFile reference = new PackFile(file.getParentFile(), file, "$INSTALL_PATH/lib/reference.jar", null,
+                OverrideType.OVERRIDE_TRUE, "*.bak", Blockable.BLOCKABLE_AUTO);
+        reference.setPack200Jar(true);
+        reference.setPreviousPackFileRef("Base", 12L);
+
+        PackTable table = new PackTable();
+        table.addFile(stored, 0, -1);
+        table.addFile(reference, -1, 3);
+        table.setMetadata(new byte[]{1, 2});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        table.write(out);
+        out.write(new byte[]{42});
+
+        InputStream in = new ByteArrayInputStream(out.toByteArray());
+        PackTable read = PackTable.read(in);
+        assertThat(read.size(), Is.is(2));
+        assertThat(read.getMetadata(), Is.is(new byte[]{1, 2}));
+        assertThat(in.read(), Is.is(42));
+
+        PackFile readStored = read.getFile(0);
+        assertThat(readStored.getTargetPath(), Is.is("$INSTALL_PATH/lib/stored.txt"));
+        assertThat(readStored.getRelativeSourcePath(), Is.is(file.getName()));
+        assertThat(readStored.lastModified(), Is.is(file.lastModified()));
+        assertThat(readStored.override(), Is.is(OverrideType.OVERRIDE_UPDATE));
+        assertThat(readStored.getCondition(), Is.is("withStored"));
+        assertThat(readStored.osConstraints().get(0).getFamily(), Is.is("unix"));
+        assertThat(readStored.getAdditionals().get("permissions"), Is.is((Object) "755"));
+        assertThat(readStored.isBackReference(), Is.is(false));
+        assertThat(read.getOffset(0), Is.is(0L));
+        assertThat(read.getStreamKey(0), Is.is(-1));
+
+        PackFile readReference = read.getFile(1);
+        assertThat(readReference.getTargetPath(), Is.is("$INSTALL_PATH/lib/reference.jar"));
+        assertThat(readReference.overrideRenameTo(), Is.is("*.bak"));
+        assertThat(readReference.blockable(), Is.is(Blockable.BLOCKABLE_AUTO));
+        assertThat(readReference.osConstraints(), IsNull.nullValue());
+        assertThat(readReference.isPack200Jar(), Is.is(true));
+        assertThat(readReference.previousPackId, Is.is("Base"));
+        assertThat(readReference.offsetInPreviousPack, Is.is(12L));
+        assertThat(read.getOffset(1), Is.is(-1L));
+        assertThat(read.getStreamKey(1), Is.is(3));
+    }
+
+    @Test
+    public void skipShouldLeaveStreamAtData() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PackTable().write(out);
+        out.write(new byte[]{42});
+
+        InputStream in = new ByteArrayInputStream(out.toByteArray());
+        PackTable.skip(in);
+        assertThat(in.read(), Is.is(42));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmarks;
+
+import com.izforge.izpack.compiler.stream.ParallelBZip2OutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.tools.bzip2.CBZip2OutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compression of a bzip2 pack by {@link CBZip2OutputStream}, with one thread, or by
+ * {@link ParallelBZip2OutputStream} with several threads, as the bzip2 compressor does.
+ *
+ * @author Anthonin Bonnefoy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class BZip2Benchmark
+{
+    /**
+     * Number of threads compressing the blocks, 1 for {@link CBZip2OutputStream} alone.
+     */
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private byte[] content;
+
+    @Setup
+    public void setUp()
+    {
+        content = Fixtures.createContent(new Random(0), 8 * 1024 * 1024);
+    }
+
+    @Benchmark
+    public void compress() throws Exception
+    {
+        OutputStream out;
+        if (threads <= 1)
+        {
+            out = new CBZip2OutputStream(new NullOutputStream(), 9);
+        }
+        else
+        {
+            out = new ParallelBZip2OutputStream(new NullOutputStream(), 9, threads);
+        }
+        out.write(content);
+        out.close();
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmarks;
+
+import com.izforge.izpack.api.data.Info;
+import com.izforge.izpack.api.exception.CompilerException;
+import com.izforge.izpack.compiler.compressor.PackCompressor;
+import com.izforge.izpack.compiler.data.CompilerData;
+import com.izforge.izpack.compiler.listener.BuildReport;
+import com.izforge.izpack.compiler.packager.impl.Packager;
+import com.izforge.izpack.compiler.stream.JarOutputStream;
+
+import java.util.Properties;
+
+/**
+ * Packager writing only the packs of an installer, without the container, listener and merges
+ * the compiler sets up around it.
+ *
+ * @author Anthonin Bonnefoy
+ */
+class BenchmarkPackager extends Packager
+{
+    public BenchmarkPackager(CompilerData compilerData, JarOutputStream jarOutputStream, PackCompressor packCompressor)
+            throws CompilerException
+    {
+        super(new Properties(), compilerData, null, null, jarOutputStream, packCompressor, null, null, null, null, null,
+                new BuildReport(null));
+        setInfo(new Info());
+    }
+
+    @Override
+    public void writePacks() throws Exception
+    {
+        super.writePacks();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmarks;
+
+import com.izforge.izpack.util.file.DirectoryScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scan of a tree of files with include and exclude patterns, like the one of a fileset.
+ * <p/>
+ * The tree has 25 files a directory. The 500000 files tree is the one the threaded scan was
+ * measured on: a few seconds on a local disk whatever the number of threads, the read ahead only
+ * pays off on a high latency mount. Run <code>-p files=500000</code> with the temporary
+ * directory (<code>-Djava.io.tmpdir</code>) on such a mount to measure it.
+ *
+ * @author Anthonin Bonnefoy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirectoryScannerBenchmark
+{
+    @Param({"5000", "500000"})
+    public int files;
+
+    @Param({"1", "4"})
+    public int scanThreads;
+
+    private File directory;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        directory = Fixtures.createTempDirectory("izpack-scanner");
+        Fixtures.createTree(directory, files / 25, 25, 16, 0);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        Fixtures.delete(directory);
+    }
+
+    @Benchmark
+    public int scan() throws Exception
+    {
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(directory);
+        scanner.setIncludes(new String[]{"**/*.txt", "module1/**"});
+        scanner.setExcludes(new String[]{"**/dir1?/**", "**/file1*"});
+        scanner.setScanThreads(scanThreads);
+        scanner.scan();
+        return scanner.getIncludedFilesCount();
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmarks;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.data.PackInfo;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates the data the benchmarks run on, so that they run offline and on the same data from a
+ * commit to the other: every fixture is built from a fixed seed.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class Fixtures
+{
+    private static final String[] WORDS = {"install", "pack", "panel", "the", "izpack", "of", "file",
+            "condition", "variable", "jar", "to", "compiler", "and", "resource", "path", "a"};
+
+    private Fixtures()
+    {
+    }
+
+    /**
+     * Creates an empty temporary directory.
+     */
+    public static File createTempDirectory(String prefix) throws IOException
+    {
+        File directory = File.createTempFile(prefix, "");
+        if (!directory.delete() || !directory.mkdir())
+        {
+            throw new IOException("Could not create directory " + directory);
+        }
+        return directory;
+    }
+
+    public static void delete(File directory) throws IOException
+    {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    /**
+     * Generates text made of a few words, which compresses about as well as the usual content of
+     * an installer.
+     *
+     * @param random the generator
+     * @param length the length of the text
+     */
+    public static byte[] createContent(Random random, int length)
+    {
+        StringBuilder builder = new StringBuilder(length + 16);
+        while (builder.length() < length)
+        {
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+            builder.append(random.nextInt(8) == 0 ? '\n' : ' ');
+        }
+        builder.setLength(length);
+        return builder.toString().getBytes();
+    }
+
+    /**
+     * Creates a tree of files.
+     *
+     * @param root        the root of the tree
+     * @param directories the number of directories
+     * @param files       the number of files in each directory
+     * @param length      the length of the files
+     * @param seed        the seed of their content
+     * @return the files, in the order they were created
+     */
+    public static List<File> createTree(File root, int directories, int files, int length, long seed)
+            throws IOException
+    {
+        Random random = new Random(seed);
+        List<File> result = new ArrayList<File>();
+        for (int directory = 0; directory < directories; directory++)
+        {
+            // a few levels, like the sources of a project
+            File parent = new File(root, "module" + (directory % 4) + "/dir" + directory);
+            if (!parent.mkdirs())
+            {
+                throw new IOException("Could not create directory " + parent);
+            }
+            for (int index = 0; index < files; index++)
+            {
+                File file = new File(parent, "file" + index + (index % 5 == 0 ? ".xml" : ".txt"));
+                FileUtils.writeByteArrayToFile(file, createContent(random, length));
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a jar whose entries are spread in packages.
+     *
+     * @param jar      the jar to create
+     * @param packages the number of packages
+     * @param entries  the number of entries in each package
+     * @param length   the length of the entries
+     */
+    public static File createJar(File jar, int packages, int entries, int length) throws IOException
+    {
+        Random random = new Random(packages * 31 + entries);
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+        try
+        {
+            for (int index = 0; index < packages; index++)
+            {
+                String path = "org/example/package" + index + "/";
+                out.putNextEntry(new ZipEntry(path));
+                out.closeEntry();
+                for (int entry = 0; entry < entries; entry++)
+                {
+                    out.putNextEntry(new ZipEntry(path + "Class" + entry + ".class"));
+                    out.write(createContent(random, length));
+                    out.closeEntry();
+                }
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+        return jar;
+    }
+
+    /**
+     * Creates packs of generated files.
+     *
+     * @param root   the directory of the files
+     * @param packs  the number of packs
+     * @param files  the number of files of each pack
+     * @param length the length of the files
+     */
+    public static List<PackInfo> createPacks(File root, int packs, int files, int length) throws IOException
+    {
+        List<PackInfo> result = new ArrayList<PackInfo>();
+        for (int index = 0; index < packs; index++)
+        {
+            File packRoot = new File(root, "pack" + index);
+            PackInfo packInfo = new PackInfo("pack" + index, "pack" + index, "Pack " + index, true, false, null, true);
+            for (File file : createTree(packRoot, 4, files / 4, length, index))
+            {
+                String target = "$INSTALL_PATH/" + packRoot.toURI().relativize(file.toURI()).getPath();
+                packInfo.addFile(packRoot, file, target, null, OverrideType.OVERRIDE_TRUE, null,
+                        Blockable.BLOCKABLE_NONE, null, null);
+            }
+            result.add(packInfo);
+        }
+        return result;
+    }
+
+    /**
+     * Creates a langpack with generated strings.
+     *
+     * @param strings the number of strings
+     * @return the langpack as an XML document
+     */
+    public static byte[] createLangpack(int strings) throws IOException
+    {
+        Random random = new Random(strings);
+        StringBuilder builder = new StringBuilder();
+        builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\" ?>\n<langpack>\n");
+        for (int index = 0; index < strings; index++)
+        {
+            builder.append("    <str id=\"").append(getLangpackKey(index)).append("\" txt=\"");
+            builder.append(new String(createContent(random, 40)).replace('\n', ' '));
+            builder.append(" {0} {1}\"/>\n");
+        }
+        builder.append("</langpack>\n");
+        return builder.toString().getBytes("UTF-8");
+    }
+
+    /**
+     * Gets the key of a string of a langpack created by {@link #createLangpack(int)}.
+     */
+    public static String getLangpackKey(int index)
+    {
+        return "panel" + (index % 50) + ".string" + index;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmarks;
+
+import com.izforge.izpack.merge.jar.JarMerge;
+import com.izforge.izpack.util.zip.RawZipOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.tools.zip.ZipOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merge of a jar package into an installer, with and without the raw copy of the deflated
+ * entries.
+ *
+ * @author Anthonin Bonnefoy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JarMergeBenchmark
+{
+    @Param({"true", "false"})
+    public boolean raw;
+
+    private File directory;
+
+    private File jar;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        directory = Fixtures.createTempDirectory("izpack-merge");
+        jar = Fixtures.createJar(new File(directory, "library.jar"), 20, 50, 4096);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        Fixtures.delete(directory);
+    }
+
+    @Benchmark
+    public long mergePackage() throws Exception
+    {
+        CountingOutputStream counter = new CountingOutputStream();
+        ZipOutputStream outputStream = raw ? new RawZipOutputStream(counter) : new ZipOutputStream(counter);
+        JarMerge merge = new JarMerge(jar.getAbsolutePath(), "org/example/", "com/example/",
+                new HashMap<OutputStream, Set<String>>());
+        merge.merge(outputStream);
+        outputStream.close();
+        return counter.count;
+    }
+
+    /**
+     * Counts the bytes of the merged installer.
+     */
+    private static class CountingOutputStream extends NullOutputStream
+    {
+        private long count;
+
+        @Override
+        public void write(int b)
+        {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmarks;
+
+import com.izforge.izpack.api.data.LocaleDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading of a langpack and lookups of its strings.
+ *
+ * @author Anthonin Bonnefoy
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocaleDatabaseBenchmark
+{
+    private static final int STRINGS = 2000;
+
+    private byte[] langpack;
+
+    private LocaleDatabase database;
+
+    private String[] keys;
+
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        langpack = Fixtures.createLangpack(STRINGS);
+        database = new LocaleDatabase(new ByteArrayInputStream(langpack));
+        // looked up in an order unrelated to the one of the langpack
+        keys = new String[STRINGS];
+        for (int index = 0; index < STRINGS; index++)
+        {
+            keys[index] = Fixtures.getLangpackKey((index * 7919) % STRINGS);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LocaleDatabase load() throws Exception
+    {
+        return new LocaleDatabase(new ByteArrayInputStream(langpack));
+    }
+
+    @Benchmark
+    public String getString()
+    {
+        return database.getString(nextKey());
+    }
+
+    @Benchmark
+    public String getStringWithVariables()
+    {
+        return database.getString(nextKey(), new String[]{"value", "$" + keys[0]});
+    }
+
+    private String nextKey()
+    {
+        next = (next + 1) % STRINGS;
+        return keys[next];
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmarks;
+
+import com.izforge.izpack.compiler.compressor.DefaultPackCompressor;
+import com.izforge.izpack.compiler.data.CompilerData;
+import com.izforge.izpack.compiler.stream.JarOutputStream;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import com.izforge.izpack.data.PackInfo;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing of the packs of an installer, on packs of generated files.
+ *
+ * @author Anthonin Bonnefoy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PackagerBenchmark
+{
+    @Param({"1", "4"})
+    public int packThreads;
+
+    private File directory;
+
+    private List<PackInfo> packs;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        directory = Fixtures.createTempDirectory("izpack-packager");
+        packs = Fixtures.createPacks(directory, 4, 200, 8192);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        Fixtures.delete(directory);
+    }
+
+    @Benchmark
+    public void writePacks() throws Exception
+    {
+        writePacks(packs, packThreads, new JarOutputStream(new NullOutputStream()));
+    }
+
+    /**
+     * Writes packs into an installer jar.
+     */
+    static void writePacks(List<PackInfo> packs, int packThreads, JarOutputStream installer) throws Exception
+    {
+        CompilerData compilerData = new CompilerData("install.xml", ".", "install.jar");
+        compilerData.setPackThreads(packThreads);
+        BenchmarkPackager packager = new BenchmarkPackager(compilerData, installer,
+                new DefaultPackCompressor(new VariableSubstitutorImpl(new Properties())));
+        for (PackInfo pack : packs)
+        {
+            packager.addPack(pack);
+        }
+        packager.writePacks();
+        installer.closeAlways();
+    }
+}
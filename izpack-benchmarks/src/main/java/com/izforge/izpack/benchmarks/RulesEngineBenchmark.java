@@ -0,0 +1,110 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmarks;
+
+import com.izforge.izpack.api.rules.Condition;
+import com.izforge.izpack.core.rules.RulesEngineImpl;
+import com.izforge.izpack.core.rules.logic.NotCondition;
+import com.izforge.izpack.core.rules.process.JavaCondition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of complex conditions, the <code>@</code> expressions being parsed at each
+ * evaluation.
+ *
+ * @author Anthonin Bonnefoy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RulesEngineBenchmark
+{
+    @Param({"4", "16", "64"})
+    public int terms;
+
+    private RulesEngineImpl engine;
+
+    private String orExpression;
+
+    private String andExpression;
+
+    private String mixedExpression;
+
+    @Setup
+    public void setUp()
+    {
+        engine = new RulesEngineImpl(null, null);
+        Map<String, Condition> conditions = new HashMap<String, Condition>();
+        Condition alwaysFalse = new JavaCondition();
+        conditions.put("false", alwaysFalse);
+        conditions.put("true", NotCondition.createFromCondition(alwaysFalse, engine, null));
+        engine.readConditionMap(conditions);
+
+        // the last term decides, so that every term is evaluated
+        StringBuilder or = new StringBuilder("@false");
+        StringBuilder and = new StringBuilder("@true");
+        StringBuilder mixed = new StringBuilder("@!false");
+        for (int index = 1; index < terms; index++)
+        {
+            or.append(index == terms - 1 ? " || true" : " || false");
+            and.append(index == terms - 1 ? " && !false" : " && true");
+            mixed.append(index % 3 == 0 ? " || false" : index % 3 == 1 ? " && !false" : " ^ false");
+        }
+        orExpression = or.toString();
+        andExpression = and.toString();
+        mixedExpression = mixed.toString();
+    }
+
+    @Benchmark
+    public boolean or()
+    {
+        return engine.isConditionTrue(orExpression);
+    }
+
+    @Benchmark
+    public boolean and()
+    {
+        return engine.isConditionTrue(andExpression);
+    }
+
+    @Benchmark
+    public boolean mixed()
+    {
+        return engine.isConditionTrue(mixedExpression);
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmarks;
+
+import com.izforge.izpack.api.data.Info;
+import com.izforge.izpack.api.data.LocaleDatabase;
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.ResourceManager;
+import com.izforge.izpack.api.exception.ResourceNotFoundException;
+import com.izforge.izpack.api.handler.AbstractUIHandler;
+import com.izforge.izpack.api.handler.AbstractUIProgressHandler;
+import com.izforge.izpack.compiler.stream.JarOutputStream;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import com.izforge.izpack.data.PackInfo;
+import com.izforge.izpack.installer.data.InstallData;
+import com.izforge.izpack.installer.data.UninstallData;
+import com.izforge.izpack.installer.unpacker.Unpacker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Installation of the files of packs, read from an installer written by the packager, through
+ * {@link Unpacker#unpackFiles(List)}.
+ *
+ * @author Anthonin Bonnefoy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UnpackerBenchmark
+{
+    private File directory;
+
+    private File target;
+
+    private ZipFile installer;
+
+    private List<Pack> packs = new ArrayList<Pack>();
+
+    /**
+     * Number of threads writing the files behind the decoding, 0 to write them on the decoding thread.
+     */
+    @Param({"0", "2"})
+    public int writeThreads;
+
+    /**
+     * Engine writing the files on the decoding thread, when there are no writer threads.
+     */
+    @Param({"stream", "nio"})
+    public String writeEngine;
+
+    /**
+     * Many small files, or a few huge ones.
+     */
+    @Param({"small", "huge"})
+    public String files;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        directory = Fixtures.createTempDirectory("izpack-unpacker");
+        List<PackInfo> packInfos;
+        if ("huge".equals(files))
+        {
+            packInfos = Fixtures.createPacks(new File(directory, "source"), 1, 4, 32 * 1024 * 1024);
+        }
+        else
+        {
+            packInfos = Fixtures.createPacks(new File(directory, "source"), 4, 200, 8192);
+        }
+        File installerFile = new File(directory, "installer.jar");
+        PackagerBenchmark.writePacks(packInfos, 1, new JarOutputStream(installerFile));
+        installer = new ZipFile(installerFile);
+        for (PackInfo packInfo : packInfos)
+        {
+            packs.add(packInfo.getPack());
+        }
+        target = new File(directory, "target");
+        target.mkdir();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        installer.close();
+        Fixtures.delete(directory);
+    }
+
+    @Benchmark
+    public void unpack() throws Exception
+    {
+        Info info = new Info();
+        info.setUnpackerWriteThreads(writeThreads);
+        info.setUnpackerWriteEngine(writeEngine);
+        VariableSubstitutorImpl variableSubstitutor = new VariableSubstitutorImpl(new Properties());
+        InstallData installData = new InstallData(new Properties(), variableSubstitutor);
+        installData.setInfo(info);
+        installData.setInstallPath(target.getPath());
+        installData.setLangpack(new LocaleDatabase(new ByteArrayInputStream(Fixtures.createLangpack(0))));
+        Unpacker unpacker = new Unpacker(installData, new InstallerResources(), null, variableSubstitutor,
+                new UninstallData());
+        unpacker.setHandler(new SilentProgressHandler());
+        unpacker.unpackFiles(packs);
+    }
+
+    /**
+     * Resources read from the installer jar.
+     */
+    private class InstallerResources extends ResourceManager
+    {
+        public InstallerResources()
+        {
+            super(new Properties());
+        }
+
+        @Override
+        public InputStream getInputStream(String resource) throws ResourceNotFoundException
+        {
+            String name = "resources/" + (resource.startsWith("/") ? resource.substring(1) : resource);
+            ZipEntry entry = installer.getEntry(name);
+            if (entry == null)
+            {
+                throw new ResourceNotFoundException("Could not find the resource " + name);
+            }
+            try
+            {
+                return installer.getInputStream(entry);
+            }
+            catch (IOException e)
+            {
+                throw new ResourceNotFoundException("Could not read the resource " + name);
+            }
+        }
+    }
+
+    /**
+     * Handler ignoring the progress and answering yes to the questions.
+     */
+    private static class SilentProgressHandler implements AbstractUIProgressHandler
+    {
+        public void startAction(String name, int no_of_steps)
+        {
+        }
+
+        public void stopAction()
+        {
+        }
+
+        public void nextStep(String step_name, int step_no, int no_of_substeps)
+        {
+        }
+
+        public void setSubStepNo(int no_of_substeps)
+        {
+        }
+
+        public void progress(int substep_no, String message)
+        {
+        }
+
+        public void emitNotification(String message)
+        {
+        }
+
+        public boolean emitWarning(String title, String message)
+        {
+            return true;
+        }
+
+        public void emitError(String title, String message)
+        {
+        }
+
+        public void emitErrorAndBlockNext(String title, String message)
+        {
+        }
+
+        public int askQuestion(String title, String question, int choices)
+        {
+            return AbstractUIHandler.ANSWER_YES;
+        }
+
+        public int askQuestion(String title, String question, int choices, int default_choice)
+        {
+            return AbstractUIHandler.ANSWER_YES;
+        }
+    }
+}
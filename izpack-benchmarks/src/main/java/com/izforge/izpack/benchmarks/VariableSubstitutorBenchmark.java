@@ -0,0 +1,111 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.benchmarks;
+
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Substitution of the variables of a parsable file.
+ *
+ * @author Anthonin Bonnefoy
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VariableSubstitutorBenchmark
+{
+    private static final int VARIABLES = 100;
+
+    @Param({"plain", "shell", "at", "ant", "xml"})
+    public String type;
+
+    private VariableSubstitutorImpl substitutor;
+
+    private SubstitutionType substitutionType;
+
+    private String text;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        Properties variables = new Properties();
+        for (int index = 0; index < VARIABLES; index++)
+        {
+            variables.setProperty("VAR" + index, "value <" + index + ">");
+        }
+        substitutor = new VariableSubstitutorImpl(variables);
+        substitutionType = SubstitutionType.lookup(type);
+
+        // 64k of text referencing the variables with every syntax
+        Random random = new Random(VARIABLES);
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 65536)
+        {
+            builder.append(new String(Fixtures.createContent(random, 60)));
+            int variable = random.nextInt(VARIABLES);
+            switch (random.nextInt(4))
+            {
+                case 0:
+                    builder.append("${VAR").append(variable).append('}');
+                    break;
+                case 1:
+                    builder.append("$VAR").append(variable).append(' ');
+                    break;
+                case 2:
+                    builder.append("%{VAR").append(variable).append('}');
+                    break;
+                default:
+                    builder.append("@VAR").append(variable).append('@');
+                    break;
+            }
+        }
+        text = builder.toString();
+    }
+
+    @Benchmark
+    public String substitute() throws Exception
+    {
+        StringWriter writer = new StringWriter(text.length());
+        substitutor.substitute(new StringReader(text), writer, substitutionType);
+        return writer.toString();
+    }
+}
@@ -80,13 +80,16 @@ public class Compiler extends Thread
 
     public PropertyManager propertyManager;
 
+    private CompilerData compilerData;
+
     /**
      * The constructor.
      *
      * @throws CompilerException
      */
-    public Compiler(VariableSubstitutor variableSubstitutor, PropertyManager propertyManager, CompilerHelper compilerHelper, IPackager packager) throws CompilerException
+    public Compiler(VariableSubstitutor variableSubstitutor, PropertyManager propertyManager, CompilerHelper compilerHelper, IPackager packager, CompilerData compilerData) throws CompilerException
     {
+        this.compilerData = compilerData;
         this.propertyManager = propertyManager;
         this.propertySubstitutor = variableSubstitutor;
         this.compilerHelper = compilerHelper;
@@ -358,7 +361,7 @@ public class Compiler extends Thread
             File resource = new File(path);
             if (!resource.isAbsolute())
             {
-                resource = new File(CompilerData.IZPACK_HOME, path);
+                resource = new File(compilerData.getHome(), path);
             }
 
             if (!resource.exists())
@@ -50,11 +50,14 @@ import com.izforge.izpack.compiler.container.CompilerContainer;
 import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.data.PropertyManager;
 import com.izforge.izpack.compiler.helper.AssertionHelper;
+import com.izforge.izpack.compiler.helper.CompilerClassLoader;
 import com.izforge.izpack.compiler.helper.CompilerHelper;
 import com.izforge.izpack.compiler.helper.TargetFileSet;
 import com.izforge.izpack.compiler.helper.XmlCompilerHelper;
+import com.izforge.izpack.compiler.listener.BuildReport;
 import com.izforge.izpack.compiler.listener.CompilerListener;
 import com.izforge.izpack.compiler.packager.IPackager;
+import com.izforge.izpack.compiler.resource.PackElementReader;
 import com.izforge.izpack.compiler.resource.ResourceFinder;
 import com.izforge.izpack.core.data.DynamicInstallerRequirementValidatorImpl;
 import com.izforge.izpack.core.data.DynamicVariableImpl;
@@ -74,7 +77,6 @@ import java.net.URL;
 import java.util.*;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
 
 /**
  * A parser for the installer xml configuration. This parses a document conforming to the
@@ -89,12 +91,12 @@ public class CompilerConfig extends Thread
     /**
      * Constant for checking attributes.
      */
-    private static boolean YES = true;
+    private static final boolean YES = true;
 
     /**
      * Constant for checking attributes.
      */
-    private static boolean NO = false;
+    private static final boolean NO = false;
 
     /**
      * The installer packager compiler
@@ -138,6 +140,8 @@ public class CompilerConfig extends Thread
     private BindeableContainer compilerContainer;
     private ClassPathCrawler classPathCrawler;
     private RulesEngine rules;
+    private BuildReport report;
+    private CompilerClassLoader classLoader;
 
     private static final String TEMP_DIR_ELEMENT_NAME = "tempdir";
 
@@ -159,7 +163,7 @@ public class CompilerConfig extends Thread
      *
      * @param compilerData Object containing all informations found in command line
      */
-    public CompilerConfig(CompilerData compilerData, VariableSubstitutor variableSubstitutor, Compiler compiler, CompilerHelper compilerHelper, XmlCompilerHelper xmlCompilerHelper, PropertyManager propertyManager, IPackager packager, MergeManager mergeManager, IzpackProjectInstaller izpackProjectInstaller, AssertionHelper assertionHelper, CompilerContainer compilerContainer, ClassPathCrawler classPathCrawler, RulesEngine rules, PathResolver pathResolver, ResourceFinder resourceFinder)
+    public CompilerConfig(CompilerData compilerData, VariableSubstitutor variableSubstitutor, Compiler compiler, CompilerHelper compilerHelper, XmlCompilerHelper xmlCompilerHelper, PropertyManager propertyManager, IPackager packager, MergeManager mergeManager, IzpackProjectInstaller izpackProjectInstaller, AssertionHelper assertionHelper, CompilerContainer compilerContainer, ClassPathCrawler classPathCrawler, RulesEngine rules, PathResolver pathResolver, ResourceFinder resourceFinder, BuildReport report)
     {
         this.assertionHelper = assertionHelper;
         this.rules = rules;
@@ -176,6 +180,7 @@ public class CompilerConfig extends Thread
         this.classPathCrawler = classPathCrawler;
         this.pathResolver = pathResolver;
         this.resourceFinder = resourceFinder;
+        this.report = report;
     }
 
     /**
@@ -211,6 +216,28 @@ public class CompilerConfig extends Thread
      */
     public void executeCompiler() throws Exception
     {
+        // the jars of the installation are only visible to this compilation, and to the threads
+        // it starts
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        classLoader = new CompilerClassLoader(
+                contextClassLoader != null ? contextClassLoader : getClass().getClassLoader());
+        thread.setContextClassLoader(classLoader);
+        try
+        {
+            compile();
+        }
+        finally
+        {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    private void compile() throws Exception
+    {
+        report.reset();
+        BuildReport.Timer timer = BuildReport.startTimer();
+
         // normalize and test: TODO: may allow failure if we require write
         // access
         File base = new File(compilerData.getBasedir()).getAbsoluteFile();
@@ -224,36 +251,68 @@ public class CompilerConfig extends Thread
         propertyManager.setProperty("basedir", base.toString());
 
         // We get the XML data tree
+        BuildReport.Timer phase = BuildReport.startTimer();
         IXMLElement data = resourceFinder.getXMLTree();
+        report.finish("getXMLTree", phase);
         // loads the specified packager
+        phase = BuildReport.startTimer();
         loadPackagingInformation(data);
+        report.finish("loadPackager", phase);
 
         // Listeners to various events
         addCustomListeners();
 
         // Read the properties and perform replacement on the rest of the tree
+        phase = BuildReport.startTimer();
         substituteProperties(data);
+        report.finish("substituteProperties", phase);
 
         // We add all the information
+        phase = BuildReport.startTimer();
         addVariables(data);
         addDynamicVariables(data);
         addDynamicInstallerRequirement(data);
         addConditions(data);
+        report.finish("addVariablesAndConditions", phase);
+
+        phase = BuildReport.startTimer();
         addInfo(data);
         addGUIPrefs(data);
         addLangpacks(data);
+        report.finish("addInfoAndLangpacks", phase);
+
+        phase = BuildReport.startTimer();
         addResources(data);
+        report.finish("addResources", phase);
+
+        phase = BuildReport.startTimer();
         addNativeLibraries(data);
         addJars(data);
+        report.finish("addNativesAndJars", phase);
+
+        phase = BuildReport.startTimer();
         addPanels(data);
+        report.finish("addPanels", phase);
+
+        phase = BuildReport.startTimer();
         addPacks(data);
         addInstallerRequirement(data);
+        report.finish("addPacks", phase);
 
         // merge multiple packlang.xml files
+        phase = BuildReport.startTimer();
         mergePacksLangFiles();
+        report.finish("mergePacksLangFiles", phase);
 
         // We ask the packager to create the installer
         compiler.createInstaller();
+        report.finish("compile", timer);
+
+        // The measures of the phases go next to the installer, when asked for
+        if (compilerData.isBuildReport())
+        {
+            report.write(BuildReport.getReportFile(compilerData.getOutput()));
+        }
     }
 
     private void addInstallerRequirement(IXMLElement data) throws CompilerException
@@ -431,7 +490,7 @@ public class CompilerConfig extends Thread
                 CustomData customData = new CustomData(null, compilerHelper.getContainedFilePaths(url), null,
                         CustomData.UNINSTALLER_JAR);
                 packager.addCustomJar(customData, url);
-                ClassUtils.loadJarInSystemClassLoader(FileUtil.convertUrlToFile(url));
+                classLoader.addURL(url);
             }
         }
         notifyCompilerListener("addJars", CompilerListener.END, data);
@@ -511,7 +570,7 @@ public class CompilerConfig extends Thread
 
         // the actual adding is delegated to addPacksSingle to enable recursive
         // parsing of refpack package definitions
-        addPacksSingle(data);
+        addPacksSingle(data, true);
 
         compiler.checkDependencies();
         compiler.checkExcludes();
@@ -523,127 +582,64 @@ public class CompilerConfig extends Thread
      * Add packs and their contents to the installer without checking the dependencies and includes.
      * <p/> Helper method to recursively add more packs from refpack XML packs definitions
      *
-     * @param data The XML data
+     * @param data        The XML data
+     * @param readPacks   true to read the packs left out of the tree of the installation file
      * @throws CompilerException
      */
-    private void addPacksSingle(IXMLElement data) throws CompilerException
+    private void addPacksSingle(IXMLElement data, boolean readPacks) throws CompilerException
     {
         notifyCompilerListener("addPacksSingle", CompilerListener.BEGIN, data);
         // Initialisation
         IXMLElement root = xmlCompilerHelper.requireChildNamed(data, "packs");
 
-        // at least one pack is required
         List<IXMLElement> packElements = root.getChildrenNamed("pack");
         List<IXMLElement> refPackElements = root.getChildrenNamed("refpack");
         List<IXMLElement> refPackSets = root.getChildrenNamed("refpackset");
-        if (packElements.isEmpty() && refPackElements.isEmpty() && refPackSets.isEmpty())
-        {
-            assertionHelper.parseError(root, "<packs> requires a <pack>, <refpack> or <refpackset>");
-        }
 
-        File baseDir = new File(compilerData.getBasedir());
+        final File baseDir = new File(compilerData.getBasedir());
 
         for (IXMLElement packElement : packElements)
         {
+            addPack(baseDir, packElement);
+        }
 
-            // Trivial initialisations
-            String name = xmlCompilerHelper.requireAttribute(packElement, "name");
-            String id = packElement.getAttribute("id");
-            String packImgId = packElement.getAttribute("packImgId");
-
-            boolean loose = "true".equalsIgnoreCase(packElement.getAttribute("loose", "false"));
-            String description = xmlCompilerHelper.requireChildNamed(packElement, "description").getContent();
-            boolean required = xmlCompilerHelper.requireYesNoAttribute(packElement, "required");
-            String group = packElement.getAttribute("group");
-            String installGroups = packElement.getAttribute("installGroups");
-            String excludeGroup = packElement.getAttribute("excludeGroup");
-            boolean uninstall = "yes".equalsIgnoreCase(packElement.getAttribute("uninstall", "yes"));
-            String parent = packElement.getAttribute("parent");
-            boolean hidden = "true".equalsIgnoreCase(packElement.getAttribute("hidden", "false"));
-
-            String conditionid = packElement.getAttribute("condition");
-
-            if (required && excludeGroup != null)
-            {
-                assertionHelper.parseError(packElement, "Pack, which has excludeGroup can not be required.", new Exception(
-                        "Pack, which has excludeGroup can not be required."));
-            }
-
-            PackInfo pack = new PackInfo(name, id, description, required, loose, excludeGroup,
-                    uninstall);
-            pack.setOsConstraints(OsConstraintHelper.getOsList(packElement)); // TODO:
-            pack.setParent(parent);
-            pack.setCondition(conditionid);
-            pack.setHidden(hidden);
-
-            // unverified
-            // if the pack belongs to an excludeGroup it's not preselected by default
-            if (excludeGroup == null)
-            {
-                pack.setPreselected(xmlCompilerHelper.validateYesNoAttribute(packElement, "preselected", YES));
-            }
-            else
-            {
-                pack.setPreselected(xmlCompilerHelper.validateYesNoAttribute(packElement, "preselected", NO));
-            }
-
-            // Set the pack group if specified
-            if (group != null)
-            {
-                pack.setGroup(group);
-            }
-            // Set the pack install groups if specified
-            if (installGroups != null)
+        // the packs of the installation file are read one at a time, their properties were not
+        // substituted with the rest of the tree
+        int readPackCount = 0;
+        if (readPacks)
+        {
+            try
             {
-                StringTokenizer st = new StringTokenizer(installGroups, ",");
-                while (st.hasMoreTokens())
+                readPackCount = resourceFinder.readPacks(data, new PackElementReader.PackHandler()
                 {
-                    String igroup = st.nextToken();
-                    pack.addInstallGroup(igroup);
-                }
-            }
-
-            // Set the packImgId if specified
-            if (packImgId != null)
-            {
-                pack.setPackImgId(packImgId);
+                    public void handlePack(IXMLElement packElement) throws CompilerException
+                    {
+                        substituteAllProperties(packElement);
+                        addPack(baseDir, packElement);
+                    }
+                });
             }
-
-            List<IXMLElement> parsableChildren = packElement.getChildrenNamed("parsable");
-            processParsableChildren(pack, parsableChildren);
-
-            List<IXMLElement> executableChildren = packElement.getChildrenNamed("executable");
-            processExecutableChildren(pack, executableChildren);
-
-            processFileChildren(baseDir, packElement, pack);
-
-            processSingleFileChildren(baseDir, packElement, pack);
-
-            processFileSetChildren(baseDir, packElement, pack);
-
-            processUpdateCheckChildren(packElement, pack);
-
-            // We get the dependencies
-            for (IXMLElement dependsNode : packElement.getChildrenNamed("depends"))
+            catch (CompilerException e)
             {
-                String depName = xmlCompilerHelper.requireAttribute(dependsNode, "packname");
-                pack.addDependency(depName);
-
+                throw e;
             }
-
-            for (IXMLElement validatorNode : packElement.getChildrenNamed("validator"))
+            catch (IOException e)
             {
-                pack.addValidator(xmlCompilerHelper.requireContent(validatorNode));
+                throw new CompilerException("Could not read the packs: " + e.getMessage(), e);
             }
+        }
 
-            // We add the pack
-            packager.addPack(pack);
+        // at least one pack is required
+        if (packElements.isEmpty() && readPackCount == 0 && refPackElements.isEmpty() && refPackSets.isEmpty())
+        {
+            assertionHelper.parseError(root, "<packs> requires a <pack>, <refpack> or <refpackset>");
         }
 
         for (IXMLElement refPackElement : refPackElements)
         {
 
             // get the name of reference xml file
+
             String refFileName = xmlCompilerHelper.requireAttribute(refPackElement, "file");
             String selfcontained = refPackElement.getAttribute("selfcontained");
             boolean isselfcontained = Boolean.valueOf(selfcontained);
@@ -653,7 +649,7 @@ public class CompilerConfig extends Thread
 
             Debug.log("Reading refpack from " + refFileName);
             // Recursively call myself to add all packs and refpacks from the reference XML
-            addPacksSingle(refXMLData);
+            addPacksSingle(refXMLData, false);
         }
 
         for (IXMLElement refPackSet : refPackSets)
@@ -697,7 +693,7 @@ public class CompilerConfig extends Thread
                     IXMLElement refXMLData = this.readRefPackData(refFileName, false);
 
                     // Recursively call myself to add all packs and refpacks from the reference XML
-                    addPacksSingle(refXMLData);
+                    addPacksSingle(refXMLData, false);
                 }
             }
             catch (Exception e)
@@ -709,6 +705,109 @@ public class CompilerConfig extends Thread
         notifyCompilerListener("addPacksSingle", CompilerListener.END, data);
     }
 
+    /**
+     * Adds a pack and its contents to the installer.
+     *
+     * @param baseDir     the base directory of the files of the pack
+     * @param packElement the pack
+     * @throws CompilerException
+     */
+    private void addPack(File baseDir, IXMLElement packElement) throws CompilerException
+    {
+        // Trivial initialisations
+        String name = xmlCompilerHelper.requireAttribute(packElement, "name");
+        String id = packElement.getAttribute("id");
+        String packImgId = packElement.getAttribute("packImgId");
+
+        boolean loose = "true".equalsIgnoreCase(packElement.getAttribute("loose", "false"));
+        String description = xmlCompilerHelper.requireChildNamed(packElement, "description").getContent();
+        boolean required = xmlCompilerHelper.requireYesNoAttribute(packElement, "required");
+        String group = packElement.getAttribute("group");
+        String installGroups = packElement.getAttribute("installGroups");
+        String excludeGroup = packElement.getAttribute("excludeGroup");
+        boolean uninstall = "yes".equalsIgnoreCase(packElement.getAttribute("uninstall", "yes"));
+        String parent = packElement.getAttribute("parent");
+        boolean hidden = "true".equalsIgnoreCase(packElement.getAttribute("hidden", "false"));
+
+        String conditionid = packElement.getAttribute("condition");
+
+        if (required && excludeGroup != null)
+        {
+            assertionHelper.parseError(packElement, "Pack, which has excludeGroup can not be required.", new Exception(
+                    "Pack, which has excludeGroup can not be required."));
+        }
+
+        PackInfo pack = new PackInfo(name, id, description, required, loose, excludeGroup,
+                uninstall);
+        pack.setOsConstraints(OsConstraintHelper.getOsList(packElement)); // TODO:
+        pack.setParent(parent);
+        pack.setCondition(conditionid);
+        pack.setHidden(hidden);
+
+        // unverified
+        // if the pack belongs to an excludeGroup it's not preselected by default
+        if (excludeGroup == null)
+        {
+            pack.setPreselected(xmlCompilerHelper.validateYesNoAttribute(packElement, "preselected", YES));
+        }
+        else
+        {
+            pack.setPreselected(xmlCompilerHelper.validateYesNoAttribute(packElement, "preselected", NO));
+        }
+
+        // Set the pack group if specified
+        if (group != null)
+        {
+            pack.setGroup(group);
+        }
+        // Set the pack install groups if specified
+        if (installGroups != null)
+        {
+            StringTokenizer st = new StringTokenizer(installGroups, ",");
+            while (st.hasMoreTokens())
+            {
+                String igroup = st.nextToken();
+                pack.addInstallGroup(igroup);
+            }
+        }
+
+        // Set the packImgId if specified
+        if (packImgId != null)
+        {
+            pack.setPackImgId(packImgId);
+        }
+
+        List<IXMLElement> parsableChildren = packElement.getChildrenNamed("parsable");
+        processParsableChildren(pack, parsableChildren);
+
+        List<IXMLElement> executableChildren = packElement.getChildrenNamed("executable");
+        processExecutableChildren(pack, executableChildren);
+
+        processFileChildren(baseDir, packElement, pack);
+
+        processSingleFileChildren(baseDir, packElement, pack);
+
+        processFileSetChildren(baseDir, packElement, pack);
+
+        processUpdateCheckChildren(packElement, pack);
+
+        // We get the dependencies
+        for (IXMLElement dependsNode : packElement.getChildrenNamed("depends"))
+        {
+            String depName = xmlCompilerHelper.requireAttribute(dependsNode, "packname");
+            pack.addDependency(depName);
+
+        }
+
+        for (IXMLElement validatorNode : packElement.getChildrenNamed("validator"))
+        {
+            pack.addValidator(xmlCompilerHelper.requireContent(validatorNode));
+        }
+
+        // We add the pack
+        packager.addPack(pack);
+    }
+
     private void processUpdateCheckChildren(IXMLElement packElement, PackInfo pack) throws CompilerException
     {
         for (IXMLElement updateNode : packElement.getChildrenNamed("updatecheck"))
@@ -741,9 +840,10 @@ public class CompilerConfig extends Thread
         {
             try
             {
+                DirectoryScanner scanner = fs.getDirectoryScanner();
                 String[][] includedFilesAndDirs = new String[][]{
-                        fs.getDirectoryScanner().getIncludedDirectories(),
-                        fs.getDirectoryScanner().getIncludedFiles()
+                        scanner.getIncludedDirectories(),
+                        scanner.getIncludedFiles()
                 };
                 for (String[] filesOrDirs : includedFilesAndDirs)
                 {
@@ -825,6 +925,7 @@ public class CompilerConfig extends Thread
             boolean unpack = "true".equalsIgnoreCase(fileNode.getAttribute("unpack"));
 
             TargetFileSet fs = new TargetFileSet();
+            fs.setScanThreads(compilerData.getPackThreads());
             try
             {
                 File relsrcfile = new File(src);
@@ -866,11 +967,12 @@ public class CompilerConfig extends Thread
                 }
 
                 LinkedList<String> srcfiles = new LinkedList<String>();
-                for (String filePath : fs.getDirectoryScanner().getIncludedDirectories())
+                DirectoryScanner scanner = fs.getDirectoryScanner();
+                for (String filePath : scanner.getIncludedDirectories())
                 {
                     srcfiles.add(filePath);
                 }
-                for (String filePath : fs.getDirectoryScanner().getIncludedFiles())
+                for (String filePath : scanner.getIncludedFiles())
                 {
                     srcfiles.add(filePath);
                 }
@@ -1239,53 +1341,35 @@ public class CompilerConfig extends Thread
                                      String condition) throws IOException
     {
 
-        FileInputStream fin = new FileInputStream(archive);
-        ZipInputStream zin = new ZipInputStream(fin);
-        List<String> allDirList = new ArrayList<String>();
-        while (true)
+        // The entries are streamed from the archive when the packs are written
+        ZipFile zip = new ZipFile(archive);
+        try
         {
-            ZipEntry zentry = zin.getNextEntry();
-            if (zentry == null)
-            {
-                break;
-            }
-            if (zentry.isDirectory())
+            List<ZipEntry> allDirList = new ArrayList<ZipEntry>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements())
             {
-                // add to all dir listing/empty dir needs to be handle
-                String dName = zentry.getName().substring(0, zentry.getName().length() - 1);
-                allDirList.add(dName);
-                continue;
-            }
-
-            try
-            {
-                File temp = FileUtils.createTempFile("izpack", null);
-                temp.deleteOnExit();
-
-                FileOutputStream out = new FileOutputStream(temp);
-                IoHelper.copyStream(zin, out);
-                out.close();
-
-                pack.addFile(baseDir, temp, targetdir + "/" + zentry.getName(), osList, override,
+                ZipEntry zentry = entries.nextElement();
+                if (zentry.isDirectory())
+                {
+                    // add to all dir listing/empty dir needs to be handle
+                    allDirList.add(zentry);
+                    continue;
+                }
+                pack.addArchiveEntry(archive, zentry, targetdir + "/" + zentry.getName(), osList, override,
                         overrideRenameTo, blockable, additionals, condition);
             }
-            catch (IOException e)
+
+            for (ZipEntry dirEntry : allDirList)
             {
-                throw new IOException("Couldn't create temporary file for " + zentry.getName()
-                        + " in archive " + archive + " (" + e.getMessage() + ")");
+                pack.addArchiveEntry(archive, dirEntry, targetdir + "/" + dirEntry.getName(), osList,
+                        override, overrideRenameTo, blockable, additionals, condition);
             }
-
         }
-
-        for (String dirName : allDirList)
+        finally
         {
-            File tmp = new File(dirName);
-            tmp.mkdirs();
-            tmp.deleteOnExit();
-            pack.addFile(baseDir, tmp, targetdir + "/" + dirName, osList,
-                    override, overrideRenameTo, blockable, additionals, condition);
+            zip.close();
         }
-        fin.close();
     }
 
     /**
@@ -1739,6 +1823,106 @@ public class CompilerConfig extends Thread
         IXMLElement pack200 = root.getFirstChildNamed("pack200");
         info.setPack200Compression(pack200 != null);
 
+        // Already compressed files stored uncompressed
+        IXMLElement uncompressed = root.getFirstChildNamed("uncompressed");
+        if (uncompressed != null)
+        {
+            List<String> extensions = new ArrayList<String>();
+            String extensionList = uncompressed.getAttribute("extensions", Info.DEFAULT_UNCOMPRESSED_EXTENSIONS);
+            for (String extension : extensionList.split(","))
+            {
+                extension = extension.trim().toLowerCase();
+                if (extension.startsWith("."))
+                {
+                    extension = extension.substring(1);
+                }
+                if (extension.length() > 0)
+                {
+                    extensions.add(extension);
+                }
+            }
+            info.setUncompressedExtensions(extensions);
+            String entropy = uncompressed.getAttribute("entropy");
+            if (entropy != null)
+            {
+                try
+                {
+                    info.setUncompressedEntropy(Double.parseDouble(entropy));
+                }
+                catch (NumberFormatException e)
+                {
+                    assertionHelper.parseError(uncompressed, "'entropy' must be a number of bits per byte", e);
+                }
+            }
+            String minSize = uncompressed.getAttribute("minsize");
+            if (minSize != null)
+            {
+                try
+                {
+                    info.setUncompressedMinSize(Long.parseLong(minSize));
+                }
+                catch (NumberFormatException e)
+                {
+                    assertionHelper.parseError(uncompressed, "'minsize' must be a number of bytes", e);
+                }
+            }
+        }
+
+        // Framework classes not reachable from the installer left out of the skeleton
+        IXMLElement shrink = root.getFirstChildNamed("shrink");
+        if (shrink != null)
+        {
+            List<String> keeps = new ArrayList<String>();
+            for (IXMLElement keep : shrink.getChildrenNamed("keep"))
+            {
+                keeps.add(xmlCompilerHelper.requireAttribute(keep, "name"));
+            }
+            info.setSkeletonKeeps(keeps);
+        }
+
+        // Installed files written behind the decoding of the packs, packs unpacked at the same time,
+        // engine writing the files, journal to resume the installation
+        IXMLElement unpacker = root.getFirstChildNamed("unpacker");
+        if (unpacker != null)
+        {
+            String writeThreads = unpacker.getAttribute("writethreads");
+            if (writeThreads != null)
+            {
+                try
+                {
+                    info.setUnpackerWriteThreads(Math.max(0, Integer.parseInt(writeThreads)));
+                }
+                catch (NumberFormatException e)
+                {
+                    assertionHelper.parseError(unpacker, "'writethreads' must be a number of threads", e);
+                }
+            }
+            String packThreads = unpacker.getAttribute("packthreads");
+            if (packThreads != null)
+            {
+                try
+                {
+                    info.setUnpackerPackThreads(Math.max(0, Integer.parseInt(packThreads)));
+                }
+                catch (NumberFormatException e)
+                {
+                    assertionHelper.parseError(unpacker, "'packthreads' must be a number of threads", e);
+                }
+            }
+            String writeEngine = unpacker.getAttribute("writeengine");
+            if (writeEngine != null)
+            {
+                if (!Info.UNPACKER_WRITE_ENGINE_STREAM.equals(writeEngine)
+                        && !Info.UNPACKER_WRITE_ENGINE_NIO.equals(writeEngine))
+                {
+                    assertionHelper.parseError(unpacker, "'writeengine' must be '"
+                            + Info.UNPACKER_WRITE_ENGINE_STREAM + "' or '" + Info.UNPACKER_WRITE_ENGINE_NIO + "'");
+                }
+                info.setUnpackerWriteEngine(writeEngine);
+            }
+            info.setUnpackerJournal(xmlCompilerHelper.validateYesNoAttribute(unpacker, "journal", NO));
+        }
+
         // Privileged execution
         IXMLElement privileged = root.getFirstChildNamed("run-privileged");
         info.setRequirePrivilegedExecution(privileged != null);
@@ -2844,6 +3028,7 @@ public class CompilerConfig extends Thread
     private TargetFileSet readFileSet(IXMLElement fileSetNode) throws CompilerException
     {
         TargetFileSet fs = new TargetFileSet();
+        fs.setScanThreads(compilerData.getPackThreads());
 
         fs.setTargetDir(xmlCompilerHelper.requireAttribute(fileSetNode, "targetdir"));
         List<OsModel> osList = OsConstraintHelper.getOsList(fileSetNode); // TODO: unverified
@@ -4,7 +4,9 @@ import com.izforge.izpack.compiler.CompilerConfig;
 import com.izforge.izpack.compiler.container.CompilerContainer;
 import com.izforge.izpack.compiler.exception.HelpRequestedException;
 import com.izforge.izpack.compiler.exception.NoArgumentException;
+import com.izforge.izpack.merge.resolve.ClassPathCrawler;
 
+import java.io.File;
 import java.util.Date;
 
 /**
@@ -14,18 +16,51 @@ import java.util.Date;
  */
 public class CompilerLauncher {
 
+    /**
+     * Crawler shared by the compilations of the launcher, null to crawl the class path at each one
+     */
+    private ClassPathCrawler classPathCrawler;
+
+    public CompilerLauncher() {
+    }
+
+    /**
+     * @param classPathCrawler crawler shared by the compilations of the launcher
+     */
+    public CompilerLauncher(ClassPathCrawler classPathCrawler) {
+        this.classPathCrawler = classPathCrawler;
+    }
+
     /**
      * The main method if the compiler is invoked by a command-line call.
      *
      * @param args The arguments passed on the command-line.
      */
     public static void main(String[] args) {
+        int exitCode = new CompilerLauncher().launch(args, null);
+
+        // Closes the JVM
+        System.exit(exitCode);
+    }
+
+    /**
+     * Compiles an installation.
+     *
+     * @param args      the arguments of the command line
+     * @param directory the directory the paths of the arguments are relative to, null for the
+     *                  current directory
+     * @return the exit code, 0 if the compilation succeeded
+     */
+    public int launch(String[] args, File directory) {
         // exit code 1 means: error
         int exitCode = 1;
         try {
-            CompilerContainer compilerContainer = new CompilerContainer();
+            CompilerContainer compilerContainer = createCompilerContainer();
             compilerContainer.initBindings();
-            compilerContainer.processCompileDataFromArgs(args);
+            if (classPathCrawler != null) {
+                compilerContainer.shareClassPathCrawler(classPathCrawler);
+            }
+            compilerContainer.processCompileDataFromArgs(args, directory);
 
             CompilerConfig compiler = compilerContainer.getComponent(CompilerConfig.class);
             compiler.executeCompiler();
@@ -52,10 +87,16 @@ public class CompilerLauncher {
             System.err.println("");
             System.err.println("(tip : use -? to get the commmand line parameters)");
         }
-
-        // Closes the JVM
-        System.exit(exitCode);
+        return exitCode;
     }
 
+    /**
+     * Creates the container of a compilation.
+     *
+     * @return the container, its bindings not initialized yet
+     */
+    protected CompilerContainer createCompilerContainer() {
+        return new CompilerContainer();
+    }
 
 }
@@ -20,6 +20,9 @@ public class CliAnalyzer {
     private static final String ARG_OUTPUT = "o";
     private static final String ARG_COMPRESSION_FORMAT = "c";
     private static final String ARG_COMPRESSION_LEVEL = "l";
+    private static final String ARG_PACK_THREADS = "t";
+    private static final String ARG_PACK200_MEMORY = "m";
+    private static final String ARG_BUILD_REPORT = "r";
 
 
     /**
@@ -41,6 +44,12 @@ public class CliAnalyzer {
                 "default is the internal deflate compression\n");
         options.addOption(ARG_COMPRESSION_LEVEL, true, "compression-level : indicates the level for the used compression format"
                 + " if supported. Only integer are valid\n");
+        options.addOption(ARG_PACK_THREADS, true, "threads : indicates the number of threads scanning the filesets and building and"
+                + " compressing the packs, default is 1\n");
+        options.addOption(ARG_PACK200_MEMORY, true, "pack200-memory : indicates the megabytes of Pack200 archives kept in"
+                + " memory while jars are packed by several threads, default is 64\n");
+        options.addOption(ARG_BUILD_REPORT, false, "report : writes the time and throughput of the compiler phases"
+                + " next to the installer, in (out)-report.json\n");
         return options;
     }
 
@@ -84,7 +93,9 @@ public class CliAnalyzer {
         System.out.println("-> Kind        : " + result.getKind());
         System.out.println("-> Compression : " + result.getComprFormat());
         System.out.println("-> Compr. level: " + result.getComprLevel());
-        System.out.println("-> IzPack home : " + CompilerData.IZPACK_HOME);
+        System.out.println("-> Pack threads: " + result.getPackThreads());
+        System.out.println("-> Pack200 mem.: " + result.getPack200MemoryLimit() + " MB");
+        System.out.println("-> IzPack home : " + result.getHome());
         System.out.println("");
     }
 
@@ -112,7 +123,7 @@ public class CliAnalyzer {
      * @param commandLine CommandLine to analyze
      * @return filled compilerData with informations
      */
-    private CompilerData analyzeCommandLine(CommandLine commandLine) {
+    private CompilerData analyzeCommandLine(CommandLine commandLine) throws ParseException {
         validateCommandLine(commandLine);
         String installFile;
         String baseDir = ".";
@@ -139,8 +150,17 @@ public class CliAnalyzer {
         if (commandLine.hasOption(ARG_COMPRESSION_LEVEL)) {
             compilerData.setComprLevel(Integer.parseInt(commandLine.getOptionValue(ARG_COMPRESSION_LEVEL).trim()));
         }
+        if (commandLine.hasOption(ARG_PACK_THREADS)) {
+            compilerData.setPackThreads(getCountOption(commandLine, ARG_PACK_THREADS));
+        }
+        if (commandLine.hasOption(ARG_PACK200_MEMORY)) {
+            compilerData.setPack200MemoryLimit(getCountOption(commandLine, ARG_PACK200_MEMORY));
+        }
+        if (commandLine.hasOption(ARG_BUILD_REPORT)) {
+            compilerData.setBuildReport(true);
+        }
         if (commandLine.hasOption(ARG_IZPACK_HOME)) {
-            CompilerData.setIzpackHome(commandLine.getOptionValue(ARG_IZPACK_HOME).trim());
+            compilerData.setHome(commandLine.getOptionValue(ARG_IZPACK_HOME).trim());
         }
         if (commandLine.hasOption(ARG_KIND)) {
             compilerData.setKind(commandLine.getOptionValue(ARG_KIND).trim());
@@ -149,6 +169,29 @@ public class CliAnalyzer {
         return compilerData;
     }
 
+    /**
+     * Get the value of an option which must be an integer of at least 1
+     *
+     * @param commandLine CommandLine to analyze
+     * @param option      the option
+     * @return the value of the option
+     * @throws ParseException if the value is not an integer or is less than 1
+     */
+    private int getCountOption(CommandLine commandLine, String option) throws ParseException {
+        String value = commandLine.getOptionValue(option).trim();
+        int count;
+        try {
+            count = Integer.parseInt(value);
+        }
+        catch (NumberFormatException e) {
+            throw new ParseException("Option -" + option + " needs an integer: " + value);
+        }
+        if (count < 1) {
+            throw new ParseException("Option -" + option + " must be at least 1: " + value);
+        }
+        return count;
+    }
+
     /**
      * Validate that a xml installation file is given in argument
      *
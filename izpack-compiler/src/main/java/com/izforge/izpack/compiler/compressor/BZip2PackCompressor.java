@@ -23,8 +23,11 @@
 package com.izforge.izpack.compiler.compressor;
 
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
+import com.izforge.izpack.compiler.stream.ParallelBZip2OutputStream;
 import com.izforge.izpack.merge.MergeManager;
 
+import java.io.OutputStream;
+
 
 /**
  * IzPack will be able to support different compression methods for the
@@ -40,17 +43,44 @@ public class BZip2PackCompressor extends PackCompressorBase
     private static final String THIS_DECODER_MAPPER = "org.apache.tools.bzip2.CBZip2InputStream";
     private static final String THIS_ENCODER_CLASS_NAME = "org.apache.tools.bzip2.CBZip2OutputStream";
 
+    /**
+     * Number of threads compressing the blocks of a pack
+     */
+    private int threads = 1;
+
     /**
      *
      */
     public BZip2PackCompressor(VariableSubstitutor variableSubstitutor, MergeManager mergeManager)
+    {
+        this(variableSubstitutor, mergeManager, 1);
+    }
+
+    /**
+     * @param threads the number of threads compressing the blocks of a pack
+     */
+    public BZip2PackCompressor(VariableSubstitutor variableSubstitutor, MergeManager mergeManager, int threads)
     {
         super(variableSubstitutor);
+        this.threads = threads;
         mergeManager.addResourceToMerge("org/apache/tools/bzip2");
         formatNames = THIS_FORMAT_NAMES;
         decoderMapper = THIS_DECODER_MAPPER;
         encoderClassName = THIS_ENCODER_CLASS_NAME;
     }
 
+    /**
+     * With several threads, the blocks are compressed in parallel into the same format, still
+     * read by the decoder of this compressor.
+     */
+    public OutputStream getOutputStream(OutputStream os) throws Exception
+    {
+        if (threads <= 1)
+        {
+            return super.getOutputStream(os);
+        }
+        int level = getCompressionLevel() > 0 ? getCompressionLevel() : 9;
+        return new ParallelBZip2OutputStream(os, level, threads);
+    }
 
 }
@@ -22,6 +22,8 @@
 
 package com.izforge.izpack.compiler.compressor;
 
+import java.io.OutputStream;
+
 /**
  * IzPack will be able to support different compression methods for the
  * packs included in the installation jar file.
@@ -47,7 +49,7 @@ public interface PackCompressor
      * @return a newly created encoding output stream
      * @throws Exception
      */
-//    OutputStream getOutputStream(OutputStream os) throws Exception;
+    OutputStream getOutputStream(OutputStream os) throws Exception;
 
     /**
      * Returns all symbolic names which are used for this compressor.
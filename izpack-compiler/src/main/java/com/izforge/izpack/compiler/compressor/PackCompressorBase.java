@@ -24,6 +24,9 @@ package com.izforge.izpack.compiler.compressor;
 
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+
 
 /**
  * IzPack will be able to support different compression methods for the
@@ -56,6 +59,36 @@ public abstract class PackCompressorBase implements PackCompressor
         this.variableSubstitutor = variableSubstitutor;
     }
 
+    /**
+     * Instantiates the encoder class via reflection. If a compression level is set, the
+     * constructor <code>(OutputStream, int)</code> is used, else <code>(OutputStream)</code>.
+     *
+     * @param os output stream to be used as listener
+     * @return a newly created encoding output stream
+     * @throws Exception if the encoder class cannot be instantiated
+     */
+    public OutputStream getOutputStream(OutputStream os) throws Exception
+    {
+        Class<?> encoder = Class.forName(getEncoderClassName());
+        Object instance;
+        if (getCompressionLevel() > 0)
+        {
+            Constructor<?> constructor = encoder.getDeclaredConstructor(OutputStream.class, Integer.TYPE);
+            instance = constructor.newInstance(os, getCompressionLevel());
+        }
+        else
+        {
+            Constructor<?> constructor = encoder.getDeclaredConstructor(OutputStream.class);
+            instance = constructor.newInstance(os);
+        }
+        if (!OutputStream.class.isInstance(instance))
+        {
+            throw new IllegalStateException("'" + getEncoderClassName() + "' must be derived from "
+                    + OutputStream.class.toString());
+        }
+        return (OutputStream) instance;
+    }
+
     /* (non-Javadoc)
      * @see com.izforge.izpack.compressor.PackCompressor#getEncoderClassName()
      */
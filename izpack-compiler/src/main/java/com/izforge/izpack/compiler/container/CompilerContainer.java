@@ -9,6 +9,7 @@ import com.izforge.izpack.compiler.container.provider.*;
 import com.izforge.izpack.compiler.data.PropertyManager;
 import com.izforge.izpack.compiler.helper.AssertionHelper;
 import com.izforge.izpack.compiler.helper.CompilerHelper;
+import com.izforge.izpack.compiler.listener.BuildReport;
 import com.izforge.izpack.compiler.listener.CmdlinePackagerListener;
 import com.izforge.izpack.compiler.packager.IPackager;
 import com.izforge.izpack.compiler.packager.impl.Packager;
@@ -26,6 +27,7 @@ import org.picocontainer.MutablePicoContainer;
 import org.picocontainer.injectors.ProviderAdapter;
 import org.picocontainer.parameters.ComponentParameter;
 
+import java.io.File;
 import java.util.Properties;
 
 /**
@@ -44,6 +46,7 @@ public class CompilerContainer extends AbstractContainer
                 .addComponent(CompilerContainer.class, this)
                 .addComponent(CliAnalyzer.class)
                 .addComponent(CmdlinePackagerListener.class)
+                .addComponent(BuildReport.class)
                 .addComponent(Compiler.class)
                 .addComponent(ResourceFinder.class)
                 .addComponent(CompilerConfig.class)
@@ -61,10 +64,21 @@ public class CompilerContainer extends AbstractContainer
         pico.addAdapter(new ProviderAdapter(new IzpackProjectProvider()))
                 .addAdapter(new ProviderAdapter(new XmlCompilerHelperProvider()))
                 .addAdapter(new ProviderAdapter(new JarOutputStreamProvider()))
-                .addAdapter(new ProviderAdapter(new CompressedOutputStreamProvider()))
                 .addAdapter(new ProviderAdapter(new PackCompressorProvider()));
     }
 
+    /**
+     * Replaces the class path crawler of the container by one shared with other compilations, which
+     * keeps the class paths it already crawled.
+     *
+     * @param classPathCrawler the shared crawler
+     */
+    public void shareClassPathCrawler(ClassPathCrawler classPathCrawler)
+    {
+        pico.removeComponent(ClassPathCrawler.class);
+        pico.addComponent(ClassPathCrawler.class, classPathCrawler);
+    }
+
     /**
      * Add CompilerDataComponent by processing command line args
      *
@@ -72,7 +86,18 @@ public class CompilerContainer extends AbstractContainer
      */
     public void processCompileDataFromArgs(String[] args)
     {
-        pico.addAdapter(new ProviderAdapter(new CompilerDataProvider(args)));
+        processCompileDataFromArgs(args, null);
+    }
+
+    /**
+     * Add CompilerDataComponent by processing command line args given in an other directory
+     *
+     * @param args      command line args
+     * @param directory directory the paths of the args are relative to, null for the current directory
+     */
+    public void processCompileDataFromArgs(String[] args, File directory)
+    {
+        pico.addAdapter(new ProviderAdapter(new CompilerDataProvider(args, directory)));
     }
 
 }
@@ -6,6 +6,8 @@ import com.izforge.izpack.compiler.data.CompilerData;
 import org.apache.commons.cli.ParseException;
 import org.picocontainer.injectors.Provider;
 
+import java.io.File;
+
 /**
  * Provide CompileData coming from CliAnalyzer
  *
@@ -15,14 +17,31 @@ public class CompilerDataProvider implements Provider
 {
     private String[] args;
 
+    private File directory;
+
     public CompilerDataProvider(String[] args)
+    {
+        this(args, null);
+    }
+
+    /**
+     * @param args      the command line arguments
+     * @param directory the directory the paths of the arguments are relative to, null for the
+     *                  current directory
+     */
+    public CompilerDataProvider(String[] args, File directory)
     {
         this.args = args;
+        this.directory = directory;
     }
 
     public CompilerData provide(CliAnalyzer cliAnalyzer, CompilerContainer compilerContainer) throws ParseException
     {
         CompilerData compilerData = cliAnalyzer.printAndParseArgs(args);
+        if (directory != null)
+        {
+            compilerData.resolvePaths(directory);
+        }
         compilerContainer.addConfig("installFile", compilerData.getInstallFile());
         // REFACTOR : find a way to test with a fake home
         // compilerData.resolveIzpackHome();
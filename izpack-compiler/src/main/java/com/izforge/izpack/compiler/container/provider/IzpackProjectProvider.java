@@ -20,6 +20,7 @@ import javax.xml.transform.stream.StreamSource;
 import java.io.*;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,23 +33,27 @@ import java.util.Map;
 public class IzpackProjectProvider implements Provider
 {
 
-    public static List<String> TAG_TO_IGNORE = Arrays.asList("info", "guiprefs", "variables",
-            "packs", "packaging", "conditions", "installerrequirements", "locale", "resources",
-            "panels", "help", "validator", "actions", "natives", "dynamicvariables", "jar");
+    public static final List<String> TAG_TO_IGNORE = Collections.unmodifiableList(Arrays.asList("info",
+            "guiprefs", "variables", "packs", "packaging", "conditions", "installerrequirements", "locale",
+            "resources", "panels", "help", "validator", "actions", "natives", "dynamicvariables", "jar"));
 
-    public static Map<String, String> PANEL_ATTRIBUTE = new HashMap<String, String>();
+    public static final Map<String, String> PANEL_ATTRIBUTE;
 
     static
     {
         // Xml <-> Java field
-        PANEL_ATTRIBUTE.put("classname", "className");
-        PANEL_ATTRIBUTE.put("id", "panelid");
-        PANEL_ATTRIBUTE.put("condition", "condition");
+        Map<String, String> panelAttribute = new HashMap<String, String>();
+        panelAttribute.put("classname", "className");
+        panelAttribute.put("id", "panelid");
+        panelAttribute.put("condition", "condition");
+        PANEL_ATTRIBUTE = Collections.unmodifiableMap(panelAttribute);
     }
 
-    public static List<String> LISTENER_ATTRIBUTE = Arrays.asList("classname", "stage", "jar");
-    public static List<String> OS_ATTRIBUTE = Arrays.asList("arch", "jre", "family", "name", "version");
-    public static List<String> HELP_ATTRIBUTE = Arrays.asList("iso3", "src");
+    public static final List<String> LISTENER_ATTRIBUTE = Collections.unmodifiableList(Arrays.asList("classname",
+            "stage", "jar"));
+    public static final List<String> OS_ATTRIBUTE = Collections.unmodifiableList(Arrays.asList("arch", "jre",
+            "family", "name", "version"));
+    public static final List<String> HELP_ATTRIBUTE = Collections.unmodifiableList(Arrays.asList("iso3", "src"));
 
 
     public IzpackProjectInstaller provide(String installFile) throws IOException
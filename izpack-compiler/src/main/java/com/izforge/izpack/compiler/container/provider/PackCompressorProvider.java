@@ -21,7 +21,7 @@ public class PackCompressorProvider implements Provider
         String format = compilerData.getComprFormat();
         if (format.equals("bzip2"))
         {
-            return new BZip2PackCompressor(variableSubstitutor, mergeManager);
+            return new BZip2PackCompressor(variableSubstitutor, mergeManager, compilerData.getPackThreads());
         }
         else if (format.equals("raw"))
         {
@@ -0,0 +1,115 @@
+package com.izforge.izpack.compiler.daemon;
+
+import com.izforge.izpack.compiler.bootstrap.CompilerLauncher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * Submits builds to the {@link CompilerDaemon} of the user. Takes the arguments of the
+ * {@link CompilerLauncher}, or <code>--stop</code> to stop the daemon.
+ * <p/>
+ * When no daemon is running, the build runs in the JVM of the client.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class CompilerClient
+{
+    private static final String ARG_STOP = "--stop";
+
+    private final File stateFile;
+
+    /**
+     * @param stateFile the state file of the daemon
+     */
+    public CompilerClient(File stateFile)
+    {
+        this.stateFile = stateFile;
+    }
+
+    public static void main(String[] args)
+    {
+        int exitCode = new CompilerClient(CompilerDaemon.getDefaultStateFile()).submit(args);
+        System.exit(exitCode);
+    }
+
+    /**
+     * Submits a build, or stops the daemon.
+     *
+     * @param args the arguments of the command line
+     * @return the exit code, 0 if the build succeeded
+     */
+    public int submit(String[] args)
+    {
+        boolean stop = args.length == 1 && ARG_STOP.equals(args[0]);
+        String command = stop ? DaemonProtocol.STOP : DaemonProtocol.COMPILE;
+        String[] commandArgs = stop ? new String[0] : args;
+        try
+        {
+            if (stateFile.isFile())
+            {
+                return send(command, commandArgs);
+            }
+        }
+        catch (ConnectException e)
+        {
+            // left by a daemon which did not stop cleanly
+            System.err.println("-> Compiler daemon not reachable : " + e.getMessage());
+        }
+        catch (IOException e)
+        {
+            System.err.println("-> Compiler daemon failed : " + e.getMessage());
+            return 1;
+        }
+        if (stop)
+        {
+            System.err.println("-> No compiler daemon running");
+            return 1;
+        }
+        return new CompilerLauncher().launch(args, null);
+    }
+
+    private int send(String command, String[] args) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(stateFile), "UTF-8"));
+        int port;
+        String token;
+        try
+        {
+            port = Integer.parseInt(reader.readLine().trim());
+            token = reader.readLine().trim();
+        }
+        catch (RuntimeException e)
+        {
+            throw new IOException("Invalid state file " + stateFile);
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        Socket socket = new Socket(InetAddress.getByName("127.0.0.1"), port);
+        try
+        {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            String directory = new File(".").getAbsoluteFile().getParent();
+            DaemonProtocol.writeRequest(out, token, command, directory, args);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            return DaemonProtocol.readResponse(in, System.out, System.err);
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+}
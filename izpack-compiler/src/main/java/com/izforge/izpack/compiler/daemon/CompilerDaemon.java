@@ -0,0 +1,269 @@
+package com.izforge.izpack.compiler.daemon;
+
+import com.izforge.izpack.compiler.bootstrap.CompilerLauncher;
+import com.izforge.izpack.merge.resolve.ClassPathCrawler;
+import com.izforge.izpack.merge.resolve.MergeableResolver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ * Compiler kept running between builds, so that the builds submitted by the {@link CompilerClient}
+ * do not pay the start of a JVM and the crawl of the class path of the compiler.
+ * <p/>
+ * The daemon listens on a port of the loopback interface. Its port and the token the clients must
+ * send are written in a state file only readable by its user. Each build runs in its own
+ * container and thread, the output of a build goes to its client.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class CompilerDaemon
+{
+    private final File stateFile;
+
+    private final String token;
+
+    private final CompilerLauncher launcher;
+
+    private ServerSocket serverSocket;
+
+    private ThreadOutputStream out;
+
+    private ThreadOutputStream err;
+
+    private PrintStream systemOut;
+
+    private PrintStream systemErr;
+
+    private volatile boolean running;
+
+    private int builds;
+
+    /**
+     * @param stateFile the file receiving the port and the token of the daemon
+     */
+    public CompilerDaemon(File stateFile)
+    {
+        this.stateFile = stateFile;
+        this.token = createToken();
+        ClassPathCrawler classPathCrawler = new ClassPathCrawler(
+                new MergeableResolver(new HashMap<OutputStream, Set<String>>()));
+        this.launcher = new CompilerLauncher(classPathCrawler);
+    }
+
+    /**
+     * Gets the state file of the daemons of the user.
+     */
+    public static File getDefaultStateFile()
+    {
+        return new File(System.getProperty("user.home"), ".izpack" + File.separator + "compiler-daemon");
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        File stateFile = args.length > 0 ? new File(args[0]) : getDefaultStateFile();
+        final CompilerDaemon daemon = new CompilerDaemon(stateFile);
+        daemon.start();
+        Runtime.getRuntime().addShutdownHook(new Thread()
+        {
+            @Override
+            public void run()
+            {
+                daemon.stop();
+            }
+        });
+        System.out.println("IzPack compiler daemon listening on port " + daemon.getPort());
+        daemon.run();
+    }
+
+    /**
+     * Binds the daemon and writes its state file.
+     */
+    public void start() throws IOException
+    {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        writeStateFile();
+        systemOut = System.out;
+        systemErr = System.err;
+        out = new ThreadOutputStream(systemOut);
+        err = new ThreadOutputStream(systemErr);
+        System.setOut(new PrintStream(out, true));
+        System.setErr(new PrintStream(err, true));
+        running = true;
+    }
+
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts the requests of the clients until the daemon is stopped.
+     */
+    public void run() throws IOException
+    {
+        while (running)
+        {
+            final Socket socket;
+            try
+            {
+                socket = serverSocket.accept();
+            }
+            catch (SocketException e)
+            {
+                if (!running)
+                {
+                    return;
+                }
+                throw e;
+            }
+            Thread thread = new Thread("IzPack build " + (++builds))
+            {
+                @Override
+                public void run()
+                {
+                    serve(socket);
+                }
+            };
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops accepting requests. The builds in progress go on, their output goes back to the
+     * standard streams.
+     */
+    public void stop()
+    {
+        if (!running)
+        {
+            return;
+        }
+        running = false;
+        try
+        {
+            serverSocket.close();
+        }
+        catch (IOException ignored)
+        {
+        }
+        stateFile.delete();
+        System.setOut(systemOut);
+        System.setErr(systemErr);
+    }
+
+    private void serve(Socket socket)
+    {
+        try
+        {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream response = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            String requestToken = in.readUTF();
+            String command = in.readUTF();
+            String directory = in.readUTF();
+            String[] args = DaemonProtocol.readArgs(in);
+            if (!token.equals(requestToken))
+            {
+                DaemonProtocol.writeExit(response, 1);
+            }
+            else if (DaemonProtocol.STOP.equals(command))
+            {
+                DaemonProtocol.writeExit(response, 0);
+                stop();
+            }
+            else
+            {
+                DaemonProtocol.writeExit(response, compile(args, new File(directory), response));
+            }
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+        }
+        finally
+        {
+            try
+            {
+                socket.close();
+            }
+            catch (IOException ignored)
+            {
+            }
+        }
+    }
+
+    private int compile(String[] args, File directory, DataOutputStream response) throws IOException
+    {
+        out.setTarget(new DaemonProtocol.FrameOutputStream(response, DaemonProtocol.OUT));
+        err.setTarget(new DaemonProtocol.FrameOutputStream(response, DaemonProtocol.ERR));
+        try
+        {
+            return launcher.launch(args, directory);
+        }
+        finally
+        {
+            System.out.flush();
+            System.err.flush();
+            out.removeTarget();
+            err.removeTarget();
+        }
+    }
+
+    /**
+     * Writes the port and the token of the daemon in a file only its user can read.
+     */
+    private void writeStateFile() throws IOException
+    {
+        File parent = stateFile.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs())
+        {
+            throw new IOException("Could not create directory " + parent);
+        }
+        stateFile.delete();
+        if (!stateFile.createNewFile())
+        {
+            throw new IOException("Could not create " + stateFile);
+        }
+        stateFile.setReadable(false, false);
+        stateFile.setReadable(true, true);
+        stateFile.setWritable(false, false);
+        stateFile.setWritable(true, true);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(stateFile), "UTF-8");
+        try
+        {
+            writer.write(getPort() + "\n" + token + "\n");
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    private static String createToken()
+    {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder builder = new StringBuilder();
+        for (byte b : bytes)
+        {
+            builder.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,139 @@
+package com.izforge.izpack.compiler.daemon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Messages exchanged by the {@link CompilerClient} and the {@link CompilerDaemon}.
+ * <p/>
+ * The client sends the token of the daemon, a command, its working directory and its arguments.
+ * The daemon answers with frames of standard and error output, then with the exit code.
+ *
+ * @author Anthonin Bonnefoy
+ */
+class DaemonProtocol
+{
+    static final String COMPILE = "compile";
+
+    static final String STOP = "stop";
+
+    static final byte OUT = 1;
+
+    static final byte ERR = 2;
+
+    static final byte EXIT = 3;
+
+    private DaemonProtocol()
+    {
+    }
+
+    static void writeRequest(DataOutputStream out, String token, String command, String directory, String[] args)
+            throws IOException
+    {
+        out.writeUTF(token);
+        out.writeUTF(command);
+        out.writeUTF(directory);
+        out.writeInt(args.length);
+        for (String arg : args)
+        {
+            out.writeUTF(arg);
+        }
+        out.flush();
+    }
+
+    static String[] readArgs(DataInputStream in) throws IOException
+    {
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++)
+        {
+            args[i] = in.readUTF();
+        }
+        return args;
+    }
+
+    static void writeExit(DataOutputStream out, int exitCode) throws IOException
+    {
+        synchronized (out)
+        {
+            out.writeByte(EXIT);
+            out.writeInt(exitCode);
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads the frames of a response up to the exit code.
+     *
+     * @return the exit code
+     */
+    static int readResponse(DataInputStream in, OutputStream out, OutputStream err) throws IOException
+    {
+        byte[] buffer = new byte[8192];
+        while (true)
+        {
+            byte type = in.readByte();
+            if (type == EXIT)
+            {
+                return in.readInt();
+            }
+            OutputStream target = type == ERR ? err : out;
+            int length = in.readInt();
+            while (length > 0)
+            {
+                int count = Math.min(length, buffer.length);
+                in.readFully(buffer, 0, count);
+                target.write(buffer, 0, count);
+                length -= count;
+            }
+            target.flush();
+        }
+    }
+
+    /**
+     * Stream sending what is written to it as frames of a type.
+     */
+    static class FrameOutputStream extends OutputStream
+    {
+        private final DataOutputStream out;
+
+        private final byte type;
+
+        FrameOutputStream(DataOutputStream out, byte type)
+        {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            if (len == 0)
+            {
+                return;
+            }
+            synchronized (out)
+            {
+                out.writeByte(type);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            synchronized (out)
+            {
+                out.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.izforge.izpack.compiler.daemon;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Stream writing to the target of the current thread, so that the builds of the daemon send their
+ * output to their own client. The threads started by a build write to the target of the build.
+ *
+ * @author Anthonin Bonnefoy
+ */
+class ThreadOutputStream extends OutputStream
+{
+    private final OutputStream defaultTarget;
+
+    private final InheritableThreadLocal<OutputStream> target = new InheritableThreadLocal<OutputStream>();
+
+    /**
+     * @param defaultTarget the stream of the threads which have no target
+     */
+    ThreadOutputStream(OutputStream defaultTarget)
+    {
+        this.defaultTarget = defaultTarget;
+    }
+
+    void setTarget(OutputStream out)
+    {
+        target.set(out);
+    }
+
+    void removeTarget()
+    {
+        target.remove();
+    }
+
+    private OutputStream getTarget()
+    {
+        OutputStream out = target.get();
+        return out != null ? out : defaultTarget;
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+        getTarget().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        getTarget().write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        getTarget().flush();
+    }
+}
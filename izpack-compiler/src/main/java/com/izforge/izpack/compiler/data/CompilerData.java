@@ -15,9 +15,10 @@ public class CompilerData
 {
 
     /**
-     * The IzPack home directory.
+     * The IzPack home directory, used by the compilations when neither the <code>izpack.home</code>
+     * system property nor the <code>IZPACK_HOME</code> environment variable are set.
      */
-    public static String IZPACK_HOME = ".";
+    public static final String IZPACK_HOME = ".";
     /**
      * The compiler version.
      */
@@ -65,6 +66,39 @@ public class CompilerData
      */
     private int comprLevel = -1;
 
+    /**
+     * Number of threads used to scan the filesets and to build and compress the packs, 1 does
+     * everything on the compiling thread
+     */
+    private int packThreads = 1;
+
+    /**
+     * Megabytes of Pack200 archives held in memory while jars are packed concurrently, larger
+     * archives go through temporary files
+     */
+    private int pack200MemoryLimit = 64;
+
+    /**
+     * Directory of the pack build cache, null disables the cache
+     */
+    private String buildCache;
+
+    /**
+     * Megabytes of pack entries kept in the build cache, the least recently used are evicted past
+     * this size
+     */
+    private int buildCacheMaxSize = 1024;
+
+    /**
+     * Whether the time and throughput of the compiler phases are written next to the installer
+     */
+    private boolean buildReport = false;
+
+    /**
+     * The IzPack home directory of this compilation
+     */
+    private String home;
+
     /**
      * External Information
      */
@@ -83,18 +117,11 @@ public class CompilerData
     {
         // We get the IzPack home directory
         String izHome = System.getProperty("izpack.home");
-        if (izHome != null)
-        {
-            IZPACK_HOME = izHome;
-        }
-        else
+        if (izHome == null)
         {
             izHome = System.getenv("IZPACK_HOME");
-            if (izHome != null)
-            {
-                IZPACK_HOME = izHome;
-            }
         }
+        home = izHome != null ? izHome : IZPACK_HOME;
     }
 
     public CompilerData(String installFile, String basedir, String output)
@@ -121,13 +148,24 @@ public class CompilerData
     }
 
     /**
-     * Set the IzPack home directory
+     * Gets the IzPack home directory of this compilation.
      *
-     * @param izHome - the izpack home directory
+     * @return the izpack home directory
      */
-    public static void setIzpackHome(String izHome)
+    public String getHome()
     {
-        IZPACK_HOME = izHome;
+        return home;
+    }
+
+    /**
+     * Sets the IzPack home directory of this compilation, leaving the other compilations of the JVM
+     * unchanged.
+     *
+     * @param home - the izpack home directory
+     */
+    public void setHome(String home)
+    {
+        this.home = home;
     }
 
     /**
@@ -190,17 +228,90 @@ public class CompilerData
         this.comprLevel = comprLevel;
     }
 
+    public int getPackThreads()
+    {
+        return packThreads;
+    }
+
+    public void setPackThreads(int packThreads)
+    {
+        this.packThreads = packThreads;
+    }
+
+    public int getPack200MemoryLimit()
+    {
+        return pack200MemoryLimit;
+    }
+
+    public void setPack200MemoryLimit(int pack200MemoryLimit)
+    {
+        this.pack200MemoryLimit = pack200MemoryLimit;
+    }
+
+    public String getBuildCache()
+    {
+        return buildCache;
+    }
+
+    public void setBuildCache(String buildCache)
+    {
+        this.buildCache = buildCache;
+    }
+
+    public int getBuildCacheMaxSize()
+    {
+        return buildCacheMaxSize;
+    }
+
+    public void setBuildCacheMaxSize(int buildCacheMaxSize)
+    {
+        this.buildCacheMaxSize = buildCacheMaxSize;
+    }
+
+    public boolean isBuildReport()
+    {
+        return buildReport;
+    }
+
+    public void setBuildReport(boolean buildReport)
+    {
+        this.buildReport = buildReport;
+    }
+
     public Info getExternalInfo()
     {
         return this.externalInfo;
     }
 
     /**
-     * Try to resolve IzPack home from IZPACK_HOME value
+     * Resolves the relative paths of the compilation against a directory, for a compilation which
+     * does not run in the directory it was asked from.
+     *
+     * @param directory the directory the paths are relative to
+     */
+    public void resolvePaths(File directory)
+    {
+        installFile = resolvePath(directory, installFile);
+        basedir = resolvePath(directory, basedir);
+        output = resolvePath(directory, output);
+        home = resolvePath(directory, home);
+    }
+
+    private static String resolvePath(File directory, String path)
+    {
+        if (path == null || new File(path).isAbsolute())
+        {
+            return path;
+        }
+        return new File(directory, path).getPath();
+    }
+
+    /**
+     * Try to resolve IzPack home from the home value of this compilation
      */
     public void resolveIzpackHome()
     {
-        IZPACK_HOME = resolveIzPackHome(IZPACK_HOME);
+        home = resolveIzPackHome(home);
     }
 
     private static String resolveIzPackHome(String home)
@@ -0,0 +1,58 @@
+package com.izforge.izpack.compiler.helper;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Class loader of a compilation, used as the context class loader while it runs.
+ * <p/>
+ * The jars a compilation adds to its class path go in its own loader instead of the system class
+ * loader, so that compilations running at the same time in a JVM do not see the jars of each
+ * other. The loader lists the class path of its parent before its own, which lets the class path
+ * crawler see the class path of the compiler through it.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class CompilerClassLoader extends URLClassLoader
+{
+    public CompilerClassLoader(ClassLoader parent)
+    {
+        super(new URL[0], parent);
+    }
+
+    @Override
+    public void addURL(URL url)
+    {
+        super.addURL(url);
+    }
+
+    @Override
+    public URL[] getURLs()
+    {
+        List<URL> urls = new ArrayList<URL>();
+        if (getParent() instanceof URLClassLoader)
+        {
+            urls.addAll(Arrays.asList(((URLClassLoader) getParent()).getURLs()));
+        }
+        urls.addAll(Arrays.asList(super.getURLs()));
+        return urls.toArray(new URL[urls.size()]);
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException
+    {
+        List<URL> resources = new ArrayList<URL>();
+        if (getParent() instanceof URLClassLoader)
+        {
+            resources.addAll(Collections.list(((URLClassLoader) getParent()).findResources(name)));
+        }
+        resources.addAll(Collections.list(super.findResources(name)));
+        return Collections.enumeration(resources);
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.listener;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Collects the measures of the phases of a compilation, passes them on to the phase listeners and
+ * writes them as a JSON report next to the installer.
+ * <p/>
+ * The report gives the wall and CPU time of each phase, the files and bytes written for each
+ * pack, their totals and the largest heap used by the JVM at the end of a phase. The heap is the
+ * one of the whole process, shared with the other compilations running in it.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class BuildReport implements PhaseListener
+{
+    /**
+     * Name of the phase writing all the packs, which the files per second of the report are
+     * computed over.
+     */
+    public static final String WRITE_PACKS = "writePacks";
+
+    private final List<PhaseListener> listeners = new ArrayList<PhaseListener>();
+
+    private final List<PhaseEvent> events = new ArrayList<PhaseEvent>();
+
+    private long start = System.nanoTime();
+
+    private long peakProcessHeap = 0;
+
+    public BuildReport(PackagerListener listener)
+    {
+        if (listener instanceof PhaseListener)
+        {
+            listeners.add((PhaseListener) listener);
+        }
+    }
+
+    public synchronized void addListener(PhaseListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    /**
+     * Forgets the phases and the heap measured so far. The peak usage of the memory pools is left
+     * alone, it belongs to every compilation of the JVM.
+     */
+    public synchronized void reset()
+    {
+        events.clear();
+        start = System.nanoTime();
+        peakProcessHeap = 0;
+    }
+
+    /**
+     * Starts measuring a phase on the current thread.
+     */
+    public static Timer startTimer()
+    {
+        return new Timer();
+    }
+
+    /**
+     * Ends a phase.
+     *
+     * @param phase the name of the phase
+     * @param timer the timer started with the phase, stopped now if it is still running
+     */
+    public void finish(String phase, Timer timer)
+    {
+        finish(phase, null, timer, 0, 0, 0);
+    }
+
+    /**
+     * Ends a phase writing files.
+     *
+     * @param phase    the name of the phase
+     * @param pack     the name of the pack the phase is about, or <code>null</code>
+     * @param timer    the timer started with the phase, stopped now if it is still running
+     * @param files    the number of files written
+     * @param bytesIn  the size of the files written
+     * @param bytesOut the number of bytes written in the installer
+     */
+    public void finish(String phase, String pack, Timer timer, int files, long bytesIn, long bytesOut)
+    {
+        timer.stop();
+        phaseFinished(new PhaseEvent(phase, pack, timer.wallTime, timer.cpuTime, files, bytesIn, bytesOut));
+    }
+
+    public void phaseFinished(PhaseEvent event)
+    {
+        long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        List<PhaseListener> targets;
+        synchronized (this)
+        {
+            events.add(event);
+            peakProcessHeap = Math.max(peakProcessHeap, heap);
+            targets = new ArrayList<PhaseListener>(listeners);
+        }
+        for (PhaseListener listener : targets)
+        {
+            listener.phaseFinished(event);
+        }
+    }
+
+    /**
+     * Gets the phases measured so far, in the order they ended.
+     */
+    public synchronized List<PhaseEvent> getEvents()
+    {
+        return new ArrayList<PhaseEvent>(events);
+    }
+
+    /**
+     * Gets the largest heap used by the JVM at the end of the phases measured since the last
+     * {@link #reset()}. The other compilations running in the JVM count in it.
+     *
+     * @return the used heap, in bytes
+     */
+    public synchronized long getPeakProcessHeap()
+    {
+        return peakProcessHeap;
+    }
+
+    /**
+     * Gets the file of the report of an installer: <code>install.jar</code> is reported in
+     * <code>install-report.json</code>.
+     *
+     * @param installer the path of the installer
+     */
+    public static File getReportFile(String installer)
+    {
+        File file = new File(installer).getAbsoluteFile();
+        String name = file.getName();
+        if (name.toLowerCase().endsWith(".jar"))
+        {
+            name = name.substring(0, name.length() - 4);
+        }
+        return new File(file.getParentFile(), name + "-report.json");
+    }
+
+    /**
+     * Writes the report.
+     *
+     * @param file the file to write, replaced if it exists
+     */
+    public void write(File file) throws IOException
+    {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try
+        {
+            writer.write(toJson());
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Formats the report as a JSON object. The times are in milliseconds, the sizes in bytes.
+     */
+    public String toJson()
+    {
+        List<PhaseEvent> phases = getEvents();
+        int files = 0;
+        long bytesIn = 0;
+        long bytesOut = 0;
+        long packTime = 0;
+        long writePacksTime = -1;
+        for (PhaseEvent event : phases)
+        {
+            if (event.getPack() != null)
+            {
+                files += event.getFiles();
+                bytesIn += event.getBytesIn();
+                bytesOut += event.getBytesOut();
+                packTime += event.getWallTime();
+            }
+            else if (WRITE_PACKS.equals(event.getPhase()))
+            {
+                writePacksTime = event.getWallTime();
+            }
+        }
+        PhaseEvent total = new PhaseEvent(null, null, writePacksTime != -1 ? writePacksTime : packTime, -1,
+                files, bytesIn, bytesOut);
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"wallTime\": ").append(formatTime(System.nanoTime() - start)).append(",\n");
+        json.append("  \"peakProcessHeap\": ").append(getPeakProcessHeap()).append(",\n");
+        json.append("  \"files\": ").append(files).append(",\n");
+        json.append("  \"bytesIn\": ").append(bytesIn).append(",\n");
+        json.append("  \"bytesOut\": ").append(bytesOut).append(",\n");
+        json.append("  \"compressionRatio\": ").append(formatRatio(total.getCompressionRatio())).append(",\n");
+        json.append("  \"filesPerSecond\": ").append(formatRatio(total.getFilesPerSecond())).append(",\n");
+        json.append("  \"phases\": [");
+        for (int i = 0; i < phases.size(); i++)
+        {
+            PhaseEvent event = phases.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"phase\": ").append(quote(event.getPhase()));
+            if (event.getPack() != null)
+            {
+                json.append(", \"pack\": ").append(quote(event.getPack()));
+            }
+            json.append(", \"wallTime\": ").append(formatTime(event.getWallTime()));
+            json.append(", \"cpuTime\": ").append(formatTime(event.getCpuTime()));
+            if (event.getFiles() != 0 || event.getBytesIn() != 0 || event.getBytesOut() != 0)
+            {
+                json.append(", \"files\": ").append(event.getFiles());
+                json.append(", \"bytesIn\": ").append(event.getBytesIn());
+                json.append(", \"bytesOut\": ").append(event.getBytesOut());
+                json.append(", \"compressionRatio\": ").append(formatRatio(event.getCompressionRatio()));
+                json.append(", \"filesPerSecond\": ").append(formatRatio(event.getFilesPerSecond()));
+            }
+            json.append("}");
+        }
+        json.append(phases.isEmpty() ? "]\n" : "\n  ]\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    private static String formatTime(long nanos)
+    {
+        return nanos < 0 ? "null" : String.format(Locale.ENGLISH, "%.3f", nanos / 1e6);
+    }
+
+    private static String formatRatio(double ratio)
+    {
+        return ratio < 0 ? "null" : String.format(Locale.ENGLISH, "%.4f", ratio);
+    }
+
+    private static String quote(String value)
+    {
+        StringBuilder result = new StringBuilder(value.length() + 2);
+        result.append('"');
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+            {
+                result.append('\\').append(c);
+            }
+            else if (c < ' ')
+            {
+                result.append(String.format("\\u%04x", (int) c));
+            }
+            else
+            {
+                result.append(c);
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    /**
+     * Measures the wall time and the CPU time of the thread of a phase.
+     */
+    public static class Timer
+    {
+        private final long wallStart = System.nanoTime();
+
+        private final long cpuStart = getCpuTime();
+
+        private long wallTime = -1;
+
+        private long cpuTime = -1;
+
+        private Timer()
+        {
+        }
+
+        /**
+         * Stops the timer, on the thread it was started on. Does nothing if it is already stopped.
+         */
+        public void stop()
+        {
+            if (wallTime == -1)
+            {
+                wallTime = System.nanoTime() - wallStart;
+                cpuTime = cpuStart == -1 ? -1 : getCpuTime() - cpuStart;
+            }
+        }
+
+        private static long getCpuTime()
+        {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+        }
+    }
+}
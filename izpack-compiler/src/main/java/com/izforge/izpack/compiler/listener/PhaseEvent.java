@@ -0,0 +1,126 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.listener;
+
+/**
+ * The measures of a phase of the compilation. The phases writing files tell how many bytes they
+ * read and wrote, the other ones leave them to 0.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class PhaseEvent
+{
+    private final String phase;
+
+    private final String pack;
+
+    private final long wallTime;
+
+    private final long cpuTime;
+
+    private final int files;
+
+    private final long bytesIn;
+
+    private final long bytesOut;
+
+    /**
+     * @param phase    the name of the phase
+     * @param pack     the name of the pack the phase is about, or <code>null</code>
+     * @param wallTime the elapsed time, in nanoseconds
+     * @param cpuTime  the CPU time of the thread running the phase, in nanoseconds, or -1 if the
+     *                 virtual machine does not measure it
+     * @param files    the number of files written
+     * @param bytesIn  the size of the files written
+     * @param bytesOut the number of bytes written in the installer
+     */
+    public PhaseEvent(String phase, String pack, long wallTime, long cpuTime, int files, long bytesIn, long bytesOut)
+    {
+        this.phase = phase;
+        this.pack = pack;
+        this.wallTime = wallTime;
+        this.cpuTime = cpuTime;
+        this.files = files;
+        this.bytesIn = bytesIn;
+        this.bytesOut = bytesOut;
+    }
+
+    public String getPhase()
+    {
+        return phase;
+    }
+
+    public String getPack()
+    {
+        return pack;
+    }
+
+    public long getWallTime()
+    {
+        return wallTime;
+    }
+
+    public long getCpuTime()
+    {
+        return cpuTime;
+    }
+
+    public int getFiles()
+    {
+        return files;
+    }
+
+    public long getBytesIn()
+    {
+        return bytesIn;
+    }
+
+    public long getBytesOut()
+    {
+        return bytesOut;
+    }
+
+    /**
+     * Gets the size written in the installer relative to the size of the files.
+     *
+     * @return the ratio, or -1 if no byte was read
+     */
+    public double getCompressionRatio()
+    {
+        return bytesIn == 0 ? -1 : (double) bytesOut / bytesIn;
+    }
+
+    /**
+     * Gets the number of files written per second.
+     *
+     * @return the throughput, or -1 if the phase took no measurable time
+     */
+    public double getFilesPerSecond()
+    {
+        return wallTime == 0 ? -1 : files * 1e9 / wallTime;
+    }
+
+    @Override
+    public String toString()
+    {
+        return phase + (pack != null ? " " + pack : "") + ": " + wallTime / 1000000 + " ms";
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.listener;
+
+/**
+ * An interface for classes that want to know how long the phases of the compilation take. A
+ * {@link PackagerListener} implementing it is told about the phases of the packager as well.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public interface PhaseListener
+{
+    /**
+     * Called when a phase of the compilation is over.
+     *
+     * @param event the measures of the phase
+     */
+    public void phaseFinished(PhaseEvent event);
+}
@@ -0,0 +1,473 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * On disk cache of the pack entries written by the packager.
+ * <p/>
+ * Each entry is stored under a key computed from the pack definition and the content of its files,
+ * as a payload file holding the data of the <code>packs/pack-&lt;id&gt;</code> entry as written in
+ * the installer, deflated when the installer entries are, and an index file holding its CRC and
+ * sizes and the offset of each stored file in the pack. A cached pack is then copied into the
+ * installer without being compressed again.
+ * <p/>
+ * The digests of the contents of the pack files are kept too, by path, size and modification time,
+ * so that the files which did not change are not read again to compute the keys. Only the digests
+ * looked up or kept during a build are written back, the others belong to files which are gone.
+ * <p/>
+ * The entries are evicted, least recently used first, once they take more than the maximum size.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class PackCache
+{
+    /**
+     * Default maximum size of the entries of the cache.
+     */
+    public static final long DEFAULT_MAX_SIZE = 1024L * 1024L * 1024L;
+
+    private static final String PAYLOAD_SUFFIX = ".pack";
+
+    private static final String INDEX_SUFFIX = ".idx";
+
+    private static final String DIGESTS_NAME = "digests.dat";
+
+    /**
+     * Version of the index and digests files, the files of another version are ignored.
+     */
+    private static final int FORMAT = 2;
+
+    /**
+     * The digest of a file modified more recently may not see a change made within the resolution
+     * of its modification time, it is not kept.
+     */
+    private static final long DIGEST_DELAY = 2000;
+
+    /**
+     * An entry used more recently may be read by another build sharing the cache, it is not evicted.
+     */
+    private static final long IN_USE_DELAY = 10 * 60 * 1000;
+
+    private final File directory;
+
+    private final long maxSize;
+
+    /**
+     * The digests of the pack files, by path, size and modification time.
+     */
+    private final Map<String, String> digests = new HashMap<String, String>();
+
+    /**
+     * The keys of the digests looked up or kept during this build.
+     */
+    private final Set<String> usedDigests = new HashSet<String>();
+
+    private boolean digestsChanged = false;
+
+    public PackCache(File directory) throws IOException
+    {
+        this(directory, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param directory the directory of the cache
+     * @param maxSize   the size of the entries past which the least recently used are evicted
+     * @throws IOException if the directory cannot be created
+     */
+    public PackCache(File directory, long maxSize) throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Cannot create the pack cache directory " + directory);
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+        readDigests();
+    }
+
+    /**
+     * Gets a cached entry, which becomes the most recently used.
+     *
+     * @param key the key of the pack
+     * @return the entry, or <code>null</code> if the pack is not cached
+     * @throws IOException if the cached entry cannot be read
+     */
+    public Entry get(String key) throws IOException
+    {
+        File payload = new File(directory, key + PAYLOAD_SUFFIX);
+        File index = new File(directory, key + INDEX_SUFFIX);
+        if (!payload.isFile() || !index.isFile())
+        {
+            return null;
+        }
+
+        Entry entry;
+        DataInputStream indexStream = new DataInputStream(new BufferedInputStream(new FileInputStream(index)));
+        try
+        {
+            if (indexStream.readInt() != FORMAT)
+            {
+                return null;
+            }
+            boolean deflated = indexStream.readBoolean();
+            long crc = indexStream.readLong();
+            long size = indexStream.readLong();
+            long compressedSize = indexStream.readLong();
+            long[] offsets = new long[indexStream.readInt()];
+            for (int i = 0; i < offsets.length; i++)
+            {
+                offsets[i] = indexStream.readLong();
+            }
+            entry = deflated ? new Entry(offsets, crc, size, compressedSize) : new Entry(offsets);
+        }
+        finally
+        {
+            indexStream.close();
+        }
+        index.setLastModified(System.currentTimeMillis());
+        entry.payload = payload;
+        return entry;
+    }
+
+    /**
+     * Creates a file in the cache directory to write a payload into before storing it.
+     */
+    public File createPayloadFile() throws IOException
+    {
+        return File.createTempFile("pack", ".tmp", directory);
+    }
+
+    /**
+     * Stores a payload written into a file given by {@link #createPayloadFile()}.
+     *
+     * @param key     the key of the pack
+     * @param payload the payload file, moved into the cache
+     * @param entry   the description of the payload
+     * @return the entry, with its payload in the cache
+     * @throws IOException if the entry cannot be written
+     */
+    public Entry store(String key, File payload, Entry entry) throws IOException
+    {
+        File index = new File(directory, key + INDEX_SUFFIX);
+        File indexTemp = File.createTempFile("index", ".tmp", directory);
+        DataOutputStream indexStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexTemp)));
+        try
+        {
+            indexStream.writeInt(FORMAT);
+            indexStream.writeBoolean(entry.deflated);
+            indexStream.writeLong(entry.crc);
+            indexStream.writeLong(entry.size);
+            indexStream.writeLong(entry.compressedSize);
+            indexStream.writeInt(entry.offsets.length);
+            for (long offset : entry.offsets)
+            {
+                indexStream.writeLong(offset);
+            }
+        }
+        finally
+        {
+            indexStream.close();
+        }
+
+        // The index is moved last, an entry without index is never read
+        File target = new File(directory, key + PAYLOAD_SUFFIX);
+        index.delete();
+        target.delete();
+        if (!payload.renameTo(target) || !indexTemp.renameTo(index))
+        {
+            payload.delete();
+            indexTemp.delete();
+            throw new IOException("Cannot store pack " + key + " in " + directory);
+        }
+        entry.payload = target;
+        return entry;
+    }
+
+    /**
+     * Gets the digest of the content of a pack file, kept by a previous build.
+     *
+     * @param source       the path of the file, or of the archive entry
+     * @param length       the length of the file
+     * @param lastModified the modification time of the file, or of the archive
+     * @return the digest, or <code>null</code> if the file is not known or changed since
+     */
+    public synchronized String getDigest(String source, long length, long lastModified)
+    {
+        String key = getDigestKey(source, length, lastModified);
+        String digest = digests.get(key);
+        if (digest != null)
+        {
+            usedDigests.add(key);
+        }
+        return digest;
+    }
+
+    /**
+     * Keeps the digest of the content of a pack file, unless it was modified too recently.
+     */
+    public synchronized void putDigest(String source, long length, long lastModified, String digest)
+    {
+        if (lastModified > 0 && lastModified < System.currentTimeMillis() - DIGEST_DELAY)
+        {
+            String key = getDigestKey(source, length, lastModified);
+            digests.put(key, digest);
+            usedDigests.add(key);
+            digestsChanged = true;
+        }
+    }
+
+    /**
+     * Writes the digests looked up or kept during this build, for the next builds. The digests of
+     * the files not seen by this build are dropped.
+     *
+     * @throws IOException if the digests cannot be written
+     */
+    public synchronized void saveDigests() throws IOException
+    {
+        if (digests.keySet().retainAll(usedDigests))
+        {
+            digestsChanged = true;
+        }
+        if (!digestsChanged)
+        {
+            return;
+        }
+        File digestsTemp = File.createTempFile("digests", ".tmp", directory);
+        DataOutputStream digestsStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(digestsTemp)));
+        try
+        {
+            digestsStream.writeInt(FORMAT);
+            digestsStream.writeInt(digests.size());
+            for (Map.Entry<String, String> digest : digests.entrySet())
+            {
+                digestsStream.writeUTF(digest.getKey());
+                digestsStream.writeUTF(digest.getValue());
+            }
+        }
+        finally
+        {
+            digestsStream.close();
+        }
+        File digestsFile = new File(directory, DIGESTS_NAME);
+        digestsFile.delete();
+        if (!digestsTemp.renameTo(digestsFile))
+        {
+            digestsTemp.delete();
+            throw new IOException("Cannot store the digests in " + directory);
+        }
+        digestsChanged = false;
+    }
+
+    private void readDigests() throws IOException
+    {
+        File digestsFile = new File(directory, DIGESTS_NAME);
+        if (!digestsFile.isFile())
+        {
+            return;
+        }
+        DataInputStream digestsStream = new DataInputStream(new BufferedInputStream(new FileInputStream(digestsFile)));
+        try
+        {
+            if (digestsStream.readInt() != FORMAT)
+            {
+                return;
+            }
+            int count = digestsStream.readInt();
+            for (int i = 0; i < count; i++)
+            {
+                digests.put(digestsStream.readUTF(), digestsStream.readUTF());
+            }
+        }
+        finally
+        {
+            digestsStream.close();
+        }
+    }
+
+    private static String getDigestKey(String source, long length, long lastModified)
+    {
+        return length + ":" + lastModified + ":" + source;
+    }
+
+    /**
+     * Evicts the least recently used entries until the entries take at most the maximum size. The
+     * entries used in the last minutes are kept, as another build may be reading them.
+     */
+    public void evict()
+    {
+        File[] indexes = directory.listFiles();
+        if (indexes == null)
+        {
+            return;
+        }
+        List<File> entries = new ArrayList<File>();
+        long size = 0;
+        for (File index : indexes)
+        {
+            if (index.getName().endsWith(INDEX_SUFFIX))
+            {
+                entries.add(index);
+                size += index.length() + getPayload(index).length();
+            }
+        }
+        if (size <= maxSize)
+        {
+            return;
+        }
+
+        final Map<File, Long> lastUses = new HashMap<File, Long>();
+        for (File index : entries)
+        {
+            lastUses.put(index, index.lastModified());
+        }
+        Collections.sort(entries, new Comparator<File>()
+        {
+            public int compare(File index, File other)
+            {
+                return lastUses.get(index).compareTo(lastUses.get(other));
+            }
+        });
+        long inUse = System.currentTimeMillis() - IN_USE_DELAY;
+        for (File index : entries)
+        {
+            if (size <= maxSize || lastUses.get(index) > inUse)
+            {
+                break;
+            }
+            File payload = getPayload(index);
+            long length = index.length() + payload.length();
+            // the index first, an entry without index is never read
+            if (index.delete())
+            {
+                payload.delete();
+                size -= length;
+            }
+        }
+    }
+
+    private File getPayload(File index)
+    {
+        String name = index.getName();
+        return new File(directory, name.substring(0, name.length() - INDEX_SUFFIX.length()) + PAYLOAD_SUFFIX);
+    }
+
+    /**
+     * A pack of the cache: the data of its entry in the installer and the offsets of its files.
+     */
+    public static class Entry
+    {
+        private final long[] offsets;
+
+        private final boolean deflated;
+
+        private final long crc;
+
+        private final long size;
+
+        private final long compressedSize;
+
+        private File payload;
+
+        /**
+         * Describes a payload which is the data of the entry as it is.
+         *
+         * @param offsets the offsets of the pack files in the pack, or -1 for those not stored in it
+         */
+        public Entry(long[] offsets)
+        {
+            this.offsets = offsets;
+            this.deflated = false;
+            this.crc = -1;
+            this.size = -1;
+            this.compressedSize = -1;
+        }
+
+        /**
+         * Describes a payload which is the deflated data of the entry.
+         *
+         * @param offsets        the offsets of the pack files in the pack, or -1 for those not stored in it
+         * @param crc            the CRC-32 of the data of the entry
+         * @param size           the size of the data of the entry
+         * @param compressedSize the size of the payload
+         */
+        public Entry(long[] offsets, long crc, long size, long compressedSize)
+        {
+            this.offsets = offsets;
+            this.deflated = true;
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = compressedSize;
+        }
+
+        public long[] getOffsets()
+        {
+            return offsets;
+        }
+
+        /**
+         * Tells whether the payload is deflated, without zlib header.
+         */
+        public boolean isDeflated()
+        {
+            return deflated;
+        }
+
+        public long getCrc()
+        {
+            return crc;
+        }
+
+        public long getSize()
+        {
+            return size;
+        }
+
+        public long getCompressedSize()
+        {
+            return compressedSize;
+        }
+
+        /**
+         * Gets the file holding the data of the entry, once read or stored.
+         */
+        public File getPayload()
+        {
+            return payload;
+        }
+    }
+}
@@ -24,42 +24,72 @@ import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.adaptator.impl.XMLElementImpl;
 import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.PackTable;
 import com.izforge.izpack.api.data.binding.IzpackProjectInstaller;
 import com.izforge.izpack.api.exception.CompilerException;
 import com.izforge.izpack.compiler.compressor.PackCompressor;
 import com.izforge.izpack.compiler.container.CompilerContainer;
 import com.izforge.izpack.compiler.data.CompilerData;
+import com.izforge.izpack.compiler.listener.BuildReport;
 import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.resource.ResourceFinder;
-import com.izforge.izpack.compiler.stream.ByteCountingOutputStream;
+import com.izforge.izpack.compiler.stream.DeflatedEntryOutputStream;
 import com.izforge.izpack.compiler.stream.JarOutputStream;
 import com.izforge.izpack.data.ExecutableFile;
 import com.izforge.izpack.data.PackInfo;
 import com.izforge.izpack.data.ParsableFile;
 import com.izforge.izpack.data.UpdateCheck;
 import com.izforge.izpack.merge.MergeManager;
+import com.izforge.izpack.merge.resolve.ClassPathIndex;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
 import com.izforge.izpack.merge.resolve.PathResolver;
 import com.izforge.izpack.util.FileUtil;
 import com.izforge.izpack.util.IoHelper;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.math.BigInteger;
 import java.net.URL;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Pack200;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 /**
@@ -71,6 +101,29 @@ import java.util.zip.ZipInputStream;
  */
 public class Packager extends PackagerBase
 {
+    /**
+     * Size of the first block of a file probed to tell if it is already compressed.
+     */
+    private static final int ENTROPY_BLOCK_SIZE = 4096;
+
+    /**
+     * Packages of the framework merged into the skeleton installer.
+     */
+    private static final List<String> SKELETON_PACKAGES = Collections.unmodifiableList(Arrays.asList(
+            "com/izforge/izpack/installer/",
+            "org/picocontainer/",
+            "com/izforge/izpack/img/",
+            "com/izforge/izpack/bin/",
+            "com/izforge/izpack/api/",
+            "com/izforge/izpack/event/",
+            "com/izforge/izpack/core/",
+            "com/izforge/izpack/data/",
+            "com/izforge/izpack/gui/",
+            "com/izforge/izpack/merge/",
+            "com/izforge/izpack/util/",
+            "org/apache/regexp/",
+            "com/coi/tools/",
+            "org/apache/tools/zip/"));
 
     /**
      * Executable zipped output stream. First to open, last to close.
@@ -80,28 +133,32 @@ public class Packager extends PackagerBase
 
     private CompilerData compilerData;
 
-    /**
-     * Decoration of the primary jar stream.
-     * May be compressed or not depending on the compiler data.
-     */
-    private OutputStream outputStream;
     private MergeManager mergeManager;
     private ResourceFinder resourceFinder;
 
+    /**
+     * The pack build cache, null when disabled.
+     */
+    private PackCache packCache;
+
+    /**
+     * The zip archives pack files are streamed from while the packs are written.
+     */
+    private final Map<File, ZipFile> archives = new HashMap<File, ZipFile>();
+
     /**
      * The constructor.
      *
      * @throws com.izforge.izpack.api.exception.CompilerException
      *
      */
-    public Packager(Properties properties, CompilerData compilerData, CompilerContainer compilerContainer, PackagerListener listener, JarOutputStream jarOutputStream, PackCompressor packCompressor, OutputStream outputStream, MergeManager mergeManager, PathResolver pathResolver, IzpackProjectInstaller izpackInstallModel, MergeableResolver mergeableResolver, ResourceFinder resourceFinder) throws CompilerException
+    public Packager(Properties properties, CompilerData compilerData, CompilerContainer compilerContainer, PackagerListener listener, JarOutputStream jarOutputStream, PackCompressor packCompressor, MergeManager mergeManager, PathResolver pathResolver, IzpackProjectInstaller izpackInstallModel, MergeableResolver mergeableResolver, ResourceFinder resourceFinder, BuildReport report) throws CompilerException
     {
-        super(properties, compilerContainer, listener, mergeManager, pathResolver, izpackInstallModel, mergeableResolver);
+        super(properties, compilerContainer, listener, mergeManager, pathResolver, izpackInstallModel, mergeableResolver, report);
         this.compilerData = compilerData;
         this.primaryJarStream = jarOutputStream;
         this.resourceFinder = resourceFinder;
         this.compressor = packCompressor;
-        this.outputStream = outputStream;
         this.mergeManager = mergeManager;
     }
 
@@ -120,7 +177,14 @@ public class Packager extends PackagerBase
 
         sendStart();
 
-        writeInstaller();
+        try
+        {
+            writeInstaller();
+        }
+        finally
+        {
+            closeArchives();
+        }
 
         // Finish up. closeAlways is a hack for pack compressions other than
         // default. Some of it (e.g. BZip2) closes the slave of it also.
@@ -139,25 +203,139 @@ public class Packager extends PackagerBase
     /**
      * Write skeleton installer to primary jar. It is just an included jar, except that we copy the
      * META-INF as well.
+     * <p/>
+     * When <code>CompilerData#getBuildCache()</code> is set, the skeleton is merged once into the
+     * cache, then copied from it as long as IzPack and the merged resources do not change.
+     * <p/>
+     * When <code>Info#isShrinkSkeleton()</code> is set, the classes of the framework packages
+     * that the installer cannot reach are left out, see {@link SkeletonShrinker}.
      */
     protected void writeSkeletonInstaller() throws IOException
     {
         sendMsg("Copying the skeleton installer", PackagerListener.MSG_VERBOSE);
-        mergeManager.addResourceToMerge("com/izforge/izpack/installer/");
-        mergeManager.addResourceToMerge("org/picocontainer/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/img/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/bin/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/api/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/event/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/core/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/data/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/gui/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/merge/");
-        mergeManager.addResourceToMerge("com/izforge/izpack/util/");
-        mergeManager.addResourceToMerge("org/apache/regexp/");
-        mergeManager.addResourceToMerge("com/coi/tools/");
-        mergeManager.addResourceToMerge("org/apache/tools/zip/");
-        mergeManager.merge(primaryJarStream);
+        for (String skeletonPackage : SKELETON_PACKAGES)
+        {
+            mergeManager.addResourceToMerge(skeletonPackage);
+        }
+
+        String key = null;
+        if (compilerData.getBuildCache() != null)
+        {
+            key = SkeletonCache.computeKey(CompilerData.IZPACK_VERSION, compilerData.getComprLevel(),
+                    mergeManager.getMergeableList());
+        }
+        if (key == null && !info.isShrinkSkeleton())
+        {
+            mergeManager.merge(primaryJarStream);
+            return;
+        }
+
+        File skeleton;
+        File temporarySkeleton = null;
+        if (key == null)
+        {
+            temporarySkeleton = com.izforge.izpack.util.file.FileUtils.createTempFile("izpack-skeleton", ".jar");
+            mergeSkeleton(temporarySkeleton);
+            skeleton = temporarySkeleton;
+        }
+        else
+        {
+            SkeletonCache skeletonCache = new SkeletonCache(new File(compilerData.getBuildCache()));
+            skeleton = skeletonCache.get(key);
+            if (skeleton != null)
+            {
+                sendMsg("Using the cached skeleton installer " + key, PackagerListener.MSG_VERBOSE);
+                mergeManager.clear();
+            }
+            else
+            {
+                File skeletonFile = skeletonCache.createSkeletonFile();
+                try
+                {
+                    mergeSkeleton(skeletonFile);
+                    skeleton = skeletonCache.store(key, skeletonFile);
+                }
+                finally
+                {
+                    skeletonFile.delete();
+                }
+            }
+        }
+
+        try
+        {
+            // the entries of the skeleton do not hide the ones of the included jars, as when merged,
+            // and the entries left out are skipped as if already written
+            HashMap<FilterOutputStream, HashSet<String>> skippedFiles = new HashMap<FilterOutputStream, HashSet<String>>();
+            if (info.isShrinkSkeleton())
+            {
+                skippedFiles.put(primaryJarStream, shrinkSkeleton(skeleton));
+            }
+            IoHelper.copyZip(skeleton, primaryJarStream, null, skippedFiles);
+        }
+        finally
+        {
+            if (temporarySkeleton != null)
+            {
+                temporarySkeleton.delete();
+            }
+        }
+    }
+
+    /**
+     * Merges the skeleton installer into a jar, compressed as the installer.
+     */
+    private void mergeSkeleton(File skeletonFile) throws IOException
+    {
+        JarOutputStream skeletonStream = new JarOutputStream(skeletonFile);
+        try
+        {
+            int level = compilerData.getComprLevel();
+            skeletonStream.setLevel(level >= 0 && level < 10 ? level : Deflater.BEST_COMPRESSION);
+            mergeManager.merge(skeletonStream);
+        }
+        finally
+        {
+            skeletonStream.close();
+        }
+    }
+
+    /**
+     * Computes the classes of the skeleton installer that the installer cannot reach.
+     *
+     * @param skeleton the merged skeleton
+     * @return the names of the entries to leave out
+     */
+    private HashSet<String> shrinkSkeleton(File skeleton) throws IOException
+    {
+        BuildReport.Timer timer = BuildReport.startTimer();
+        SkeletonShrinker shrinker = new SkeletonShrinker(SKELETON_PACKAGES, info.getSkeletonKeeps());
+        for (Object installerObject : getInstallerObjects().values())
+        {
+            shrinker.addRootObject(installerObject);
+        }
+        for (PackInfo packInfo : packsList)
+        {
+            shrinker.addRootObject(packInfo.getPack());
+        }
+        for (URL url : installerResourceURLMap.values())
+        {
+            shrinker.addRootText(url.openStream());
+        }
+
+        ZipFile skeletonZip = new ZipFile(skeleton);
+        HashSet<String> unreachable;
+        try
+        {
+            unreachable = new HashSet<String>(shrinker.getUnreachableEntries(skeletonZip));
+        }
+        finally
+        {
+            skeletonZip.close();
+        }
+        report.finish("shrinkSkeleton", timer);
+        sendMsg("Left " + unreachable.size() + " unreachable classes out of the skeleton installer");
+        return unreachable;
     }
 
     /**
@@ -207,12 +385,32 @@ public class Packager extends PackagerBase
 
         for (Object[] includedJarURL : includedJarURLs)
         {
-            InputStream is = ((URL) includedJarURL[0]).openStream();
+            URL url = (URL) includedJarURL[0];
+            if ("file".equals(url.getProtocol()))
+            {
+                // local jars get their deflated entries copied as they are
+                File jar = FileUtil.convertUrlToFile(url);
+                IoHelper.copyZip(jar, primaryJarStream, (List<String>) includedJarURL[1], alreadyWrittenFiles);
+                continue;
+            }
+            InputStream is = url.openStream();
             ZipInputStream inJarStream = new ZipInputStream(is);
             IoHelper.copyZip(inJarStream, primaryJarStream, (List<String>) includedJarURL[1], alreadyWrittenFiles);
         }
     }
 
+    /**
+     * Write the index of the classes and resources of the primary jar, letting the installer find
+     * them without listing the jar. The packs written after it are not indexed.
+     */
+    protected void writeClassPathIndex() throws IOException
+    {
+        List<String> entryNames = new ArrayList<String>(primaryJarStream.getEntryNames());
+        primaryJarStream.putNextEntry(new org.apache.tools.zip.ZipEntry(ClassPathIndex.INDEX_PATH));
+        ClassPathIndex.write(entryNames, primaryJarStream);
+        primaryJarStream.closeEntry();
+    }
+
     /**
      * Write manifest in the install jar.
      */
@@ -240,167 +438,160 @@ public class Packager extends PackagerBase
 
     /**
      * Write Packs to primary jar or each to a separate jar.
+     * <p/>
+     * The payload of each pack can be built on a pool of <code>CompilerData#getPackThreads()</code>
+     * threads. Each worker serializes and compresses its pack into a spill file, deflated as the
+     * installer entry would be, the spill files are then copied raw into the installer in the
+     * declared order, so that the result does not depend on the number of threads.
+     * <p/>
+     * When <code>CompilerData#getBuildCache()</code> is set, the entry of a pack whose
+     * definition and files did not change is copied from the cache instead of being rebuilt and
+     * compressed again.
      */
     protected void writePacks() throws Exception
     {
         final int num = packsList.size();
         sendMsg("Writing " + num + " Pack" + (num > 1 ? "s" : "") + " into installer");
 
-        // Map to remember pack number and bytes offsets of back references
-        Map<File, Object[]> storedFiles = new HashMap<File, Object[]>();
-
         // Pack200 files map
         Map<Integer, File> pack200Map = new HashMap<Integer, File>();
-        int pack200Counter = 0;
+
+        // Already compressed files, stored uncompressed out of the packs
+        Map<Integer, StoredContent> uncompressedMap = new HashMap<Integer, StoredContent>();
 
         // Force UTF-8 encoding in order to have proper ZipEntry names.
         primaryJarStream.setEncoding("utf-8");
 
-        // First write the serialized files and file metadata data for each pack
-        // while counting bytes.
+        if (compilerData.getBuildCache() != null)
+        {
+            packCache = new PackCache(new File(compilerData.getBuildCache()),
+                    compilerData.getBuildCacheMaxSize() * 1024L * 1024L);
+        }
 
-        int packNumber = 0;
-        IXMLElement root = new XMLElementImpl("packs");
+        // Back references, pack200 and uncompressed keys are decided in the declared order, so
+        // every pack payload can then be written on its own
+        List<PackPlan> plans = planPacks(pack200Map, uncompressedMap);
+        if (packCache != null)
+        {
+            packCache.saveDigests();
+        }
 
-        for (PackInfo packInfo : packsList)
+        int threads = Math.min(compilerData.getPackThreads(), num);
+        boolean concurrent = threads > 1 && !packJarsSeparate;
+
+        List<FutureTask<Map<PackFile, Long>>> tasks = new ArrayList<FutureTask<Map<PackFile, Long>>>();
+        List<File> spillFiles = new ArrayList<File>();
+        for (PackPlan plan : plans)
         {
-            Pack pack = packInfo.getPack();
-            pack.nbytes = 0;
-            if ((pack.id == null) || (pack.id.length() == 0))
+            File spillFile = null;
+            if (concurrent && packCache == null)
             {
-                pack.id = pack.name;
+                spillFile = com.izforge.izpack.util.file.FileUtils.createTempFile("izpack-pack", null);
+            }
+            spillFiles.add(spillFile);
+            tasks.add(new FutureTask<Map<PackFile, Long>>(new PackPayloadTask(plan, tasks, spillFile)));
+        }
+
+        ExecutorService executor = null;
+        if (concurrent)
+        {
+            sendMsg("Building packs with " + threads + " threads", PackagerListener.MSG_VERBOSE);
+            executor = Executors.newFixedThreadPool(threads);
+            for (FutureTask<Map<PackFile, Long>> task : tasks)
+            {
+                executor.execute(task);
             }
+        }
+
+        IXMLElement root = new XMLElementImpl("packs");
+        try
+        {
+            for (int packNumber = 0; packNumber < num; packNumber++)
+            {
+                Pack pack = plans.get(packNumber).packInfo.getPack();
 
-            // create a pack specific jar if required
-            // REFACTOR : Repare web installer
-            // REFACTOR : Use a mergeManager for each packages that will be added to the main merger
+                // create a pack specific jar if required
+                // REFACTOR : Repare web installer
+                // REFACTOR : Use a mergeManager for each packages that will be added to the main merger
 
 //            if (packJarsSeparate) {
-            // See installer.Unpacker#getPackAsStream for the counterpart
+                // See installer.Unpacker#getPackAsStream for the counterpart
 //                String name = baseFile.getName() + ".pack-" + pack.id + ".jar";
 //                packStream = IoHelper.getJarOutputStream(name, baseFile.getParentFile());
 //            }
 
-            sendMsg("Writing Pack " + packNumber + ": " + pack.name, PackagerListener.MSG_VERBOSE);
-
-            // Retrieve the correct output stream
-            org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry(RESOURCES_PATH + "packs/pack-" + pack.id);
-            primaryJarStream.putNextEntry(entry);
-            primaryJarStream.flush(); // flush before we start counting
-
-
-            ByteCountingOutputStream dos = new ByteCountingOutputStream(outputStream);
-            ObjectOutputStream objOut = new ObjectOutputStream(dos);
-
-            // We write the actual pack files
-            objOut.writeInt(packInfo.getPackFiles().size());
-
-            for (PackFile packFile : packInfo.getPackFiles())
-            {
-                boolean addFile = !pack.loose;
-                boolean pack200 = false;
-                File file = packInfo.getFile(packFile);
-
-                if (file.getName().toLowerCase().endsWith(".jar") && info.isPack200Compression() && isNotSignedJar(file))
-                {
-                    packFile.setPack200Jar(true);
-                    pack200 = true;
-                }
+                sendMsg("Writing Pack " + packNumber + ": " + pack.name, PackagerListener.MSG_VERBOSE);
 
-                // use a back reference if file was in previous pack, and in
-                // same jar
-                Object[] info = storedFiles.get(file);
-                if (info != null && !packJarsSeparate)
+                String entryName = RESOURCES_PATH + "packs/pack-" + pack.id;
+                FutureTask<Map<PackFile, Long>> task = tasks.get(packNumber);
+                File spillFile = spillFiles.get(packNumber);
+                long compressedSize;
+                if (!concurrent && packCache == null)
                 {
-                    packFile.setPreviousPackFileRef((String) info[0], (Long) info[1]);
-                    addFile = false;
+                    // Retrieve the correct output stream
+                    org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry(entryName);
+                    primaryJarStream.putNextEntry(entry);
+                    primaryJarStream.flush(); // flush before we start counting
+                    task.run();
+                    getResult(task);
+                    primaryJarStream.closeEntry();
+                    compressedSize = entry.getCompressedSize();
                 }
-
-                objOut.writeObject(packFile); // base info
-
-                if (addFile && !packFile.isDirectory())
+                else
                 {
-                    long pos = dos.getByteCount(); // get the position
-
-                    if (pack200)
+                    if (!concurrent)
                     {
-                        /*
-                         * Warning!
-                         * 
-                         * Pack200 archives must be stored in separated streams, as the Pack200 unpacker
-                         * reads the entire stream...
-                         *
-                         * See http://java.sun.com/javase/6/docs/api/java/util/jar/Pack200.Unpacker.html
-                         */
-                        pack200Map.put(pack200Counter, file);
-                        objOut.writeInt(pack200Counter);
-                        pack200Counter = pack200Counter + 1;
+                        task.run();
                     }
-                    else
+                    getResult(task);
+                    compressedSize = writePackEntry(plans.get(packNumber), entryName);
+                    if (spillFile != null)
                     {
-                        FileInputStream inStream = new FileInputStream(file);
-                        long bytesWritten = IoHelper.copyStream(inStream, objOut);
-                        inStream.close();
-                        if (bytesWritten != packFile.length())
-                        {
-                            throw new IOException("File size mismatch when reading " + file);
-                        }
+                        spillFile.delete();
                     }
-
-                    storedFiles.put(file, new Object[]{pack.id, pos});
                 }
+                reportPack(plans.get(packNumber), compressedSize);
 
-                // even if not written, it counts towards pack size
-                pack.nbytes += packFile.size();
-            }
-
-            // Write out information about parsable files
-            objOut.writeInt(packInfo.getParsables().size());
-
-            for (ParsableFile parsableFile : packInfo.getParsables())
-            {
-                objOut.writeObject(parsableFile);
-            }
-
-            // Write out information about executable files
-            objOut.writeInt(packInfo.getExecutables().size());
-            for (ExecutableFile executableFile : packInfo.getExecutables())
-            {
-                objOut.writeObject(executableFile);
-            }
+                // close pack specific jar if required
+                if (packJarsSeparate)
+                {
+                    primaryJarStream.closeAlways();
+                }
 
-            // Write out information about updatecheck files
-            objOut.writeInt(packInfo.getUpdateChecks().size());
-            for (UpdateCheck updateCheck : packInfo.getUpdateChecks())
-            {
-                objOut.writeObject(updateCheck);
+                IXMLElement child = new XMLElementImpl("pack", root);
+                child.setAttribute("nbytes", Long.toString(pack.nbytes));
+                child.setAttribute("name", pack.name);
+                if (pack.id != null)
+                {
+                    child.setAttribute("id", pack.id);
+                }
+                root.addChild(child);
             }
-
-            // Cleanup
-            objOut.flush();
-            if (!compressor.useStandardCompression())
+        }
+        finally
+        {
+            if (executor != null)
             {
-                outputStream.close();
+                executor.shutdownNow();
             }
-
-            primaryJarStream.closeEntry();
-
-            // close pack specific jar if required
-            if (packJarsSeparate)
+            for (File spillFile : spillFiles)
             {
-                primaryJarStream.closeAlways();
+                if (spillFile != null && spillFile.exists())
+                {
+                    spillFile.delete();
+                }
             }
+        }
 
-            IXMLElement child = new XMLElementImpl("pack", root);
-            child.setAttribute("nbytes", Long.toString(pack.nbytes));
-            child.setAttribute("name", pack.name);
-            if (pack.id != null)
+        if (packCache != null)
+        {
+            packCache.evict();
+            int cached = 0;
+            for (PackPlan plan : plans)
             {
-                child.setAttribute("id", pack.id);
+                cached += plan.cached ? 1 : 0;
             }
-            root.addChild(child);
-
-            packNumber++;
+            sendMsg("Copied " + cached + " of " + num + " Pack" + (num > 1 ? "s" : "") + " from the build cache");
         }
 
         // Now that we know sizes, write pack metadata to primary jar.
@@ -416,62 +607,1090 @@ public class Packager extends PackagerBase
         primaryJarStream.closeEntry();
 
         // Pack200 files
-        Pack200.Packer packer = createAgressivePack200Packer();
-        for (Integer key : pack200Map.keySet())
+        BuildReport.Timer timer = BuildReport.startTimer();
+        long pack200Bytes = writePack200Entries(pack200Map);
+        long jarBytes = 0;
+        for (File jar : pack200Map.values())
         {
-            File file = pack200Map.get(key);
-            primaryJarStream.putNextEntry(new org.apache.tools.zip.ZipEntry(RESOURCES_PATH + "packs/pack200-" + key));
-            JarFile jar = new JarFile(file);
-            packer.pack(jar, primaryJarStream);
-            jar.close();
-            primaryJarStream.closeEntry();
+            jarBytes += jar.length();
+        }
+        report.finish("pack200", null, timer, pack200Map.size(), jarBytes, pack200Bytes);
+
+        // Uncompressed files
+        for (Integer key : uncompressedMap.keySet())
+        {
+            StoredContent content = uncompressedMap.get(key);
+            writeUncompressedEntry(key, packsList.get(content.packIndex), content.packFile);
         }
     }
 
-    private Pack200.Packer createAgressivePack200Packer()
+    /**
+     * Reports the measures of a pack once its entry is closed. The time is the time spent building
+     * its payload, which does not include waiting for its turn when the packs are built
+     * concurrently. Only the files whose data is in the pack are counted in its bytes in, so that
+     * its compression ratio is not skewed by back references and pack200 jars.
+     *
+     * @param plan           the pack
+     * @param compressedSize the size of the entry of the pack in the installer
+     */
+    private void reportPack(PackPlan plan, long compressedSize)
     {
-        Pack200.Packer packer = Pack200.newPacker();
-        Map<String, String> packerProperties = packer.properties();
-        packerProperties.put(Pack200.Packer.EFFORT, "9");
-        packerProperties.put(Pack200.Packer.SEGMENT_LIMIT, "-1");
-        packerProperties.put(Pack200.Packer.KEEP_FILE_ORDER, Pack200.Packer.FALSE);
-        packerProperties.put(Pack200.Packer.DEFLATE_HINT, Pack200.Packer.FALSE);
-        packerProperties.put(Pack200.Packer.MODIFICATION_TIME, Pack200.Packer.LATEST);
-        packerProperties.put(Pack200.Packer.CODE_ATTRIBUTE_PFX + "LineNumberTable", Pack200.Packer.STRIP);
-        packerProperties.put(Pack200.Packer.CODE_ATTRIBUTE_PFX + "LocalVariableTable", Pack200.Packer.STRIP);
-        packerProperties.put(Pack200.Packer.CODE_ATTRIBUTE_PFX + "SourceFile", Pack200.Packer.STRIP);
-        return packer;
+        int files = 0;
+        for (PackFile packFile : plan.packInfo.getPackFiles())
+        {
+            if (!packFile.isDirectory())
+            {
+                files++;
+            }
+        }
+        long length = 0;
+        for (PackFile packFile : plan.storedFiles)
+        {
+            length += packFile.length();
+        }
+        report.finish("writePack", plan.packInfo.getPack().name, plan.timer, files, length, compressedSize);
     }
 
-    private boolean isNotSignedJar(File file) throws IOException
+    /**
+     * Writes the entry of a pack from the file its data was written into, a spill file or a payload
+     * of the build cache. The data deflated by the task building the pack is copied as it is.
+     *
+     * @return the size of the entry in the installer
+     */
+    private long writePackEntry(PackPlan plan, String entryName) throws IOException
     {
-        JarFile jar = new JarFile(file);
-        Enumeration<JarEntry> entries = jar.entries();
-        while (entries.hasMoreElements())
+        FileInputStream inStream = new FileInputStream(plan.entryFile);
+        try
         {
-            JarEntry entry = entries.nextElement();
-            if (entry.getName().startsWith("META-INF") && entry.getName().endsWith(".SF"))
+            if (plan.deflated)
             {
-                jar.close();
-                return false;
+                primaryJarStream.writeRawEntry(entryName, -1, inStream, plan.crc, plan.size, plan.compressedSize);
+                return plan.compressedSize;
             }
+            org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry(entryName);
+            primaryJarStream.putNextEntry(entry);
+            IoHelper.copyStream(inStream, primaryJarStream);
+            primaryJarStream.closeEntry();
+            return entry.getCompressedSize();
+        }
+        finally
+        {
+            inStream.close();
         }
-        jar.close();
-        return true;
     }
 
     /**
-     * ********************************************************************************************
-     * Stream utilites for creation of the installer.
-     * ********************************************************************************************
+     * Packs the jars with Pack200 and writes them in the order of their keys.
+     * <p/>
+     * With more than one thread, the jars are packed at the same time into buffers which wait for
+     * their turn to be written. The buffers are reserved, in key order, from a budget of
+     * <code>CompilerData#getPack200MemoryLimit()</code> megabytes, assuming an archive is not
+     * larger than its jar. A jar larger than the budget is packed alone, and an archive outgrowing
+     * its reservation goes on in a temporary file.
+     *
+     * @param pack200Map the jars to pack, keyed by their stream number
+     * @return the number of bytes written in the installer
      */
-
-    /* (non-Javadoc)
-    * @see com.izforge.izpack.compiler.packager.IPackager#addConfigurationInformation(com.izforge.izpack.api.adaptator.IXMLElement)
-    */
-    public void addConfigurationInformation(IXMLElement data)
+    private long writePack200Entries(Map<Integer, File> pack200Map) throws Exception
     {
-        // TODO Auto-generated method stub
+        long written = 0;
+        List<Integer> keys = new ArrayList<Integer>(pack200Map.keySet());
+        Collections.sort(keys);
+        int threads = Math.min(compilerData.getPackThreads(), keys.size());
+        if (threads <= 1)
+        {
+            Pack200.Packer packer = createAgressivePack200Packer();
+            for (Integer key : keys)
+            {
+                org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry(RESOURCES_PATH + "packs/pack200-" + key);
+                primaryJarStream.putNextEntry(entry);
+                JarFile jar = new JarFile(pack200Map.get(key));
+                packer.pack(jar, primaryJarStream);
+                jar.close();
+                primaryJarStream.closeEntry();
+                written += entry.getCompressedSize();
+            }
+            return written;
+        }
+
+        sendMsg("Packing " + keys.size() + " jars with Pack200 on " + threads + " threads", PackagerListener.MSG_VERBOSE);
+        long budget = compilerData.getPack200MemoryLimit() * 1024L * 1024L;
+        long reserved = 0;
+        int submitted = 0;
+        LinkedList<Future<DeferredFileOutputStream>> packing = new LinkedList<Future<DeferredFileOutputStream>>();
+        LinkedList<Integer> reservations = new LinkedList<Integer>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            for (Integer key : keys)
+            {
+                // reserve in key order, so the next archive to write never waits for a later one
+                while (submitted < keys.size())
+                {
+                    final File file = pack200Map.get(keys.get(submitted));
+                    final int reservation = (int) Math.min(file.length(), Math.min(budget, Integer.MAX_VALUE));
+                    if (!packing.isEmpty() && reserved + reservation > budget)
+                    {
+                        break;
+                    }
+                    packing.add(executor.submit(new Callable<DeferredFileOutputStream>()
+                    {
+                        public DeferredFileOutputStream call() throws Exception
+                        {
+                            return pack200(file, reservation);
+                        }
+                    }));
+                    reservations.add(reservation);
+                    reserved += reservation;
+                    submitted++;
+                }
+
+                DeferredFileOutputStream archive = getResult(packing.removeFirst());
+                reserved -= reservations.removeFirst();
+                try
+                {
+                    org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry(RESOURCES_PATH + "packs/pack200-" + key);
+                    primaryJarStream.putNextEntry(entry);
+                    archive.writeTo(primaryJarStream);
+                    primaryJarStream.closeEntry();
+                    written += entry.getCompressedSize();
+                }
+                finally
+                {
+                    if (!archive.isInMemory())
+                    {
+                        archive.getFile().delete();
+                    }
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+            for (Future<DeferredFileOutputStream> future : packing)
+            {
+                try
+                {
+                    DeferredFileOutputStream archive = future.get();
+                    if (!archive.isInMemory())
+                    {
+                        archive.getFile().delete();
+                    }
+                }
+                catch (Exception e)
+                {
+                    // already failed or cancelled, nothing to clean up
+                }
+            }
+        }
+        return written;
+    }
 
+    /**
+     * Packs a jar with Pack200 into a buffer moving to a temporary file past its reservation.
+     */
+    private DeferredFileOutputStream pack200(File file, int reservation) throws IOException
+    {
+        File spillFile = com.izforge.izpack.util.file.FileUtils.createTempFile("izpack-pack200", null);
+        spillFile.delete();
+        DeferredFileOutputStream archive = new DeferredFileOutputStream(reservation, spillFile);
+        JarFile jar = new JarFile(file);
+        try
+        {
+            // a packer is not thread safe
+            createAgressivePack200Packer().pack(jar, archive);
+        }
+        finally
+        {
+            jar.close();
+            archive.close();
+        }
+        return archive;
+    }
+
+    /**
+     * Writes an already compressed file into its own STORED entry, read back by the unpacker
+     * without going through the pack decoder.
+     * <p/>
+     * The size and CRC of a STORED entry come before its data. Written to a file, the entry header
+     * is completed once the data is written, so the file is only read once.
+     */
+    private void writeUncompressedEntry(int key, PackInfo packInfo, PackFile packFile) throws IOException
+    {
+        org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry(RESOURCES_PATH + "packs/uncompressed-" + key);
+        entry.setMethod(ZipEntry.STORED);
+        if (!primaryJarStream.isSeekable())
+        {
+            entry.setSize(packFile.length());
+            entry.setCrc(computeCrc(packInfo, packFile));
+        }
+        primaryJarStream.putNextEntry(entry);
+        long length;
+        InputStream inStream = openPackFile(packInfo, packFile);
+        try
+        {
+            length = IoHelper.copyStream(inStream, primaryJarStream);
+        }
+        finally
+        {
+            inStream.close();
+        }
+        if (length != packFile.length())
+        {
+            throw new IOException("File size mismatch when reading " + getSourceName(packInfo, packFile));
+        }
+        primaryJarStream.closeEntry();
+    }
+
+    /**
+     * Computes the CRC-32 of the data of a pack file.
+     */
+    private long computeCrc(PackInfo packInfo, PackFile packFile) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[5120];
+        InputStream inStream = openPackFile(packInfo, packFile);
+        try
+        {
+            int read;
+            while ((read = inStream.read(buffer)) != -1)
+            {
+                crc.update(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            inStream.close();
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Decides, in the declared pack order, which files are stored, which are back references to
+     * a previously stored file, which jars are packed with Pack200 and which already compressed
+     * files are stored uncompressed.
+     * <p/>
+     * Files are matched on their content, so the same bytes reached through different paths are
+     * only stored once.
+     *
+     * @param pack200Map      receives the jars to pack with Pack200, keyed by their stream number
+     * @param uncompressedMap receives the files to store uncompressed, keyed by their stream number
+     * @return the plan of each pack
+     */
+    private List<PackPlan> planPacks(Map<Integer, File> pack200Map, Map<Integer, StoredContent> uncompressedMap)
+            throws Exception
+    {
+        Map<PackFile, String> digests = computeDigests();
+
+        // Map to remember the pack and the file storing each content
+        Map<String, StoredContent> storedContents = new HashMap<String, StoredContent>();
+        int pack200Counter = 0;
+        int uncompressedCounter = 0;
+        int sharedFiles = 0;
+        long savedBytes = 0;
+
+        List<PackPlan> plans = new ArrayList<PackPlan>();
+        for (PackInfo packInfo : packsList)
+        {
+            Pack pack = packInfo.getPack();
+            pack.nbytes = 0;
+            if ((pack.id == null) || (pack.id.length() == 0))
+            {
+                pack.id = pack.name;
+            }
+
+            PackPlan plan = new PackPlan(plans.size(), packInfo);
+            for (PackFile packFile : packInfo.getPackFiles())
+            {
+                boolean addFile = !pack.loose;
+                boolean pack200 = false;
+                boolean uncompressed = false;
+                File file = packInfo.getFile(packFile);
+
+                if (packInfo.getArchiveEntry(packFile) == null && file.getName().toLowerCase().endsWith(".jar")
+                        && info.isPack200Compression() && isNotSignedJar(file))
+                {
+                    packFile.setPack200Jar(true);
+                    pack200 = true;
+                }
+                else if (!packFile.isDirectory() && !pack.loose && info.isUncompressedStorage()
+                        && packFile.length() >= info.getUncompressedMinSize() && isCompressed(packInfo, packFile))
+                {
+                    uncompressed = true;
+                }
+
+                // use a back reference if the content was in previous pack, and in
+                // same jar
+                String contentKey = null;
+                if (!packFile.isDirectory())
+                {
+                    contentKey = digests.get(packFile) + (pack200 ? ":pack200" : "")
+                            + (uncompressed ? ":uncompressed" : "");
+                }
+                if (contentKey != null)
+                {
+                    plan.contentKeys.put(packFile, contentKey);
+                }
+                StoredContent previous = contentKey == null ? null : storedContents.get(contentKey);
+                if (previous != null && !packJarsSeparate)
+                {
+                    plan.backReferences.put(packFile, previous);
+
+                    // the entry of a pack200 or uncompressed file is read directly
+                    PackPlan previousPlan = previous.packIndex == plan.index ? plan : plans.get(previous.packIndex);
+                    if (previousPlan.pack200Keys.containsKey(previous.packFile))
+                    {
+                        plan.pack200Keys.put(packFile, previousPlan.pack200Keys.get(previous.packFile));
+                    }
+                    if (previousPlan.uncompressedKeys.containsKey(previous.packFile))
+                    {
+                        packFile.setUncompressed(true);
+                        plan.uncompressedKeys.put(packFile, previousPlan.uncompressedKeys.get(previous.packFile));
+                    }
+                    if (addFile)
+                    {
+                        sharedFiles++;
+                        savedBytes += packFile.length();
+                    }
+                    addFile = false;
+                }
+
+                if (addFile && !packFile.isDirectory())
+                {
+                    if (pack200)
+                    {
+                        /*
+                         * Warning!
+                         *
+                         * Pack200 archives must be stored in separated streams, as the Pack200 unpacker
+                         * reads the entire stream...
+                         *
+                         * See http://java.sun.com/javase/6/docs/api/java/util/jar/Pack200.Unpacker.html
+                         */
+                        pack200Map.put(pack200Counter, file);
+                        plan.pack200Keys.put(packFile, pack200Counter);
+                        pack200Counter = pack200Counter + 1;
+                    }
+                    else if (uncompressed)
+                    {
+                        // only the files written in a STORED entry are read from it
+                        packFile.setUncompressed(true);
+                        uncompressedMap.put(uncompressedCounter, new StoredContent(plan.index, packFile));
+                        plan.uncompressedKeys.put(packFile, uncompressedCounter);
+                        uncompressedCounter = uncompressedCounter + 1;
+                    }
+                    plan.storedFiles.add(packFile);
+                    storedContents.put(contentKey, new StoredContent(plan.index, packFile));
+                }
+            }
+            plans.add(plan);
+        }
+        if (sharedFiles > 0)
+        {
+            sendMsg("Content deduplication saved " + savedBytes + " bytes (" + sharedFiles
+                    + " file" + (sharedFiles > 1 ? "s" : "") + " stored as back references)");
+        }
+        return plans;
+    }
+
+    /**
+     * Computes the SHA-256 digest of every file of the packs, on
+     * <code>CompilerData#getPackThreads()</code> threads. A file added to several packs is only
+     * read once.
+     *
+     * @return the digest of each pack file, prefixed by its length
+     */
+    private Map<PackFile, String> computeDigests() throws Exception
+    {
+        Map<String, FutureTask<String>> tasks = new LinkedHashMap<String, FutureTask<String>>();
+        Map<PackFile, Future<String>> futures = new HashMap<PackFile, Future<String>>();
+        for (final PackInfo packInfo : packsList)
+        {
+            for (final PackFile packFile : packInfo.getPackFiles())
+            {
+                if (packFile.isDirectory())
+                {
+                    continue;
+                }
+                String sourceName = getSourceName(packInfo, packFile);
+                FutureTask<String> task = tasks.get(sourceName);
+                if (task == null)
+                {
+                    task = new FutureTask<String>(new Callable<String>()
+                    {
+                        public String call() throws Exception
+                        {
+                            return digest(packInfo, packFile);
+                        }
+                    });
+                    tasks.put(sourceName, task);
+                }
+                futures.put(packFile, task);
+            }
+        }
+
+        int threads = Math.min(compilerData.getPackThreads(), tasks.size());
+        ExecutorService executor = null;
+        if (threads > 1)
+        {
+            executor = Executors.newFixedThreadPool(threads);
+        }
+        try
+        {
+            for (FutureTask<String> task : tasks.values())
+            {
+                if (executor != null)
+                {
+                    executor.execute(task);
+                }
+                else
+                {
+                    task.run();
+                }
+            }
+
+            Map<PackFile, String> digests = new HashMap<PackFile, String>();
+            for (Map.Entry<PackFile, Future<String>> entry : futures.entrySet())
+            {
+                digests.put(entry.getKey(), getResult(entry.getValue()));
+            }
+            return digests;
+        }
+        finally
+        {
+            if (executor != null)
+            {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Tells if a file is already compressed, from its extension or from the entropy of its first
+     * block.
+     */
+    private boolean isCompressed(PackInfo packInfo, PackFile packFile) throws IOException
+    {
+        String name = packInfo.getArchiveEntry(packFile);
+        if (name == null)
+        {
+            name = packInfo.getFile(packFile).getName();
+        }
+        int dot = name.lastIndexOf('.');
+        if (dot >= 0 && info.getUncompressedExtensions().contains(name.substring(dot + 1).toLowerCase()))
+        {
+            return true;
+        }
+
+        // a short file does not tell much, and costs little to compress anyway
+        if (packFile.length() < ENTROPY_BLOCK_SIZE || info.getUncompressedEntropy() > 8)
+        {
+            return false;
+        }
+        byte[] block = new byte[ENTROPY_BLOCK_SIZE];
+        int length = 0;
+        InputStream inStream = openPackFile(packInfo, packFile);
+        try
+        {
+            int read;
+            while (length < block.length && (read = inStream.read(block, length, block.length - length)) != -1)
+            {
+                length += read;
+            }
+        }
+        finally
+        {
+            inStream.close();
+        }
+        return entropy(block, length) >= info.getUncompressedEntropy();
+    }
+
+    /**
+     * Computes the Shannon entropy of some bytes, in bits per byte.
+     */
+    static double entropy(byte[] bytes, int length)
+    {
+        int[] counts = new int[256];
+        for (int i = 0; i < length; i++)
+        {
+            counts[bytes[i] & 0xff]++;
+        }
+        double entropy = 0;
+        for (int count : counts)
+        {
+            if (count > 0)
+            {
+                double probability = (double) count / length;
+                entropy -= probability * Math.log(probability) / Math.log(2);
+            }
+        }
+        return entropy;
+    }
+
+    /**
+     * Computes the digest of a pack file, or takes it from the build cache if the file kept its
+     * size and modification time.
+     */
+    private String digest(PackInfo packInfo, PackFile packFile) throws Exception
+    {
+        String sourceName = null;
+        long lastModified = 0;
+        if (packCache != null)
+        {
+            sourceName = getSourceName(packInfo, packFile);
+            lastModified = packInfo.getFile(packFile).lastModified();
+            String digest = packCache.getDigest(sourceName, packFile.length(), lastModified);
+            if (digest != null)
+            {
+                return digest;
+            }
+        }
+
+        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+        byte[] buffer = new byte[5120];
+        long length = 0;
+        InputStream inStream = openPackFile(packInfo, packFile);
+        try
+        {
+            int read;
+            while ((read = inStream.read(buffer)) != -1)
+            {
+                messageDigest.update(buffer, 0, read);
+                length += read;
+            }
+        }
+        finally
+        {
+            inStream.close();
+        }
+        String digest = length + ":" + new BigInteger(1, messageDigest.digest()).toString(16);
+        if (packCache != null)
+        {
+            packCache.putDigest(sourceName, packFile.length(), lastModified, digest);
+        }
+        return digest;
+    }
+
+    /**
+     * Opens the data of a pack file, either a plain file or an entry of a zip archive.
+     */
+    private InputStream openPackFile(PackInfo packInfo, PackFile packFile) throws IOException
+    {
+        File file = packInfo.getFile(packFile);
+        String entryName = packInfo.getArchiveEntry(packFile);
+        if (entryName == null)
+        {
+            return new FileInputStream(file);
+        }
+        ZipFile archive = getArchive(file);
+        ZipEntry entry = archive.getEntry(entryName);
+        if (entry == null)
+        {
+            throw new FileNotFoundException("No entry " + entryName + " in archive " + file);
+        }
+        return archive.getInputStream(entry);
+    }
+
+    /**
+     * Gets the archive holding pack files, opened once for all its entries.
+     */
+    private synchronized ZipFile getArchive(File file) throws IOException
+    {
+        ZipFile archive = archives.get(file);
+        if (archive == null)
+        {
+            archive = new ZipFile(file);
+            archives.put(file, archive);
+        }
+        return archive;
+    }
+
+    private synchronized void closeArchives() throws IOException
+    {
+        for (ZipFile archive : archives.values())
+        {
+            archive.close();
+        }
+        archives.clear();
+    }
+
+    private static String getSourceName(PackInfo packInfo, PackFile packFile)
+    {
+        String entryName = packInfo.getArchiveEntry(packFile);
+        String fileName = packInfo.getFile(packFile).getPath();
+        return entryName == null ? fileName : fileName + "!/" + entryName;
+    }
+
+    /**
+     * Writes the payload of a pack through the build cache: the data of its entry is taken from the
+     * cache, or written into it, deflated when the entries of the installer are.
+     *
+     * @param plan    the plan of the pack to write
+     * @param offsets the offsets of the stored files of every pack, used for back references
+     * @return the offset of each file stored in this pack
+     */
+    private Map<PackFile, Long> writeCachedPack(PackPlan plan, List<? extends Future<Map<PackFile, Long>>> offsets)
+            throws Exception
+    {
+        PackInfo packInfo = plan.packInfo;
+        String key = computePackKey(plan, offsets);
+        boolean deflate = primaryJarStream.isRawCopySupported();
+        PackCache.Entry cached = packCache.get(key);
+        if (cached != null && cached.isDeflated() == deflate)
+        {
+            plan.cached = true;
+            plan.setEntryData(cached);
+            Map<PackFile, Long> storedOffsets = new HashMap<PackFile, Long>();
+            long[] cachedOffsets = cached.getOffsets();
+            int index = 0;
+            for (PackFile packFile : packInfo.getPackFiles())
+            {
+                if (cachedOffsets[index] >= 0)
+                {
+                    storedOffsets.put(packFile, cachedOffsets[index]);
+                }
+                packInfo.getPack().nbytes += packFile.size();
+                index++;
+            }
+            return storedOffsets;
+        }
+
+        File payload = packCache.createPayloadFile();
+        try
+        {
+            Map<PackFile, Long> storedOffsets;
+            OutputStream payloadStream = new BufferedOutputStream(new FileOutputStream(payload));
+            DeflatedEntryOutputStream deflated = null;
+            if (deflate)
+            {
+                deflated = new DeflatedEntryOutputStream(payloadStream, primaryJarStream.getLevel());
+                payloadStream = deflated;
+            }
+            try
+            {
+                storedOffsets = writePackPayload(plan, payloadStream, offsets);
+            }
+            finally
+            {
+                payloadStream.close();
+            }
+
+            long[] payloadOffsets = new long[packInfo.getPackFiles().size()];
+            int index = 0;
+            for (PackFile packFile : packInfo.getPackFiles())
+            {
+                Long offset = null;
+                if (plan.storedFiles.contains(packFile))
+                {
+                    offset = storedOffsets.get(packFile);
+                }
+                payloadOffsets[index++] = offset == null ? -1 : offset;
+            }
+            PackCache.Entry entry;
+            if (deflated == null)
+            {
+                entry = new PackCache.Entry(payloadOffsets);
+            }
+            else
+            {
+                entry = new PackCache.Entry(payloadOffsets, deflated.getCrc(), deflated.getSize(),
+                        deflated.getCompressedSize());
+            }
+            plan.setEntryData(packCache.store(key, payload, entry));
+            return storedOffsets;
+        }
+        finally
+        {
+            payload.delete();
+        }
+    }
+
+    /**
+     * Computes the build cache key of a pack. Back references to previous packs are resolved first,
+     * as the offsets they point at are part of the payload.
+     */
+    private String computePackKey(PackPlan plan, List<? extends Future<Map<PackFile, Long>>> offsets) throws Exception
+    {
+        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+        ObjectOutputStream keyStream = new ObjectOutputStream(
+                new DigestOutputStream(new NullOutputStream(), messageDigest));
+
+        PackInfo packInfo = plan.packInfo;
+        keyStream.writeInt(PackTable.VERSION);
+        keyStream.writeObject(compilerData.getComprFormat());
+        keyStream.writeInt(compilerData.getComprLevel());
+        keyStream.writeObject(packInfo.getPack().id);
+        for (PackFile packFile : packInfo.getPackFiles())
+        {
+            StoredContent previous = plan.backReferences.get(packFile);
+            if (previous != null && previous.packIndex != plan.index)
+            {
+                Map<PackFile, Long> previousOffsets = getResult(offsets.get(previous.packIndex));
+                packFile.setPreviousPackFileRef(packsList.get(previous.packIndex).getPack().id,
+                        previousOffsets.get(previous.packFile));
+            }
+            keyStream.writeObject(packFile);
+            keyStream.writeBoolean(plan.storedFiles.contains(packFile));
+            keyStream.writeObject(plan.pack200Keys.get(packFile));
+            keyStream.writeObject(plan.uncompressedKeys.get(packFile));
+            keyStream.writeObject(plan.contentKeys.get(packFile));
+        }
+        for (ParsableFile parsableFile : packInfo.getParsables())
+        {
+            keyStream.writeObject(parsableFile);
+        }
+        for (ExecutableFile executableFile : packInfo.getExecutables())
+        {
+            keyStream.writeObject(executableFile);
+        }
+        for (UpdateCheck updateCheck : packInfo.getUpdateChecks())
+        {
+            keyStream.writeObject(updateCheck);
+        }
+        keyStream.close();
+        return new BigInteger(1, messageDigest.digest()).toString(16);
+    }
+
+    /**
+     * Writes a pack: its table followed by the data of the files it stores.
+     *
+     * @param plan       the plan of the pack to write
+     * @param packStream the stream receiving the (compressed) pack
+     * @param offsets    the offsets of the stored files of every pack, used for back references
+     * @return the offset of each file stored in this pack, in its data region
+     */
+    private Map<PackFile, Long> writePackPayload(PackPlan plan, OutputStream packStream,
+                                             List<? extends Future<Map<PackFile, Long>>> offsets) throws Exception
+    {
+        PackInfo packInfo = plan.packInfo;
+        Pack pack = packInfo.getPack();
+        Map<PackFile, Long> storedOffsets = new HashMap<PackFile, Long>();
+
+        // The lengths are known, so the table holding the offsets comes before the data
+        PackTable table = new PackTable();
+        long dataOffset = 0;
+        for (PackFile packFile : packInfo.getPackFiles())
+        {
+            StoredContent previous = plan.backReferences.get(packFile);
+            if (previous != null)
+            {
+                Map<PackFile, Long> previousOffsets = storedOffsets;
+                if (previous.packIndex != plan.index)
+                {
+                    previousOffsets = getResult(offsets.get(previous.packIndex));
+                }
+                packFile.setPreviousPackFileRef(packsList.get(previous.packIndex).getPack().id,
+                        previousOffsets.get(previous.packFile));
+            }
+
+            Integer streamKey = plan.pack200Keys.get(packFile);
+            if (streamKey == null)
+            {
+                streamKey = plan.uncompressedKeys.get(packFile);
+            }
+
+            long offset = -1;
+            if (plan.storedFiles.contains(packFile))
+            {
+                storedOffsets.put(packFile, dataOffset);
+                if (streamKey == null)
+                {
+                    offset = dataOffset;
+                    dataOffset += packFile.length();
+                }
+            }
+            table.addFile(packFile, offset, streamKey == null ? -1 : streamKey);
+
+            // even if not written, it counts towards pack size
+            pack.nbytes += packFile.size();
+        }
+
+        // The parsable, executable and updatecheck files are few, they stay serialized
+        ByteArrayOutputStream metadata = new ByteArrayOutputStream();
+        ObjectOutputStream objOut = new ObjectOutputStream(metadata);
+        objOut.writeInt(packInfo.getParsables().size());
+        for (ParsableFile parsableFile : packInfo.getParsables())
+        {
+            objOut.writeObject(parsableFile);
+        }
+        objOut.writeInt(packInfo.getExecutables().size());
+        for (ExecutableFile executableFile : packInfo.getExecutables())
+        {
+            objOut.writeObject(executableFile);
+        }
+        objOut.writeInt(packInfo.getUpdateChecks().size());
+        for (UpdateCheck updateCheck : packInfo.getUpdateChecks())
+        {
+            objOut.writeObject(updateCheck);
+        }
+        objOut.close();
+        table.setMetadata(metadata.toByteArray());
+
+        OutputStream comprStream = packStream;
+        if (!compressor.useStandardCompression())
+        {
+            comprStream = compressor.getOutputStream(packStream);
+        }
+        table.write(comprStream);
+
+        // We write the data of the stored files
+        for (int index = 0; index < table.size(); index++)
+        {
+            if (table.getOffset(index) >= 0)
+            {
+                PackFile packFile = table.getFile(index);
+                InputStream inStream = openPackFile(packInfo, packFile);
+                long bytesWritten = IoHelper.copyStream(inStream, comprStream);
+                inStream.close();
+                if (bytesWritten != packFile.length())
+                {
+                    throw new IOException("File size mismatch when reading " + getSourceName(packInfo, packFile));
+                }
+            }
+        }
+
+        // Cleanup
+        comprStream.flush();
+        if (!compressor.useStandardCompression())
+        {
+            comprStream.close();
+        }
+        return storedOffsets;
+    }
+
+    /**
+     * Waits for the given task and rethrows the exception it may have failed with.
+     */
+    private static <T> T getResult(Future<T> future) throws Exception
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof Exception)
+            {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private Pack200.Packer createAgressivePack200Packer()
+    {
+        Pack200.Packer packer = Pack200.newPacker();
+        Map<String, String> packerProperties = packer.properties();
+        packerProperties.put(Pack200.Packer.EFFORT, "9");
+        packerProperties.put(Pack200.Packer.SEGMENT_LIMIT, "-1");
+        packerProperties.put(Pack200.Packer.KEEP_FILE_ORDER, Pack200.Packer.FALSE);
+        packerProperties.put(Pack200.Packer.DEFLATE_HINT, Pack200.Packer.FALSE);
+        packerProperties.put(Pack200.Packer.MODIFICATION_TIME, Pack200.Packer.LATEST);
+        packerProperties.put(Pack200.Packer.CODE_ATTRIBUTE_PFX + "LineNumberTable", Pack200.Packer.STRIP);
+        packerProperties.put(Pack200.Packer.CODE_ATTRIBUTE_PFX + "LocalVariableTable", Pack200.Packer.STRIP);
+        packerProperties.put(Pack200.Packer.CODE_ATTRIBUTE_PFX + "SourceFile", Pack200.Packer.STRIP);
+        return packer;
+    }
+
+    private boolean isNotSignedJar(File file) throws IOException
+    {
+        JarFile jar = new JarFile(file);
+        Enumeration<JarEntry> entries = jar.entries();
+        while (entries.hasMoreElements())
+        {
+            JarEntry entry = entries.nextElement();
+            if (entry.getName().startsWith("META-INF") && entry.getName().endsWith(".SF"))
+            {
+                jar.close();
+                return false;
+            }
+        }
+        jar.close();
+        return true;
+    }
+
+    /**
+     * ********************************************************************************************
+     * Stream utilites for creation of the installer.
+     * ********************************************************************************************
+     */
+
+    /* (non-Javadoc)
+    * @see com.izforge.izpack.compiler.packager.IPackager#addConfigurationInformation(com.izforge.izpack.api.adaptator.IXMLElement)
+    */
+    public void addConfigurationInformation(IXMLElement data)
+    {
+        // TODO Auto-generated method stub
+
+    }
+
+    /**
+     * Layout of a pack decided before its payload is written.
+     */
+    private static class PackPlan
+    {
+        /**
+         * Position of the pack in the packs list.
+         */
+        private final int index;
+
+        private final PackInfo packInfo;
+
+        /**
+         * Stored content of each back referenced file.
+         */
+        private final Map<PackFile, StoredContent> backReferences = new HashMap<PackFile, StoredContent>();
+
+        /**
+         * Pack200 stream number of each stored pack200 jar.
+         */
+        private final Map<PackFile, Integer> pack200Keys = new HashMap<PackFile, Integer>();
+
+        /**
+         * Stream number of each file stored uncompressed.
+         */
+        private final Map<PackFile, Integer> uncompressedKeys = new HashMap<PackFile, Integer>();
+
+        /**
+         * Files whose data is written in this pack.
+         */
+        private final Set<PackFile> storedFiles = new HashSet<PackFile>();
+
+        /**
+         * Content digest of each file which is not a directory.
+         */
+        private final Map<PackFile, String> contentKeys = new HashMap<PackFile, String>();
+
+        /**
+         * Whether the payload was copied from the build cache.
+         */
+        private boolean cached;
+
+        /**
+         * Measures the building of the payload, on the thread building it.
+         */
+        private BuildReport.Timer timer;
+
+        /**
+         * The file holding the data of the entry of the pack, a spill file or a payload of the
+         * build cache, null when the pack is written directly into the installer jar stream.
+         */
+        private File entryFile;
+
+        /**
+         * Whether the data of the entry is already deflated, with the CRC and sizes of the entry.
+         */
+        private boolean deflated;
+
+        private long crc;
+
+        private long size;
+
+        private long compressedSize;
+
+        private PackPlan(int index, PackInfo packInfo)
+        {
+            this.index = index;
+            this.packInfo = packInfo;
+        }
+
+        private void setEntryData(File file, DeflatedEntryOutputStream deflatedStream)
+        {
+            entryFile = file;
+            deflated = deflatedStream != null;
+            if (deflated)
+            {
+                crc = deflatedStream.getCrc();
+                size = deflatedStream.getSize();
+                compressedSize = deflatedStream.getCompressedSize();
+            }
+        }
+
+        private void setEntryData(PackCache.Entry entry)
+        {
+            entryFile = entry.getPayload();
+            deflated = entry.isDeflated();
+            crc = entry.getCrc();
+            size = entry.getSize();
+            compressedSize = entry.getCompressedSize();
+        }
+    }
+
+    /**
+     * Location of a content written in a pack.
+     */
+    private static class StoredContent
+    {
+        private final int packIndex;
+
+        /**
+         * The pack file whose data was written.
+         */
+        private final PackFile packFile;
+
+        private StoredContent(int packIndex, PackFile packFile)
+        {
+            this.packIndex = packIndex;
+            this.packFile = packFile;
+        }
+    }
+
+    /**
+     * Writes the payload of one pack, either directly into the primary jar, into a spill file or
+     * through the build cache.
+     */
+    private class PackPayloadTask implements Callable<Map<PackFile, Long>>
+    {
+        private final PackPlan plan;
+
+        private final List<? extends Future<Map<PackFile, Long>>> offsets;
+
+        private final File spillFile;
+
+        private PackPayloadTask(PackPlan plan, List<? extends Future<Map<PackFile, Long>>> offsets, File spillFile)
+        {
+            this.plan = plan;
+            this.offsets = offsets;
+            this.spillFile = spillFile;
+        }
+
+        public Map<PackFile, Long> call() throws Exception
+        {
+            plan.timer = BuildReport.startTimer();
+            try
+            {
+                if (packCache != null)
+                {
+                    return writeCachedPack(plan, offsets);
+                }
+                if (spillFile == null)
+                {
+                    return writePackPayload(plan, primaryJarStream, offsets);
+                }
+                OutputStream out = new BufferedOutputStream(new FileOutputStream(spillFile));
+                DeflatedEntryOutputStream deflated = null;
+                if (primaryJarStream.isRawCopySupported())
+                {
+                    // deflated here rather than by the installer jar stream, one pack at a time
+                    deflated = new DeflatedEntryOutputStream(out, primaryJarStream.getLevel());
+                    out = deflated;
+                }
+                Map<PackFile, Long> storedOffsets;
+                try
+                {
+                    storedOffsets = writePackPayload(plan, out, offsets);
+                }
+                finally
+                {
+                    out.close();
+                }
+                plan.setEntryData(spillFile, deflated);
+                return storedOffsets;
+            }
+            finally
+            {
+                plan.timer.stop();
+            }
+        }
     }
 }
@@ -27,6 +27,7 @@ import com.izforge.izpack.api.data.binding.IzpackProjectInstaller;
 import com.izforge.izpack.api.rules.Condition;
 import com.izforge.izpack.compiler.compressor.PackCompressor;
 import com.izforge.izpack.compiler.container.CompilerContainer;
+import com.izforge.izpack.compiler.listener.BuildReport;
 import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.packager.IPackager;
 import com.izforge.izpack.data.CustomData;
@@ -64,7 +65,7 @@ public abstract class PackagerBase implements IPackager
     private MergeableResolver mergeableResolver;
 
 
-    public PackagerBase(Properties properties, CompilerContainer compilerContainer, PackagerListener listener, MergeManager mergeManager, PathResolver pathResolver, IzpackProjectInstaller izpackInstallModel, MergeableResolver mergeableResolver)
+    public PackagerBase(Properties properties, CompilerContainer compilerContainer, PackagerListener listener, MergeManager mergeManager, PathResolver pathResolver, IzpackProjectInstaller izpackInstallModel, MergeableResolver mergeableResolver, BuildReport report)
     {
         this.properties = properties;
         this.compilerContainer = compilerContainer;
@@ -73,6 +74,7 @@ public abstract class PackagerBase implements IPackager
         this.pathResolver = pathResolver;
         this.izpackInstallModel = izpackInstallModel;
         this.mergeableResolver = mergeableResolver;
+        this.report = report;
     }
 
     /**
@@ -139,6 +141,11 @@ public abstract class PackagerBase implements IPackager
      * The listeners.
      */
     protected PackagerListener listener;
+
+    /**
+     * The measures of the phases of the packager.
+     */
+    protected BuildReport report;
     private MergeManager mergeManager;
 
     /**
@@ -347,29 +354,60 @@ public abstract class PackagerBase implements IPackager
         // write the primary jar. MUST be first so manifest is not overwritten
         // by
         // an included jar
+        BuildReport.Timer timer = BuildReport.startTimer();
         writeManifest();
+        report.finish("writeManifest", timer);
+
+        timer = BuildReport.startTimer();
         writeSkeletonInstaller();
+        report.finish("writeSkeletonInstaller", timer);
 
-        writeInstallerObject("izpackInstallModel", izpackInstallModel);
-        writeInstallerObject("info", info);
-        writeInstallerObject("vars", properties);
-        writeInstallerObject("GUIPrefs", guiPrefs);
-        writeInstallerObject("panelsOrder", panelList);
-        writeInstallerObject("customData", customDataList);
-        writeInstallerObject("langpacks.info", langpackNameList);
-        writeInstallerObject("rules", rules);
-        writeInstallerObject("dynvariables", dynamicvariables);
-        writeInstallerObject("dynconditions", dynamicInstallerRequirements);
-        writeInstallerObject("installerrequirements", installerrequirements);
+        timer = BuildReport.startTimer();
+        for (Map.Entry<String, Object> installerObject : getInstallerObjects().entrySet())
+        {
+            writeInstallerObject(installerObject.getKey(), installerObject.getValue());
+        }
+        report.finish("writeInstallerObjects", timer);
 
+        timer = BuildReport.startTimer();
         writeInstallerResources();
+        report.finish("writeInstallerResources", timer);
+
+        timer = BuildReport.startTimer();
         writeIncludedJars();
+        report.finish("writeIncludedJars", timer);
+
+        timer = BuildReport.startTimer();
+        writeClassPathIndex();
+        report.finish("writeClassPathIndex", timer);
 
         // Pack File Data may be written to separate jars
+        timer = BuildReport.startTimer();
         writePacks();
+        report.finish(BuildReport.WRITE_PACKS, timer);
 
     }
 
+    /**
+     * Gets the objects serialized in the installer, by entry name in the order they are written.
+     */
+    protected Map<String, Object> getInstallerObjects()
+    {
+        Map<String, Object> installerObjects = new LinkedHashMap<String, Object>();
+        installerObjects.put("izpackInstallModel", izpackInstallModel);
+        installerObjects.put("info", info);
+        installerObjects.put("vars", properties);
+        installerObjects.put("GUIPrefs", guiPrefs);
+        installerObjects.put("panelsOrder", panelList);
+        installerObjects.put("customData", customDataList);
+        installerObjects.put("langpacks.info", langpackNameList);
+        installerObjects.put("rules", rules);
+        installerObjects.put("dynvariables", dynamicvariables);
+        installerObjects.put("dynconditions", dynamicInstallerRequirements);
+        installerObjects.put("installerrequirements", installerrequirements);
+        return installerObjects;
+    }
+
     protected abstract void writeInstallerObject(String entryName, Object object) throws IOException;
 
     protected abstract void writeSkeletonInstaller() throws IOException;
@@ -378,6 +416,8 @@ public abstract class PackagerBase implements IPackager
 
     protected abstract void writeIncludedJars() throws IOException;
 
+    protected abstract void writeClassPathIndex() throws IOException;
+
     protected abstract void writePacks() throws Exception;
 
     protected abstract void writeManifest() throws IOException;
@@ -0,0 +1,241 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import com.izforge.izpack.api.merge.Mergeable;
+import com.izforge.izpack.merge.MergeManager;
+import com.izforge.izpack.merge.file.FileMerge;
+import com.izforge.izpack.merge.jar.JarMerge;
+import com.izforge.izpack.merge.panel.PanelMerge;
+import org.apache.commons.io.output.NullOutputStream;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * On disk cache of the skeleton installers, the framework classes and the contributed listeners,
+ * panels and resources merged at the start of the installer jar.
+ * <p/>
+ * Each skeleton is stored as a jar under a key computed from the IzPack version and the resources
+ * merged: the jars by path, size and date, the other files by content. The jars are the bulk of
+ * the skeleton, so computing the key costs little compared to merging them.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class SkeletonCache
+{
+    private static final String PREFIX = "skeleton-";
+
+    private static final String SUFFIX = ".jar";
+
+    private final File directory;
+
+    public SkeletonCache(File directory) throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Cannot create the skeleton cache directory " + directory);
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * Gets a cached skeleton.
+     *
+     * @param key the key of the skeleton
+     * @return the jar of the skeleton, or <code>null</code> if it is not cached
+     */
+    public File get(String key)
+    {
+        File skeleton = new File(directory, PREFIX + key + SUFFIX);
+        return skeleton.isFile() ? skeleton : null;
+    }
+
+    /**
+     * Creates a file in the cache directory to merge a skeleton into before storing it.
+     */
+    public File createSkeletonFile() throws IOException
+    {
+        return File.createTempFile("skeleton", ".tmp", directory);
+    }
+
+    /**
+     * Stores a skeleton merged into a file given by {@link #createSkeletonFile()}.
+     *
+     * @param key      the key of the skeleton
+     * @param skeleton the skeleton file, moved into the cache
+     * @return the cached skeleton
+     * @throws IOException if the skeleton cannot be stored
+     */
+    public File store(String key, File skeleton) throws IOException
+    {
+        File target = new File(directory, PREFIX + key + SUFFIX);
+        if (!skeleton.renameTo(target))
+        {
+            skeleton.delete();
+            // stored in the meantime by another build
+            if (!target.isFile())
+            {
+                throw new IOException("Cannot store skeleton " + key + " in " + directory);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Computes the key of a skeleton.
+     *
+     * @param version     the version of IzPack
+     * @param level       the compression level of the installer jar
+     * @param mergeables  the resources merged into the skeleton
+     * @return the key, or <code>null</code> if a resource is of a kind which cannot be cached
+     * @throws IOException if a merged file cannot be read
+     */
+    public static String computeKey(String version, int level, List<Mergeable> mergeables) throws IOException
+    {
+        MessageDigest messageDigest = createDigest();
+        DataOutputStream keyStream = new DataOutputStream(
+                new DigestOutputStream(new NullOutputStream(), messageDigest));
+        keyStream.writeUTF(version);
+        keyStream.writeInt(level);
+        for (Mergeable mergeable : mergeables)
+        {
+            if (!writeKey(mergeable, keyStream))
+            {
+                return null;
+            }
+        }
+        keyStream.close();
+        return new BigInteger(1, messageDigest.digest()).toString(16);
+    }
+
+    private static boolean writeKey(Mergeable mergeable, DataOutputStream keyStream) throws IOException
+    {
+        if (mergeable instanceof JarMerge)
+        {
+            JarMerge jarMerge = (JarMerge) mergeable;
+            File jar = new File(jarMerge.getJarPath());
+            keyStream.writeUTF("jar");
+            keyStream.writeUTF(jar.getAbsolutePath());
+            keyStream.writeLong(jar.length());
+            keyStream.writeLong(jar.lastModified());
+            keyStream.writeUTF(jarMerge.getPathInsideJar());
+            keyStream.writeUTF(jarMerge.getDestination());
+            return true;
+        }
+        if (mergeable instanceof FileMerge)
+        {
+            FileMerge fileMerge = (FileMerge) mergeable;
+            String destination = fileMerge.getDestination();
+            keyStream.writeUTF("file");
+            keyStream.writeUTF(destination);
+            // the name of the source is part of the entry names unless the destination is a file
+            String name = "";
+            if (destination.length() == 0 || destination.endsWith("/"))
+            {
+                name = fileMerge.getSourceToCopy().getName();
+            }
+            writeFileKey(fileMerge.getSourceToCopy(), name, keyStream);
+            return true;
+        }
+        if (mergeable instanceof PanelMerge)
+        {
+            PanelMerge panelMerge = (PanelMerge) mergeable;
+            keyStream.writeUTF("panel");
+            keyStream.writeUTF(panelMerge.getPanelClass().getName());
+            for (Mergeable packageMerge : panelMerge.getPackageMerges())
+            {
+                if (!writeKey(packageMerge, keyStream))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (mergeable instanceof MergeManager)
+        {
+            for (Mergeable child : ((MergeManager) mergeable).getMergeableList())
+            {
+                if (!writeKey(child, keyStream))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Writes the names and the contents of a file, or of the files of a directory in name order.
+     */
+    private static void writeFileKey(File file, String name, DataOutputStream keyStream) throws IOException
+    {
+        if (file.isDirectory())
+        {
+            File[] files = file.listFiles();
+            Arrays.sort(files);
+            keyStream.writeUTF(name + "/");
+            for (File child : files)
+            {
+                writeFileKey(child, name + "/" + child.getName(), keyStream);
+            }
+            return;
+        }
+        keyStream.writeUTF(name);
+        keyStream.writeLong(file.length());
+        byte[] buffer = new byte[5120];
+        InputStream inStream = new FileInputStream(file);
+        try
+        {
+            int read;
+            while ((read = inStream.read(buffer)) != -1)
+            {
+                keyStream.write(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            inStream.close();
+        }
+    }
+
+    private static MessageDigest createDigest() throws IOException
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IOException(e.getMessage());
+        }
+    }
+}
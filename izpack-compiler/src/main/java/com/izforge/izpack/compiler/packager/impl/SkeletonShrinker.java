@@ -0,0 +1,436 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import com.izforge.izpack.util.TargetFactory;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Leaves out of the skeleton installer the framework classes that the installer cannot reach.
+ * <p/>
+ * The classes of the framework packages are reached from roots: the classes outside of these
+ * packages (panels, listeners, user classes), the class names written in the other entries of
+ * the skeleton (the manifest, the service files), in the installer objects and in the installer
+ * resources, then from class to class through the constant pool of the reached classes. Class
+ * names held in strings are resolved by full name, and by simple name when they have no package,
+ * like the panels and the listeners are. The helpers of the automated and console installers,
+ * looked up by adding a suffix to the name of a panel, are reached with their panel, and the
+ * operating system specific versions of a class, loaded by the <code>TargetFactory</code> from the
+ * name of the class with a prefix like <code>Win_</code>, are reached with the class.
+ * <p/>
+ * The classes only loaded by reflection from a computed name are kept with patterns like
+ * <code>com.acme.Foo</code>, <code>com.acme.*</code> for the classes of a package or
+ * <code>com.acme.**</code> for its subpackages too. All the entries which are not classes are kept.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class SkeletonShrinker
+{
+    /**
+     * Patterns of the classes always kept: the conditions are instantiated from their type, and the
+     * operating system specific classes are loaded from names computed by the
+     * <code>TargetFactory</code>.
+     */
+    public static final List<String> DEFAULT_KEEPS = Collections.unmodifiableList(
+            Arrays.asList("com.izforge.izpack.core.rules.process.*", "com.izforge.izpack.util.os.*"));
+
+    private static final String CLASS_SUFFIX = ".class";
+
+    private static final Charset TEXT_CHARSET = Charset.forName("ISO-8859-1");
+
+    private static final String[] HELPER_SUFFIXES = {"AutomationHelper", "ConsoleHelper"};
+
+    private static final Pattern NAME_PATTERN = Pattern.compile(
+            "[A-Za-z_$][A-Za-z0-9_$]*(?:[./][A-Za-z_$][A-Za-z0-9_$]*)*");
+
+    private static final Pattern DESCRIPTOR_PATTERN = Pattern.compile("L([^;<>()\\[]+);");
+
+    /**
+     * Packages, with slashes and a trailing slash, whose classes are left out when not reached.
+     */
+    private final List<String> packages;
+
+    private final List<Pattern> keeps = new ArrayList<Pattern>();
+
+    /**
+     * Names found outside of the skeleton, resolved once the classes of the skeleton are known.
+     */
+    private final Set<String> rootNames = new HashSet<String>();
+
+    /**
+     * @param packages the packages shrunk, as merged in the skeleton: <code>com/acme/</code>
+     * @param keeps    the patterns of the classes kept whether they are reached or not
+     */
+    public SkeletonShrinker(List<String> packages, List<String> keeps)
+    {
+        this.packages = packages;
+        for (String keep : DEFAULT_KEEPS)
+        {
+            this.keeps.add(compileKeep(keep));
+        }
+        for (String keep : keeps)
+        {
+            this.keeps.add(compileKeep(keep));
+        }
+    }
+
+    /**
+     * Adds the classes of an installer object, and the class names held in its strings, to the
+     * roots.
+     *
+     * @param object the serializable object written in the installer
+     * @throws IOException if the object cannot be serialized
+     */
+    public void addRootObject(Object object) throws IOException
+    {
+        ObjectOutputStream out = new ObjectOutputStream(new NullOutputStream())
+        {
+            {
+                enableReplaceObject(true);
+            }
+
+            @Override
+            protected void annotateClass(Class<?> cl)
+            {
+                rootNames.add(cl.getName());
+            }
+
+            @Override
+            protected Object replaceObject(Object obj)
+            {
+                if (obj instanceof String)
+                {
+                    addRootText((String) obj);
+                }
+                return obj;
+            }
+        };
+        out.writeObject(object);
+        out.close();
+    }
+
+    /**
+     * Adds the class names written in a resource to the roots.
+     *
+     * @param inStream the resource, closed once read
+     * @throws IOException if the resource cannot be read
+     */
+    public void addRootText(InputStream inStream) throws IOException
+    {
+        try
+        {
+            addRootText(new String(IOUtils.toByteArray(inStream), TEXT_CHARSET));
+        }
+        finally
+        {
+            inStream.close();
+        }
+    }
+
+    /**
+     * Adds the class names written in a text to the roots.
+     */
+    public void addRootText(String text)
+    {
+        Matcher matcher = NAME_PATTERN.matcher(text);
+        while (matcher.find())
+        {
+            rootNames.add(matcher.group());
+        }
+    }
+
+    /**
+     * Computes the entries of a skeleton to leave out.
+     *
+     * @param skeleton the merged skeleton
+     * @return the names of the classes of the shrunk packages which are not reached
+     * @throws IOException if the skeleton cannot be read
+     */
+    public Set<String> getUnreachableEntries(ZipFile skeleton) throws IOException
+    {
+        // class names without suffix, by full name and by simple name
+        Set<String> classes = new HashSet<String>();
+        Map<String, List<String>> simpleNames = new HashMap<String, List<String>>();
+        Set<String> reached = new HashSet<String>();
+        LinkedList<String> queue = new LinkedList<String>();
+        Enumeration<? extends ZipEntry> entries = skeleton.entries();
+        while (entries.hasMoreElements())
+        {
+            ZipEntry entry = entries.nextElement();
+            String name = entry.getName();
+            if (!name.endsWith(CLASS_SUFFIX))
+            {
+                if (!entry.isDirectory())
+                {
+                    addRootText(skeleton.getInputStream(entry));
+                }
+                continue;
+            }
+            String className = name.substring(0, name.length() - CLASS_SUFFIX.length());
+            classes.add(className);
+            String simpleName = className.substring(className.lastIndexOf('/') + 1);
+            List<String> named = simpleNames.get(simpleName);
+            if (named == null)
+            {
+                named = new ArrayList<String>();
+                simpleNames.put(simpleName, named);
+            }
+            named.add(className);
+            if (!isShrunk(className) || isKept(className))
+            {
+                reach(className, reached, queue);
+            }
+        }
+
+        for (String rootName : rootNames)
+        {
+            resolve(rootName, classes, reached, queue);
+            if (rootName.indexOf('.') < 0 && rootName.indexOf('/') < 0 && simpleNames.containsKey(rootName))
+            {
+                for (String className : simpleNames.get(rootName))
+                {
+                    reach(className, reached, queue);
+                }
+            }
+        }
+
+        while (!queue.isEmpty())
+        {
+            String className = queue.removeFirst();
+            for (String suffix : HELPER_SUFFIXES)
+            {
+                if (classes.contains(className + suffix))
+                {
+                    reach(className + suffix, reached, queue);
+                }
+            }
+            for (String osName : TargetFactory.getOSClassNames(className.replace('/', '.')))
+            {
+                osName = osName.replace('.', '/');
+                if (classes.contains(osName))
+                {
+                    reach(osName, reached, queue);
+                }
+            }
+            InputStream inStream = skeleton.getInputStream(skeleton.getEntry(className + CLASS_SUFFIX));
+            byte[] bytes;
+            try
+            {
+                bytes = IOUtils.toByteArray(inStream);
+            }
+            finally
+            {
+                inStream.close();
+            }
+            for (String string : readConstantStrings(bytes))
+            {
+                resolve(string, classes, reached, queue);
+                Matcher matcher = DESCRIPTOR_PATTERN.matcher(string);
+                while (matcher.find())
+                {
+                    resolve(matcher.group(1), classes, reached, queue);
+                }
+            }
+        }
+
+        Set<String> unreachable = new HashSet<String>();
+        for (String className : classes)
+        {
+            if (!reached.contains(className))
+            {
+                unreachable.add(className + CLASS_SUFFIX);
+            }
+        }
+        return unreachable;
+    }
+
+    /**
+     * Reaches the classes named in a string, as a whole or as the full names it contains.
+     */
+    private void resolve(String string, Set<String> classes, Set<String> reached, LinkedList<String> queue)
+    {
+        String name = string.replace('.', '/');
+        if (classes.contains(name))
+        {
+            reach(name, reached, queue);
+            return;
+        }
+        if (name.indexOf('/') < 0)
+        {
+            return;
+        }
+        Matcher matcher = NAME_PATTERN.matcher(string);
+        while (matcher.find())
+        {
+            name = matcher.group().replace('.', '/');
+            if (name.endsWith("/class"))
+            {
+                name = name.substring(0, name.length() - "/class".length());
+            }
+            if (classes.contains(name))
+            {
+                reach(name, reached, queue);
+            }
+        }
+    }
+
+    private static void reach(String className, Set<String> reached, LinkedList<String> queue)
+    {
+        if (reached.add(className))
+        {
+            queue.add(className);
+        }
+    }
+
+    private boolean isShrunk(String className)
+    {
+        for (String aPackage : packages)
+        {
+            if (className.startsWith(aPackage))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isKept(String className)
+    {
+        String name = className.replace('/', '.');
+        for (Pattern keep : keeps)
+        {
+            if (keep.matcher(name).matches())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Pattern compileKeep(String keep)
+    {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < keep.length(); i++)
+        {
+            char c = keep.charAt(i);
+            if (c == '*' && i + 1 < keep.length() && keep.charAt(i + 1) == '*')
+            {
+                regex.append(".*");
+                i++;
+            }
+            else if (c == '*')
+            {
+                regex.append("[^.]*");
+            }
+            else
+            {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Reads the strings of the constant pool of a class: the names of the classes it uses, the
+     * descriptors of its members and its string constants. The whole class is read as text if it
+     * cannot be parsed.
+     */
+    static List<String> readConstantStrings(byte[] bytes)
+    {
+        List<String> strings = new ArrayList<String>();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        try
+        {
+            if (in.readInt() != 0xCAFEBABE)
+            {
+                throw new IOException("Not a class");
+            }
+            in.readUnsignedShort();
+            in.readUnsignedShort();
+            int count = in.readUnsignedShort();
+            for (int index = 1; index < count; index++)
+            {
+                int tag = in.readUnsignedByte();
+                switch (tag)
+                {
+                    case 1: // Utf8
+                        strings.add(in.readUTF());
+                        break;
+                    case 7: // Class
+                    case 8: // String
+                    case 16: // MethodType
+                    case 19: // Module
+                    case 20: // Package
+                        in.skipBytes(2);
+                        break;
+                    case 15: // MethodHandle
+                        in.skipBytes(3);
+                        break;
+                    case 3: // Integer
+                    case 4: // Float
+                    case 9: // Fieldref
+                    case 10: // Methodref
+                    case 11: // InterfaceMethodref
+                    case 12: // NameAndType
+                    case 17: // Dynamic
+                    case 18: // InvokeDynamic
+                        in.skipBytes(4);
+                        break;
+                    case 5: // Long
+                    case 6: // Double
+                        in.skipBytes(8);
+                        index++;
+                        break;
+                    default:
+                        throw new IOException("Unknown constant pool tag " + tag);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            strings.clear();
+            strings.add(new String(bytes, TEXT_CHARSET));
+        }
+        return strings;
+    }
+}
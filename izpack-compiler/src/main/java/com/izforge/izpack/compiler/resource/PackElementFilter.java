@@ -0,0 +1,145 @@
+package com.izforge.izpack.compiler.resource;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+import java.util.LinkedList;
+
+/**
+ * Filter leaving the <code>&lt;pack&gt;</code> elements of the <code>&lt;packs&gt;</code> of an
+ * installation file out of the parsed tree, so that the tree of a file defining a huge number of
+ * files stays small. The packs are then read one at a time by the {@link PackElementReader}.
+ * <p/>
+ * The <code>xfragment</code> elements wrapping the included documents are not counted in the
+ * path of the elements, like they are left out of the parsed tree.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class PackElementFilter extends XMLFilterImpl
+{
+    /**
+     * Element wrapping the content of the included documents
+     */
+    protected static final String FRAGMENT = "xfragment";
+
+    /**
+     * Names of the elements enclosing the current element, outside of the packs
+     */
+    private final LinkedList<String> path = new LinkedList<String>();
+
+    /**
+     * Depth of the current element in its pack, 0 outside of the packs
+     */
+    private int packDepth;
+
+    private int packCount;
+
+    /**
+     * Gets the number of packs met in the last document.
+     */
+    public int getPackCount()
+    {
+        return packCount;
+    }
+
+    @Override
+    public void startDocument() throws SAXException
+    {
+        path.clear();
+        packDepth = 0;
+        packCount = 0;
+        super.startDocument();
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException
+    {
+        if (packDepth == 0 && isPack(qName))
+        {
+            packCount++;
+        }
+        if (packDepth > 0 || isPack(qName))
+        {
+            packDepth++;
+            startPackElement(qName, atts);
+            return;
+        }
+        if (!FRAGMENT.equals(qName))
+        {
+            path.add(qName);
+        }
+        super.startElement(uri, localName, qName, atts);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException
+    {
+        if (packDepth > 0)
+        {
+            packDepth--;
+            endPackElement(qName);
+            return;
+        }
+        if (!FRAGMENT.equals(qName))
+        {
+            path.removeLast();
+        }
+        super.endElement(uri, localName, qName);
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException
+    {
+        if (packDepth > 0)
+        {
+            packCharacters(ch, start, length);
+            return;
+        }
+        super.characters(ch, start, length);
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException
+    {
+        if (packDepth == 0)
+        {
+            super.ignorableWhitespace(ch, start, length);
+        }
+    }
+
+    @Override
+    public void processingInstruction(String target, String data) throws SAXException
+    {
+        if (packDepth == 0)
+        {
+            super.processingInstruction(target, data);
+        }
+    }
+
+    /**
+     * Called for the start of the elements of a pack, which are left out of the tree.
+     */
+    protected void startPackElement(String qName, Attributes atts) throws SAXException
+    {
+    }
+
+    /**
+     * Called for the end of the elements of a pack, which are left out of the tree.
+     */
+    protected void endPackElement(String qName) throws SAXException
+    {
+    }
+
+    /**
+     * Called for the text of a pack, which is left out of the tree.
+     */
+    protected void packCharacters(char[] ch, int start, int length) throws SAXException
+    {
+    }
+
+    private boolean isPack(String qName)
+    {
+        return "pack".equals(qName) && path.size() == 2 && "packs".equals(path.getLast());
+    }
+}
@@ -0,0 +1,170 @@
+package com.izforge.izpack.compiler.resource;
+
+import com.izforge.izpack.api.adaptator.IXMLElement;
+import com.izforge.izpack.api.adaptator.XMLException;
+import com.izforge.izpack.api.adaptator.impl.XMLElementImpl;
+import com.izforge.izpack.api.adaptator.impl.XMLParser;
+import com.izforge.izpack.api.exception.CompilerException;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+
+/**
+ * Reads the <code>&lt;pack&gt;</code> elements left out by the {@link PackElementFilter}. Each
+ * pack is built as a tree of its own, with the line numbers of its elements, and handed to a
+ * handler before the next one is read, so that the memory used depends on the largest pack
+ * instead of the whole installation file.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class PackElementReader extends PackElementFilter
+{
+    /**
+     * Handler of the packs read
+     */
+    public interface PackHandler
+    {
+        void handlePack(IXMLElement pack) throws CompilerException;
+    }
+
+    private final PackHandler handler;
+
+    private DocumentBuilder documentBuilder;
+
+    private Locator locator;
+
+    private Document document;
+
+    /**
+     * The element being read, null between packs
+     */
+    private Node current;
+
+    public PackElementReader(PackHandler handler)
+    {
+        this.handler = handler;
+    }
+
+    /**
+     * Reads the packs of an installation file.
+     *
+     * @param inputSource the installation file
+     * @return the number of packs read
+     * @throws CompilerException when the handler of a pack fails
+     */
+    public int read(InputSource inputSource) throws IOException
+    {
+        try
+        {
+            documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+            setParent(XMLParser.createXMLReader());
+            // only the packs are kept
+            setContentHandler(new DefaultHandler());
+            parse(inputSource);
+        }
+        catch (ParserConfigurationException e)
+        {
+            throw new XMLException(e);
+        }
+        catch (SAXException e)
+        {
+            if (e.getException() instanceof CompilerException)
+            {
+                throw (CompilerException) e.getException();
+            }
+            String location = locator != null ? " at line " + locator.getLineNumber() : "";
+            throw new XMLException("Error in " + inputSource.getSystemId() + location + " : " + e.getMessage(), e);
+        }
+        finally
+        {
+            document = null;
+            current = null;
+        }
+        return getPackCount();
+    }
+
+    @Override
+    public void setDocumentLocator(Locator locator)
+    {
+        super.setDocumentLocator(locator);
+        this.locator = locator;
+    }
+
+    @Override
+    protected void startPackElement(String qName, Attributes atts) throws SAXException
+    {
+        if (FRAGMENT.equals(qName))
+        {
+            return;
+        }
+        if (current == null)
+        {
+            document = documentBuilder.newDocument();
+            current = document;
+        }
+        Element element = document.createElement(qName);
+        for (int i = 0; i < atts.getLength(); i++)
+        {
+            Attr attribute = document.createAttribute(atts.getQName(i));
+            attribute.setValue(atts.getValue(i));
+            element.setAttributeNode(attribute);
+        }
+        element.setUserData("ln", locator.getLineNumber(), null);
+        current.appendChild(element);
+        current = element;
+    }
+
+    @Override
+    protected void endPackElement(String qName) throws SAXException
+    {
+        if (FRAGMENT.equals(qName))
+        {
+            return;
+        }
+        current = current.getParentNode();
+        if (current == document)
+        {
+            IXMLElement pack = new XMLElementImpl(document.getDocumentElement());
+            current = null;
+            document = null;
+            try
+            {
+                handler.handlePack(pack);
+            }
+            catch (CompilerException e)
+            {
+                throw new SAXException(e);
+            }
+        }
+    }
+
+    @Override
+    protected void packCharacters(char[] ch, int start, int length) throws SAXException
+    {
+        if (current == null || current == document)
+        {
+            return;
+        }
+        Node last = current.getLastChild();
+        if (last instanceof Text)
+        {
+            ((Text) last).appendData(new String(ch, start, length));
+        }
+        else
+        {
+            current.appendChild(document.createTextNode(new String(ch, start, length)));
+        }
+    }
+}
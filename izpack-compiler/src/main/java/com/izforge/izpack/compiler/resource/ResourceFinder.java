@@ -8,10 +8,12 @@ import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.data.PropertyManager;
 import com.izforge.izpack.compiler.helper.AssertionHelper;
 import com.izforge.izpack.compiler.helper.XmlCompilerHelper;
+import org.xml.sax.InputSource;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.net.URL;
 
@@ -20,6 +22,11 @@ import java.net.URL;
  */
 public class ResourceFinder
 {
+    /**
+     * User data of the trees whose packs are left out, to be read by {@link #readPacks}
+     */
+    private static final String PACKS_LEFT_OUT = "packsLeftOut";
+
     private AssertionHelper assertionHelper;
     private CompilerData compilerData;
     private PropertyManager propertyManager;
@@ -91,7 +98,7 @@ public class ResourceFinder
 
             if (!resource.isAbsolute())
             {
-                resource = new File(CompilerData.IZPACK_HOME, path);
+                resource = new File(compilerData.getHome(), path);
             }
 
             if (resource.exists())
@@ -129,7 +136,9 @@ public class ResourceFinder
     }
 
     /**
-     * Returns the IXMLElement representing the installation XML file.
+     * Returns the IXMLElement representing the installation XML file. The
+     * <code>&lt;pack&gt;</code> elements are left out of the tree, they are read one at a time by
+     * {@link #readPacks}.
      *
      * @return The XML tree.
      * @throws com.izforge.izpack.api.exception.CompilerException
@@ -138,7 +147,7 @@ public class ResourceFinder
      */
     public IXMLElement getXMLTree() throws IOException
     {
-        IXMLParser parser = new XMLParser();
+        IXMLParser parser = new XMLParser(new PackElementFilter());
         IXMLElement data;
         if (compilerData.getInstallFile() != null)
         {
@@ -168,7 +177,43 @@ public class ResourceFinder
             assertionHelper.parseError(data, "the file version is different from the compiler version");
         }
 
+        data.getElement().setUserData(PACKS_LEFT_OUT, Boolean.TRUE, null);
+
         // We finally return the tree
         return data;
     }
+
+    /**
+     * Reads the packs left out of a tree returned by {@link #getXMLTree()}, handing them one at a
+     * time to a handler.
+     *
+     * @param data    the tree
+     * @param handler the handler of the packs
+     * @return the number of packs read, 0 if the tree holds its packs
+     * @throws IOException for errors reading the installation file, or of the handler
+     */
+    public int readPacks(IXMLElement data, PackElementReader.PackHandler handler) throws IOException
+    {
+        if (data.getElement().getUserData(PACKS_LEFT_OUT) == null)
+        {
+            return 0;
+        }
+        PackElementReader reader = new PackElementReader(handler);
+        if (compilerData.getInstallFile() == null)
+        {
+            return reader.read(new InputSource(new StringReader(compilerData.getInstallText())));
+        }
+        File file = new File(compilerData.getInstallFile()).getAbsoluteFile();
+        FileInputStream inputStream = new FileInputStream(file);
+        try
+        {
+            InputSource inputSource = new InputSource(inputStream);
+            inputSource.setSystemId(file.getAbsolutePath());
+            return reader.read(inputSource);
+        }
+        finally
+        {
+            inputStream.close();
+        }
+    }
 }
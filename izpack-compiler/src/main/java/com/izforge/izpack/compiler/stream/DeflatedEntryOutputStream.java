@@ -0,0 +1,107 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.compiler.stream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Deflates the data of a zip entry, without zlib header, and computes the CRC and sizes the entry
+ * is then written with by {@link com.izforge.izpack.util.zip.RawZipOutputStream#writeRawEntry}.
+ * The deflating is then done by the thread writing into this stream, not by the one writing the
+ * zip.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class DeflatedEntryOutputStream extends DeflaterOutputStream
+{
+    private final CRC32 crc = new CRC32();
+
+    private long size;
+
+    private long compressedSize;
+
+    private boolean closed = false;
+
+    /**
+     * @param out   the stream receiving the deflated data
+     * @param level the compression level, the one of the zip for its entries to be the same
+     */
+    public DeflatedEntryOutputStream(OutputStream out, int level)
+    {
+        super(out, new Deflater(level, true), 8192);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        super.write(b, off, len);
+        crc.update(b, off, len);
+        size += len;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (!closed)
+        {
+            closed = true;
+            try
+            {
+                finish();
+                compressedSize = def.getBytesWritten();
+                out.close();
+            }
+            finally
+            {
+                def.end();
+            }
+        }
+    }
+
+    /**
+     * Gets the CRC-32 of the data written.
+     */
+    public long getCrc()
+    {
+        return crc.getValue();
+    }
+
+    /**
+     * Gets the number of bytes written.
+     */
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the number of deflated bytes, once closed.
+     */
+    public long getCompressedSize()
+    {
+        return compressedSize;
+    }
+}
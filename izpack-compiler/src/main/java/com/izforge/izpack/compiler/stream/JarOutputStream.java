@@ -22,10 +22,15 @@
 
 package com.izforge.izpack.compiler.stream;
 
+import com.izforge.izpack.util.zip.RawZipOutputStream;
+
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 //import java.util.zip.ZipException;
@@ -46,14 +51,17 @@ import java.util.jar.Manifest;
  * java.util.jar.JarOutputStream. Therefore we create an own class
  * which supports it. Really the hole work will be delegated to the
  * ZipOutputStream from the apache team which solves the problem.
+ * The deflated entries of merged jars are copied without being inflated,
+ * see {@link RawZipOutputStream}.
  *
  * @author Klaus Bartz
  */
-public class JarOutputStream extends org.apache.tools.zip.ZipOutputStream
+public class JarOutputStream extends RawZipOutputStream
 {
     private static final int JAR_MAGIC = 0xCAFE;
     private boolean firstEntry = true;
     private boolean preventClose = false;
+    private final Set<String> entryNames = new LinkedHashSet<String>();
 
     /**
      * Creates a new <code>JarOutputStream</code> with no manifest.
@@ -143,6 +151,17 @@ public class JarOutputStream extends org.apache.tools.zip.ZipOutputStream
             firstEntry = false;
         }
         super.putNextEntry(ze);
+        entryNames.add(ze.getName());
+    }
+
+    /**
+     * Returns the names of the entries written so far, in the order they were written.
+     *
+     * @return the names of the entries
+     */
+    public Set<String> getEntryNames()
+    {
+        return Collections.unmodifiableSet(entryNames);
     }
 
     /**
@@ -0,0 +1,290 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.stream;
+
+import org.apache.tools.bzip2.CBZip2OutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Stream compressing its data to bzip2 on several threads. The result has the format written by
+ * {@link CBZip2OutputStream}, so it is read back by <code>CBZip2InputStream</code>.
+ * <p/>
+ * The blocks of a bzip2 stream are compressed independently of each other. The data is cut into
+ * chunks small enough to always give a single block, each chunk is compressed on its own by a
+ * {@link CBZip2OutputStream}, and the bits of the blocks are then copied in order into one
+ * stream, whose combined CRC is computed from the CRCs of the blocks.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class ParallelBZip2OutputStream extends OutputStream
+{
+    /**
+     * The 48 bits closing a bzip2 stream, followed by the combined CRC
+     */
+    private static final long END_OF_STREAM_MAGIC = 0x177245385090L;
+
+    /**
+     * Size of the stream header written by {@link CBZip2OutputStream}: 'h' and the block size
+     */
+    private static final int HEADER_BITS = 16;
+
+    private final OutputStream out;
+
+    private final int blockSize;
+
+    private final ExecutorService executor;
+
+    /**
+     * Number of chunks compressed ahead of the one being written, bounding the memory used
+     */
+    private final int maxPending;
+
+    private final LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+
+    private byte[] chunk;
+
+    private int chunkLength = 0;
+
+    private int combinedCRC = 0;
+
+    private long bitBuffer = 0;
+
+    private int bitCount = 0;
+
+    private boolean closed = false;
+
+    /**
+     * Creates the stream and writes the bzip2 header.
+     *
+     * @param out       the stream receiving the compressed data
+     * @param blockSize the block size, from 1 to 9 hundred thousand bytes
+     * @param threads   the number of threads compressing the blocks
+     */
+    public ParallelBZip2OutputStream(OutputStream out, int blockSize, int threads) throws IOException
+    {
+        this.out = out;
+        this.blockSize = Math.max(1, Math.min(9, blockSize));
+        this.maxPending = Math.max(1, threads) * 2;
+        // the run length encoding done before the block sort grows the data by a quarter at most,
+        // a chunk of this size always fits in a single block
+        chunk = new byte[(this.blockSize * 100000 - 20) / 5 * 4];
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "izpack-bzip2");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        out.write('h');
+        out.write('0' + this.blockSize);
+    }
+
+    public void write(int b) throws IOException
+    {
+        chunk[chunkLength++] = (byte) b;
+        if (chunkLength == chunk.length)
+        {
+            submitChunk();
+        }
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        while (len > 0)
+        {
+            int count = Math.min(len, chunk.length - chunkLength);
+            System.arraycopy(b, off, chunk, chunkLength, count);
+            chunkLength += count;
+            off += count;
+            len -= count;
+            if (chunkLength == chunk.length)
+            {
+                submitChunk();
+            }
+        }
+    }
+
+    /**
+     * Compresses the remaining data and writes the end of the bzip2 stream, leaving the
+     * underlying stream open.
+     */
+    public void finish() throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+        closed = true;
+        try
+        {
+            if (chunkLength > 0)
+            {
+                submitChunk();
+            }
+            while (!pending.isEmpty())
+            {
+                writeBlocks(pending.removeFirst());
+            }
+            writeBits(END_OF_STREAM_MAGIC >>> 24, 24);
+            writeBits(END_OF_STREAM_MAGIC & 0xffffff, 24);
+            writeBits(combinedCRC & 0xffffffffL, 32);
+            if (bitCount > 0)
+            {
+                writeBits(0, 8 - bitCount);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    public void flush() throws IOException
+    {
+        // like CBZip2OutputStream, a block is only written once complete
+        out.flush();
+    }
+
+    public void close() throws IOException
+    {
+        finish();
+        out.close();
+    }
+
+    private void submitChunk() throws IOException
+    {
+        final byte[] data = chunk;
+        final int length = chunkLength;
+        pending.add(executor.submit(new Callable<byte[]>()
+        {
+            public byte[] call() throws Exception
+            {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(length / 2);
+                CBZip2OutputStream bzip2 = new CBZip2OutputStream(buffer, blockSize);
+                bzip2.write(data, 0, length);
+                bzip2.close();
+                return buffer.toByteArray();
+            }
+        }));
+        chunk = new byte[data.length];
+        chunkLength = 0;
+        while (pending.size() > maxPending)
+        {
+            writeBlocks(pending.removeFirst());
+        }
+    }
+
+    /**
+     * Copies the block of a compressed chunk and folds its CRC into the combined CRC.
+     */
+    private void writeBlocks(Future<byte[]> future) throws IOException
+    {
+        byte[] stream;
+        try
+        {
+            stream = future.get();
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing");
+        }
+        catch (ExecutionException exception)
+        {
+            IOException ioException = new IOException("Failed to compress block");
+            ioException.initCause(exception.getCause());
+            throw ioException;
+        }
+
+        // the stream ends with the magic, the 32 bits CRC and up to 7 bits of padding
+        long end = -1;
+        for (int padding = 0; padding < 8 && end < 0; padding++)
+        {
+            long position = stream.length * 8L - padding - 80;
+            if (position >= HEADER_BITS && readBits(stream, position, 48) == END_OF_STREAM_MAGIC)
+            {
+                end = position;
+            }
+        }
+        if (end < 0)
+        {
+            throw new IOException("Unexpected bzip2 block stream");
+        }
+
+        long position = HEADER_BITS;
+        while (end - position >= 8)
+        {
+            writeBits(readBits(stream, position, 8), 8);
+            position += 8;
+        }
+        int remaining = (int) (end - position);
+        if (remaining > 0)
+        {
+            writeBits(readBits(stream, position, remaining), remaining);
+        }
+
+        int crc = (int) readBits(stream, end + 48, 32);
+        combinedCRC = ((combinedCRC << 1) | (combinedCRC >>> 31)) ^ crc;
+    }
+
+    /**
+     * Reads up to 56 bits, most significant first, starting at a bit position.
+     */
+    private static long readBits(byte[] data, long position, int count)
+    {
+        long value = 0;
+        int index = (int) (position >>> 3);
+        int skip = (int) (position & 7);
+        int bits = 0;
+        while (bits < skip + count)
+        {
+            value = (value << 8) | (data[index++] & 0xff);
+            bits += 8;
+        }
+        return (value >>> (bits - skip - count)) & ((1L << count) - 1);
+    }
+
+    /**
+     * Writes up to 32 bits, most significant first.
+     */
+    private void writeBits(long value, int count) throws IOException
+    {
+        bitBuffer = (bitBuffer << count) | (value & ((1L << count) - 1));
+        bitCount += count;
+        while (bitCount >= 8)
+        {
+            bitCount -= 8;
+            out.write((int) (bitBuffer >>> bitCount) & 0xff);
+        }
+    }
+}
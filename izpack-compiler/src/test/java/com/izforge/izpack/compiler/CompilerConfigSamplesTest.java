@@ -1,6 +1,9 @@
 package com.izforge.izpack.compiler;
 
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.PackTable;
 import com.izforge.izpack.compiler.container.TestCompilerContainer;
+import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.matcher.ZipMatcher;
 import com.izforge.izpack.test.Container;
 import com.izforge.izpack.test.InstallFile;
@@ -9,10 +12,13 @@ import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.io.IOUtils;
 import org.hamcrest.collection.IsCollectionContaining;
+import org.hamcrest.core.Is;
 import org.hamcrest.core.IsNot;
+import org.hamcrest.core.IsNull;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.util.List;
@@ -28,11 +34,13 @@ public class CompilerConfigSamplesTest
 {
     private File out;
     private CompilerConfig compilerConfig;
+    private CompilerData compilerData;
 
-    public CompilerConfigSamplesTest(File out, CompilerConfig compilerConfig)
+    public CompilerConfigSamplesTest(File out, CompilerConfig compilerConfig, CompilerData compilerData)
     {
         this.out = out;
         this.compilerConfig = compilerConfig;
+        this.compilerData = compilerData;
     }
 
     @Test
@@ -76,5 +84,115 @@ public class CompilerConfigSamplesTest
 
     }
 
+    @Test
+    @InstallFile("samples/multiplePacks.xml")
+    public void packsWrittenConcurrentlyShouldKeepBackReferences() throws Exception
+    {
+        compilerData.setPackThreads(3);
+        compilerConfig.executeCompiler();
+        ZipFile zipFile = new ZipFile(out);
+        InputStream packStream = zipFile.getInputStream(zipFile.getEntry("resources/packs/pack-Docs"));
+        try
+        {
+            PackTable table = PackTable.read(packStream);
+            assertThat(table.size(), Is.is(1));
+            PackFile packFile = table.getFile(0);
+            assertThat(packFile.isBackReference(), Is.is(true));
+            assertThat(packFile.previousPackId, Is.is("Base"));
+        }
+        finally
+        {
+            packStream.close();
+        }
+        assertThat(out, ZipMatcher.isZipContainingFile("resources/packs/pack-Listeners"));
+    }
+
+    @Test
+    @InstallFile("samples/multiplePacks.xml")
+    public void identicalContentFromAnotherPathShouldBeBackReferenced() throws Exception
+    {
+        compilerConfig.executeCompiler();
+        ZipFile zipFile = new ZipFile(out);
+        InputStream packStream = zipFile.getInputStream(zipFile.getEntry("resources/packs/pack-Listeners"));
+        try
+        {
+            PackTable table = PackTable.read(packStream);
+            assertThat(table.size(), Is.is(3));
+            PackFile listeners = table.getFile(0);
+            assertThat(listeners.isBackReference(), Is.is(false));
+            assertThat(table.getOffset(0), Is.is(0L));
+            PackFile duplicated = table.getFile(1);
+            assertThat(duplicated.isBackReference(), Is.is(true));
+            assertThat(duplicated.previousPackId, Is.is("Base"));
+            assertThat(table.getOffset(1), Is.is(-1L));
+        }
+        finally
+        {
+            packStream.close();
+        }
+    }
 
-}
\ No newline at end of file
+    @Test
+    @InstallFile("samples/archiveContent.xml")
+    public void archiveContentShouldBeStreamedIntoPack() throws Exception
+    {
+        compilerConfig.executeCompiler();
+        ZipFile zipFile = new ZipFile(out);
+        DataInputStream packStream = new DataInputStream(zipFile.getInputStream(zipFile.getEntry("resources/packs/pack-Base")));
+        try
+        {
+            PackTable table = PackTable.read(packStream);
+            assertThat(table.size(), Is.is(4));
+            PackFile readme = table.getFile(0);
+            assertThat(readme.getTargetPath(), Is.is("$INSTALL_PATH/archive/readme.txt"));
+            assertThat(table.getOffset(0), Is.is(0L));
+            byte[] content = new byte[(int) readme.length()];
+            packStream.readFully(content);
+            assertThat(new String(content, "UTF-8"), Is.is("Content of the archive\n"));
+            PackFile data = table.getFile(1);
+            assertThat(data.getTargetPath(), Is.is("$INSTALL_PATH/archive/lib/data.txt"));
+            assertThat(table.getOffset(1), Is.is(readme.length()));
+            PackFile lib = table.getFile(2);
+            assertThat(lib.isDirectory(), Is.is(true));
+            assertThat(lib.getTargetPath(), Is.is("$INSTALL_PATH/archive/lib"));
+        }
+        finally
+        {
+            packStream.close();
+        }
+    }
+
+    @Test
+    @InstallFile("samples/uncompressed.xml")
+    public void compressedFileShouldBeStoredUncompressed() throws Exception
+    {
+        compilerConfig.executeCompiler();
+        ZipFile zipFile = new ZipFile(out);
+        InputStream packStream = zipFile.getInputStream(zipFile.getEntry("resources/packs/pack-Base"));
+        try
+        {
+            PackTable table = PackTable.read(packStream);
+            assertThat(table.size(), Is.is(3));
+            PackFile archive = table.getFile(0);
+            assertThat(archive.isUncompressed(), Is.is(true));
+            assertThat(table.getStreamKey(0), Is.is(0));
+            assertThat(table.getOffset(0), Is.is(-1L));
+            PackFile descriptor = table.getFile(1);
+            assertThat(descriptor.isUncompressed(), Is.is(false));
+            assertThat(table.getOffset(1), Is.is(0L));
+            // below the minimum size, kept in the pack
+            PackFile smallArchive = table.getFile(2);
+            assertThat(smallArchive.isUncompressed(), Is.is(false));
+            assertThat(table.getOffset(2), Is.is(descriptor.length()));
+            assertThat(zipFile.getEntry("resources/packs/uncompressed-1"), IsNull.nullValue());
+
+            ZipArchiveEntry entry = zipFile.getEntry("resources/packs/uncompressed-0");
+            assertThat(entry.getMethod(), Is.is(ZipArchiveEntry.STORED));
+            assertThat(entry.getSize(), Is.is(archive.length()));
+        }
+        finally
+        {
+            packStream.close();
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.izforge.izpack.compiler;
 
 import com.izforge.izpack.compiler.container.TestCompilerContainer;
+import com.izforge.izpack.compiler.data.CompilerData;
+import com.izforge.izpack.compiler.listener.BuildReport;
 import com.izforge.izpack.matcher.MergeMatcher;
 import com.izforge.izpack.matcher.ZipMatcher;
 import com.izforge.izpack.merge.MergeManagerImpl;
@@ -9,6 +11,7 @@ import com.izforge.izpack.merge.resolve.PathResolver;
 import com.izforge.izpack.test.Container;
 import com.izforge.izpack.test.InstallFile;
 import com.izforge.izpack.test.junit.PicoRunner;
+import org.apache.commons.io.FileUtils;
 import org.apache.maven.shared.jar.JarAnalyzer;
 import org.apache.maven.shared.jar.classes.JarClasses;
 import org.apache.maven.shared.jar.classes.JarClassesAnalysis;
@@ -22,6 +25,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 /**
@@ -36,13 +40,15 @@ public class CompilerConfigTest
     private CompilerConfig compilerConfig;
     private PathResolver pathResolver;
     private MergeManagerImpl mergeManager;
+    private CompilerData compilerData;
 
-    public CompilerConfigTest(File out, CompilerConfig compilerConfig, PathResolver pathResolver, MergeManagerImpl mergeManager)
+    public CompilerConfigTest(File out, CompilerConfig compilerConfig, PathResolver pathResolver, MergeManagerImpl mergeManager, CompilerData compilerData)
     {
         this.out = out;
         this.compilerConfig = compilerConfig;
         this.pathResolver = pathResolver;
         this.mergeManager = mergeManager;
+        this.compilerData = compilerData;
     }
 
     @Test
@@ -55,6 +61,28 @@ public class CompilerConfigTest
         assertThat(out, ZipMatcher.isZipContainingFile("com/izforge/izpack/img/JFrameIcon.png"));
     }
 
+    @Test
+    public void reportShouldBeWrittenNextToInstaller() throws Exception
+    {
+        compilerData.setBuildReport(true);
+        compilerConfig.executeCompiler();
+        File report = BuildReport.getReportFile(out.getPath());
+        assertThat(report.getParentFile(), is(out.getAbsoluteFile().getParentFile()));
+        String json = FileUtils.readFileToString(report, "UTF-8");
+        assertThat(json.contains("{\"phase\": \"addPacks\""), is(true));
+        assertThat(json.contains("{\"phase\": \"writeSkeletonInstaller\""), is(true));
+        assertThat(json.contains("{\"phase\": \"writePack\", \"pack\": "), is(true));
+        assertThat(json.contains("\"peakProcessHeap\": "), is(true));
+        report.delete();
+    }
+
+    @Test
+    public void reportShouldOnlyBeWrittenOnRequest() throws Exception
+    {
+        compilerConfig.executeCompiler();
+        assertThat(BuildReport.getReportFile(out.getPath()).exists(), is(false));
+    }
+
     @Test
     public void mergeManagerShouldGetTheMergeableFromPanel() throws Exception
     {
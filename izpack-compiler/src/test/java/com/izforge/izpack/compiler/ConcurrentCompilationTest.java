@@ -0,0 +1,234 @@
+package com.izforge.izpack.compiler;
+
+import com.izforge.izpack.compiler.bootstrap.CompilerLauncher;
+import com.izforge.izpack.compiler.container.CompilerContainer;
+import com.izforge.izpack.compiler.data.CompilerData;
+import com.izforge.izpack.util.FileUtil;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.hamcrest.core.Is;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Stress test of compilations running at the same time in a JVM, like the executions of the maven
+ * plugin in a parallel build.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class ConcurrentCompilationTest
+{
+    private static final String[] SAMPLES = {"samples/helloAndFinish.xml", "samples/archiveContent.xml",
+            "samples/uncompressed.xml"};
+
+    /**
+     * Number of times each sample is compiled concurrently
+     */
+    private static final int ROUNDS = 3;
+
+    /**
+     * Entry holding the path of the installer, which differs from an output to the other
+     */
+    private static final String INFO_ENTRY = "resources/info";
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        directory = File.createTempFile("izpack-concurrent", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void concurrentCompilationsShouldProduceSameInstallers() throws Exception
+    {
+        List<Map<String, byte[]>> references = new ArrayList<Map<String, byte[]>>();
+        for (int sample = 0; sample < SAMPLES.length; sample++)
+        {
+            File out = new File(directory, "reference" + sample + ".jar");
+            compile(SAMPLES[sample], out);
+            references.add(readEntries(out));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(SAMPLES.length * ROUNDS);
+        try
+        {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<File>> outputs = new ArrayList<Future<File>>();
+            for (int round = 0; round < ROUNDS; round++)
+            {
+                for (int sample = 0; sample < SAMPLES.length; sample++)
+                {
+                    final String installFile = SAMPLES[sample];
+                    final File out = new File(directory, "concurrent" + round + "-" + sample + ".jar");
+                    outputs.add(executor.submit(new Callable<File>()
+                    {
+                        public File call() throws Exception
+                        {
+                            start.await();
+                            compile(installFile, out);
+                            return out;
+                        }
+                    }));
+                }
+            }
+            start.countDown();
+
+            for (int index = 0; index < outputs.size(); index++)
+            {
+                Map<String, byte[]> reference = references.get(index % SAMPLES.length);
+                Map<String, byte[]> entries = readEntries(outputs.get(index).get());
+                assertThat(new ArrayList<String>(entries.keySet()),
+                        Is.is(new ArrayList<String>(reference.keySet())));
+                for (Map.Entry<String, byte[]> entry : reference.entrySet())
+                {
+                    if (!INFO_ENTRY.equals(entry.getKey()))
+                    {
+                        assertThat(entry.getKey(), entries.get(entry.getKey()), Is.is(entry.getValue()));
+                    }
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void concurrentCompilationsShouldKeepTheirOwnHome() throws Exception
+    {
+        String defaultHome = new CompilerData("install.xml", ".", "install.jar").getHome();
+        final File firstHome = new File(directory, "firstHome");
+        final File secondHome = new File(directory, "secondHome");
+        firstHome.mkdirs();
+        secondHome.mkdirs();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            final CountDownLatch start = new CountDownLatch(1);
+            Future<CompilerData> first = executor.submit(new Callable<CompilerData>()
+            {
+                public CompilerData call() throws Exception
+                {
+                    start.await();
+                    return launch(SAMPLES[0], new File(directory, "first.jar"), "-h", firstHome.getAbsolutePath());
+                }
+            });
+            Future<CompilerData> second = executor.submit(new Callable<CompilerData>()
+            {
+                public CompilerData call() throws Exception
+                {
+                    start.await();
+                    return launch(SAMPLES[0], new File(directory, "second.jar"), "-h", secondHome.getAbsolutePath());
+                }
+            });
+            start.countDown();
+            assertThat(first.get().getHome(), Is.is(firstHome.getAbsolutePath()));
+            assertThat(second.get().getHome(), Is.is(secondHome.getAbsolutePath()));
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        // a later compilation without home still gets the default one
+        assertThat(launch(SAMPLES[0], new File(directory, "third.jar")).getHome(), Is.is(defaultHome));
+    }
+
+    /**
+     * Compiles a sample through the command line launcher, like the compiler daemon.
+     *
+     * @return the compiler data of the compilation
+     */
+    private CompilerData launch(String installFile, File out, String... options) throws Exception
+    {
+        File installerFile = FileUtil.convertUrlToFile(getClass().getClassLoader().getResource(installFile));
+        final List<CompilerContainer> containers = new ArrayList<CompilerContainer>();
+        CompilerLauncher launcher = new CompilerLauncher()
+        {
+            @Override
+            protected CompilerContainer createCompilerContainer()
+            {
+                CompilerContainer compilerContainer = super.createCompilerContainer();
+                containers.add(compilerContainer);
+                return compilerContainer;
+            }
+        };
+        List<String> args = new ArrayList<String>(Arrays.asList(installerFile.getAbsolutePath(),
+                "-b", installerFile.getParentFile().getAbsolutePath(), "-o", out.getAbsolutePath()));
+        args.addAll(Arrays.asList(options));
+        launcher.launch(args.toArray(new String[args.size()]), null);
+        return containers.get(0).getComponent(CompilerData.class);
+    }
+
+    /**
+     * Compiles a sample in its own container, like the maven plugin and the ant task.
+     */
+    private void compile(String installFile, File out) throws Exception
+    {
+        File installerFile = FileUtil.convertUrlToFile(getClass().getClassLoader().getResource(installFile));
+        CompilerContainer compilerContainer = new CompilerContainer();
+        compilerContainer.initBindings();
+        compilerContainer.addConfig("installFile", installerFile.getAbsolutePath());
+        compilerContainer.addComponent(CompilerData.class, new CompilerData(installerFile.getAbsolutePath(),
+                installerFile.getParentFile().getAbsolutePath(), out.getAbsolutePath()));
+        compilerContainer.getComponent(CompilerConfig.class).executeCompiler();
+    }
+
+    private static Map<String, byte[]> readEntries(File jar) throws Exception
+    {
+        Map<String, byte[]> result = new LinkedHashMap<String, byte[]>();
+        ZipFile zip = new ZipFile(jar);
+        try
+        {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements())
+            {
+                ZipEntry entry = entries.nextElement();
+                InputStream in = zip.getInputStream(entry);
+                try
+                {
+                    result.put(entry.getName(), IOUtils.toByteArray(in));
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+        return result;
+    }
+}
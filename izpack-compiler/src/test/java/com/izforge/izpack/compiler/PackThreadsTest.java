@@ -0,0 +1,125 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler;
+
+import com.izforge.izpack.compiler.container.CompilerContainer;
+import com.izforge.izpack.compiler.data.CompilerData;
+import com.izforge.izpack.util.FileUtil;
+import com.izforge.izpack.util.zip.RawZipFile;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.hamcrest.core.Is;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test of the installers built with the packs written on several threads
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class PackThreadsTest
+{
+    /**
+     * Entry holding the path of the installer, which differs from an output to the other
+     */
+    private static final String INFO_ENTRY = "resources/info";
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        directory = File.createTempFile("izpack-threads", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void concurrentPacksShouldBeDeflatedAsSerialOnes() throws Exception
+    {
+        File serial = new File(directory, "serial.jar");
+        File concurrent = new File(directory, "concurrent.jar");
+        compile("samples/multiplePacks.xml", serial, 1);
+        compile("samples/multiplePacks.xml", concurrent, 3);
+
+        Map<String, byte[]> reference = readRawEntries(serial);
+        Map<String, byte[]> entries = readRawEntries(concurrent);
+        assertThat(new ArrayList<String>(entries.keySet()), Is.is(new ArrayList<String>(reference.keySet())));
+        assertThat(reference.containsKey("resources/packs/pack-Docs"), Is.is(true));
+        for (Map.Entry<String, byte[]> entry : reference.entrySet())
+        {
+            if (!INFO_ENTRY.equals(entry.getKey()))
+            {
+                assertThat(entry.getKey(), entries.get(entry.getKey()), Is.is(entry.getValue()));
+            }
+        }
+    }
+
+    private void compile(String installFile, File out, int packThreads) throws Exception
+    {
+        File installerFile = FileUtil.convertUrlToFile(getClass().getClassLoader().getResource(installFile));
+        CompilerData compilerData = new CompilerData(installerFile.getAbsolutePath(),
+                installerFile.getParentFile().getAbsolutePath(), out.getAbsolutePath());
+        compilerData.setPackThreads(packThreads);
+        CompilerContainer compilerContainer = new CompilerContainer();
+        compilerContainer.initBindings();
+        compilerContainer.addConfig("installFile", installerFile.getAbsolutePath());
+        compilerContainer.addComponent(CompilerData.class, compilerData);
+        compilerContainer.getComponent(CompilerConfig.class).executeCompiler();
+    }
+
+    /**
+     * Reads the entries as stored in the jar, still deflated.
+     */
+    private static Map<String, byte[]> readRawEntries(File jar) throws Exception
+    {
+        Map<String, byte[]> result = new LinkedHashMap<String, byte[]>();
+        RawZipFile zip = RawZipFile.open(jar);
+        try
+        {
+            for (RawZipFile.Entry entry : zip.getEntries())
+            {
+                InputStream in = zip.getRawInputStream(entry);
+                result.put(entry.getName(), IOUtils.toByteArray(in));
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+        return result;
+    }
+}
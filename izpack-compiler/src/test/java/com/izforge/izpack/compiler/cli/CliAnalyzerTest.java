@@ -1,6 +1,7 @@
 package com.izforge.izpack.compiler.cli;
 
 import com.izforge.izpack.compiler.data.CompilerData;
+import org.apache.commons.cli.ParseException;
 import org.hamcrest.core.Is;
 import org.junit.Before;
 import org.junit.Test;
@@ -40,7 +41,9 @@ public class CliAnalyzerTest
     {
         CompilerData data = analyzer.parseArgs(new String[]{"myInstall.xml", "-h/mon/che min/"});
         assertThat(data.getInstallFile(), Is.is("myInstall.xml"));
-        assertThat(CompilerData.IZPACK_HOME, Is.is("/mon/che min/"));
+        assertThat(data.getHome(), Is.is("/mon/che min/"));
+        // the home of the other compilations is left alone
+        assertThat(CompilerData.IZPACK_HOME, Is.is("."));
     }
 
     @Test
@@ -61,4 +64,31 @@ public class CliAnalyzerTest
         assertThat(data.getOutput(), Is.is("graou.jar"));
     }
 
+    @Test
+    public void buildReportShouldBeAskedFor() throws Exception
+    {
+        assertThat(analyzer.parseArgs(new String[]{"myInstall.xml"}).isBuildReport(), Is.is(false));
+        assertThat(analyzer.parseArgs(new String[]{"myInstall.xml", "-r"}).isBuildReport(), Is.is(true));
+    }
+
+    @Test
+    public void countsShouldBeParsed() throws Exception
+    {
+        CompilerData data = analyzer.parseArgs(new String[]{"myInstall.xml", "-t", "4", "-m", "16"});
+        assertThat(data.getPackThreads(), Is.is(4));
+        assertThat(data.getPack200MemoryLimit(), Is.is(16));
+    }
+
+    @Test(expected = ParseException.class)
+    public void zeroThreadsShouldBeRejected() throws Exception
+    {
+        analyzer.parseArgs(new String[]{"myInstall.xml", "-t", "0"});
+    }
+
+    @Test(expected = ParseException.class)
+    public void zeroPack200MemoryShouldBeRejected() throws Exception
+    {
+        analyzer.parseArgs(new String[]{"myInstall.xml", "-m", "0"});
+    }
+
 }
@@ -13,6 +13,7 @@ import com.izforge.izpack.compiler.data.PropertyManager;
 import com.izforge.izpack.compiler.helper.AssertionHelper;
 import com.izforge.izpack.compiler.helper.CompilerHelper;
 import com.izforge.izpack.compiler.helper.XmlCompilerHelper;
+import com.izforge.izpack.compiler.listener.BuildReport;
 import com.izforge.izpack.compiler.listener.CmdlinePackagerListener;
 import com.izforge.izpack.compiler.packager.IPackager;
 import com.izforge.izpack.compiler.resource.ResourceFinder;
@@ -44,6 +45,7 @@ public class TestCompilerContainerMock extends AbstractContainer
         pico
                 .addComponent(Mockito.mock(CliAnalyzer.class))
                 .addComponent(Mockito.mock(CmdlinePackagerListener.class))
+                .addComponent(BuildReport.class)
                 .addComponent(Mockito.mock(Compiler.class))
                 .addComponent(Mockito.mock(PathResolver.class))
                 .addComponent(Mockito.mock(CompilerHelper.class))
@@ -0,0 +1,145 @@
+package com.izforge.izpack.compiler.daemon;
+
+import com.izforge.izpack.util.FileUtil;
+import org.apache.commons.io.FileUtils;
+import org.hamcrest.core.Is;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test of the builds submitted to a compiler daemon
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class CompilerDaemonTest
+{
+    private File directory;
+
+    private File stateFile;
+
+    private CompilerDaemon daemon;
+
+    private Thread thread;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        directory = File.createTempFile("izpack-daemon", "");
+        directory.delete();
+        directory.mkdirs();
+        stateFile = new File(directory, "compiler-daemon");
+        daemon = new CompilerDaemon(stateFile);
+        daemon.start();
+        thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    daemon.run();
+                }
+                catch (Exception e)
+                {
+                    e.printStackTrace();
+                }
+            }
+        };
+        thread.start();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        daemon.stop();
+        thread.join();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void buildsShouldBeCompiledByTheDaemon() throws Exception
+    {
+        File installFile = FileUtil.convertUrlToFile(getClass().getClassLoader().getResource("samples/helloAndFinish.xml"));
+        CompilerClient client = new CompilerClient(stateFile);
+        for (int build = 0; build < 2; build++)
+        {
+            File out = new File(directory, "install" + build + ".jar");
+            int exitCode = client.submit(new String[]{installFile.getAbsolutePath(),
+                    "-b", installFile.getParentFile().getAbsolutePath(), "-o", out.getAbsolutePath()});
+            assertThat(exitCode, Is.is(0));
+            assertThat(out.isFile(), Is.is(true));
+        }
+    }
+
+    @Test
+    public void jarRebuiltBetweenBuildsShouldBeListedAgain() throws Exception
+    {
+        CompilerClient client = new CompilerClient(stateFile);
+        File jar = new File(directory, "panels.jar");
+        for (String panel : new String[]{"FirstPanel", "RenamedPanel"})
+        {
+            // the panel of the previous build is no longer in the jar
+            buildPanelJar(jar, panel);
+            File installFile = new File(directory, "install.xml");
+            FileUtils.writeStringToFile(installFile, "<installation version=\"1.0\">\n"
+                    + "    <info><appname>Test</appname><appversion>1.0</appversion></info>\n"
+                    + "    <guiprefs width=\"640\" height=\"480\" resizable=\"yes\"/>\n"
+                    + "    <locale><langpack iso3=\"eng\"/></locale>\n"
+                    + "    <jar src=\"panels.jar\" stage=\"both\"/>\n"
+                    + "    <panels><panel classname=\"" + panel + "\"/></panels>\n"
+                    + "    <packs><pack name=\"Base\" required=\"yes\"><description>Base</description></pack></packs>\n"
+                    + "</installation>\n");
+            File out = new File(directory, panel + ".jar");
+            int exitCode = client.submit(new String[]{installFile.getAbsolutePath(),
+                    "-b", directory.getAbsolutePath(), "-o", out.getAbsolutePath()});
+            assertThat(exitCode, Is.is(0));
+            assertThat(out.isFile(), Is.is(true));
+        }
+    }
+
+    @Test
+    public void daemonShouldStopOnRequest() throws Exception
+    {
+        assertThat(stateFile.isFile(), Is.is(true));
+        int exitCode = new CompilerClient(stateFile).submit(new String[]{"--stop"});
+        assertThat(exitCode, Is.is(0));
+        thread.join();
+        assertThat(stateFile.exists(), Is.is(false));
+    }
+
+    /**
+     * Compiles an empty panel class and writes it alone in a jar.
+     */
+    private void buildPanelJar(File jar, String panel) throws Exception
+    {
+        File classes = new File(directory, "classes");
+        FileUtils.deleteDirectory(classes);
+        File source = new File(classes, "com/acme/" + panel + ".java");
+        FileUtils.writeStringToFile(source, "package com.acme;\npublic class " + panel + "\n{\n}\n");
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        assertThat(javac.run(null, null, null, "-d", classes.getPath(), source.getPath()), Is.is(0));
+
+        ZipOutputStream outStream = new ZipOutputStream(new FileOutputStream(jar));
+        try
+        {
+            outStream.putNextEntry(new ZipEntry("com/"));
+            outStream.putNextEntry(new ZipEntry("com/acme/"));
+            outStream.putNextEntry(new ZipEntry("com/acme/" + panel + ".class"));
+            outStream.write(FileUtils.readFileToByteArray(new File(classes, "com/acme/" + panel + ".class")));
+        }
+        finally
+        {
+            outStream.close();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.izforge.izpack.compiler.packager.impl;
+
+import org.apache.commons.io.FileUtils;
+import org.hamcrest.core.Is;
+import org.hamcrest.core.IsNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test of the pack build cache
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class PackCacheTest
+{
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        directory = File.createTempFile("izpack-cache", "");
+        directory.delete();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void unknownKeyShouldNotBeRead() throws Exception
+    {
+        PackCache packCache = new PackCache(directory);
+        assertThat(packCache.get("unknown"), IsNull.nullValue());
+    }
+
+    @Test
+    public void storedPayloadShouldBeReadBack() throws Exception
+    {
+        PackCache packCache = new PackCache(directory);
+        File payload = packCache.createPayloadFile();
+        FileUtils.writeByteArrayToFile(payload, new byte[]{1, 2, 3, 4});
+        packCache.store("key", payload, new PackCache.Entry(new long[]{0, -1, 2}, 12, 34, 4));
+
+        PackCache.Entry entry = new PackCache(directory).get("key");
+        assertThat(entry.getOffsets(), Is.is(new long[]{0, -1, 2}));
+        assertThat(entry.isDeflated(), Is.is(true));
+        assertThat(entry.getCrc(), Is.is(12L));
+        assertThat(entry.getSize(), Is.is(34L));
+        assertThat(entry.getCompressedSize(), Is.is(4L));
+        assertThat(FileUtils.readFileToByteArray(entry.getPayload()), Is.is(new byte[]{1, 2, 3, 4}));
+        assertThat(payload.exists(), Is.is(false));
+    }
+
+    @Test
+    public void digestShouldBeKeptWhileTheFileDoesNotChange() throws Exception
+    {
+        long lastModified = System.currentTimeMillis() - 60000;
+        PackCache packCache = new PackCache(directory);
+        packCache.putDigest("/some/file", 10, lastModified, "digest");
+        // a file just modified may change again within the same time stamp
+        packCache.putDigest("/new/file", 10, System.currentTimeMillis(), "digest");
+        packCache.saveDigests();
+
+        PackCache otherCache = new PackCache(directory);
+        assertThat(otherCache.getDigest("/some/file", 10, lastModified), Is.is("digest"));
+        assertThat(otherCache.getDigest("/some/file", 11, lastModified), IsNull.nullValue());
+        assertThat(otherCache.getDigest("/some/file", 10, lastModified + 1000), IsNull.nullValue());
+        assertThat(otherCache.getDigest("/new/file", 10, System.currentTimeMillis()), IsNull.nullValue());
+    }
+
+    @Test
+    public void digestsNotUsedByABuildShouldBeDropped() throws Exception
+    {
+        long lastModified = System.currentTimeMillis() - 60000;
+        PackCache packCache = new PackCache(directory);
+        packCache.putDigest("/kept/file", 10, lastModified, "kept");
+        packCache.putDigest("/removed/file", 10, lastModified, "removed");
+        packCache.saveDigests();
+
+        PackCache nextBuild = new PackCache(directory);
+        assertThat(nextBuild.getDigest("/kept/file", 10, lastModified), Is.is("kept"));
+        nextBuild.saveDigests();
+
+        PackCache otherCache = new PackCache(directory);
+        assertThat(otherCache.getDigest("/kept/file", 10, lastModified), Is.is("kept"));
+        assertThat(otherCache.getDigest("/removed/file", 10, lastModified), IsNull.nullValue());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesShouldBeEvicted() throws Exception
+    {
+        PackCache packCache = new PackCache(directory, 2500);
+        long hourAgo = System.currentTimeMillis() - 3600000;
+        for (String key : new String[]{"first", "second", "third"})
+        {
+            File payload = packCache.createPayloadFile();
+            FileUtils.writeByteArrayToFile(payload, new byte[1000]);
+            packCache.store(key, payload, new PackCache.Entry(new long[]{0}));
+            new File(directory, key + ".idx").setLastModified(hourAgo);
+            hourAgo += 60000;
+        }
+        // the first entry is used again, the second becomes the least recently used
+        assertThat(packCache.get("first"), IsNull.notNullValue());
+        new File(directory, "first.idx").setLastModified(hourAgo);
+
+        packCache.evict();
+        assertThat(packCache.get("first"), IsNull.notNullValue());
+        assertThat(packCache.get("second"), IsNull.nullValue());
+        assertThat(new File(directory, "second.pack").exists(), Is.is(false));
+        assertThat(packCache.get("third"), IsNull.notNullValue());
+    }
+
+    @Test
+    public void recentlyUsedEntriesShouldNotBeEvicted() throws Exception
+    {
+        PackCache packCache = new PackCache(directory, 0);
+        File payload = packCache.createPayloadFile();
+        FileUtils.writeByteArrayToFile(payload, new byte[1000]);
+        packCache.store("key", payload, new PackCache.Entry(new long[]{0}));
+
+        packCache.evict();
+        assertThat(packCache.get("key"), IsNull.notNullValue());
+    }
+}
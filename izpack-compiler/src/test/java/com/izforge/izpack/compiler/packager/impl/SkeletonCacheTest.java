@@ -0,0 +1,98 @@
+package com.izforge.izpack.compiler.packager.impl;
+
+import com.izforge.izpack.api.merge.Mergeable;
+import com.izforge.izpack.merge.file.FileMerge;
+import org.apache.commons.io.FileUtils;
+import org.hamcrest.core.Is;
+import org.hamcrest.core.IsNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test of the skeleton installer cache
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class SkeletonCacheTest
+{
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        directory = File.createTempFile("izpack-cache", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void storedSkeletonShouldBeFound() throws Exception
+    {
+        SkeletonCache skeletonCache = new SkeletonCache(new File(directory, "cache"));
+        assertThat(skeletonCache.get("key"), IsNull.nullValue());
+        File skeleton = skeletonCache.createSkeletonFile();
+        FileUtils.writeByteArrayToFile(skeleton, new byte[]{1, 2, 3});
+        skeletonCache.store("key", skeleton);
+
+        File cached = new SkeletonCache(new File(directory, "cache")).get("key");
+        assertThat(FileUtils.readFileToByteArray(cached), Is.is(new byte[]{1, 2, 3}));
+        assertThat(skeleton.exists(), Is.is(false));
+    }
+
+    @Test
+    public void keyShouldFollowTheMergedFiles() throws Exception
+    {
+        File classes = new File(directory, "classes");
+        File panel = new File(classes, "com/acme/MyPanel.class");
+        FileUtils.writeStringToFile(panel, "first");
+        String key = SkeletonCache.computeKey("5.0", 9, merge(classes, ""));
+        assertThat(key, IsNull.notNullValue());
+        assertThat(SkeletonCache.computeKey("5.0", 9, merge(classes, "")), Is.is(key));
+        assertThat(SkeletonCache.computeKey("5.1", 9, merge(classes, "")).equals(key), Is.is(false));
+        assertThat(SkeletonCache.computeKey("5.0", 1, merge(classes, "")).equals(key), Is.is(false));
+
+        FileUtils.writeStringToFile(panel, "other");
+        assertThat(SkeletonCache.computeKey("5.0", 9, merge(classes, "")).equals(key), Is.is(false));
+    }
+
+    @Test
+    public void keyShouldNotDependOnTheNameOfAFileMergedUnderAnotherName() throws Exception
+    {
+        File manifest = new File(directory, "MANIFEST1.MF");
+        File otherManifest = new File(directory, "MANIFEST2.MF");
+        FileUtils.writeStringToFile(manifest, "Manifest-Version: 1.0");
+        FileUtils.writeStringToFile(otherManifest, "Manifest-Version: 1.0");
+        assertThat(SkeletonCache.computeKey("5.0", 9, merge(manifest, "META-INF/MANIFEST.MF")),
+                Is.is(SkeletonCache.computeKey("5.0", 9, merge(otherManifest, "META-INF/MANIFEST.MF"))));
+    }
+
+    @Test
+    public void unknownMergeableShouldNotBeCached() throws Exception
+    {
+        List<Mergeable> mergeables = Arrays.asList(Mockito.mock(Mergeable.class));
+        assertThat(SkeletonCache.computeKey("5.0", 9, mergeables), IsNull.nullValue());
+    }
+
+    private static List<Mergeable> merge(File file, String destination) throws Exception
+    {
+        return Arrays.<Mergeable>asList(new FileMerge(file.toURI().toURL(), destination,
+                new HashMap<OutputStream, Set<String>>()));
+    }
+}
@@ -0,0 +1,191 @@
+package com.izforge.izpack.compiler.packager.impl;
+
+import com.izforge.izpack.util.TargetFactory;
+import org.apache.commons.io.IOUtils;
+import org.hamcrest.core.Is;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test of the reachability of the classes of the skeleton installer
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class SkeletonShrinkerTest
+{
+    private static final String PREFIX = "com/izforge/izpack/compiler/packager/impl/SkeletonShrinkerTest$";
+
+    private static final String PACKAGE = "com/izforge/izpack/compiler/packager/impl/";
+
+    private File skeleton;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        skeleton = File.createTempFile("izpack-skeleton", ".jar");
+        ZipOutputStream outStream = new ZipOutputStream(new FileOutputStream(skeleton));
+        try
+        {
+            for (Class<?> aClass : Arrays.asList(Root.class, Reached.class, Unreached.class, Named.class,
+                    NamedConsoleHelper.class, Kept.class, Main.class, Shortcuts.class, ShrunkShortcut.class,
+                    Win_ShrunkShortcut.class, Unix_ShrunkShortcut.class, Mac_X_ShrunkShortcut.class))
+            {
+                String name = aClass.getName().replace('.', '/') + ".class";
+                outStream.putNextEntry(new ZipEntry(name));
+                InputStream inStream = getClass().getClassLoader().getResourceAsStream(name);
+                IOUtils.copy(inStream, outStream);
+                inStream.close();
+            }
+            outStream.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            outStream.write(("Main-Class: " + Main.class.getName() + "\n").getBytes("UTF-8"));
+        }
+        finally
+        {
+            outStream.close();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        skeleton.delete();
+    }
+
+    @Test
+    public void onlyUnreachedClassesShouldBeLeftOut() throws Exception
+    {
+        SkeletonShrinker shrinker = new SkeletonShrinker(Arrays.asList(PREFIX),
+                Arrays.asList("com.izforge.izpack.compiler.packager.impl.SkeletonShrinkerTest$Kept"));
+        shrinker.addRootObject(new Root());
+        shrinker.addRootText("<panel classname=\"SkeletonShrinkerTest$Named\"/>");
+
+        assertThat(getUnreachableEntries(shrinker), Is.is(names(Unreached.class, Shortcuts.class)));
+    }
+
+    @Test
+    public void classesOutsideOfTheShrunkPackagesShouldBeRoots() throws Exception
+    {
+        SkeletonShrinker shrinker = new SkeletonShrinker(Arrays.asList(PREFIX + "Re", PREFIX + "Un"),
+                Collections.<String>emptyList());
+
+        // Root is outside of the shrunk packages and references Reached
+        assertThat(getUnreachableEntries(shrinker), Is.is(names(Unreached.class)));
+    }
+
+    @Test
+    public void osSpecificClassesShouldBeReachedWithTheirClass() throws Exception
+    {
+        SkeletonShrinker shrinker = new SkeletonShrinker(Arrays.asList(PREFIX, PACKAGE + "ShrunkShortcut",
+                PACKAGE + "Win_", PACKAGE + "Unix_", PACKAGE + "Mac_"), Collections.<String>emptyList());
+        shrinker.addRootObject(new Root());
+        shrinker.addRootText("<listener classname=\"SkeletonShrinkerTest$Shortcuts\"/>");
+
+        // Shortcuts only names ShrunkShortcut, the TargetFactory loads its os specific versions
+        assertThat(getUnreachableEntries(shrinker), Is.is(names(Unreached.class, Named.class,
+                NamedConsoleHelper.class, Kept.class)));
+    }
+
+    @Test
+    public void constantStringsShouldHoldTheReferencedClasses() throws Exception
+    {
+        InputStream inStream = getClass().getClassLoader().getResourceAsStream(PREFIX + "Root.class");
+        List<String> strings = SkeletonShrinker.readConstantStrings(IOUtils.toByteArray(inStream));
+        inStream.close();
+
+        assertThat(strings.contains(PREFIX + "Root"), Is.is(true));
+        assertThat(strings.contains("L" + PREFIX + "Reached;"), Is.is(true));
+    }
+
+    private Set<String> getUnreachableEntries(SkeletonShrinker shrinker) throws Exception
+    {
+        ZipFile zipFile = new ZipFile(skeleton);
+        try
+        {
+            return shrinker.getUnreachableEntries(zipFile);
+        }
+        finally
+        {
+            zipFile.close();
+        }
+    }
+
+    private static Set<String> names(Class<?>... classes)
+    {
+        Set<String> names = new HashSet<String>();
+        for (Class<?> aClass : classes)
+        {
+            names.add(aClass.getName().replace('.', '/') + ".class");
+        }
+        return names;
+    }
+
+    public static class Root implements Serializable
+    {
+        private Reached reached;
+    }
+
+    public static class Reached
+    {
+    }
+
+    public static class Unreached
+    {
+    }
+
+    public static class Named
+    {
+    }
+
+    public static class NamedConsoleHelper
+    {
+    }
+
+    public static class Kept
+    {
+    }
+
+    public static class Main
+    {
+    }
+
+    public static class Shortcuts
+    {
+        public Object create() throws Exception
+        {
+            return TargetFactory.getInstance().makeObject(
+                    "com.izforge.izpack.compiler.packager.impl.ShrunkShortcut");
+        }
+    }
+}
+
+class ShrunkShortcut
+{
+}
+
+class Win_ShrunkShortcut extends ShrunkShortcut
+{
+}
+
+class Unix_ShrunkShortcut extends ShrunkShortcut
+{
+}
+
+class Mac_X_ShrunkShortcut extends ShrunkShortcut
+{
+}
@@ -0,0 +1,73 @@
+package com.izforge.izpack.compiler.resource;
+
+import com.izforge.izpack.api.adaptator.IXMLElement;
+import com.izforge.izpack.api.adaptator.impl.XMLParser;
+import org.hamcrest.core.Is;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test of the packs left out of the tree of the installation file and read one at a time
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class PackElementReaderTest
+{
+    private static final String INSTALLATION = "<installation version=\"1.0\">\n"
+            + "  <info><appname>test</appname></info>\n"
+            + "  <packs>\n"
+            + "    <pack name=\"core\" required=\"yes\">\n"
+            + "      <description>Core files</description>\n"
+            + "      <file src=\"a.txt\" targetdir=\"$INSTALL_PATH\"/>\n"
+            + "    </pack>\n"
+            + "    <refpack file=\"other.xml\"/>\n"
+            + "    <pack name=\"doc\" required=\"no\">\n"
+            + "      <description>Documentation</description>\n"
+            + "    </pack>\n"
+            + "  </packs>\n"
+            + "</installation>\n";
+
+    @Test
+    public void packsShouldBeLeftOutOfTheTree() throws Exception
+    {
+        PackElementFilter filter = new PackElementFilter();
+        IXMLElement data = new XMLParser(filter).parse(new ByteArrayInputStream(INSTALLATION.getBytes("UTF-8")));
+        IXMLElement packs = data.getFirstChildNamed("packs");
+        assertThat(packs.getChildrenNamed("pack").size(), Is.is(0));
+        assertThat(packs.getChildrenNamed("refpack").size(), Is.is(1));
+        assertThat(data.getFirstChildNamed("info").getFirstChildNamed("appname").getContent(), Is.is("test"));
+        assertThat(filter.getPackCount(), Is.is(2));
+    }
+
+    @Test
+    public void packsShouldBeReadInOrderWithTheirLineNumbers() throws Exception
+    {
+        final List<IXMLElement> packs = new ArrayList<IXMLElement>();
+        PackElementReader reader = new PackElementReader(new PackElementReader.PackHandler()
+        {
+            public void handlePack(IXMLElement pack)
+            {
+                packs.add(pack);
+            }
+        });
+        int count = reader.read(new InputSource(new StringReader(INSTALLATION)));
+
+        assertThat(count, Is.is(2));
+        assertThat(packs.size(), Is.is(2));
+        IXMLElement core = packs.get(0);
+        assertThat(core.getName(), Is.is("pack"));
+        assertThat(core.getAttribute("name"), Is.is("core"));
+        assertThat(core.getLineNr(), Is.is(4));
+        assertThat(core.getFirstChildNamed("description").getContent(), Is.is("Core files"));
+        assertThat(core.getFirstChildNamed("file").getAttribute("targetdir"), Is.is("$INSTALL_PATH"));
+        assertThat(core.getFirstChildNamed("file").getLineNr(), Is.is(6));
+        assertThat(packs.get(1).getAttribute("name"), Is.is("doc"));
+    }
+}
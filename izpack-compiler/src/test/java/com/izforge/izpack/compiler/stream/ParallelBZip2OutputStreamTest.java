@@ -0,0 +1,75 @@
+/*
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.stream;
+
+import junit.framework.TestCase;
+import org.apache.tools.bzip2.CBZip2InputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+public class ParallelBZip2OutputStreamTest extends TestCase
+{
+
+    public void testEmptyStream() throws IOException
+    {
+        assertRoundTrip(new byte[0], 9, 2);
+    }
+
+    public void testSeveralBlocks() throws IOException
+    {
+        byte[] data = new byte[300000];
+        new Random(1).nextBytes(data);
+        assertRoundTrip(data, 1, 3);
+    }
+
+    public void testRunsExpandingBlocks() throws IOException
+    {
+        // runs of four bytes are the worst case of the run length encoding
+        byte[] data = new byte[250000];
+        for (int i = 0; i < data.length; i++)
+        {
+            data[i] = (byte) ((i / 4) % 2);
+        }
+        assertRoundTrip(data, 1, 2);
+    }
+
+    private void assertRoundTrip(byte[] data, int blockSize, int threads) throws IOException
+    {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ParallelBZip2OutputStream out = new ParallelBZip2OutputStream(compressed, blockSize, threads);
+        out.write(data);
+        out.close();
+
+        CBZip2InputStream in = new CBZip2InputStream(new ByteArrayInputStream(compressed.toByteArray()));
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = in.read(buffer)) > 0)
+        {
+            read.write(buffer, 0, count);
+        }
+        assertTrue(Arrays.equals(data, read.toByteArray()));
+    }
+
+}
@@ -3,9 +3,9 @@ package com.izforge.izpack.merge;
 import com.izforge.izpack.api.merge.Mergeable;
 
 import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Abstract classes for all mergeable element.
@@ -15,13 +15,13 @@ import java.util.Map;
  */
 public abstract class AbstractMerge implements Mergeable
 {
-    protected Map<OutputStream, List<String>> mergeContent;
+    protected Map<OutputStream, Set<String>> mergeContent;
 
-    protected List<String> getMergeList(OutputStream outputStream)
+    protected Set<String> getMergeList(OutputStream outputStream)
     {
         if (!mergeContent.containsKey(outputStream))
         {
-            mergeContent.put(outputStream, new ArrayList<String>());
+            mergeContent.put(outputStream, new HashSet<String>());
         }
         return mergeContent.get(outputStream);
     }
@@ -2,6 +2,8 @@ package com.izforge.izpack.merge;
 
 import com.izforge.izpack.api.merge.Mergeable;
 
+import java.util.List;
+
 /**
  * Manager for all the merging logic.
  *
@@ -30,4 +32,16 @@ public interface MergeManager extends Mergeable
     void addResourceToMerge(String resourcePath, String destination);
 
     void addResourceToMerge(Mergeable mergeable);
+
+    /**
+     * Gets the resources to merge, in the order they were added.
+     *
+     * @return the resources to merge
+     */
+    List<Mergeable> getMergeableList();
+
+    /**
+     * Forgets the resources to merge, when their content was written by other means.
+     */
+    void clear();
 }
@@ -1,13 +1,20 @@
 package com.izforge.izpack.merge;
 
+import com.izforge.izpack.api.exception.MergeException;
 import com.izforge.izpack.api.merge.Mergeable;
+import com.izforge.izpack.merge.jar.JarMerge;
+import com.izforge.izpack.merge.jar.JarMergeGroup;
 import com.izforge.izpack.merge.resolve.PathResolver;
 import org.apache.tools.zip.ZipOutputStream;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A mergeable file allow to chose files to merge in the installer.<br />
@@ -43,24 +50,99 @@ public class MergeManagerImpl implements MergeManager
         mergeableList.addAll(pathResolver.getMergeableFromPath(resourcePath, destination));
     }
 
+    public List<Mergeable> getMergeableList()
+    {
+        return Collections.unmodifiableList(mergeableList);
+    }
+
+    public void clear()
+    {
+        mergeableList.clear();
+    }
+
+    /**
+     * Merges the resources. The merges of a same jar are grouped to read the jar once, at the
+     * place of the first of them.
+     */
     public void merge(ZipOutputStream outputStream)
     {
-        for (Mergeable mergeable : mergeableList)
+        Map<String, JarMergeGroup> groups = groupJarMerges();
+        try
+        {
+            for (Mergeable mergeable : mergeableList)
+            {
+                if (mergeable instanceof JarMerge)
+                {
+                    JarMergeGroup group = groups.remove(((JarMerge) mergeable).getJarPath());
+                    if (group != null)
+                    {
+                        group.merge(outputStream);
+                    }
+                }
+                else
+                {
+                    mergeable.merge(outputStream);
+                }
+            }
+        }
+        catch (IOException e)
         {
-            mergeable.merge(outputStream);
+            throw new MergeException(e);
         }
         mergeableList.clear();
     }
 
     public void merge(java.util.zip.ZipOutputStream outputStream)
     {
-        for (Mergeable mergeable : mergeableList)
+        Map<String, JarMergeGroup> groups = groupJarMerges();
+        try
         {
-            mergeable.merge(outputStream);
+            for (Mergeable mergeable : mergeableList)
+            {
+                if (mergeable instanceof JarMerge)
+                {
+                    JarMergeGroup group = groups.remove(((JarMerge) mergeable).getJarPath());
+                    if (group != null)
+                    {
+                        group.merge(outputStream);
+                    }
+                }
+                else
+                {
+                    mergeable.merge(outputStream);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new MergeException(e);
         }
         mergeableList.clear();
     }
 
+    /**
+     * Groups the jar merges by jar, keeping their order.
+     */
+    private Map<String, JarMergeGroup> groupJarMerges()
+    {
+        Map<String, JarMergeGroup> groups = new HashMap<String, JarMergeGroup>();
+        for (Mergeable mergeable : mergeableList)
+        {
+            if (mergeable instanceof JarMerge)
+            {
+                JarMerge jarMerge = (JarMerge) mergeable;
+                JarMergeGroup group = groups.get(jarMerge.getJarPath());
+                if (group == null)
+                {
+                    group = new JarMergeGroup(jarMerge.getJarPath());
+                    groups.put(jarMerge.getJarPath(), group);
+                }
+                group.add(jarMerge);
+            }
+        }
+        return groups;
+    }
+
     public List<File> recursivelyListFiles(FileFilter fileFilter)
     {
         ArrayList<File> result = new ArrayList<File>();
@@ -12,6 +12,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * File merge. Can be a single file or a directory.
@@ -25,12 +26,12 @@ public class FileMerge extends AbstractMerge
 
     private String destination;
 
-    public FileMerge(URL url, Map<OutputStream, List<String>> mergeContent)
+    public FileMerge(URL url, Map<OutputStream, Set<String>> mergeContent)
     {
         this(url, "", mergeContent);
     }
 
-    public FileMerge(URL url, String destination, Map<OutputStream, List<String>> mergeContent)
+    public FileMerge(URL url, String destination, Map<OutputStream, Set<String>> mergeContent)
     {
         this.mergeContent = mergeContent;
         this.sourceToCopy = FileUtil.convertUrlToFile(url);
@@ -102,7 +103,7 @@ public class FileMerge extends AbstractMerge
 
     public void merge(ZipOutputStream outputStream)
     {
-        List<String> mergeList = getMergeList(outputStream);
+        Set<String> mergeList = getMergeList(outputStream);
         try
         {
             if (mergeList.contains(sourceToCopy.getAbsolutePath()))
@@ -142,7 +143,7 @@ public class FileMerge extends AbstractMerge
         else
         {
             String entryName = resolveName(fileToCopy, this.destination);
-            List<String> mergeList = getMergeList(outputStream);
+            Set<String> mergeList = getMergeList(outputStream);
             if (mergeList.contains(entryName))
             {
                 return;
@@ -169,7 +170,7 @@ public class FileMerge extends AbstractMerge
         }
 
         String entryName = resolveName(fileToCopy, this.destination);
-        List<String> mergeList = getMergeList(outputStream);
+        Set<String> mergeList = getMergeList(outputStream);
         if (mergeList.contains(entryName))
         {
             return;
@@ -182,6 +183,22 @@ public class FileMerge extends AbstractMerge
         }
     }
 
+    /**
+     * Gets the file or directory to merge.
+     */
+    public File getSourceToCopy()
+    {
+        return sourceToCopy;
+    }
+
+    /**
+     * Gets the destination of the merged files, a file name or a directory.
+     */
+    public String getDestination()
+    {
+        return destination;
+    }
+
     private String resolveName(File fileToCopy, String destination)
     {
         if (isFile(destination))
@@ -3,7 +3,6 @@ package com.izforge.izpack.merge.jar;
 import com.izforge.izpack.api.exception.MergeException;
 import com.izforge.izpack.merge.AbstractMerge;
 import com.izforge.izpack.util.FileUtil;
-import com.izforge.izpack.util.IoHelper;
 import org.apache.tools.zip.ZipOutputStream;
 
 import java.io.*;
@@ -11,7 +10,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.jar.JarInputStream;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
@@ -26,7 +25,10 @@ public class JarMerge extends AbstractMerge
 {
     private String jarPath;
 
+    private String pathInsideJar;
+
     private String regexp;
+    private Pattern pattern;
     private String destination;
 
 
@@ -37,7 +39,7 @@ public class JarMerge extends AbstractMerge
      * @param jarPath      Path to the jar to merge
      * @param mergeContent map linking outputstream to their content to avoir duplication
      */
-    public JarMerge(URL resource, String jarPath, Map<OutputStream, List<String>> mergeContent)
+    public JarMerge(URL resource, String jarPath, Map<OutputStream, Set<String>> mergeContent)
     {
         this.jarPath = jarPath;
         this.mergeContent = mergeContent;
@@ -54,6 +56,8 @@ public class JarMerge extends AbstractMerge
             builder.append("/*(.*)");
         }
         regexp = builder.toString();
+        pattern = Pattern.compile(regexp);
+        pathInsideJar = destination;
     }
 
     /**
@@ -64,11 +68,12 @@ public class JarMerge extends AbstractMerge
      * @param destination   Destination of the package
      * @param mergeContent  map linking outputstream to their content to avoir duplication
      */
-    public JarMerge(String jarPath, String pathInsideJar, String destination, Map<OutputStream, List<String>> mergeContent)
+    public JarMerge(String jarPath, String pathInsideJar, String destination, Map<OutputStream, Set<String>> mergeContent)
     {
         this.jarPath = jarPath;
         this.destination = destination;
         this.mergeContent = mergeContent;
+        this.pathInsideJar = pathInsideJar;
         StringBuilder builder = new StringBuilder().append(pathInsideJar);
         if (pathInsideJar.endsWith("/"))
         {
@@ -79,6 +84,7 @@ public class JarMerge extends AbstractMerge
             builder.append("/*(.*)");
         }
         regexp = builder.toString();
+        pattern = Pattern.compile(regexp);
     }
 
 
@@ -143,38 +149,11 @@ public class JarMerge extends AbstractMerge
 
     public void merge(java.util.zip.ZipOutputStream outputStream)
     {
-        Pattern pattern = Pattern.compile(regexp);
-        List<String> mergeList = getMergeList(outputStream);
-        ZipEntry zentry;
+        JarMergeGroup group = new JarMergeGroup(jarPath);
+        group.add(this);
         try
         {
-            JarInputStream jarInputStream = new JarInputStream(new FileInputStream(new File(jarPath)));
-            while ((zentry = jarInputStream.getNextEntry()) != null)
-            {
-                Matcher matcher = pattern.matcher(zentry.getName());
-                if (matcher.matches())
-                {
-                    if (mergeList.contains(zentry.getName()))
-                    {
-                        continue;
-                    }
-                    mergeList.add(zentry.getName());
-
-                    String matchFile = matcher.group(1);
-                    StringBuilder dest = new StringBuilder(destination);
-                    if (matchFile != null && matchFile.length() > 0)
-                    {
-                        if (dest.length() > 0 && dest.charAt(dest.length() - 1) != '/')
-                        {
-                            dest.append('/');
-                        }
-                        dest.append(matchFile);
-                    }
-                    IoHelper.copyStreamToJar(jarInputStream, outputStream, dest.toString().replaceAll("//", "/"), zentry.getTime());
-                }
-
-            }
-            jarInputStream.close();
+            group.merge(outputStream);
         }
         catch (IOException e)
         {
@@ -184,37 +163,11 @@ public class JarMerge extends AbstractMerge
 
     public void merge(ZipOutputStream outJar)
     {
-        Pattern pattern = Pattern.compile(regexp);
-        List<String> mergeList = getMergeList(outJar);
-        ZipEntry zentry;
+        JarMergeGroup group = new JarMergeGroup(jarPath);
+        group.add(this);
         try
         {
-            JarInputStream jarInputStream = new JarInputStream(new FileInputStream(new File(jarPath)));
-            while ((zentry = jarInputStream.getNextEntry()) != null)
-            {
-                Matcher matcher = pattern.matcher(zentry.getName());
-                if (matcher.matches())
-                {
-                    if (mergeList.contains(zentry.getName()))
-                    {
-                        continue;
-                    }
-                    mergeList.add(zentry.getName());
-                    String matchFile = matcher.group(1);
-                    StringBuilder dest = new StringBuilder(destination);
-                    if (matchFile != null && matchFile.length() > 0)
-                    {
-                        if (dest.length() > 0 && dest.charAt(dest.length() - 1) != '/')
-                        {
-                            dest.append('/');
-                        }
-                        dest.append(matchFile);
-                    }
-                    IoHelper.copyStreamToJar(jarInputStream, outJar, dest.toString().replaceAll("//", "/"), zentry.getTime());
-                }
-
-            }
-            jarInputStream.close();
+            group.merge(outJar);
         }
         catch (IOException e)
         {
@@ -222,6 +175,72 @@ public class JarMerge extends AbstractMerge
         }
     }
 
+    /**
+     * Gets the path of the merged jar.
+     */
+    public String getJarPath()
+    {
+        return jarPath;
+    }
+
+    /**
+     * Gets the path inside the jar of the merged entries, all their names start with it.
+     */
+    public String getPathInsideJar()
+    {
+        return pathInsideJar;
+    }
+
+    /**
+     * Gets the destination of the merged entries, their path inside the jar is replaced by it.
+     */
+    public String getDestination()
+    {
+        return destination;
+    }
+
+    /**
+     * Gets the destination of an entry of the jar.
+     *
+     * @param entryName the name of the entry in the jar
+     * @return the destination, or <code>null</code> if the entry is not merged
+     */
+    public String getDestination(String entryName)
+    {
+        Matcher matcher = pattern.matcher(entryName);
+        if (!matcher.matches())
+        {
+            return null;
+        }
+        return getDestination(matcher);
+    }
+
+    /**
+     * Gets the names of the entries already merged into a stream.
+     */
+    public Set<String> getMergedEntries(OutputStream outputStream)
+    {
+        return getMergeList(outputStream);
+    }
+
+    /**
+     * Gets the destination of a matching entry.
+     */
+    private String getDestination(Matcher matcher)
+    {
+        String matchFile = matcher.group(1);
+        StringBuilder dest = new StringBuilder(destination);
+        if (matchFile != null && matchFile.length() > 0)
+        {
+            if (dest.length() > 0 && dest.charAt(dest.length() - 1) != '/')
+            {
+                dest.append('/');
+            }
+            dest.append(matchFile);
+        }
+        return dest.toString().replaceAll("//", "/");
+    }
+
     @Override
     public String toString()
     {
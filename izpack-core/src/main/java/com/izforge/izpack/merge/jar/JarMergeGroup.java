@@ -0,0 +1,211 @@
+package com.izforge.izpack.merge.jar;
+
+import com.izforge.izpack.util.IoHelper;
+import com.izforge.izpack.util.zip.RawZipFile;
+import com.izforge.izpack.util.zip.RawZipOutputStream;
+import org.apache.tools.zip.ZipOutputStream;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * The merges of a same jar, done in a single pass over the jar.
+ * <p/>
+ * The paths inside the jar of the merges are put in a prefix tree, so that the merges an entry
+ * may belong to are found by walking its name once. Like when the merges are done one after the
+ * other, an entry matched by several merges is merged by the first one added.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class JarMergeGroup
+{
+    private final String jarPath;
+
+    private final List<JarMerge> merges = new ArrayList<JarMerge>();
+
+    private final PrefixNode root = new PrefixNode();
+
+    public JarMergeGroup(String jarPath)
+    {
+        this.jarPath = jarPath;
+    }
+
+    public void add(JarMerge merge)
+    {
+        PrefixNode node = root;
+        String prefix = merge.getPathInsideJar();
+        for (int i = 0; i < prefix.length(); i++)
+        {
+            PrefixNode child = node.children.get(prefix.charAt(i));
+            if (child == null)
+            {
+                child = new PrefixNode();
+                node.children.put(prefix.charAt(i), child);
+            }
+            node = child;
+        }
+        node.merges.add(merges.size());
+        merges.add(merge);
+    }
+
+    /**
+     * Merges the entries of the jar. The deflated entries are copied without being inflated when
+     * the stream supports it.
+     */
+    public void merge(ZipOutputStream outputStream) throws IOException
+    {
+        if (outputStream instanceof RawZipOutputStream)
+        {
+            RawZipFile zip = RawZipFile.open(new File(jarPath));
+            if (zip != null)
+            {
+                try
+                {
+                    mergeRaw(zip, (RawZipOutputStream) outputStream);
+                }
+                finally
+                {
+                    zip.close();
+                }
+                return;
+            }
+        }
+
+        Set<String> mergeList = getMergeList(outputStream);
+        JarInputStream jarInputStream = new JarInputStream(new FileInputStream(new File(jarPath)));
+        try
+        {
+            ZipEntry zentry;
+            while ((zentry = jarInputStream.getNextEntry()) != null)
+            {
+                String destination = getDestination(zentry.getName(), mergeList);
+                if (destination != null)
+                {
+                    IoHelper.copyStreamToJar(jarInputStream, outputStream, destination, zentry.getTime());
+                }
+            }
+        }
+        finally
+        {
+            jarInputStream.close();
+        }
+    }
+
+    /**
+     * Merges the entries of the jar.
+     */
+    public void merge(java.util.zip.ZipOutputStream outputStream) throws IOException
+    {
+        Set<String> mergeList = getMergeList(outputStream);
+        JarInputStream jarInputStream = new JarInputStream(new FileInputStream(new File(jarPath)));
+        try
+        {
+            ZipEntry zentry;
+            while ((zentry = jarInputStream.getNextEntry()) != null)
+            {
+                String destination = getDestination(zentry.getName(), mergeList);
+                if (destination != null)
+                {
+                    IoHelper.copyStreamToJar(jarInputStream, outputStream, destination, zentry.getTime());
+                }
+            }
+        }
+        finally
+        {
+            jarInputStream.close();
+        }
+    }
+
+    /**
+     * Merges the entries from the central directory of the jar. Like <code>JarInputStream</code>,
+     * the leading manifest of the jar is left out.
+     */
+    private void mergeRaw(RawZipFile zip, RawZipOutputStream outputStream) throws IOException
+    {
+        Set<String> mergeList = getMergeList(outputStream);
+        List<RawZipFile.Entry> entries = zip.getEntries();
+        int first = 0;
+        if (first < entries.size() && "META-INF/".equalsIgnoreCase(entries.get(first).getName()))
+        {
+            first++;
+        }
+        if (first < entries.size() && JarFile.MANIFEST_NAME.equalsIgnoreCase(entries.get(first).getName()))
+        {
+            first++;
+        }
+        for (RawZipFile.Entry entry : entries.subList(first, entries.size()))
+        {
+            String destination = getDestination(entry.getName(), mergeList);
+            if (destination != null)
+            {
+                outputStream.copyEntry(zip, entry, destination, entry.getTime());
+            }
+        }
+    }
+
+    /**
+     * Finds the first merge matching an entry not merged yet, and marks the entry as merged.
+     *
+     * @param name      the name of the entry
+     * @param mergeList the names of the entries already merged into the stream
+     * @return the destination of the entry, or <code>null</code> if it is not merged
+     */
+    private String getDestination(String name, Set<String> mergeList)
+    {
+        if (mergeList.contains(name))
+        {
+            return null;
+        }
+        int best = -1;
+        String destination = null;
+        PrefixNode node = root;
+        int position = 0;
+        while (node != null)
+        {
+            for (int index : node.merges)
+            {
+                if (best == -1 || index < best)
+                {
+                    String candidate = merges.get(index).getDestination(name);
+                    if (candidate != null)
+                    {
+                        best = index;
+                        destination = candidate;
+                    }
+                }
+            }
+            node = position < name.length() ? node.children.get(name.charAt(position++)) : null;
+        }
+        if (destination != null)
+        {
+            mergeList.add(name);
+        }
+        return destination;
+    }
+
+    private Set<String> getMergeList(OutputStream outputStream)
+    {
+        // the merges share the names of the merged entries
+        return merges.get(0).getMergedEntries(outputStream);
+    }
+
+    /**
+     * Node of the prefix tree, holding the indexes of the merges whose path ends there.
+     */
+    private static class PrefixNode
+    {
+        private final Map<Character, PrefixNode> children = new HashMap<Character, PrefixNode>();
+
+        private final List<Integer> merges = new ArrayList<Integer>(1);
+    }
+}
@@ -72,6 +72,14 @@ public class PanelMerge implements Mergeable
         }
     }
 
+    /**
+     * Gets the merges of the package of the panel.
+     */
+    public List<Mergeable> getPackageMerges()
+    {
+        return packageMerge;
+    }
+
     public Class getPanelClass()
     {
         return panelClass;
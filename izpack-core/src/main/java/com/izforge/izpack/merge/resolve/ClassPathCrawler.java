@@ -15,7 +15,13 @@ import java.net.URLClassLoader;
 import java.util.*;
 
 /**
- * Crawl and store a map of all files in classpath when we can't get package directly
+ * Crawl and store a map of all files in classpath when we can't get package directly.
+ * The jars holding a {@link ClassPathIndex}, like the installer jar, are read from their index
+ * instead of being listed.
+ * <p/>
+ * The maps are kept by class path, so that a crawler shared by compilations adding different jars
+ * to the class path gives each of them the content of its own class path. The size and the date of
+ * the files of the class path are part of the key, a jar rebuilt at the same path is listed again.
  *
  * @author Anthonin Bonnefoy
  */
@@ -24,7 +30,20 @@ public class ClassPathCrawler
 
     private MergeableResolver mergeableResolver;
 
-    private HashMap<String, Set<URL>> classPathContentCache;
+    /**
+     * Number of class paths whose content is kept
+     */
+    private static final int MAX_CLASS_PATHS = 8;
+
+    private final Map<List<String>, HashMap<String, Set<URL>>> classPathContents =
+            new LinkedHashMap<List<String>, HashMap<String, Set<URL>>>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<String>, HashMap<String, Set<URL>>> eldest)
+                {
+                    return size() > MAX_CLASS_PATHS;
+                }
+            };
 
 
     private static final List<String> acceptedJar = Arrays.asList(".*event.*", ".*panel.*", ".*izpack.*");
@@ -46,18 +65,38 @@ public class ClassPathCrawler
         return stringBuilder.toString();
     }
 
+    /**
+     * Lists the current class path, unless it was already listed.
+     */
     public void processClassPath()
     {
-        if (classPathContentCache != null)
+        getClassPathContent();
+    }
+
+    /**
+     * Gets the files of the current class path by name, listing the class path the first time.
+     * The content is only published when it is complete, so that a crawler shared between threads
+     * never sees a partial class path.
+     */
+    private synchronized HashMap<String, Set<URL>> getClassPathContent()
+    {
+        List<String> classPath = getClassPathKey(ResolveUtils.getClassLoader().getURLs());
+        HashMap<String, Set<URL>> content = classPathContents.get(classPath);
+        if (content != null)
         {
-            return;
+            return content;
         }
-        classPathContentCache = new HashMap<String, Set<URL>>();
+        HashMap<String, Set<URL>> cache = new HashMap<String, Set<URL>>();
         try
         {
+            Set<String> indexedJars = processClassPathIndexes(cache);
             Collection<URL> urls = getClassPathUrl();
             for (URL url : urls)
             {
+                if (indexedJars.contains(ResolveUtils.processUrlToJarPath(url)))
+                {
+                    continue;
+                }
                 Mergeable mergeable = mergeableResolver.getMergeableFromURL(url);
                 final List<File> files = mergeable.recursivelyListFiles(new FileFilter()
                 {
@@ -70,7 +109,7 @@ public class ClassPathCrawler
                 {
                     for (File file : files)
                     {
-                        getOrCreateList(classPathContentCache, file.getName()).add(file.toURI().toURL());
+                        getOrCreateList(cache, file.getName()).add(file.toURI().toURL());
                     }
                 }
             }
@@ -79,6 +118,60 @@ public class ClassPathCrawler
         {
             throw new MergeException(e);
         }
+        classPathContents.put(classPath, cache);
+        return cache;
+    }
+
+    /**
+     * Gets the key of the content of a class path: its urls, with the size and the date of the
+     * files they point to.
+     */
+    private static List<String> getClassPathKey(URL[] urls)
+    {
+        List<String> key = new ArrayList<String>(urls.length);
+        for (URL url : urls)
+        {
+            if ("file".equals(url.getProtocol()))
+            {
+                File file = FileUtil.convertUrlToFile(url);
+                key.add(url + " " + file.length() + " " + file.lastModified());
+            }
+            else
+            {
+                key.add(url.toString());
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Fills the cache from the indexes of the jars of the classpath.
+     *
+     * @param cache the cache to fill
+     * @return the paths of the indexed jars, which do not need to be listed
+     */
+    private Set<String> processClassPathIndexes(HashMap<String, Set<URL>> cache) throws IOException
+    {
+        Set<String> indexedJars = new HashSet<String>();
+        ClassLoader loader = ResolveUtils.getClassLoader();
+        Enumeration<URL> indexes = loader.getResources(ClassPathIndex.INDEX_PATH);
+        while (indexes.hasMoreElements())
+        {
+            URL index = indexes.nextElement();
+            if (!"jar".equals(index.getProtocol()))
+            {
+                continue;
+            }
+            // same urls as the ones of a listed jar
+            String jarPath = ResolveUtils.processUrlToJarPath(index);
+            for (String entryName : ClassPathIndex.read(index))
+            {
+                File file = new File(jarPath + "!" + entryName);
+                getOrCreateList(cache, file.getName()).add(file.toURI().toURL());
+            }
+            indexedJars.add(jarPath);
+        }
+        return indexedJars;
     }
 
     private Set<URL> getOrCreateList(HashMap<String, Set<URL>> classPathContentCache, String key)
@@ -101,7 +194,7 @@ public class ClassPathCrawler
         {
             try
             {
-                return Class.forName(className);
+                return Class.forName(className, true, ResolveUtils.getClassLoader());
             }
             catch (ClassNotFoundException e)
             {
@@ -112,12 +205,11 @@ public class ClassPathCrawler
         try
         {
             final String fileToSearch = className + ".class";
-            processClassPath();
-            Set<URL> urlList = classPathContentCache.get(fileToSearch);
+            Set<URL> urlList = getClassPathContent().get(fileToSearch);
             if (urlList != null)
             {
                 String fullClassName = ClassResolver.processURLToClassName(urlList.iterator().next());
-                return Class.forName(fullClassName);
+                return Class.forName(fullClassName, true, ResolveUtils.getClassLoader());
             }
         }
         catch (ClassNotFoundException ignored)
@@ -128,23 +220,28 @@ public class ClassPathCrawler
 
     public Set<URL> searchPackageInClassPath(final String packageName)
     {
-        processClassPath();
+        HashMap<String, Set<URL>> content = getClassPathContent();
         String formatPackageName = packageName.replaceAll("/", ".").replaceAll("\\.$", "");
 
         String[] parts = formatPackageName.replaceAll("/", ".").split("\\.");
         if (parts.length == 1)
         {
-            return classPathContentCache.get(formatPackageName);
+            return content.get(formatPackageName);
         }
 
-        return getUrlsForPackage(formatPackageName);
+        return getUrlsForPackage(formatPackageName, content);
     }
 
 
     public Set<URL> getUrlsForPackage(String packageName)
+    {
+        return getUrlsForPackage(packageName, getClassPathContent());
+    }
+
+    private Set<URL> getUrlsForPackage(String packageName, HashMap<String, Set<URL>> content)
     {
         Set<URL> resultSet = new HashSet<URL>();
-        Set<URL> urls = classPathContentCache.get(ClassResolver.getLastPackagePart(packageName));
+        Set<URL> urls = content.get(ClassResolver.getLastPackagePart(packageName));
         if (urls == null)
         {
             throw new IzPackException("The package " + packageName + " has not been found in the classpath and is required by the installer");
@@ -172,7 +269,7 @@ public class ClassPathCrawler
     private Collection<URL> getClassPathUrl()
     {
         Collection<URL> result = new HashSet<URL>();
-        java.net.URLClassLoader loader = (URLClassLoader) Thread.currentThread().getContextClassLoader();
+        URLClassLoader loader = ResolveUtils.getClassLoader();
         result.addAll(Arrays.asList(loader.getURLs()));
         List<String> acceptedRegexp = new ArrayList<String>(acceptedJar);
         try
@@ -0,0 +1,77 @@
+package com.izforge.izpack.merge.resolve;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Index of the entries of a jar, written in the installer jar by the compiler so that the
+ * {@link ClassPathCrawler} of the installer finds its classes and packages without listing the jar.
+ * <p/>
+ * The index is an UTF-8 text holding the name of an entry per line.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class ClassPathIndex
+{
+    /**
+     * Path of the index in the jar
+     */
+    public static final String INDEX_PATH = "META-INF/izpack/classpath.index";
+
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * Writes an index. The stream is flushed, not closed.
+     *
+     * @param entryNames the names of the entries of the jar
+     * @param out        the stream of the index entry
+     */
+    public static void write(Collection<String> entryNames, OutputStream out) throws IOException
+    {
+        Writer writer = new OutputStreamWriter(out, ENCODING);
+        for (String entryName : entryNames)
+        {
+            writer.write(entryName);
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Reads an index.
+     *
+     * @param index the url of the index
+     * @return the names of the entries of the jar
+     */
+    public static List<String> read(URL index) throws IOException
+    {
+        InputStream in = index.openStream();
+        try
+        {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, ENCODING));
+            List<String> entryNames = new ArrayList<String>();
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                if (line.length() > 0)
+                {
+                    entryNames.add(line);
+                }
+            }
+            return entryNames;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+}
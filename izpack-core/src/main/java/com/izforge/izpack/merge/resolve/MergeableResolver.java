@@ -6,7 +6,7 @@ import com.izforge.izpack.merge.jar.JarMerge;
 
 import java.io.OutputStream;
 import java.net.URL;
-import java.util.List;
+import java.util.Set;
 import java.util.Map;
 
 /**
@@ -16,9 +16,9 @@ import java.util.Map;
  */
 public class MergeableResolver
 {
-    private Map<OutputStream, List<String>> mergeContent;
+    private Map<OutputStream, Set<String>> mergeContent;
 
-    public MergeableResolver(Map<OutputStream, List<String>> mergeContent)
+    public MergeableResolver(Map<OutputStream, Set<String>> mergeContent)
     {
         this.mergeContent = mergeContent;
     }
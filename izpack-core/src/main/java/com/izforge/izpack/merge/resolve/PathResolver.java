@@ -44,7 +44,7 @@ public class PathResolver
         }
         try
         {
-            URLClassLoader contextClassLoader = (URLClassLoader) Thread.currentThread().getContextClassLoader();
+            URLClassLoader contextClassLoader = ResolveUtils.getClassLoader();
             Enumeration<URL> urlEnumeration = contextClassLoader.findResources(sourcePath);
             while (urlEnumeration.hasMoreElements())
             {
@@ -95,10 +95,33 @@ public class ResolveUtils
         return stringBuilder.toString();
     }
 
+    /**
+     * Gets the class loader whose class path is resolved: the context class loader of the
+     * current thread, which lets several compilations run side by side with their own class path,
+     * or the loader of IzPack when the context class loader cannot list its class path.
+     *
+     * @return the class loader
+     * @throws IzPackException if neither loader can list its class path
+     */
+    static URLClassLoader getClassLoader()
+    {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader instanceof URLClassLoader)
+        {
+            return (URLClassLoader) loader;
+        }
+        ClassLoader izpackLoader = ResolveUtils.class.getClassLoader();
+        if (izpackLoader instanceof URLClassLoader)
+        {
+            return (URLClassLoader) izpackLoader;
+        }
+        throw new IzPackException("The class path of " + loader + " cannot be listed");
+    }
+
     static Collection<URL> getClassPathUrl()
     {
         Collection<URL> result = new HashSet<URL>();
-        java.net.URLClassLoader loader = (URLClassLoader) Thread.currentThread().getContextClassLoader();
+        URLClassLoader loader = getClassLoader();
         result.addAll(Arrays.asList(loader.getURLs()));
         try
         {
@@ -144,7 +167,7 @@ public class ResolveUtils
 
     public static Set<URL> getJarUrlForPackage(String packageName)
     {
-        URLClassLoader loader = (URLClassLoader) Thread.currentThread().getContextClassLoader();
+        URLClassLoader loader = getClassLoader();
         Set<URL> result = new HashSet<URL>();
         try
         {
@@ -2,14 +2,17 @@ package com.izforge.izpack.merge;
 
 import com.izforge.izpack.core.container.TestMergeContainer;
 import com.izforge.izpack.matcher.MergeMatcher;
+import com.izforge.izpack.matcher.ZipMatcher;
 import com.izforge.izpack.merge.resolve.PathResolver;
 import com.izforge.izpack.merge.resolve.ResolveUtils;
 import com.izforge.izpack.test.Container;
 import com.izforge.izpack.test.junit.PicoRunner;
+import com.izforge.izpack.util.zip.RawZipOutputStream;
 import org.hamcrest.core.Is;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.File;
 import java.net.URL;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -76,5 +79,21 @@ public class MergeManagerTest
         assertThat(mergeManager, MergeMatcher.isMergeableContainingFiles("com/dest/Assert.class"));
     }
 
+    @Test
+    public void testMergeSeveralPackagesOfAJar() throws Exception
+    {
+        mergeManager.addResourceToMerge("org/junit/runner/", "com/runner/");
+        mergeManager.addResourceToMerge("org/junit/", "com/dest/");
+        File file = File.createTempFile("merge", ".jar");
+        RawZipOutputStream outputStream = new RawZipOutputStream(file);
+        mergeManager.merge(outputStream);
+        outputStream.close();
+
+        // an entry matched by both packages is merged by the first one
+        assertThat(file, ZipMatcher.isZipContainingFiles("com/runner/JUnitCore.class", "com/dest/Assert.class"));
+        assertThat(ZipMatcher.getFileNameListFromZip(file).contains("com/dest/runner/JUnitCore.class"), Is.is(false));
+        file.delete();
+    }
+
 
 }
@@ -9,8 +9,8 @@ import java.io.FileFilter;
 import java.io.OutputStream;
 import java.net.URL;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 
@@ -21,7 +21,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
  */
 public class FileMergeTest
 {
-    private Map<OutputStream, List<String>> mergeContent = new HashMap<OutputStream, List<String>>();
+    private Map<OutputStream, Set<String>> mergeContent = new HashMap<OutputStream, Set<String>>();
 
     @Test
     public void testMergeSingleFile() throws Exception
@@ -15,9 +15,13 @@ import org.junit.internal.matchers.IsCollectionContaining;
 import org.junit.runner.RunWith;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Set;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 
@@ -88,6 +92,26 @@ public class ClassPathCrawlerTest
         ClassUtils.unloadLastJar();
     }
 
+    @Test
+    public void searchPackageInIndexedJar() throws Exception
+    {
+        File jar = File.createTempFile("izpack-indexed", ".jar");
+        jar.deleteOnExit();
+        JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(jar));
+        outputStream.putNextEntry(new ZipEntry(ClassPathIndex.INDEX_PATH));
+        // the package is only in the index, it can't be found by listing the jar
+        ClassPathIndex.write(Arrays.asList("com/sora/indexed/", "com/sora/indexed/IndexedPanel.class"), outputStream);
+        outputStream.closeEntry();
+        outputStream.close();
+        ClassUtils.loadJarInSystemClassLoader(jar);
+
+        Set<URL> urlList = classPathCrawler.searchPackageInClassPath("com.sora.indexed");
+        assertThat(urlList, IsCollectionContaining.hasItems(
+                new File(FileUtil.convertUrlToFilePath(jar.toURI().toURL()) + "!com/sora/indexed").toURI().toURL()
+        ));
+        ClassUtils.unloadLastJar();
+    }
+
     private URL loadVimPanel() throws Exception
     {
         URL jarUrl = ClassLoader.getSystemResource("com/izforge/izpack/merge/test/vim-panel-1.0-SNAPSHOT.jar");
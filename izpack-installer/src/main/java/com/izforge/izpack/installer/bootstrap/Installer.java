@@ -24,6 +24,7 @@ package com.izforge.izpack.installer.bootstrap;
 import com.izforge.izpack.installer.automation.AutomatedInstaller;
 import com.izforge.izpack.installer.console.ConsoleInstaller;
 import com.izforge.izpack.installer.container.impl.InstallerContainer;
+import com.izforge.izpack.installer.unpacker.UnpackJournal;
 import com.izforge.izpack.util.Debug;
 import com.izforge.izpack.util.StringTool;
 
@@ -132,6 +133,11 @@ public class Installer
                     {
                         langcode = args_it.next().trim();
                     }
+                    else if ("-resume".equalsIgnoreCase(arg))
+                    {
+                        // the files installed by an installation killed are kept
+                        System.setProperty(UnpackJournal.RESUME_PROPERTY, "true");
+                    }
                     else
                     {
                         type = INSTALLER_AUTO;
@@ -0,0 +1,324 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Writes files behind the thread decoding the packs.
+ * <p/>
+ * The decoding thread reads the data of a file into buffers taken from a bounded pool and queues
+ * them, a pool of writer threads opens the file, writes the buffers in order, gives them back to
+ * the pool, closes the file and sets its modification time. The decoding of a file then overlaps
+ * the writing of the previous ones, and the memory used is bounded by the pool.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class AsyncFileWriter
+{
+    /**
+     * Size of the buffers the data is decoded into.
+     */
+    public static final int BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Number of buffers of the pool for each writer thread.
+     */
+    private static final int BUFFERS_PER_THREAD = 4;
+
+    private final BlockingQueue<byte[]> buffers;
+
+    private final ExecutorService executor;
+
+    /**
+     * @param threads the number of writer threads
+     */
+    public AsyncFileWriter(int threads)
+    {
+        this(threads, threads * BUFFERS_PER_THREAD, BUFFER_SIZE);
+    }
+
+    /**
+     * @param threads    the number of writer threads
+     * @param count      the number of buffers of the pool
+     * @param bufferSize the size of the buffers
+     */
+    public AsyncFileWriter(int threads, int count, int bufferSize)
+    {
+        buffers = new ArrayBlockingQueue<byte[]>(count);
+        for (int i = 0; i < count; i++)
+        {
+            buffers.add(new byte[bufferSize]);
+        }
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "IzPack file writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts writing a file. Its data is then given with {@link PendingFile#read(InputStream, long)}
+     * and its end with {@link PendingFile#close()}.
+     *
+     * @param file         the file to write, replaced if it exists
+     * @param lastModified the modification time to set once written, or a negative value
+     * @return the file being written
+     */
+    public PendingFile open(File file, long lastModified)
+    {
+        PendingFile pendingFile = new PendingFile(file, lastModified);
+        executor.execute(pendingFile);
+        return pendingFile;
+    }
+
+    /**
+     * Stops the writer threads once the files being written are done.
+     */
+    public void shutdown()
+    {
+        executor.shutdown();
+    }
+
+    /**
+     * A file written by a writer thread.
+     */
+    public class PendingFile implements Runnable
+    {
+        private final File file;
+
+        private final long lastModified;
+
+        /**
+         * The buffers to write, a chunk without buffer ends the file, or aborts it if its length
+         * is negative.
+         */
+        private final LinkedBlockingQueue<Chunk> chunks = new LinkedBlockingQueue<Chunk>();
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private volatile IOException failure;
+
+        private PendingFile(File file, long lastModified)
+        {
+            this.file = file;
+            this.lastModified = lastModified;
+        }
+
+        public File getFile()
+        {
+            return file;
+        }
+
+        /**
+         * Reads data of the file into a buffer of the pool, waiting for a buffer to be given back
+         * if none is left, and queues it to be written.
+         *
+         * @param in     the stream of the data
+         * @param length the number of bytes of the file left to read
+         * @return the number of bytes read, at most the size of a buffer
+         * @throws IOException if the stream ends before, or if the file could not be written
+         */
+        public int read(InputStream in, long length) throws IOException
+        {
+            if (failure != null)
+            {
+                throw failure;
+            }
+            byte[] buffer;
+            try
+            {
+                buffer = buffers.take();
+            }
+            catch (InterruptedException e)
+            {
+                throw new InterruptedIOException("Interrupted while waiting for a buffer");
+            }
+            int maxBytes = (int) Math.min(length, buffer.length);
+            int bytesInBuffer = 0;
+            try
+            {
+                while (bytesInBuffer < maxBytes)
+                {
+                    int read = in.read(buffer, bytesInBuffer, maxBytes - bytesInBuffer);
+                    if (read == -1)
+                    {
+                        throw new IOException("Unexpected end of stream (installer corrupted?)");
+                    }
+                    bytesInBuffer += read;
+                }
+            }
+            catch (IOException e)
+            {
+                buffers.add(buffer);
+                throw e;
+            }
+            chunks.add(new Chunk(buffer, bytesInBuffer));
+            return bytesInBuffer;
+        }
+
+        /**
+         * Ends the data of the file, which is closed once written.
+         */
+        public void close()
+        {
+            chunks.add(new Chunk(null, 0));
+        }
+
+        /**
+         * Stops writing the file, leaving what was written so far.
+         */
+        public void abort()
+        {
+            chunks.add(new Chunk(null, -1));
+        }
+
+        /**
+         * Tells whether the file is written, or failed to be.
+         */
+        public boolean isDone()
+        {
+            return done.getCount() == 0;
+        }
+
+        /**
+         * Waits for the file to be written.
+         *
+         * @throws IOException if the file could not be written
+         */
+        public void await() throws IOException
+        {
+            try
+            {
+                done.await();
+            }
+            catch (InterruptedException e)
+            {
+                throw new InterruptedIOException("Interrupted while writing " + file);
+            }
+            if (failure != null)
+            {
+                throw failure;
+            }
+        }
+
+        public void run()
+        {
+            FileOutputStream out = null;
+            try
+            {
+                while (true)
+                {
+                    Chunk chunk = chunks.take();
+                    if (chunk.buffer == null)
+                    {
+                        if (chunk.length == 0 && failure == null)
+                        {
+                            if (out == null)
+                            {
+                                // an empty file
+                                out = new FileOutputStream(file);
+                            }
+                            out.close();
+                            out = null;
+                            if (lastModified >= 0)
+                            {
+                                file.setLastModified(lastModified);
+                            }
+                        }
+                        return;
+                    }
+                    try
+                    {
+                        if (failure == null)
+                        {
+                            if (out == null)
+                            {
+                                out = new FileOutputStream(file);
+                            }
+                            out.write(chunk.buffer, 0, chunk.length);
+                        }
+                    }
+                    catch (IOException e)
+                    {
+                        // the buffers still queued are given back until the file ends
+                        failure = e;
+                    }
+                    finally
+                    {
+                        buffers.add(chunk.buffer);
+                    }
+                }
+            }
+            catch (InterruptedException e)
+            {
+                failure = new InterruptedIOException("Interrupted while writing " + file);
+            }
+            catch (IOException e)
+            {
+                failure = e;
+            }
+            finally
+            {
+                if (out != null)
+                {
+                    try
+                    {
+                        out.close();
+                    }
+                    catch (IOException e)
+                    {
+                        // already failed
+                    }
+                }
+                done.countDown();
+            }
+        }
+    }
+
+    private static class Chunk
+    {
+        private final byte[] buffer;
+
+        private final int length;
+
+        private Chunk(byte[] buffer, int length)
+        {
+            this.buffer = buffer;
+            this.length = length;
+        }
+    }
+}
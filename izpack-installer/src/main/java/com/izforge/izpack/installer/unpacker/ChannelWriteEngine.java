@@ -0,0 +1,138 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Writes the installed files through a {@link FileChannel}.
+ * <p/>
+ * A file is allocated to its length when it is opened. Its data goes through a direct buffer
+ * sized to the largest file written so far, between {@link #MIN_BUFFER_SIZE} and
+ * {@link #MAX_BUFFER_SIZE}, so that small files are written in one call and large ones in few.
+ * The data of a file read from another file, like the files of a loose pack, is transferred from
+ * channel to channel by the system. A file closed before all its data is written is truncated to
+ * the data written.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class ChannelWriteEngine extends FileWriteEngine
+{
+    public static final int MIN_BUFFER_SIZE = 64 * 1024;
+
+    public static final int MAX_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private ByteBuffer buffer;
+
+    @Override
+    public OutputFile open(File file, long length) throws IOException
+    {
+        int size = MIN_BUFFER_SIZE;
+        while (size < length && size < MAX_BUFFER_SIZE)
+        {
+            size *= 2;
+        }
+        if (buffer == null || buffer.capacity() < size)
+        {
+            buffer = ByteBuffer.allocateDirect(size);
+        }
+
+        final RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try
+        {
+            out.setLength(length);
+        }
+        catch (IOException e)
+        {
+            out.close();
+            throw e;
+        }
+        final FileChannel channel = out.getChannel();
+        return new OutputFile()
+        {
+            private long position = 0;
+
+            public long copy(InputStream in, long length) throws IOException
+            {
+                long bytesCopied;
+                if (in instanceof FileInputStream)
+                {
+                    bytesCopied = channel.transferFrom(((FileInputStream) in).getChannel(), position, length);
+                }
+                else
+                {
+                    bytesCopied = copyBuffer(in, length);
+                }
+                if (bytesCopied <= 0)
+                {
+                    throw new IOException("Unexpected end of stream (installer corrupted?)");
+                }
+                position += bytesCopied;
+                return bytesCopied;
+            }
+
+            private int copyBuffer(InputStream in, long length) throws IOException
+            {
+                buffer.clear();
+                buffer.limit((int) Math.min(length, buffer.capacity()));
+                ReadableByteChannel source = Channels.newChannel(in);
+                while (buffer.hasRemaining())
+                {
+                    if (source.read(buffer) == -1)
+                    {
+                        break;
+                    }
+                }
+                buffer.flip();
+                int bytesInBuffer = buffer.remaining();
+                long writePosition = position;
+                while (buffer.hasRemaining())
+                {
+                    writePosition += channel.write(buffer, writePosition);
+                }
+                return bytesInBuffer;
+            }
+
+            public void close() throws IOException
+            {
+                try
+                {
+                    if (position < channel.size())
+                    {
+                        channel.truncate(position);
+                    }
+                }
+                finally
+                {
+                    out.close();
+                }
+            }
+        };
+    }
+}
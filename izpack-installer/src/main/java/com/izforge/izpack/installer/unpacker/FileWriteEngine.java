@@ -0,0 +1,79 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.data.Info;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Writes the installed files on the thread decoding a pack. An engine holds its buffers, and is
+ * used by one thread for one file at a time.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public abstract class FileWriteEngine
+{
+    /**
+     * Creates an engine.
+     *
+     * @param name {@link Info#UNPACKER_WRITE_ENGINE_NIO}, or the name of the stream engine
+     * @return the engine
+     */
+    public static FileWriteEngine create(String name)
+    {
+        if (Info.UNPACKER_WRITE_ENGINE_NIO.equals(name))
+        {
+            return new ChannelWriteEngine();
+        }
+        return new StreamWriteEngine();
+    }
+
+    /**
+     * Opens a file to write.
+     *
+     * @param file   the file, replaced if it exists
+     * @param length the length of the data of the file
+     * @return the file to copy the data to, then to close
+     * @throws IOException if the file cannot be opened
+     */
+    public abstract OutputFile open(File file, long length) throws IOException;
+
+    /**
+     * A file being written.
+     */
+    public interface OutputFile
+    {
+        /**
+         * Copies the next part of the data of the file from a stream.
+         *
+         * @param in     the stream of the data
+         * @param length the number of bytes of the file left to copy
+         * @return the number of bytes copied, at least one
+         * @throws IOException if the stream ends before, or if the file cannot be written
+         */
+        long copy(InputStream in, long length) throws IOException;
+
+        void close() throws IOException;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.PackTable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+
+/**
+ * Reads a pack starting with a {@link PackTable}. The whole table is read when the pack is opened,
+ * the data of the files is then reached by skipping forward in the data region.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class IndexedPackReader extends PackReader
+{
+    private final InputStream in;
+
+    private final PackTable table;
+
+    /**
+     * Index of the next file to read
+     */
+    private int next = 0;
+
+    /**
+     * Position of the pack stream in the data region
+     */
+    private long position = 0;
+
+    public IndexedPackReader(Unpacker unpacker, Pack pack, InputStream in) throws IOException
+    {
+        super(unpacker, pack);
+        this.in = in;
+        this.table = PackTable.read(in);
+    }
+
+    /**
+     * Gets the table of the pack, read in one go when the pack was opened.
+     */
+    public PackTable getTable()
+    {
+        return table;
+    }
+
+    @Override
+    public int getFileCount()
+    {
+        return table.size();
+    }
+
+    @Override
+    public PackFile readFile()
+    {
+        return table.getFile(next++);
+    }
+
+    @Override
+    public InputStream openFile(PackFile file) throws Exception
+    {
+        int index = next - 1;
+        int key = table.getStreamKey(index);
+        if (key >= 0)
+        {
+            return openEntry(file, key);
+        }
+        if (file.isBackReference())
+        {
+            InputStream is = unpacker.getPackAsStream(file.previousPackId, pack.uninstall);
+            PackTable.skip(is);
+            skipFully(is, file.offsetInPreviousPack);
+            return is;
+        }
+
+        long offset = table.getOffset(index);
+        if (offset < position)
+        {
+            throw new IOException("Data of " + file.getTargetPath() + " already read");
+        }
+        skipFully(in, offset - position);
+        position = offset + file.length();
+        return keepOpen(in);
+    }
+
+    @Override
+    public void skipFile(PackFile file)
+    {
+        // the data is only reached when a file is opened
+    }
+
+    @Override
+    public long getDataOffset()
+    {
+        return table.getOffset(next - 1);
+    }
+
+    @Override
+    public ObjectInputStream openMetadata() throws IOException
+    {
+        return new ObjectInputStream(new ByteArrayInputStream(table.getMetadata()));
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+}
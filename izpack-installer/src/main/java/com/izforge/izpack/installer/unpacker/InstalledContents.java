@@ -0,0 +1,160 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers where the content stored in the packs was installed, so that a back reference to it is
+ * satisfied by copying the installed file instead of decoding the pack it is stored in again.
+ * <p/>
+ * A content is identified by the pack storing it and its offset in the data region of the pack. An
+ * installed file is only used while it still has the length and the modification time it was
+ * installed with, and until another file is installed to the same path.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class InstalledContents
+{
+    private final Map<String, InstalledFile> files = new HashMap<String, InstalledFile>();
+
+    private final Map<File, String> keys = new HashMap<File, String>();
+
+    /**
+     * Gets the key of a content.
+     *
+     * @param packId the id of the pack storing the content
+     * @param offset the offset of the content in the data region of the pack
+     */
+    public static String getKey(String packId, long offset)
+    {
+        return packId + "@" + offset;
+    }
+
+    /**
+     * Remembers a file just installed with a content.
+     *
+     * @param key  the key of the content
+     * @param file the installed file
+     */
+    public synchronized void add(String key, File file)
+    {
+        remove(file);
+        files.put(key, new InstalledFile(file));
+        keys.put(file, key);
+    }
+
+    /**
+     * Forgets the content of a file, which is about to be overwritten.
+     */
+    public synchronized void remove(File file)
+    {
+        String key = keys.remove(file);
+        if (key != null)
+        {
+            files.remove(key);
+        }
+    }
+
+    /**
+     * Gets a file installed with a content.
+     *
+     * @param key    the key of the content
+     * @param length the length of the content
+     * @return the file, or null if the content was not installed, or if the file was removed or
+     *         changed since
+     */
+    public synchronized File get(String key, long length)
+    {
+        InstalledFile installedFile = files.get(key);
+        if (installedFile == null)
+        {
+            return null;
+        }
+        File file = installedFile.file;
+        if (file.length() != length || file.lastModified() != installedFile.lastModified)
+        {
+            remove(file);
+            return null;
+        }
+        return file;
+    }
+
+    /**
+     * Copies a file with the channels of the files, letting the system move the data.
+     *
+     * @param source the file to copy
+     * @param target the file to write, replaced if it exists
+     * @throws IOException if the file cannot be copied
+     */
+    public static void copy(File source, File target) throws IOException
+    {
+        FileInputStream in = new FileInputStream(source);
+        try
+        {
+            FileOutputStream out = new FileOutputStream(target);
+            try
+            {
+                FileChannel inChannel = in.getChannel();
+                FileChannel outChannel = out.getChannel();
+                long length = inChannel.size();
+                long position = 0;
+                while (position < length)
+                {
+                    long transferred = inChannel.transferTo(position, length - position, outChannel);
+                    if (transferred <= 0)
+                    {
+                        throw new IOException(source + " changed while copied");
+                    }
+                    position += transferred;
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static class InstalledFile
+    {
+        private final File file;
+
+        private final long lastModified;
+
+        private InstalledFile(File file)
+        {
+            this.file = file;
+            this.lastModified = file.lastModified();
+        }
+    }
+}
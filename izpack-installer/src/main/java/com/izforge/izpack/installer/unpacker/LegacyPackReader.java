@@ -0,0 +1,118 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.PackFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+
+/**
+ * Reads a pack written as a Java serialization stream, each file description being followed by
+ * its data.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class LegacyPackReader extends PackReader
+{
+    private final ObjectInputStream objIn;
+
+    private final int fileCount;
+
+    public LegacyPackReader(Unpacker unpacker, Pack pack, InputStream in) throws IOException
+    {
+        super(unpacker, pack);
+        objIn = new ObjectInputStream(in);
+        fileCount = objIn.readInt();
+    }
+
+    @Override
+    public int getFileCount()
+    {
+        return fileCount;
+    }
+
+    @Override
+    public PackFile readFile() throws Exception
+    {
+        return (PackFile) objIn.readObject();
+    }
+
+    @Override
+    public InputStream openFile(PackFile file) throws Exception
+    {
+        if (file.isBackReference())
+        {
+            InputStream is = unpacker.getPackAsStream(file.previousPackId, pack.uninstall);
+            ObjectInputStream pis = new ObjectInputStream(is);
+            // must wrap for blockdata use by objectstream
+            // (otherwise strange result)
+            // skip on underlaying stream (for some reason not
+            // possible on ObjectStream)
+            is.skip(file.offsetInPreviousPack - 4);
+            // but the stream header is now already read (== 4
+            // bytes)
+            if (file.isPack200Jar() || file.isUncompressed())
+            {
+                int key = pis.readInt();
+                pis.close();
+                return openEntry(file, key);
+            }
+            return pis;
+        }
+        if (file.isPack200Jar() || file.isUncompressed())
+        {
+            return openEntry(file, objIn.readInt());
+        }
+        return keepOpen(objIn);
+    }
+
+    @Override
+    public void skipFile(PackFile file) throws IOException
+    {
+        if (!file.isBackReference() && !pack.loose)
+        {
+            // pack200 and uncompressed files only store the key of their own entry
+            if (file.isPack200Jar() || file.isUncompressed())
+            {
+                objIn.skip(Integer.SIZE / 8);
+            }
+            else
+            {
+                objIn.skip(file.length());
+            }
+        }
+    }
+
+    @Override
+    public ObjectInputStream openMetadata()
+    {
+        return objIn;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        objIn.close();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.PackTable;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+
+/**
+ * Reads the files of a pack, whatever the format the pack was written in.
+ * <p/>
+ * The files are read in order with {@link #readFile()}, then the data of the file last read is
+ * either opened with {@link #openFile(PackFile)} or skipped with {@link #skipFile(PackFile)}.
+ * Once all files are read, {@link #openMetadata()} gives the parsable, executable and update
+ * check descriptors.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public abstract class PackReader
+{
+    protected final Unpacker unpacker;
+
+    protected final Pack pack;
+
+    protected PackReader(Unpacker unpacker, Pack pack)
+    {
+        this.unpacker = unpacker;
+        this.pack = pack;
+    }
+
+    /**
+     * Opens a pack, with an {@link IndexedPackReader} if it starts with a pack table and with a
+     * {@link LegacyPackReader} otherwise.
+     *
+     * @param unpacker the unpacker giving access to the packs and resources of the installer
+     * @param pack     the pack to read
+     * @return the reader, positioned before the first file
+     */
+    public static PackReader open(Unpacker unpacker, Pack pack) throws Exception
+    {
+        InputStream in = new BufferedInputStream(unpacker.getPackAsStream(pack.id, pack.uninstall));
+        in.mark(4);
+        int magic = new DataInputStream(in).readInt();
+        in.reset();
+        if (PackTable.isPackTable(magic))
+        {
+            return new IndexedPackReader(unpacker, pack, in);
+        }
+        return new LegacyPackReader(unpacker, pack, in);
+    }
+
+    /**
+     * Gets the number of files of the pack.
+     */
+    public abstract int getFileCount();
+
+    /**
+     * Reads the description of the next file.
+     */
+    public abstract PackFile readFile() throws Exception;
+
+    /**
+     * Opens the data of the file last read. The data of a pack200 jar is its Pack200 archive.
+     *
+     * @param file the file last read
+     * @return a stream to close once read
+     */
+    public abstract InputStream openFile(PackFile file) throws Exception;
+
+    /**
+     * Skips the data of the file last read, when it is not installed.
+     *
+     * @param file the file last read
+     */
+    public abstract void skipFile(PackFile file) throws IOException;
+
+    /**
+     * Gets the offset of the data of the file last read in the data region of the pack, which the
+     * back references to the file point at.
+     *
+     * @return the offset, or -1 if the data of the file is not in the data region
+     */
+    public long getDataOffset()
+    {
+        return -1;
+    }
+
+    /**
+     * Opens the parsable, executable and update check descriptors, once all files are read.
+     */
+    public abstract ObjectInputStream openMetadata() throws IOException;
+
+    public abstract void close() throws IOException;
+
+    /**
+     * Opens the entry holding the data of a pack200 jar or of a file stored uncompressed.
+     *
+     * @param file the file
+     * @param key  the number of the entry
+     */
+    protected InputStream openEntry(PackFile file, int key) throws Exception
+    {
+        if (file.isPack200Jar())
+        {
+            return unpacker.resourceManager.getInputStream("/packs/pack200-" + key);
+        }
+        return unpacker.resourceManager.getInputStream("/packs/uncompressed-" + key);
+    }
+
+    /**
+     * Skips exactly a number of bytes.
+     */
+    protected static void skipFully(InputStream in, long length) throws IOException
+    {
+        while (length > 0)
+        {
+            long skipped = in.skip(length);
+            if (skipped <= 0)
+            {
+                // some streams only skip what is buffered
+                if (in.read() == -1)
+                {
+                    throw new IOException("Unexpected end of stream (installer corrupted?)");
+                }
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+
+    /**
+     * Wraps the stream of the pack so that closing the data of a file leaves the pack open.
+     */
+    protected static InputStream keepOpen(InputStream in)
+    {
+        return new FilterInputStream(in)
+        {
+            @Override
+            public void close() throws IOException
+            {
+                // the pack stream is closed by the reader
+            }
+        };
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Writes the installed files through a {@link FileOutputStream}, a small buffer at a time.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class StreamWriteEngine extends FileWriteEngine
+{
+    private final byte[] buffer = new byte[5120];
+
+    @Override
+    public OutputFile open(File file, long length) throws IOException
+    {
+        final FileOutputStream out = new FileOutputStream(file);
+        return new OutputFile()
+        {
+            public long copy(InputStream in, long length) throws IOException
+            {
+                int maxBytes = (int) Math.min(length, buffer.length);
+                int bytesInBuffer = in.read(buffer, 0, maxBytes);
+                if (bytesInBuffer == -1)
+                {
+                    throw new IOException("Unexpected end of stream (installer corrupted?)");
+                }
+                out.write(buffer, 0, bytesInBuffer);
+                return bytesInBuffer;
+            }
+
+            public void close() throws IOException
+            {
+                out.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.handler.AbstractUIProgressHandler;
+
+/**
+ * A progress handler which hands the events of the threads unpacking packs at the same time one by
+ * one to the handler of the installation.
+ *
+ * @author Anthonin Bonnefoy
+ */
+class SynchronizedProgressHandler implements AbstractUIProgressHandler
+{
+    private final AbstractUIProgressHandler handler;
+
+    SynchronizedProgressHandler(AbstractUIProgressHandler handler)
+    {
+        this.handler = handler;
+    }
+
+    public synchronized void startAction(String name, int no_of_steps)
+    {
+        handler.startAction(name, no_of_steps);
+    }
+
+    public synchronized void stopAction()
+    {
+        handler.stopAction();
+    }
+
+    public synchronized void nextStep(String step_name, int step_no, int no_of_substeps)
+    {
+        handler.nextStep(step_name, step_no, no_of_substeps);
+    }
+
+    public synchronized void setSubStepNo(int no_of_substeps)
+    {
+        handler.setSubStepNo(no_of_substeps);
+    }
+
+    public synchronized void progress(int substep_no, String message)
+    {
+        handler.progress(substep_no, message);
+    }
+
+    public synchronized void emitNotification(String message)
+    {
+        handler.emitNotification(message);
+    }
+
+    public synchronized boolean emitWarning(String title, String message)
+    {
+        return handler.emitWarning(title, message);
+    }
+
+    public synchronized void emitError(String title, String message)
+    {
+        handler.emitError(title, message);
+    }
+
+    public synchronized void emitErrorAndBlockNext(String title, String message)
+    {
+        handler.emitErrorAndBlockNext(title, message);
+    }
+
+    public synchronized int askQuestion(String title, String question, int choices)
+    {
+        return handler.askQuestion(title, question, choices);
+    }
+
+    public synchronized int askQuestion(String title, String question, int choices, int default_choice)
+    {
+        return handler.askQuestion(title, question, choices, default_choice);
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Journal of the files installed by the unpacker, kept under the installation path while the
+ * packs are unpacked, so that an installation killed on the way can be resumed.
+ * <p/>
+ * A line is appended when a file starts to be written, and another one once it is written with
+ * its length and the CRC-32 of its content. Each line is handed to the system as soon as it is
+ * written, a line cut by the end of the process is ignored. When resuming, a file whose entry
+ * is found is kept if it still has its length and content, and a file started but not
+ * completed is overwritten without asking.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class UnpackJournal
+{
+    /**
+     * Name of the journal, in the installation path.
+     */
+    public static final String NAME = ".installationjournal";
+
+    /**
+     * System property resuming the installation from the journal, set by the <code>-resume</code>
+     * option of the installer.
+     */
+    public static final String RESUME_PROPERTY = "izpack.resume";
+
+    private static final char STARTED = 'S';
+
+    private static final char COMPLETED = 'C';
+
+    private final File file;
+
+    private final Writer writer;
+
+    /**
+     * The files started by the installation resumed, by key.
+     */
+    private final Set<String> started = new HashSet<String>();
+
+    /**
+     * The files completed by the installation resumed, by key.
+     */
+    private final Map<String, Entry> completed = new HashMap<String, Entry>();
+
+    /**
+     * The checksums of the files completed, by path.
+     */
+    private final Map<String, Long> checksums = new HashMap<String, Long>();
+
+    /**
+     * Opens the journal of an installation.
+     *
+     * @param file   the journal
+     * @param resume read the journal of the installation resumed and append to it, otherwise
+     *               start a new one
+     * @throws IOException if the journal cannot be read or written
+     */
+    public UnpackJournal(File file, boolean resume) throws IOException
+    {
+        this.file = file;
+        if (resume && file.exists())
+        {
+            read();
+        }
+        else
+        {
+            resume = false;
+        }
+        writer = new OutputStreamWriter(new FileOutputStream(file, resume), "UTF-8");
+    }
+
+    private void read() throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try
+        {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = reader.read()) != -1)
+            {
+                if (c != '\n')
+                {
+                    line.append((char) c);
+                    continue;
+                }
+                String[] fields = line.toString().split("\t", 6);
+                line.setLength(0);
+                try
+                {
+                    if (fields.length == 3 && fields[0].charAt(0) == STARTED)
+                    {
+                        started.add(getKey(fields[1], Integer.parseInt(fields[2])));
+                    }
+                    else if (fields.length == 6 && fields[0].charAt(0) == COMPLETED)
+                    {
+                        Entry entry = new Entry(fields[5], Long.parseLong(fields[3]), Long.parseLong(fields[4], 16));
+                        completed.put(getKey(fields[1], Integer.parseInt(fields[2])), entry);
+                        checksums.put(entry.path, entry.checksum);
+                    }
+                }
+                catch (RuntimeException e)
+                {
+                    // a line damaged by the end of the process, ignored
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * Records that a file starts to be written.
+     *
+     * @param packId the id of the pack of the file
+     * @param index  the index of the file in its pack
+     */
+    public synchronized void started(String packId, int index) throws IOException
+    {
+        write(STARTED + "\t" + packId + "\t" + index + "\n");
+    }
+
+    /**
+     * Records that a file is written.
+     *
+     * @param packId   the id of the pack of the file
+     * @param index    the index of the file in its pack
+     * @param file     the file
+     * @param checksum the CRC-32 of the content of the file
+     */
+    public synchronized void completed(String packId, int index, File file, long checksum) throws IOException
+    {
+        write(COMPLETED + "\t" + packId + "\t" + index + "\t" + file.length() + "\t" + Long.toHexString(checksum)
+                + "\t" + file.getPath() + "\n");
+        checksums.put(file.getPath(), checksum);
+    }
+
+    private void write(String line) throws IOException
+    {
+        writer.write(line);
+        writer.flush();
+    }
+
+    /**
+     * Gets the checksum of a file completed, by this installation or by the one resumed.
+     *
+     * @return the CRC-32 of the file, or null if it is not completed
+     */
+    public synchronized Long getChecksum(File file)
+    {
+        return checksums.get(file.getPath());
+    }
+
+    /**
+     * Tells whether a file was written by the installation resumed and is still there, with the
+     * same length and content.
+     *
+     * @param packId the id of the pack of the file
+     * @param index  the index of the file in its pack
+     * @param file   the file
+     * @throws IOException if the file cannot be read
+     */
+    public boolean isCompleted(String packId, int index, File file) throws IOException
+    {
+        Entry entry;
+        synchronized (this)
+        {
+            entry = completed.get(getKey(packId, index));
+        }
+        return entry != null && entry.path.equals(file.getPath()) && file.isFile()
+                && file.length() == entry.length && computeChecksum(file) == entry.checksum;
+    }
+
+    /**
+     * Tells whether a file started to be written by the installation resumed, whatever is left of
+     * it belongs to the installation.
+     *
+     * @param packId the id of the pack of the file
+     * @param index  the index of the file in its pack
+     */
+    public synchronized boolean isStarted(String packId, int index)
+    {
+        return started.contains(getKey(packId, index));
+    }
+
+    /**
+     * Closes the journal.
+     *
+     * @param delete delete the journal, once the installation is complete
+     */
+    public void close(boolean delete) throws IOException
+    {
+        writer.close();
+        if (delete)
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * Computes the CRC-32 of the content of a file.
+     */
+    public static long computeChecksum(File file) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                crc.update(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return crc.getValue();
+    }
+
+    private static String getKey(String packId, int index)
+    {
+        return packId + "\t" + index;
+    }
+
+    private static class Entry
+    {
+        private final String path;
+
+        private final long length;
+
+        private final long checksum;
+
+        private Entry(String path, long length, long checksum)
+        {
+            this.path = path;
+            this.length = length;
+            this.checksum = checksum;
+        }
+    }
+}
@@ -25,6 +25,7 @@ package com.izforge.izpack.installer.unpacker;
 import com.izforge.izpack.api.data.*;
 import com.izforge.izpack.api.event.InstallerListener;
 import com.izforge.izpack.api.exception.InstallerException;
+import com.izforge.izpack.api.handler.AbstractUIProgressHandler;
 import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.data.ExecutableFile;
@@ -40,8 +41,22 @@ import java.io.*;
 import java.lang.reflect.Constructor;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 import java.util.jar.Pack200;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Checksum;
 
 /**
  * Unpacker class.
@@ -53,7 +68,20 @@ public class Unpacker extends UnpackerBase
 {
     private static final String tempSubPath = "/IzpackWebTemp";
 
-    private Pack200.Unpacker unpacker;
+    /**
+     * The queue of the blockable files, shared by all the packs.
+     */
+    private FileQueue fileQueue;
+
+    /**
+     * The files installed with the content stored in the packs, copied by the back references.
+     */
+    private InstalledContents installedContents;
+
+    /**
+     * The journal of the installed files, or null if none is kept.
+     */
+    private UnpackJournal journal;
 
 
     /**
@@ -75,15 +103,17 @@ public class Unpacker extends UnpackerBase
     public void run()
     {
         addToInstances();
+        AbstractUIProgressHandler progressHandler = handler;
+        ExecutorService packExecutor = null;
         try
         {
             //
             // Initialisations
-            FileOutputStream out;
-            FileQueue fq = null;
             ArrayList<ParsableFile> parsables = new ArrayList<ParsableFile>();
             ArrayList<ExecutableFile> executables = new ArrayList<ExecutableFile>();
             ArrayList<UpdateCheck> updatechecks = new ArrayList<UpdateCheck>();
+            fileQueue = null;
+            installedContents = new InstalledContents();
             List<Pack> packs = idata.getSelectedPacks();
             int npacks = packs.size();
             handler.startAction("Unpacking", npacks);
@@ -94,240 +124,43 @@ public class Unpacker extends UnpackerBase
             packs = idata.getSelectedPacks();
             npacks = packs.size();
 
-            // We unpack the selected packs
+            // The journal of the installed files, to resume the installation if it is killed
+            journal = openJournal();
+
+            List<FutureTask<PackResult>> tasks = new ArrayList<FutureTask<PackResult>>();
+            packExecutor = startPackTasks(packs, customActions, tasks);
+
+            // The packs are completed in order
             for (int i = 0; i < npacks; i++)
             {
-                // We get the pack stream
-                //int n = installData.allPacks.indexOf(packs.get(i));
-                Pack p = packs.get(i);
-
-                // evaluate condition
-                if (p.hasCondition())
+                FutureTask<PackResult> task = tasks.get(i);
+                if (packExecutor == null)
                 {
-                    if (rules != null)
-                    {
-                        if (!rules.isConditionTrue(p.getCondition()))
-                        {
-                            // skip pack, condition is not fullfilled.
-                            continue;
-                        }
-                    }
-                    else
-                    {
-                        // TODO: skip pack, because condition can not be checked
-                    }
+                    task.run();
                 }
-
-                // Custom action listener stuff --- beforePack ----
-                informListeners(customActions, InstallerListener.BEFORE_PACK, packs.get(i),
-                        npacks, handler);
-                ObjectInputStream objIn = new ObjectInputStream(getPackAsStream(p.id, p.uninstall));
-
-                // We unpack the files
-                int nfiles = objIn.readInt();
-
-                // We get the internationalized name of the pack
-                final Pack pack = (packs.get(i));
-                String stepname = pack.name;// the message to be passed to the
-
-                // installpanel
-                if (!(pack.id == null || "".equals(pack.id)))
-                {
-                    final String name = idata.getLangpack().getString(pack.id);
-                    if (name != null && !"".equals(name))
-                    {
-                        stepname = name;
-                    }
+                PackResult packResult = getPackResult(task);
+                if (packResult == null)
+                { // Interrupt was initiated; perform it.
+                    return;
                 }
-                if (pack.isHidden())
+                if (packResult.packReader == null)
                 {
-                    // TODO: hide the pack completely
-                    // hide the pack name if pack is hidden
-                    stepname = "";
+                    // skipped, condition is not fulfilled
+                    continue;
                 }
-                handler.nextStep(stepname, i + 1, nfiles);
-                for (int j = 0; j < nfiles; j++)
+                Pack pack = packs.get(i);
+                if (packResult.paths != null)
                 {
-                    // We read the header
-                    PackFile pf = (PackFile) objIn.readObject();
-                    // TODO: reaction if condition can not be checked
-                    if (pf.hasCondition() && (rules != null))
-                    {
-                        if (!rules.isConditionTrue(pf.getCondition()))
-                        {
-                            if (!pf.isBackReference())
-                            {
-                                // skip, condition is not fulfilled
-                                objIn.skip(pf.length());
-                            }
-                            continue;
-                        }
-                    }
-                    if (OsConstraintHelper.oneMatchesCurrentSystem(pf.osConstraints()))
+                    for (String path : packResult.paths)
                     {
-                        // We translate & build the path
-                        String path = IoHelper.translatePath(pf.getTargetPath(), variableSubstitutor);
-                        File pathFile = new File(path);
-                        File dest = pathFile;
-                        if (!pf.isDirectory())
-                        {
-                            dest = pathFile.getParentFile();
-                        }
-
-                        handleMkDirs(pf, dest);
-
                         // Add path to the log
                         udata.addFile(path, pack.uninstall);
-
-                        if (pf.isDirectory())
-                        {
-                            continue;
-                        }
-
-                        // Custom action listener stuff --- beforeFile ----
-                        informListeners(customActions, InstallerListener.BEFORE_FILE, pathFile, pf,
-                                null);
-
-                        handler.progress(j, path);
-
-                        // if this file exists and should not be overwritten,
-                        // check
-                        // what to do
-                        if ((pathFile.exists()) && (pf.override() != OverrideType.OVERRIDE_TRUE))
-                        {
-                            if (!isOverwriteFile(pf, pathFile))
-                            {
-                                if (!pf.isBackReference() && !(packs.get(i)).loose)
-                                {
-                                    if (pf.isPack200Jar())
-                                    {
-                                        objIn.skip(Integer.SIZE / 8);
-                                    }
-                                    else
-                                    {
-                                        objIn.skip(pf.length());
-                                    }
-                                }
-                                continue;
-                            }
-
-                        }
-
-                        handleOverrideRename(pf, pathFile);
-
-                        // We copy the file
-                        InputStream pis = objIn;
-                        if (pf.isBackReference())
-                        {
-                            InputStream is = getPackAsStream(pf.previousPackId, pack.uninstall);
-                            pis = new ObjectInputStream(is);
-                            // must wrap for blockdata use by objectstream
-                            // (otherwise strange result)
-                            // skip on underlaying stream (for some reason not
-                            // possible on ObjectStream)
-                            is.skip(pf.offsetInPreviousPack - 4);
-                            // but the stream header is now already read (== 4
-                            // bytes)
-                        }
-                        else if ((packs.get(i)).loose)
-                        {
-                            /* Old way of doing the job by using the (absolute) sourcepath.
-                            * Since this is very likely to fail and does not confirm to the documentation,
-                            * prefer using relative path's
-                           pis = new FileInputStream(pf.sourcePath);
-                            */
-
-                            File resolvedFile = new File(getAbsolutInstallSource(), pf
-                                    .getRelativeSourcePath());
-                            if (!resolvedFile.exists())
-                            {
-                                //try alternative destination - the current working directory
-                                //user.dir is likely (depends on launcher type) the current directory of the executable or jar-file...
-                                final File userDir = new File(System.getProperty("user.dir"));
-                                resolvedFile = new File(userDir, pf.getRelativeSourcePath());
-                            }
-                            if (resolvedFile.exists())
-                            {
-                                pis = new FileInputStream(resolvedFile);
-                                //may have a different length & last modified than we had at compiletime, therefore we have to build a new PackFile for the copy process...
-                                pf = new PackFile(resolvedFile.getParentFile(), resolvedFile, pf.getTargetPath(), pf.osConstraints(), pf.override(), pf.overrideRenameTo(), pf.blockable(), pf.getAdditionals());
-                            }
-                            else
-                            {
-                                //file not found
-                                //issue a warning (logging api pending)
-                                //since this file was loosely bundled, we continue with the installation.
-                                System.out.println("Could not find loosely bundled file: " + pf.getRelativeSourcePath());
-                                if (!handler.emitWarning("File not found", "Could not find loosely bundled file: " + pf.getRelativeSourcePath()))
-                                {
-                                    throw new InstallerException("Installation cancelled");
-                                }
-                                continue;
-                            }
-                        }
-
-                        File tmpFile = null;
-                        if (blockableForCurrentOs(pf))
-                        {
-                            // If target file might be blocked the output file must first
-                            // refer to a temporary file, because Windows Setup API
-                            // doesn't work on streams but only on physical files
-                            tmpFile = File.createTempFile("__FQ__", null, pathFile.getParentFile());
-                            out = new FileOutputStream(tmpFile);
-                        }
-                        else
-                        {
-                            out = new FileOutputStream(pathFile);
-                        }
-
-                        if (pf.isPack200Jar())
-                        {
-                            int key = objIn.readInt();
-                            InputStream pack200Input = resourceManager.getInputStream("/packs/pack200-" + key);
-                            Pack200.Unpacker unpacker = getPack200Unpacker();
-                            java.util.jar.JarOutputStream jarOut = new java.util.jar.JarOutputStream(out);
-                            unpacker.unpack(pack200Input, jarOut);
-                            jarOut.close();
-                        }
-                        else
-                        {
-                            byte[] buffer = new byte[5120];
-                            long bytesCopied = 0;
-                            while (bytesCopied < pf.length())
-                            {
-                                if (performInterrupted())
-                                { // Interrupt was initiated; perform it.
-                                    out.close();
-                                    if (pis != objIn)
-                                    {
-                                        pis.close();
-                                    }
-                                    return;
-                                }
-                                bytesCopied = writeBuffer(pf, buffer, out, pis, bytesCopied);
-                            }
-                            out.close();
-                        }
-
-                        if (pis != objIn)
-                        {
-                            pis.close();
-                        }
-
-                        handleTimeStamp( pf, pathFile, tmpFile);
-
-                        fq = handleBlockable(pf, pathFile, tmpFile, fq, customActions);
-                    }
-                    else
-                    {
-                        if (!pf.isBackReference())
-                        {
-                            objIn.skip(pf.length());
-                        }
                     }
                 }
+                PackReader packReader = packResult.packReader;
 
                 // Load information about parsable files
+                ObjectInputStream objIn = packReader.openMetadata();
                 int numParsables = objIn.readInt();
                 for (int k = 0; k < numParsables; k++)
                 {
@@ -360,6 +193,7 @@ public class Unpacker extends UnpackerBase
                 }
 
                 objIn.close();
+                packReader.close();
 
                 if (performInterrupted())
                 { // Interrupt was initiated; perform it.
@@ -367,16 +201,16 @@ public class Unpacker extends UnpackerBase
                 }
 
                 // Custom action listener stuff --- afterPack ----
-                informListeners(customActions, InstallerListener.AFTER_PACK, packs.get(i),
+                informListeners(customActions, InstallerListener.AFTER_PACK, pack,
                         i, handler);
             }
 
             // Commit a file queue if there are potentially blocked files
             // Use one file queue for all packs
-            if (fq != null)
+            if (fileQueue != null)
             {
-                fq.execute();
-                idata.setRebootNecessary(fq.isRebootNecessary());
+                fileQueue.execute();
+                idata.setRebootNecessary(fileQueue.isRebootNecessary());
             }
 
             // We use the scripts parser
@@ -418,6 +252,13 @@ public class Unpacker extends UnpackerBase
             // write installation information
             writeInstallationInformation();
 
+            // the installation is complete, there is nothing to resume
+            if (journal != null)
+            {
+                journal.close(true);
+                journal = null;
+            }
+
             // The end :-)
             handler.stopAction();
         }
@@ -444,17 +285,799 @@ public class Unpacker extends UnpackerBase
         }
         finally
         {
+            if (packExecutor != null)
+            {
+                packExecutor.shutdownNow();
+            }
+            handler = progressHandler;
+            if (journal != null)
+            {
+                try
+                {
+                    journal.close(false);
+                }
+                catch (IOException e)
+                {
+                    // every line of the journal is already written
+                }
+            }
             removeFromInstances();
         }
     }
 
-    private Pack200.Unpacker getPack200Unpacker()
+    /**
+     * Unpacks the files of packs through the same tasks as {@link #run()}, without listeners. The
+     * parsable and executable files, the update checks and the installation information are left
+     * out. Used by the benchmarks.
+     *
+     * @param packs the packs to unpack
+     * @throws Exception the failure of the unpacking
+     */
+    public void unpackFiles(List<Pack> packs) throws Exception
     {
-        if (unpacker == null)
+        AbstractUIProgressHandler progressHandler = handler;
+        ExecutorService packExecutor = null;
+        fileQueue = null;
+        installedContents = new InstalledContents();
+        journal = openJournal();
+        try
+        {
+            List<FutureTask<PackResult>> tasks = new ArrayList<FutureTask<PackResult>>();
+            packExecutor = startPackTasks(packs, new ArrayList<InstallerListener>(), tasks);
+            for (FutureTask<PackResult> task : tasks)
+            {
+                if (packExecutor == null)
+                {
+                    task.run();
+                }
+                PackResult packResult = getPackResult(task);
+                if (packResult != null && packResult.packReader != null)
+                {
+                    packResult.packReader.close();
+                }
+            }
+            if (journal != null)
+            {
+                journal.close(true);
+                journal = null;
+            }
+        }
+        finally
+        {
+            if (packExecutor != null)
+            {
+                packExecutor.shutdownNow();
+            }
+            handler = progressHandler;
+            if (journal != null)
+            {
+                journal.close(false);
+                journal = null;
+            }
+        }
+    }
+
+    /**
+     * Opens the journal of the installed files, if the installer keeps one.
+     *
+     * @return the journal, or null if none is kept
+     * @throws IOException if the journal cannot be read
+     */
+    private UnpackJournal openJournal() throws IOException
+    {
+        if (!idata.getInfo().isUnpackerJournal())
+        {
+            return null;
+        }
+        File installPath = new File(idata.getInstallPath());
+        installPath.mkdirs();
+        return new UnpackJournal(new File(installPath, UnpackJournal.NAME),
+                Boolean.getBoolean(UnpackJournal.RESUME_PROPERTY));
+    }
+
+    /**
+     * Creates a task per pack and, when the packs are unpacked at the same time, starts them.
+     *
+     * @param packs         the packs to unpack
+     * @param customActions the listeners
+     * @param tasks         receives the tasks, in the order of the packs
+     * @return the executor running the tasks, or null if the caller runs them in order
+     * @throws Exception if the dependencies of the packs cannot be read
+     */
+    private ExecutorService startPackTasks(List<Pack> packs, List<InstallerListener> customActions,
+                                           List<FutureTask<PackResult>> tasks) throws Exception
+    {
+        int npacks = packs.size();
+        // The packs are unpacked at the same time only without listeners, whose events would
+        // be mixed up
+        int threads = 1;
+        if (customActions.isEmpty())
+        {
+            threads = Math.min(idata.getInfo().getUnpackerPackThreads(), npacks);
+        }
+        List<Set<Integer>> dependencies = getPackDependencies(packs, threads > 1);
+        for (int i = 0; i < npacks; i++)
+        {
+            tasks.add(new FutureTask<PackResult>(new PackTask(packs.get(i), i, npacks, customActions,
+                    dependencies.get(i), tasks, threads > 1)));
+        }
+        if (threads <= 1)
+        {
+            return null;
+        }
+        handler = new SynchronizedProgressHandler(handler);
+        ExecutorService packExecutor = Executors.newFixedThreadPool(threads);
+        for (FutureTask<PackResult> task : tasks)
+        {
+            packExecutor.execute(task);
+        }
+        return packExecutor;
+    }
+
+    /**
+     * Computes the packs each pack must wait for when the packs are unpacked at the same time: the
+     * packs its back references point to, and the packs before it installing a file to the same
+     * path, which must be overwritten in order. A pack which cannot be indexed waits for all the
+     * packs before it, and all the packs after it wait for it.
+     *
+     * @param packs      the selected packs
+     * @param concurrent whether the packs are unpacked at the same time
+     * @return the indexes of the packs each pack waits for
+     */
+    private List<Set<Integer>> getPackDependencies(List<Pack> packs, boolean concurrent) throws Exception
+    {
+        List<Set<Integer>> dependencies = new ArrayList<Set<Integer>>();
+        Map<String, Integer> packIndexes = new HashMap<String, Integer>();
+        Map<String, Integer> lastWriters = new HashMap<String, Integer>();
+        int barrier = -1;
+        for (int i = 0; i < packs.size(); i++)
+        {
+            Set<Integer> packDependencies = new TreeSet<Integer>();
+            dependencies.add(packDependencies);
+            if (!concurrent)
+            {
+                continue;
+            }
+            Pack pack = packs.get(i);
+            packIndexes.put(pack.id, i);
+            if (barrier >= 0)
+            {
+                packDependencies.add(barrier);
+            }
+            PackReader packReader = PackReader.open(this, pack);
+            try
+            {
+                if (!(packReader instanceof IndexedPackReader))
+                {
+                    for (int j = 0; j < i; j++)
+                    {
+                        packDependencies.add(j);
+                    }
+                    barrier = i;
+                    continue;
+                }
+                PackTable table = ((IndexedPackReader) packReader).getTable();
+                for (int j = 0; j < table.size(); j++)
+                {
+                    PackFile pf = table.getFile(j);
+                    if (pf.isBackReference() && packIndexes.containsKey(pf.previousPackId))
+                    {
+                        packDependencies.add(packIndexes.get(pf.previousPackId));
+                    }
+                    if (!pf.isDirectory())
+                    {
+                        String path = IoHelper.translatePath(pf.getTargetPath(), variableSubstitutor);
+                        Integer lastWriter = lastWriters.put(path, i);
+                        if (lastWriter != null)
+                        {
+                            packDependencies.add(lastWriter);
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                packReader.close();
+            }
+            packDependencies.remove(i);
+        }
+        return dependencies;
+    }
+
+    /**
+     * Waits for a pack to be unpacked.
+     *
+     * @return the unpacked pack, or null if the installation was interrupted
+     * @throws Exception the failure of the unpacking
+     */
+    private static PackResult getPackResult(FutureTask<PackResult> task) throws Exception
+    {
+        try
+        {
+            return task.get();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof Exception)
+            {
+                throw (Exception) e.getCause();
+            }
+            throw new InstallerException("Installation failed", e.getCause());
+        }
+    }
+
+    /**
+     * Adds a file to the blockable file queue, which is shared by all the packs, or informs the
+     * listeners that it is installed.
+     */
+    private synchronized void queueBlockable(PackFile pf, File file, File tmpFile,
+                                             List<InstallerListener> customActions) throws Exception
+    {
+        fileQueue = handleBlockable(pf, file, tmpFile, fileQueue, customActions);
+    }
+
+    /**
+     * Completes, in order, the files written behind: sets up their blockable handling and informs
+     * the listeners that they are written.
+     *
+     * @param pendingWrites the files written behind, in installation order
+     * @param customActions the listeners
+     * @param wait          wait for all the files to be written, otherwise only complete the first
+     *                      ones already written
+     */
+    private void completeWrites(LinkedList<PendingWrite> pendingWrites, List<InstallerListener> customActions,
+                                boolean wait) throws Exception
+    {
+        while (!pendingWrites.isEmpty() && (wait || pendingWrites.getFirst().pendingFile.isDone()))
+        {
+            PendingWrite pendingWrite = pendingWrites.removeFirst();
+            pendingWrite.pendingFile.await();
+            journalCompleted(pendingWrite.packId, pendingWrite.index, pendingWrite.file, pendingWrite.tmpFile,
+                    pendingWrite.checksum);
+            if (pendingWrite.contentKey != null)
+            {
+                installedContents.add(pendingWrite.contentKey, pendingWrite.pendingFile.getFile());
+            }
+            queueBlockable(pendingWrite.packFile, pendingWrite.file, pendingWrite.tmpFile, customActions);
+        }
+    }
+
+    /**
+     * Records in the journal that a file is installed, unless it waits in the file queue or its
+     * checksum is not known.
+     */
+    private void journalCompleted(String packId, int index, File file, File tmpFile, Checksum checksum)
+            throws IOException
+    {
+        if (journal != null && tmpFile == null && checksum != null)
+        {
+            journal.completed(packId, index, file, checksum.getValue());
+        }
+    }
+
+    private static boolean isPendingWrite(List<PendingWrite> pendingWrites, File file)
+    {
+        for (PendingWrite pendingWrite : pendingWrites)
+        {
+            if (pendingWrite.file.equals(file))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Unpacks the files of a pack, once the packs it depends on are unpacked. The metadata of the
+     * pack is left to read, in the order of the packs.
+     */
+    private class PackTask implements Callable<PackResult>
+    {
+        private final Pack pack;
+
+        private final int index;
+
+        private final int npacks;
+
+        private final List<InstallerListener> customActions;
+
+        private final Set<Integer> dependencies;
+
+        private final List<FutureTask<PackResult>> tasks;
+
+        /**
+         * The paths installed, added to the uninstall data in the order of the packs when the packs
+         * are unpacked at the same time.
+         */
+        private final List<String> paths;
+
+        /**
+         * Pack200 unpackers cannot be shared between threads.
+         */
+        private Pack200.Unpacker pack200Unpacker;
+
+        private PackTask(Pack pack, int index, int npacks, List<InstallerListener> customActions,
+                         Set<Integer> dependencies, List<FutureTask<PackResult>> tasks, boolean concurrent)
+        {
+            this.pack = pack;
+            this.index = index;
+            this.npacks = npacks;
+            this.customActions = customActions;
+            this.dependencies = dependencies;
+            this.tasks = tasks;
+            this.paths = concurrent ? new ArrayList<String>() : null;
+        }
+
+        public PackResult call() throws Exception
+        {
+            for (Integer dependency : dependencies)
+            {
+                if (getPackResult(tasks.get(dependency)) == null)
+                {
+                    return null;
+                }
+            }
+            AsyncFileWriter fileWriter = null;
+            if (idata.getInfo().getUnpackerWriteThreads() > 0)
+            {
+                fileWriter = new AsyncFileWriter(idata.getInfo().getUnpackerWriteThreads());
+            }
+            try
+            {
+                return unpack(fileWriter, FileWriteEngine.create(idata.getInfo().getUnpackerWriteEngine()));
+            }
+            finally
+            {
+                if (fileWriter != null)
+                {
+                    fileWriter.shutdown();
+                }
+            }
+        }
+
+        private PackResult unpack(AsyncFileWriter fileWriter, FileWriteEngine writeEngine) throws Exception
+        {
+            // The files written behind the decoding of the pack are completed in order. With file
+            // listeners, a file is completed before the next one is started
+            LinkedList<PendingWrite> pendingWrites = new LinkedList<PendingWrite>();
+            boolean fileListeners = false;
+            for (InstallerListener customAction : customActions)
+            {
+                fileListeners |= customAction.isFileListener();
+            }
+
+            // evaluate condition
+            if (pack.hasCondition())
+            {
+                if (rules != null)
+                {
+                    if (!rules.isConditionTrue(pack.getCondition()))
+                    {
+                        // skip pack, condition is not fullfilled.
+                        return new PackResult(null, paths);
+                    }
+                }
+                else
+                {
+                    // TODO: skip pack, because condition can not be checked
+                }
+            }
+
+            // Custom action listener stuff --- beforePack ----
+            informListeners(customActions, InstallerListener.BEFORE_PACK, pack,
+                    npacks, handler);
+            PackReader packReader = PackReader.open(Unpacker.this, pack);
+
+            // We unpack the files
+            int nfiles = packReader.getFileCount();
+
+            // We get the internationalized name of the pack
+            String stepname = pack.name;// the message to be passed to the
+
+            // installpanel
+            if (!(pack.id == null || "".equals(pack.id)))
+            {
+                final String name = idata.getLangpack().getString(pack.id);
+                if (name != null && !"".equals(name))
+                {
+                    stepname = name;
+                }
+            }
+            if (pack.isHidden())
+            {
+                // TODO: hide the pack completely
+                // hide the pack name if pack is hidden
+                stepname = "";
+            }
+            handler.nextStep(stepname, index + 1, nfiles);
+            for (int j = 0; j < nfiles; j++)
+            {
+                // We read the header
+                PackFile pf = packReader.readFile();
+                // TODO: reaction if condition can not be checked
+                if (pf.hasCondition() && (rules != null))
+                {
+                    if (!rules.isConditionTrue(pf.getCondition()))
+                    {
+                        // skip, condition is not fulfilled
+                        packReader.skipFile(pf);
+                        continue;
+                    }
+                }
+                if (OsConstraintHelper.oneMatchesCurrentSystem(pf.osConstraints()))
+                {
+                    // We translate & build the path
+                    String path = IoHelper.translatePath(pf.getTargetPath(), variableSubstitutor);
+                    File pathFile = new File(path);
+                    File dest = pathFile;
+                    if (!pf.isDirectory())
+                    {
+                        dest = pathFile.getParentFile();
+                    }
+
+                    handleMkDirs(pf, dest);
+
+                    // Add path to the log
+                    addFile(path);
+
+                    if (pf.isDirectory())
+                    {
+                        continue;
+                    }
+
+                    // Custom action listener stuff --- beforeFile ----
+                    informListeners(customActions, InstallerListener.BEFORE_FILE, pathFile, pf,
+                            null);
+
+                    handler.progress(j, path);
+
+                    if (isPendingWrite(pendingWrites, pathFile))
+                    {
+                        // the file is installed twice, the first copy must be there
+                        completeWrites(pendingWrites, customActions, true);
+                    }
+
+                    if (journal != null && journal.isCompleted(pack.id, j, pathFile))
+                    {
+                        // installed by the installation resumed, and still there
+                        String contentKey = getContentKey(packReader, pf);
+                        if (contentKey != null)
+                        {
+                            installedContents.add(contentKey, pathFile);
+                        }
+                        packReader.skipFile(pf);
+                        informListeners(customActions, InstallerListener.AFTER_FILE, pathFile, pf, null);
+                        continue;
+                    }
+
+                    // if this file exists and should not be overwritten,
+                    // check
+                    // what to do
+                    // what is left of a file started by the installation resumed is overwritten
+                    if ((pathFile.exists()) && (pf.override() != OverrideType.OVERRIDE_TRUE)
+                            && (journal == null || !journal.isStarted(pack.id, j)))
+                    {
+                        if (!isOverwriteFile(pf, pathFile))
+                        {
+                            packReader.skipFile(pf);
+                            continue;
+                        }
+
+                    }
+
+                    handleOverrideRename(pf, pathFile);
+
+                    if (journal != null)
+                    {
+                        journal.started(pack.id, j);
+                    }
+
+                    // A content already installed is copied instead of being decoded again
+                    String contentKey = getContentKey(packReader, pf);
+                    if (pf.isBackReference() && contentKey != null
+                            && copyInstalledContent(contentKey, pf, j, pathFile, pendingWrites))
+                    {
+                        continue;
+                    }
+
+                    // We copy the file
+                    InputStream pis;
+                    if (pf.isBackReference() || !pack.loose)
+                    {
+                        pis = packReader.openFile(pf);
+                    }
+                    else
+                    {
+                        /* Old way of doing the job by using the (absolute) sourcepath.
+                        * Since this is very likely to fail and does not confirm to the documentation,
+                        * prefer using relative path's
+                       pis = new FileInputStream(pf.sourcePath);
+                        */
+
+                        File resolvedFile = new File(getAbsolutInstallSource(), pf
+                                .getRelativeSourcePath());
+                        if (!resolvedFile.exists())
+                        {
+                            //try alternative destination - the current working directory
+                            //user.dir is likely (depends on launcher type) the current directory of the executable or jar-file...
+                            final File userDir = new File(System.getProperty("user.dir"));
+                            resolvedFile = new File(userDir, pf.getRelativeSourcePath());
+                        }
+                        if (resolvedFile.exists())
+                        {
+                            pis = new FileInputStream(resolvedFile);
+                            //may have a different length & last modified than we had at compiletime, therefore we have to build a new PackFile for the copy process...
+                            pf = new PackFile(resolvedFile.getParentFile(), resolvedFile, pf.getTargetPath(), pf.osConstraints(), pf.override(), pf.overrideRenameTo(), pf.blockable(), pf.getAdditionals());
+                        }
+                        else
+                        {
+                            //file not found
+                            //issue a warning (logging api pending)
+                            //since this file was loosely bundled, we continue with the installation.
+                            System.out.println("Could not find loosely bundled file: " + pf.getRelativeSourcePath());
+                            if (!handler.emitWarning("File not found", "Could not find loosely bundled file: " + pf.getRelativeSourcePath()))
+                            {
+                                throw new InstallerException("Installation cancelled");
+                            }
+                            continue;
+                        }
+                    }
+
+                    // The checksum of the content is recorded in the journal
+                    CRC32 checksum = null;
+                    if (journal != null)
+                    {
+                        checksum = new CRC32();
+                        if (!pf.isPack200Jar())
+                        {
+                            pis = new CheckedInputStream(pis, checksum);
+                        }
+                    }
+
+                    File tmpFile = null;
+                    if (blockableForCurrentOs(pf))
+                    {
+                        // If target file might be blocked the output file must first
+                        // refer to a temporary file, because Windows Setup API
+                        // doesn't work on streams but only on physical files
+                        tmpFile = File.createTempFile("__FQ__", null, pathFile.getParentFile());
+                    }
+                    installedContents.remove(pathFile);
+
+                    if (fileWriter != null && !pf.isPack200Jar())
+                    {
+                        // the data is decoded here and written by a writer thread
+                        AsyncFileWriter.PendingFile pendingFile = fileWriter.open(
+                                tmpFile != null ? tmpFile : pathFile, pf.lastModified());
+                        long bytesCopied = 0;
+                        try
+                        {
+                            while (bytesCopied < pf.length())
+                            {
+                                if (performInterrupted())
+                                { // Interrupt was initiated; perform it.
+                                    pendingFile.abort();
+                                    pis.close();
+                                    packReader.close();
+                                    return null;
+                                }
+                                bytesCopied += pendingFile.read(pis, pf.length() - bytesCopied);
+                            }
+                        }
+                        catch (IOException e)
+                        {
+                            // the writer thread stops waiting for the rest of the file
+                            pendingFile.abort();
+                            throw e;
+                        }
+                        pendingFile.close();
+                        pis.close();
+                        pendingWrites.add(new PendingWrite(pendingFile, pf, pathFile, tmpFile, contentKey, pack.id, j,
+                                checksum));
+                        completeWrites(pendingWrites, customActions, fileListeners);
+                        continue;
+                    }
+                    // the files written behind are completed first
+                    completeWrites(pendingWrites, customActions, true);
+
+                    if (pf.isPack200Jar())
+                    {
+                        OutputStream out = new FileOutputStream(tmpFile != null ? tmpFile : pathFile);
+                        if (checksum != null)
+                        {
+                            out = new CheckedOutputStream(out, checksum);
+                        }
+                        Pack200.Unpacker unpacker = getPack200Unpacker();
+                        java.util.jar.JarOutputStream jarOut = new java.util.jar.JarOutputStream(out);
+                        unpacker.unpack(pis, jarOut);
+                        jarOut.close();
+                    }
+                    else
+                    {
+                        FileWriteEngine.OutputFile out = writeEngine.open(tmpFile != null ? tmpFile : pathFile,
+                                pf.length());
+                        long bytesCopied = 0;
+                        while (bytesCopied < pf.length())
+                        {
+                            if (performInterrupted())
+                            { // Interrupt was initiated; perform it.
+                                out.close();
+                                pis.close();
+                                packReader.close();
+                                return null;
+                            }
+                            bytesCopied += out.copy(pis, pf.length() - bytesCopied);
+                        }
+                        out.close();
+                    }
+
+                    pis.close();
+
+                    handleTimeStamp( pf, pathFile, tmpFile);
+                    if (contentKey != null)
+                    {
+                        installedContents.add(contentKey, tmpFile != null ? tmpFile : pathFile);
+                    }
+                    journalCompleted(pack.id, j, pathFile, tmpFile, checksum);
+
+                    queueBlockable(pf, pathFile, tmpFile, customActions);
+                }
+                else
+                {
+                    packReader.skipFile(pf);
+                }
+            }
+
+            completeWrites(pendingWrites, customActions, true);
+            return new PackResult(packReader, paths);
+        }
+
+        /**
+         * Gets the key of the content of the file last read, or null if the content is not read
+         * from the data of a pack.
+         */
+        private String getContentKey(PackReader packReader, PackFile pf)
+        {
+            if (pack.loose || pf.isPack200Jar() || pf.isUncompressed())
+            {
+                return null;
+            }
+            if (pf.isBackReference())
+            {
+                return InstalledContents.getKey(pf.previousPackId, pf.offsetInPreviousPack);
+            }
+            long offset = packReader.getDataOffset();
+            return offset < 0 ? null : InstalledContents.getKey(pack.id, offset);
+        }
+
+        /**
+         * Installs a back reference by copying the file its content was installed to, if that file
+         * is still there and unchanged.
+         *
+         * @return true if the file is installed, false if its content must be decoded from its pack
+         */
+        private boolean copyInstalledContent(String contentKey, PackFile pf, int index, File pathFile,
+                                             LinkedList<PendingWrite> pendingWrites) throws Exception
+        {
+            // the files written behind are completed first, the content may be one of them
+            completeWrites(pendingWrites, customActions, true);
+            File source = installedContents.get(contentKey, pf.length());
+            if (source == null || source.equals(pathFile))
+            {
+                return false;
+            }
+
+            File tmpFile = null;
+            if (blockableForCurrentOs(pf))
+            {
+                tmpFile = File.createTempFile("__FQ__", null, pathFile.getParentFile());
+            }
+            installedContents.remove(pathFile);
+            try
+            {
+                InstalledContents.copy(source, tmpFile != null ? tmpFile : pathFile);
+            }
+            catch (IOException e)
+            {
+                Debug.log("Could not copy " + source + ": " + e.getMessage());
+                source = null;
+            }
+            // the source may have been overwritten meanwhile by a pack unpacked at the same time
+            if (source == null || !source.equals(installedContents.get(contentKey, pf.length())))
+            {
+                if (tmpFile != null)
+                {
+                    tmpFile.delete();
+                }
+                return false;
+            }
+
+            handleTimeStamp(pf, pathFile, tmpFile);
+            if (journal != null && tmpFile == null && journal.getChecksum(source) != null)
+            {
+                journal.completed(pack.id, index, pathFile, journal.getChecksum(source));
+            }
+            queueBlockable(pf, pathFile, tmpFile, customActions);
+            return true;
+        }
+
+        private void addFile(String path)
+        {
+            if (paths != null)
+            {
+                paths.add(path);
+            }
+            else
+            {
+                udata.addFile(path, pack.uninstall);
+            }
+        }
+
+        private Pack200.Unpacker getPack200Unpacker()
+        {
+            if (pack200Unpacker == null)
+            {
+                pack200Unpacker = Pack200.newUnpacker();
+            }
+            return pack200Unpacker;
+        }
+    }
+
+    /**
+     * A pack whose files are unpacked.
+     */
+    private static class PackResult
+    {
+        /**
+         * The reader of the pack, left open before its metadata, or null if the pack is skipped.
+         */
+        private final PackReader packReader;
+
+        /**
+         * The paths installed, or null if they are already added to the uninstall data.
+         */
+        private final List<String> paths;
+
+        private PackResult(PackReader packReader, List<String> paths)
+        {
+            this.packReader = packReader;
+            this.paths = paths;
+        }
+    }
+
+    /**
+     * A file written behind, waiting to be completed.
+     */
+    private static class PendingWrite
+    {
+        private final AsyncFileWriter.PendingFile pendingFile;
+
+        private final PackFile packFile;
+
+        private final File file;
+
+        private final File tmpFile;
+
+        private final String contentKey;
+
+        private final String packId;
+
+        private final int index;
+
+        private final Checksum checksum;
+
+        private PendingWrite(AsyncFileWriter.PendingFile pendingFile, PackFile packFile, File file, File tmpFile,
+                             String contentKey, String packId, int index, Checksum checksum)
         {
-            unpacker = Pack200.newUnpacker();
+            this.pendingFile = pendingFile;
+            this.packFile = packFile;
+            this.file = file;
+            this.tmpFile = tmpFile;
+            this.contentKey = contentKey;
+            this.packId = packId;
+            this.index = index;
+            this.checksum = checksum;
         }
-        return unpacker;
     }
 
     /**
@@ -464,7 +1087,7 @@ public class Unpacker extends UnpackerBase
      * @return The stream or null if it could not be found.
      * @throws Exception Description of the Exception
      */
-    private InputStream getPackAsStream(String packid, boolean uninstall) throws Exception
+    InputStream getPackAsStream(String packid, boolean uninstall) throws Exception
     {
         InputStream in;
 
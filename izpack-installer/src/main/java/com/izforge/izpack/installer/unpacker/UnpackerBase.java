@@ -25,7 +25,6 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.URI;
@@ -668,7 +667,8 @@ public abstract class UnpackerBase implements IUnpacker, IDiscardInterruptable
 //            else
             // Create it in on step.
             {
-                if (!dest.mkdirs())
+                // the directory may be created meanwhile by a pack unpacked at the same time
+                if (!dest.mkdirs() && !dest.isDirectory())
                 {
                     handler.emitError("Error creating directories",
                             "Could not create directory\n" + dest.getPath());
@@ -680,22 +680,6 @@ public abstract class UnpackerBase implements IUnpacker, IDiscardInterruptable
         }
     }
 
-    protected long writeBuffer(PackFile pf, byte[] buffer,
-            FileOutputStream out, InputStream pis, long bytesCopied)
-    throws IOException
-    {
-        int maxBytes = (int) Math.min(pf.length() - bytesCopied, buffer.length);
-        int bytesInBuffer = pis.read(buffer, 0, maxBytes);
-        if (bytesInBuffer == -1)
-        {
-            throw new IOException("Unexpected end of stream (installer corrupted?)");
-        }
-        out.write(buffer, 0, bytesInBuffer);
-        bytesCopied += bytesInBuffer;
-
-        return bytesCopied;
-    }
-
     protected boolean isOverwriteFile(PackFile pf, File file)
     {
         boolean overwritefile = false;
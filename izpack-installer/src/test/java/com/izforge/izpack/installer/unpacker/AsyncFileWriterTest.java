@@ -0,0 +1,103 @@
+package com.izforge.izpack.installer.unpacker;
+
+import org.apache.commons.io.FileUtils;
+import org.hamcrest.core.Is;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test of the files written behind the decoding of the packs
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class AsyncFileWriterTest
+{
+    private File directory;
+
+    private AsyncFileWriter fileWriter;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        directory = File.createTempFile("izpack-writer", "");
+        directory.delete();
+        directory.mkdirs();
+        // few small buffers, so that the decoding waits for the writers
+        fileWriter = new AsyncFileWriter(2, 3, 16);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        fileWriter.shutdown();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void filesShouldBeWrittenWithTheirContentAndTime() throws Exception
+    {
+        List<AsyncFileWriter.PendingFile> pendingFiles = new ArrayList<AsyncFileWriter.PendingFile>();
+        List<byte[]> contents = new ArrayList<byte[]>();
+        for (int i = 0; i < 20; i++)
+        {
+            byte[] content = new byte[i * 7];
+            for (int j = 0; j < content.length; j++)
+            {
+                content[j] = (byte) (i + j);
+            }
+            contents.add(content);
+            AsyncFileWriter.PendingFile pendingFile = fileWriter.open(new File(directory, "file" + i), 1000000L * (i + 1));
+            InputStream in = new ByteArrayInputStream(content);
+            long bytesCopied = 0;
+            while (bytesCopied < content.length)
+            {
+                bytesCopied += pendingFile.read(in, content.length - bytesCopied);
+            }
+            pendingFile.close();
+            pendingFiles.add(pendingFile);
+        }
+
+        for (int i = 0; i < 20; i++)
+        {
+            pendingFiles.get(i).await();
+            File file = new File(directory, "file" + i);
+            assertThat(FileUtils.readFileToByteArray(file), Is.is(contents.get(i)));
+            assertThat(file.lastModified(), Is.is(1000000L * (i + 1)));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedDataShouldFail() throws Exception
+    {
+        AsyncFileWriter.PendingFile pendingFile = fileWriter.open(new File(directory, "file"), -1);
+        pendingFile.read(new ByteArrayInputStream(new byte[4]), 10);
+    }
+
+    @Test
+    public void failedWriteShouldBeReported() throws Exception
+    {
+        // a directory cannot be opened as a file
+        AsyncFileWriter.PendingFile pendingFile = fileWriter.open(directory, -1);
+        pendingFile.read(new ByteArrayInputStream(new byte[4]), 4);
+        pendingFile.close();
+        try
+        {
+            pendingFile.await();
+            throw new AssertionError("The write should have failed");
+        }
+        catch (IOException e)
+        {
+            assertThat(pendingFile.isDone(), Is.is(true));
+        }
+    }
+}
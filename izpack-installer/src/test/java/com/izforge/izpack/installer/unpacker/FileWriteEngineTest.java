@@ -0,0 +1,127 @@
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.data.Info;
+import org.apache.commons.io.FileUtils;
+import org.hamcrest.core.Is;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test of the engines writing the installed files
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class FileWriteEngineTest
+{
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        directory = File.createTempFile("izpack-engine", "");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void filesShouldBeWrittenByBothEngines() throws Exception
+    {
+        for (String name : Arrays.asList(Info.UNPACKER_WRITE_ENGINE_STREAM, Info.UNPACKER_WRITE_ENGINE_NIO))
+        {
+            FileWriteEngine engine = FileWriteEngine.create(name);
+            for (int length : new int[]{0, 1, 5000, ChannelWriteEngine.MIN_BUFFER_SIZE * 3 + 7})
+            {
+                byte[] content = createContent(length);
+                File file = new File(directory, name + length);
+                // a longer file is replaced
+                FileUtils.writeByteArrayToFile(file, createContent(length + 100));
+                write(engine, new ByteArrayInputStream(content), file, length);
+                assertThat(FileUtils.readFileToByteArray(file), Is.is(content));
+            }
+        }
+    }
+
+    @Test
+    public void fileShouldBeTransferredFromAnotherFile() throws Exception
+    {
+        byte[] content = createContent(100000);
+        File source = new File(directory, "source");
+        FileUtils.writeByteArrayToFile(source, content);
+        File file = new File(directory, "file");
+        FileInputStream in = new FileInputStream(source);
+        try
+        {
+            write(new ChannelWriteEngine(), in, file, content.length);
+        }
+        finally
+        {
+            in.close();
+        }
+        assertThat(FileUtils.readFileToByteArray(file), Is.is(content));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedDataShouldFail() throws Exception
+    {
+        write(new ChannelWriteEngine(), new ByteArrayInputStream(new byte[4]), new File(directory, "file"), 10);
+    }
+
+    @Test
+    public void fileClosedShortShouldBeTruncated() throws Exception
+    {
+        File file = new File(directory, "file");
+        byte[] content = createContent(4);
+        try
+        {
+            write(new ChannelWriteEngine(), new ByteArrayInputStream(content), file, 10);
+        }
+        catch (IOException e)
+        {
+            // the file is closed after its data ended
+        }
+        assertThat(FileUtils.readFileToByteArray(file), Is.is(content));
+    }
+
+    private static void write(FileWriteEngine engine, InputStream in, File file, long length) throws Exception
+    {
+        FileWriteEngine.OutputFile out = engine.open(file, length);
+        try
+        {
+            long bytesCopied = 0;
+            while (bytesCopied < length)
+            {
+                bytesCopied += out.copy(in, length - bytesCopied);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static byte[] createContent(int length)
+    {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++)
+        {
+            content[i] = (byte) (i * 31 + i / 7);
+        }
+        return content;
+    }
+}
@@ -0,0 +1,82 @@
+package com.izforge.izpack.installer.unpacker;
+
+import org.apache.commons.io.FileUtils;
+import org.hamcrest.core.Is;
+import org.hamcrest.core.IsNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test of the installed files copied by the back references
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class InstalledContentsTest
+{
+    private File directory;
+
+    private InstalledContents installedContents;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        directory = File.createTempFile("izpack-contents", "");
+        directory.delete();
+        directory.mkdirs();
+        installedContents = new InstalledContents();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void installedContentShouldBeCopied() throws Exception
+    {
+        File file = new File(directory, "file");
+        FileUtils.writeByteArrayToFile(file, new byte[]{1, 2, 3});
+        installedContents.add(InstalledContents.getKey("pack", 10), file);
+
+        File source = installedContents.get(InstalledContents.getKey("pack", 10), 3);
+        assertThat(source, Is.is(file));
+        File copy = new File(directory, "copy");
+        InstalledContents.copy(source, copy);
+        assertThat(FileUtils.readFileToByteArray(copy), Is.is(new byte[]{1, 2, 3}));
+        assertThat(installedContents.get(InstalledContents.getKey("pack", 11), 3), IsNull.nullValue());
+    }
+
+    @Test
+    public void changedOrRemovedFileShouldNotBeUsed() throws Exception
+    {
+        File file = new File(directory, "file");
+        FileUtils.writeByteArrayToFile(file, new byte[]{1, 2, 3});
+        installedContents.add(InstalledContents.getKey("pack", 0), file);
+        FileUtils.writeByteArrayToFile(file, new byte[]{1, 2, 3, 4});
+        assertThat(installedContents.get(InstalledContents.getKey("pack", 0), 3), IsNull.nullValue());
+
+        installedContents.add(InstalledContents.getKey("pack", 0), file);
+        file.delete();
+        assertThat(installedContents.get(InstalledContents.getKey("pack", 0), 3), IsNull.nullValue());
+    }
+
+    @Test
+    public void overwrittenFileShouldNotBeUsed() throws Exception
+    {
+        File file = new File(directory, "file");
+        FileUtils.writeByteArrayToFile(file, new byte[]{1, 2, 3});
+        installedContents.add(InstalledContents.getKey("pack", 0), file);
+        installedContents.add(InstalledContents.getKey("other", 0), file);
+
+        assertThat(installedContents.get(InstalledContents.getKey("pack", 0), 3), IsNull.nullValue());
+        assertThat(installedContents.get(InstalledContents.getKey("other", 0), 3), Is.is(file));
+        installedContents.remove(file);
+        assertThat(installedContents.get(InstalledContents.getKey("other", 0), 3), IsNull.nullValue());
+    }
+}
@@ -0,0 +1,96 @@
+package com.izforge.izpack.installer.unpacker;
+
+import org.apache.commons.io.FileUtils;
+import org.hamcrest.core.Is;
+import org.hamcrest.core.IsNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test of the journal resuming an installation
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class UnpackJournalTest
+{
+    private File directory;
+
+    private File journalFile;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        directory = File.createTempFile("izpack-journal", "");
+        directory.delete();
+        directory.mkdirs();
+        journalFile = new File(directory, UnpackJournal.NAME);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void completedFilesShouldBeFoundWhenResuming() throws Exception
+    {
+        File file = new File(directory, "file");
+        FileUtils.writeStringToFile(file, "content");
+        UnpackJournal journal = new UnpackJournal(journalFile, false);
+        journal.started("pack", 0);
+        journal.completed("pack", 0, file, UnpackJournal.computeChecksum(file));
+        journal.started("pack", 1);
+        journal.close(false);
+
+        UnpackJournal resumed = new UnpackJournal(journalFile, true);
+        assertThat(resumed.isCompleted("pack", 0, file), Is.is(true));
+        assertThat(resumed.isCompleted("pack", 1, file), Is.is(false));
+        assertThat(resumed.isCompleted("other", 0, file), Is.is(false));
+        assertThat(resumed.isStarted("pack", 1), Is.is(true));
+        assertThat(resumed.getChecksum(file), Is.is(UnpackJournal.computeChecksum(file)));
+        resumed.close(true);
+        assertThat(journalFile.exists(), Is.is(false));
+    }
+
+    @Test
+    public void changedFileShouldNotBeCompleted() throws Exception
+    {
+        File file = new File(directory, "file");
+        FileUtils.writeStringToFile(file, "content");
+        UnpackJournal journal = new UnpackJournal(journalFile, false);
+        journal.completed("pack", 0, file, UnpackJournal.computeChecksum(file));
+        journal.close(false);
+
+        // same length, other content
+        FileUtils.writeStringToFile(file, "CONTENT");
+        UnpackJournal resumed = new UnpackJournal(journalFile, true);
+        assertThat(resumed.isCompleted("pack", 0, file), Is.is(false));
+        resumed.close(false);
+    }
+
+    @Test
+    public void lineCutByTheEndOfTheProcessShouldBeIgnored() throws Exception
+    {
+        File file = new File(directory, "file");
+        FileUtils.writeStringToFile(file, "content");
+        FileUtils.writeStringToFile(journalFile, "S\tpack\t0\nC\tpack\t0\t7\t");
+
+        UnpackJournal resumed = new UnpackJournal(journalFile, true);
+        assertThat(resumed.isStarted("pack", 0), Is.is(true));
+        assertThat(resumed.isCompleted("pack", 0, file), Is.is(false));
+        assertThat(resumed.getChecksum(file), IsNull.nullValue());
+        resumed.close(false);
+
+        // without resuming, the journal is started again
+        new UnpackJournal(journalFile, false).close(false);
+        UnpackJournal restarted = new UnpackJournal(journalFile, true);
+        assertThat(restarted.isStarted("pack", 0), Is.is(false));
+        restarted.close(false);
+    }
+}
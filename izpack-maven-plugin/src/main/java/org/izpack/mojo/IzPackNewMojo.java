@@ -20,6 +20,7 @@ import java.util.List;
  * @goal izpack
  * @phase package
  * @requiresDependencyResolution test
+ * @threadSafe
  */
 public class IzPackNewMojo extends AbstractMojo
 {
@@ -74,6 +75,26 @@ public class IzPackNewMojo extends AbstractMojo
      */
     private int comprLevel;
 
+    /**
+     * Directory of the pack build cache, packs which did not change are copied from it. Disabled by default
+     *
+     * @parameter
+     */
+    private String buildCache;
+
+    /**
+     * Megabytes of packs kept in the build cache, the least recently used are evicted past this size
+     *
+     * @parameter default-value="1024"
+     */
+    private int buildCacheMaxSize;
+
+    /**
+     * Write the time and throughput of the compiler phases next to the installer, in &lt;output&gt;-report.json
+     *
+     * @parameter default-value="false"
+     */
+    private boolean buildReport;
 
     public void execute() throws MojoExecutionException, MojoFailureException
     {
@@ -109,6 +130,10 @@ public class IzPackNewMojo extends AbstractMojo
             }
             info.setAppURL(project.getUrl());
         }
-        return new CompilerData(comprFormat, kind, installFile, null, baseDir, output, comprLevel, info);
+        CompilerData compilerData = new CompilerData(comprFormat, kind, installFile, null, baseDir, output, comprLevel, info);
+        compilerData.setBuildCache(buildCache);
+        compilerData.setBuildCacheMaxSize(buildCacheMaxSize);
+        compilerData.setBuildReport(buildReport);
+        return compilerData;
     }
 }
@@ -28,6 +28,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.Serializable;
 import java.util.*;
+import java.util.zip.ZipEntry;
 
 /**
  * Temporary holding place for Pack information as the Packager is built. The packager is used by
@@ -58,6 +59,11 @@ public class PackInfo implements Serializable
      */
     private Map<PackFile, File> files = new LinkedHashMap<PackFile, File>();
 
+    /**
+     * Name of the archive entry holding the data of the files read from a zip archive.
+     */
+    private Map<PackFile, String> archiveEntries = new HashMap<PackFile, String>();
+
     /**
      * Parsables files in this Pack.
      */
@@ -245,6 +251,28 @@ public class PackInfo implements Serializable
         files.put(packFile, file);
     }
 
+    /**
+     * Add an entry of a zip archive to be installed. The data of the entry is read from the archive
+     * when the installer is written, without being extracted first.
+     *
+     * @param archive    the zip archive holding the entry.
+     * @param entry      the entry, as read from the archive central directory.
+     * @param targetfile path file will be installed to.
+     * @param osList     the target operation system(s) of this pack.
+     * @param override   what to do if the file already exists when installing
+     * @param condition
+     * @throws FileNotFoundException if the archive does not exist.
+     */
+    public void addArchiveEntry(File archive, ZipEntry entry, String targetfile, List<OsModel> osList, OverrideType override, String overrideRenameTo, Blockable blockable, Map additionals, String condition)
+            throws FileNotFoundException
+    {
+        PackFile packFile = new PackFile(archive, entry, targetfile, osList, override, overrideRenameTo, blockable, additionals);
+        packFile.setLoosePackInfo(pack.loose);
+        packFile.setCondition(condition);
+        files.put(packFile, archive);
+        archiveEntries.put(packFile, entry.getName());
+    }
+
     /**
      * Set of PackFile objects for this Pack.
      */
@@ -255,13 +283,22 @@ public class PackInfo implements Serializable
 
     /**
      * The file described by the specified PackFile. Returns <tt>null</tt> if the PackFile did not
-     * come from the set returned by {@link #getPackFiles()}.
+     * come from the set returned by {@link #getPackFiles()}. For an archive entry, this is the archive.
      */
     public File getFile(PackFile packFile)
     {
         return files.get(packFile);
     }
 
+    /**
+     * The name of the archive entry described by the specified PackFile, <tt>null</tt> if the
+     * PackFile was not added from a zip archive.
+     */
+    public String getArchiveEntry(PackFile packFile)
+    {
+        return archiveEntries.get(packFile);
+    }
+
     /**
      * Parsable files have variables substituted after installation.
      */
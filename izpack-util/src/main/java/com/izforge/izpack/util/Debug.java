@@ -99,17 +99,17 @@ public class Debug
     /**
      * internally initial unintialized TRACE-flag
      */
-    private static boolean TRACE;
+    private static volatile boolean TRACE;
 
     /**
      * internal initial unintialized STACKTRACE-flag
      */
-    private static boolean STACKTRACE;
+    private static volatile boolean STACKTRACE;
 
     /**
      * internal initial unintialized LOG-flag
      */
-    private static boolean LOG;
+    private static volatile boolean LOG;
 
     /**
      * LOGFILE_PREFIX = "IzPack_Logfile_at_"
@@ -360,8 +360,14 @@ public class Debug
      *
      * @return The writer object instance
      */
-    private static PrintWriter createLogFile()
+    private static synchronized PrintWriter createLogFile()
     {
+        // an other thread may have created it meanwhile
+        PrintWriter current = getLogFile();
+        if (current != null)
+        {
+            return current;
+        }
         String tempDir = System.getProperty("java.io.tmpdir");
 
         File tempDirFile = new File(tempDir);
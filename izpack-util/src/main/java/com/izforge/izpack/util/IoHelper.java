@@ -23,6 +23,8 @@ package com.izforge.izpack.util;
 
 import com.izforge.izpack.api.substitutor.SubstitutionType;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
+import com.izforge.izpack.util.zip.RawZipFile;
+import com.izforge.izpack.util.zip.RawZipOutputStream;
 import org.apache.tools.zip.ZipOutputStream;
 
 import java.io.*;
@@ -633,12 +635,13 @@ public class IoHelper
     /**
      * Returns the value of the environment variable given by key. This method is a work around for
      * VM versions which do not support getenv in an other way. At the first call all environment
-     * variables will be loaded via an exec. On Windows keys are not case sensitive.
+     * variables will be loaded via an exec. On Windows keys are not case sensitive. The variables
+     * are loaded once even when several threads ask for them.
      *
      * @param key variable name for which the value should be resolved
      * @return the value of the environment variable given by key
      */
-    public static String getenv(String key)
+    public static synchronized String getenv(String key)
     {
         if (envVars == null)
         {
@@ -757,23 +760,9 @@ public class IoHelper
         while ((zentry = zin.getNextEntry()) != null)
         {
             String currentName = zentry.getName();
-            String testName = currentName.replace('/', '.');
-            testName = testName.replace('\\', '.');
-            if (files != null)
+            if (!isIncluded(currentName, files))
             {
-                boolean founded = false;
-                for (String doInclude : files)
-                {   // Make "includes" self to support regex.
-                    if (testName.matches(doInclude))
-                    {
-                        founded = true;
-                        break;
-                    }
-                }
-                if (!founded)
-                {
-                    continue;
-                }
+                continue;
             }
             if (currentSet.contains(currentName))
             {
@@ -796,6 +785,89 @@ public class IoHelper
         }
     }
 
+    /**
+     * Copies specified contents of a jar file to another. When the destination is a
+     * {@link RawZipOutputStream}, the deflated entries are copied without being inflated.
+     */
+    public static void copyZip(File zip, org.apache.tools.zip.ZipOutputStream out,
+                               List<String> files, HashMap<FilterOutputStream, HashSet<String>> alreadyWrittenFiles)
+            throws IOException
+    {
+        RawZipFile rawZip = null;
+        if (out instanceof RawZipOutputStream)
+        {
+            rawZip = RawZipFile.open(zip);
+        }
+        if (rawZip == null)
+        {
+            ZipInputStream zin = new ZipInputStream(new FileInputStream(zip));
+            try
+            {
+                copyZip(zin, out, files, alreadyWrittenFiles);
+            }
+            finally
+            {
+                zin.close();
+            }
+            return;
+        }
+
+        if (!alreadyWrittenFiles.containsKey(out))
+        {
+            alreadyWrittenFiles.put(out, new HashSet<String>());
+        }
+        HashSet<String> currentSet = alreadyWrittenFiles.get(out);
+        try
+        {
+            for (RawZipFile.Entry entry : rawZip.getEntries())
+            {
+                String currentName = entry.getName();
+                if (!isIncluded(currentName, files) || currentSet.contains(currentName))
+                {
+                    continue;
+                }
+                try
+                {
+                    ((RawZipOutputStream) out).copyEntry(rawZip, entry, currentName, entry.getTime());
+                    currentSet.add(currentName);
+                }
+                catch (ZipException x)
+                {
+                    // Same as above for duplicate directories
+                }
+            }
+        }
+        finally
+        {
+            rawZip.close();
+        }
+    }
+
+    /**
+     * Tells whether an entry of a jar matches one of the given regular expressions, applied to
+     * its name with dots as separators.
+     *
+     * @param name  the name of the entry
+     * @param files the regular expressions, or <code>null</code> to include all entries
+     */
+    private static boolean isIncluded(String name, List<String> files)
+    {
+        if (files == null)
+        {
+            return true;
+        }
+        String testName = name.replace('/', '.');
+        testName = testName.replace('\\', '.');
+        for (String doInclude : files)
+        {   // Make "includes" self to support regex.
+            if (testName.matches(doInclude))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public static void copyStreamToJar(InputStream zin, ZipOutputStream out, String currentName, long fileTime) throws IOException
     {
         // Create new entry for zip file.
@@ -25,6 +25,8 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.StringTokenizer;
 
 /*---------------------------------------------------------------------------*/
@@ -428,6 +430,33 @@ public class TargetFactory
         }
     }
 
+    /**
+     * Gets the names of the operating system specific versions that {@link #makeObject(String)}
+     * may load in place of a class, on any target system.
+     *
+     * @param name the fully qualified name of the class, as given to {@link #makeObject(String)}
+     * @return the fully qualified names with the os and os flavor prefixes, the base name excluded
+     */
+    public static List<String> getOSClassNames(String name)
+    {
+        int nameStart = name.lastIndexOf('.') + 1;
+        String packageName = name.substring(0, nameStart);
+        String className = name.substring(nameStart, name.length());
+        List<String> names = new ArrayList<String>();
+        for (String prefix : CLASS_PREFIX)
+        {
+            for (String flavorPrefix : CLASS_FLAVOR_PREFIX)
+            {
+                String osName = packageName + prefix + flavorPrefix + className;
+                if (!osName.equals(name) && !names.contains(osName))
+                {
+                    names.add(osName);
+                }
+            }
+        }
+        return names;
+    }
+
     /*--------------------------------------------------------------------------*/
 
     /**
@@ -20,6 +20,9 @@ package com.izforge.izpack.util.file;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.izforge.izpack.api.data.AutomatedInstallData;
 import com.izforge.izpack.util.file.types.Resource;
@@ -250,6 +253,18 @@ public class DirectoryScanner
      */
     protected Vector<String> dirsDeselected;
 
+    /**
+     * The files already put in one of the included, excluded or deselected
+     * lists, to check for them without going through the lists.
+     */
+    private Set<String> filesAccounted = new HashSet<String>();
+
+    /**
+     * The directories already put in one of the included, excluded or
+     * deselected lists, to check for them without going through the lists.
+     */
+    private Set<String> dirsAccounted = new HashSet<String>();
+
     /**
      * Whether or not our results were built by a slow scan.
      */
@@ -266,6 +281,12 @@ public class DirectoryScanner
      */
     private boolean followSymlinks = true;
 
+    /**
+     * Number of threads listing the directories ahead of the scan, 1 lists
+     * them on the scanning thread only.
+     */
+    private int scanThreads = 1;
+
     /**
      * Whether or not everything tested so far has been included.
      */
@@ -276,6 +297,17 @@ public class DirectoryScanner
      */
     private Map<File, String[]> fileListMap = new HashMap<File, String[]>();
 
+    /**
+     * Directories listed ahead of the scan by the scan threads.
+     */
+    private Map<File, DirectoryListing> listings = new ConcurrentHashMap<File, DirectoryListing>();
+
+    /**
+     * Threads listing the directories ahead of the scan, started by the
+     * first read ahead of a scan and stopped at its end.
+     */
+    private ExecutorService readAheadExecutor = null;
+
     /**
      * List of all scanned directories.
      */
@@ -618,6 +650,29 @@ public class DirectoryScanner
         this.followSymlinks = followSymlinks;
     }
 
+    /**
+     * Get the number of threads listing the directories.
+     *
+     * @return the number of threads listing the directories.
+     */
+    public synchronized int getScanThreads()
+    {
+        return scanThreads;
+    }
+
+    /**
+     * Set the number of threads listing the directories. With more than one
+     * thread, sibling directories are listed concurrently ahead of the scan
+     * and the type of each entry is only read once. The results are the same
+     * as with a single thread.
+     *
+     * @param scanThreads the number of threads listing the directories.
+     */
+    public synchronized void setScanThreads(int scanThreads)
+    {
+        this.scanThreads = scanThreads;
+    }
+
     /**
      * Set the list of include patterns to use. All '/' and '\' characters
      * are replaced by <code>File.separatorChar</code>, so the separator used
@@ -826,6 +881,7 @@ public class DirectoryScanner
                     {
                         dirsExcluded.addElement("");
                     }
+                    dirsAccounted.add("");
                 }
                 else
                 {
@@ -839,6 +895,7 @@ public class DirectoryScanner
         }
         finally
         {
+            stopReadAhead();
             synchronized (scanLock)
             {
                 scanning = false;
@@ -982,6 +1039,8 @@ public class DirectoryScanner
         dirsNotIncluded = new Vector<String>();
         dirsExcluded = new Vector<String>();
         dirsDeselected = new Vector<String>();
+        filesAccounted.clear();
+        dirsAccounted.clear();
         everythingIncluded = (basedir != null);
         scannedDirs.clear();
     }
@@ -1058,6 +1117,7 @@ public class DirectoryScanner
         }
         finally
         {
+            stopReadAhead();
             synchronized (slowScanLock)
             {
                 haveSlowResults = true;
@@ -1088,24 +1148,32 @@ public class DirectoryScanner
      */
     protected void scandir(File dir, String vpath, boolean fast) throws Exception
     {
-        if (dir == null)
-        {
-            throw new Exception("dir must not be null.");
-        }
-        else if (!dir.exists())
+        DirectoryListing listing = null;
+        if (scanThreads > 1 && dir != null && !(fast && scannedDirs.contains(vpath)))
         {
-            throw new Exception(dir + " doesn't exists.");
+            listing = getListing(dir, vpath, fast);
         }
-        else if (!dir.isDirectory())
+        if (listing == null)
         {
-            throw new Exception(dir + " is not a directory.");
+            if (dir == null)
+            {
+                throw new Exception("dir must not be null.");
+            }
+            else if (!dir.exists())
+            {
+                throw new Exception(dir + " doesn't exists.");
+            }
+            else if (!dir.isDirectory())
+            {
+                throw new Exception(dir + " is not a directory.");
+            }
         }
         // avoid double scanning of directories, can only happen in fast mode
         if (fast && hasBeenScanned(vpath))
         {
             return;
         }
-        String[] newfiles = dir.list();
+        String[] newfiles = (listing != null) ? listing.names : dir.list();
 
         if (newfiles == null)
         {
@@ -1126,12 +1194,16 @@ public class DirectoryScanner
             {
                 try
                 {
-                    if (FILE_UTILS.isSymbolicLink(dir, newfiles[i]))
+                    if ((listing != null) ? listing.is(newfiles[i], DirectoryListing.SYMLINK)
+                            : FILE_UTILS.isSymbolicLink(dir, newfiles[i]))
                     {
                         String name = vpath + newfiles[i];
                         File file = new File(dir, newfiles[i]);
-                        (file.isDirectory()
-                                ? dirsExcluded : filesExcluded).addElement(name);
+                        boolean isDirectory = (listing != null)
+                                ? listing.is(newfiles[i], DirectoryListing.DIRECTORY)
+                                : file.isDirectory();
+                        (isDirectory ? dirsExcluded : filesExcluded).addElement(name);
+                        (isDirectory ? dirsAccounted : filesAccounted).add(name);
                     }
                     else
                     {
@@ -1154,7 +1226,8 @@ public class DirectoryScanner
         {
             String name = vpath + newfiles[i];
             File file = new File(dir, newfiles[i]);
-            if (file.isDirectory())
+            if ((listing != null) ? listing.is(newfiles[i], DirectoryListing.DIRECTORY)
+                    : file.isDirectory())
             {
                 if (isIncluded(name))
                 {
@@ -1174,7 +1247,8 @@ public class DirectoryScanner
                     scandir(file, name + File.separator, fast);
                 }
             }
-            else if (file.isFile())
+            else if ((listing != null) ? listing.is(newfiles[i], DirectoryListing.FILE)
+                    : file.isFile())
             {
                 if (isIncluded(name))
                 {
@@ -1197,9 +1271,7 @@ public class DirectoryScanner
      */
     private void accountForIncludedFile(String name, File file) throws Exception
     {
-        if (filesIncluded.contains(name)
-                || filesExcluded.contains(name)
-                || filesDeselected.contains(name))
+        if (!filesAccounted.add(name))
         {
             return;
         }
@@ -1231,9 +1303,7 @@ public class DirectoryScanner
     private void accountForIncludedDir(String name, File file, boolean fast)
             throws Exception
     {
-        if (dirsIncluded.contains(name)
-                || dirsExcluded.contains(name)
-                || dirsDeselected.contains(name))
+        if (!dirsAccounted.add(name))
         {
             return;
         }
@@ -1295,10 +1365,22 @@ public class DirectoryScanner
      *         least one include pattern, or <code>false</code> otherwise.
      */
     protected boolean couldHoldIncluded(String name)
+    {
+        return couldHoldIncluded(name, isCaseSensitive());
+    }
+
+    /**
+     * Test whether or not a name matches the start of at least one include
+     * pattern, without locking the scanner.
+     *
+     * @param name          The name to match. Must not be <code>null</code>.
+     * @param caseSensitive whether to match case sensitively.
+     */
+    private boolean couldHoldIncluded(String name, boolean caseSensitive)
     {
         for (int i = 0; i < includes.length; i++)
         {
-            if (matchPatternStart(includes[i], name, isCaseSensitive())
+            if (matchPatternStart(includes[i], name, caseSensitive)
                     && isMorePowerfulThanExcludes(name, includes[i])
                     && isDeeper(includes[i], name))
             {
@@ -1749,6 +1831,204 @@ public class DirectoryScanner
         return false;
     }
 
+    /**
+     * Return the listing of a directory read ahead by the scan threads.
+     * The directory and the directories the scan may descend into are
+     * listed concurrently the first time one of them is requested.
+     *
+     * @param dir   The directory to list.
+     * @param vpath The path of the directory relative to the base directory.
+     * @param fast  Whether or not this call is part of a fast scan.
+     * @return the listing, or <code>null</code> if the directory could not
+     *         be listed.
+     */
+    private DirectoryListing getListing(File dir, String vpath, boolean fast)
+            throws Exception
+    {
+        DirectoryListing listing = listings.get(dir);
+        if (listing == null)
+        {
+            if (readAheadExecutor == null)
+            {
+                readAheadExecutor = Executors.newFixedThreadPool(scanThreads);
+            }
+            new ReadAhead(readAheadExecutor, fast).run(dir, vpath);
+            listing = listings.get(dir);
+        }
+        return listing;
+    }
+
+    /**
+     * Stop the threads listing the directories ahead of the scan.
+     */
+    private synchronized void stopReadAhead()
+    {
+        if (readAheadExecutor != null)
+        {
+            readAheadExecutor.shutdownNow();
+            readAheadExecutor = null;
+        }
+    }
+
+    /**
+     * Names and types of the entries of a directory.
+     */
+    private static class DirectoryListing
+    {
+        static final int DIRECTORY = 1;
+
+        static final int FILE = 2;
+
+        static final int SYMLINK = 4;
+
+        final String[] names;
+
+        final Map<String, Integer> types;
+
+        DirectoryListing(String[] names)
+        {
+            this.names = names;
+            this.types = new HashMap<String, Integer>(names.length * 2);
+        }
+
+        boolean is(String name, int type)
+        {
+            Integer types = this.types.get(name);
+            return types != null && (types & type) != 0;
+        }
+    }
+
+    /**
+     * Lists a directory tree on the read ahead threads of the scan, each
+     * directory being a task, into the <code>listings</code> cache.
+     * Only the directories a scan could descend into are listed. A directory
+     * whose listing fails is left to the scanning thread, which reports the
+     * error.
+     */
+    private class ReadAhead
+    {
+        private final boolean fast;
+
+        private final boolean caseSensitive = isCaseSensitive;
+
+        private final boolean links = followSymlinks;
+
+        private final ExecutorService executor;
+
+        private int pending = 0;
+
+        private RuntimeException failure = null;
+
+        ReadAhead(ExecutorService executor, boolean fast)
+        {
+            this.executor = executor;
+            this.fast = fast;
+        }
+
+        void run(File dir, String vpath) throws Exception
+        {
+            submit(dir, vpath);
+            synchronized (this)
+            {
+                while (pending > 0)
+                {
+                    wait();
+                }
+                if (failure != null)
+                {
+                    throw failure;
+                }
+            }
+        }
+
+        private synchronized void submit(final File dir, final String vpath)
+        {
+            pending++;
+            executor.execute(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        list(dir, vpath);
+                    }
+                    catch (RuntimeException e)
+                    {
+                        fail(e);
+                    }
+                    finally
+                    {
+                        done();
+                    }
+                }
+            });
+        }
+
+        private synchronized void fail(RuntimeException e)
+        {
+            failure = e;
+        }
+
+        private synchronized void done()
+        {
+            pending--;
+            if (pending == 0)
+            {
+                notifyAll();
+            }
+        }
+
+        private void list(File dir, String vpath)
+        {
+            String[] names = dir.list();
+            if (names == null)
+            {
+                return;
+            }
+            DirectoryListing listing = new DirectoryListing(names);
+            List<String> subdirs = new ArrayList<String>();
+            for (String name : names)
+            {
+                File file = new File(dir, name);
+                int type = 0;
+                if (!links)
+                {
+                    try
+                    {
+                        if (FILE_UTILS.isSymbolicLink(dir, name))
+                        {
+                            type = DirectoryListing.SYMLINK;
+                        }
+                    }
+                    catch (IOException ioe)
+                    {
+                        // leave the directory to the scanning thread, which reports it
+                        return;
+                    }
+                }
+                if (file.isDirectory())
+                {
+                    type |= DirectoryListing.DIRECTORY;
+                    if ((type & DirectoryListing.SYMLINK) == 0
+                            && (!fast || couldHoldIncluded(vpath + name, caseSensitive)))
+                    {
+                        subdirs.add(name);
+                    }
+                }
+                else if (file.isFile())
+                {
+                    type |= DirectoryListing.FILE;
+                }
+                listing.types.put(name, type);
+            }
+            listings.put(dir, listing);
+            for (String name : subdirs)
+            {
+                submit(new File(dir, name), vpath + name + File.separator);
+            }
+        }
+    }
+
     /**
      * Has the directory with the given path relative to the base
      * directory already been scanned?
@@ -1778,6 +2058,7 @@ public class DirectoryScanner
     private synchronized void clearCaches()
     {
         fileListMap.clear();
+        listings.clear();
         includeNonPatterns.clear();
         excludeNonPatterns.clear();
         includePatterns = null;
@@ -43,6 +43,7 @@ public class FileSet extends DataType
     private boolean useDefaultExcludes = true;
     private boolean isCaseSensitive = true;
     private boolean followSymlinks = true;
+    private int scanThreads = 1;
 
     /**
      * Construct a new <code>FileSet</code>.
@@ -181,6 +182,16 @@ public class FileSet extends DataType
         return followSymlinks;
     }
 
+    /**
+     * Sets the number of threads listing the directories when scanning.
+     *
+     * @param scanThreads the number of threads, 1 scans on the calling thread only.
+     */
+    public void setScanThreads(int scanThreads)
+    {
+        this.scanThreads = scanThreads;
+    }
+
     /**
      * Returns the directory scanner needed to access the files to process.
      *
@@ -204,6 +215,7 @@ public class FileSet extends DataType
         DirectoryScanner ds = new DirectoryScanner();
         setupDirectoryScanner(ds);
         ds.setFollowSymlinks(followSymlinks);
+        ds.setScanThreads(scanThreads);
         ds.scan();
         return ds;
     }
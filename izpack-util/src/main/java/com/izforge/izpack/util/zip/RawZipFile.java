@@ -0,0 +1,361 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.zip;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+
+/**
+ * Reads the central directory of a zip file, giving access to the data of its entries as stored
+ * in the file, without inflating it.
+ * <p/>
+ * Only the zip files whose entries are all stored or deflated, and which do not use the Zip64
+ * extensions, are supported: {@link #open(File)} returns <code>null</code> for the others, which
+ * are then read as usual with a <code>ZipInputStream</code>.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class RawZipFile
+{
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+
+    private static final int EXTENDED_TIMESTAMP_ID = 0x5455;
+
+    private final RandomAccessFile file;
+
+    private final List<Entry> entries;
+
+    private RawZipFile(RandomAccessFile file, List<Entry> entries)
+    {
+        this.file = file;
+        this.entries = entries;
+    }
+
+    /**
+     * Opens a zip file and reads its central directory.
+     *
+     * @param zip the zip file
+     * @return the zip file, or <code>null</code> if its entries cannot be read raw
+     * @throws IOException if the file cannot be read
+     */
+    public static RawZipFile open(File zip) throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile(zip, "r");
+        try
+        {
+            List<Entry> entries = readCentralDirectory(file);
+            if (entries != null)
+            {
+                return new RawZipFile(file, entries);
+            }
+        }
+        catch (IOException exception)
+        {
+            file.close();
+            throw exception;
+        }
+        file.close();
+        return null;
+    }
+
+    /**
+     * Gets the entries, in the order of the central directory.
+     */
+    public List<Entry> getEntries()
+    {
+        return entries;
+    }
+
+    /**
+     * Opens the data of an entry as stored in the file: the deflated data of a deflated entry,
+     * the content of a stored one.
+     * <p/>
+     * The streams of the entries of a zip file share its file, only one can be read at a time.
+     */
+    public InputStream getRawInputStream(Entry entry) throws IOException
+    {
+        file.seek(entry.localHeaderOffset);
+        if (readInt(file) != LOCAL_HEADER_SIGNATURE)
+        {
+            throw new IOException("Invalid local header of " + entry.getName());
+        }
+        file.seek(entry.localHeaderOffset + 26);
+        int nameLength = readShort(file);
+        int extraLength = readShort(file);
+        return new RawInputStream(entry.localHeaderOffset + 30 + nameLength + extraLength,
+                entry.compressedSize);
+    }
+
+    public void close() throws IOException
+    {
+        file.close();
+    }
+
+    private static List<Entry> readCentralDirectory(RandomAccessFile file) throws IOException
+    {
+        long end = findEndOfCentralDirectory(file);
+        if (end < 0)
+        {
+            throw new IOException("Not a zip file");
+        }
+        file.seek(end + 10);
+        int count = readShort(file);
+        long size = readInt(file) & 0xffffffffL;
+        long offset = readInt(file) & 0xffffffffL;
+        if (count == 0xffff || size == 0xffffffffL || offset == 0xffffffffL)
+        {
+            // Zip64
+            return null;
+        }
+
+        byte[] directory = new byte[(int) size];
+        file.seek(offset);
+        file.readFully(directory);
+
+        List<Entry> entries = new ArrayList<Entry>(count);
+        int position = 0;
+        for (int index = 0; index < count; index++)
+        {
+            if (getInt(directory, position) != CENTRAL_HEADER_SIGNATURE)
+            {
+                throw new IOException("Invalid central directory");
+            }
+            Entry entry = new Entry();
+            entry.method = getShort(directory, position + 10);
+            long dosTime = getInt(directory, position + 12) & 0xffffffffL;
+            entry.crc = getInt(directory, position + 16) & 0xffffffffL;
+            entry.compressedSize = getInt(directory, position + 20) & 0xffffffffL;
+            entry.size = getInt(directory, position + 24) & 0xffffffffL;
+            int nameLength = getShort(directory, position + 28);
+            int extraLength = getShort(directory, position + 30);
+            int commentLength = getShort(directory, position + 32);
+            entry.localHeaderOffset = getInt(directory, position + 42) & 0xffffffffL;
+            entry.name = new String(directory, position + 46, nameLength, "UTF-8");
+            entry.time = readTime(directory, position + 46 + nameLength, extraLength, dosTime);
+            if ((entry.method != ZipEntry.STORED && entry.method != ZipEntry.DEFLATED)
+                    || entry.compressedSize == 0xffffffffL || entry.size == 0xffffffffL
+                    || entry.localHeaderOffset == 0xffffffffL)
+            {
+                return null;
+            }
+            entries.add(entry);
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Looks for the end of central directory record, followed by a comment of at most 64k.
+     */
+    private static long findEndOfCentralDirectory(RandomAccessFile file) throws IOException
+    {
+        long length = file.length();
+        if (length < END_OF_CENTRAL_DIRECTORY_SIZE)
+        {
+            return -1;
+        }
+        int tailLength = (int) Math.min(length, END_OF_CENTRAL_DIRECTORY_SIZE + 0xffff);
+        byte[] tail = new byte[tailLength];
+        file.seek(length - tailLength);
+        file.readFully(tail);
+        for (int position = tailLength - END_OF_CENTRAL_DIRECTORY_SIZE; position >= 0; position--)
+        {
+            if (getInt(tail, position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+            {
+                return length - tailLength + position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the modification time of an entry, from its extended timestamp if any, like
+     * <code>ZipInputStream</code> does.
+     */
+    private static long readTime(byte[] directory, int extra, int extraLength, long dosTime)
+    {
+        int position = extra;
+        while (position + 4 <= extra + extraLength)
+        {
+            int id = getShort(directory, position);
+            int length = getShort(directory, position + 2);
+            if (id == EXTENDED_TIMESTAMP_ID && length >= 5 && (directory[position + 4] & 1) != 0)
+            {
+                return (getInt(directory, position + 5) & 0xffffffffL) * 1000;
+            }
+            position += 4 + length;
+        }
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set((int) ((dosTime >> 25) & 0x7f) + 1980, (int) ((dosTime >> 21) & 0x0f) - 1,
+                (int) ((dosTime >> 16) & 0x1f), (int) ((dosTime >> 11) & 0x1f), (int) ((dosTime >> 5) & 0x3f),
+                (int) ((dosTime << 1) & 0x3e));
+        return calendar.getTimeInMillis();
+    }
+
+    private static int getShort(byte[] data, int position)
+    {
+        return (data[position] & 0xff) | (data[position + 1] & 0xff) << 8;
+    }
+
+    private static int getInt(byte[] data, int position)
+    {
+        return getShort(data, position) | getShort(data, position + 2) << 16;
+    }
+
+    private static int readShort(RandomAccessFile file) throws IOException
+    {
+        byte[] data = new byte[2];
+        file.readFully(data);
+        return getShort(data, 0);
+    }
+
+    private static int readInt(RandomAccessFile file) throws IOException
+    {
+        byte[] data = new byte[4];
+        file.readFully(data);
+        return getInt(data, 0);
+    }
+
+    /**
+     * An entry of the central directory.
+     */
+    public static class Entry
+    {
+        private String name;
+
+        private int method;
+
+        private long time;
+
+        private long crc;
+
+        private long compressedSize;
+
+        private long size;
+
+        private long localHeaderOffset;
+
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Gets the compression method, <code>ZipEntry.STORED</code> or <code>ZipEntry.DEFLATED</code>.
+         */
+        public int getMethod()
+        {
+            return method;
+        }
+
+        public long getTime()
+        {
+            return time;
+        }
+
+        public long getCrc()
+        {
+            return crc;
+        }
+
+        public long getCompressedSize()
+        {
+            return compressedSize;
+        }
+
+        public long getSize()
+        {
+            return size;
+        }
+
+        public boolean isDirectory()
+        {
+            return name.endsWith("/");
+        }
+    }
+
+    /**
+     * Reads a region of the zip file.
+     */
+    private class RawInputStream extends InputStream
+    {
+        private long position;
+
+        private long remaining;
+
+        public RawInputStream(long position, long length)
+        {
+            this.position = position;
+            this.remaining = length;
+        }
+
+        public int read() throws IOException
+        {
+            byte[] data = new byte[1];
+            return read(data, 0, 1) == 1 ? data[0] & 0xff : -1;
+        }
+
+        public int read(byte[] buffer, int offset, int length) throws IOException
+        {
+            if (remaining <= 0)
+            {
+                return -1;
+            }
+            file.seek(position);
+            int count = file.read(buffer, offset, (int) Math.min(length, remaining));
+            if (count < 0)
+            {
+                throw new IOException("Unexpected end of zip file");
+            }
+            position += count;
+            remaining -= count;
+            return count;
+        }
+
+        public long skip(long count)
+        {
+            long skipped = Math.max(0, Math.min(count, remaining));
+            position += skipped;
+            remaining -= skipped;
+            return skipped;
+        }
+
+        public int available()
+        {
+            return (int) Math.min(remaining, Integer.MAX_VALUE);
+        }
+    }
+}
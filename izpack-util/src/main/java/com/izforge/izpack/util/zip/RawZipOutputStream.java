@@ -0,0 +1,301 @@
+/*
+ * $Id$
+ * IzPack - Copyright 2001-2010 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.zip;
+
+import org.apache.tools.zip.ZipEntry;
+import org.apache.tools.zip.ZipOutputStream;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Zip output stream able to copy the deflated entries of another zip file without inflating
+ * and deflating them again.
+ * <p/>
+ * The deflated data goes through the stream as if the entry was stored, while the headers
+ * describe the deflated entry with the CRC and sizes read from the central directory of the
+ * source.
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class RawZipOutputStream extends ZipOutputStream
+{
+    private int method = DEFLATED;
+
+    private int level = Deflater.DEFAULT_COMPRESSION;
+
+    public RawZipOutputStream(OutputStream out)
+    {
+        super(out);
+    }
+
+    public RawZipOutputStream(File file) throws IOException
+    {
+        super(file);
+    }
+
+    @Override
+    public void setMethod(int method)
+    {
+        super.setMethod(method);
+        this.method = method;
+    }
+
+    @Override
+    public void setLevel(int level)
+    {
+        super.setLevel(level);
+        this.level = level;
+    }
+
+    /**
+     * Gets the compression level of the deflated entries.
+     */
+    public int getLevel()
+    {
+        return level;
+    }
+
+    /**
+     * Tells whether the deflated entries of another zip can be copied as they are, which is the
+     * case when the entries of this stream are deflated too.
+     */
+    public boolean isRawCopySupported()
+    {
+        return method == DEFLATED && level != Deflater.NO_COMPRESSION;
+    }
+
+    /**
+     * Copies an entry of a zip file. A deflated entry is copied as it is when raw copy is
+     * supported, any other entry is compressed again.
+     *
+     * @param zip   the zip file
+     * @param entry the entry to copy
+     * @param name  the name of the entry in this stream
+     * @param time  the modification time of the entry, or -1 to use the current time
+     */
+    public void copyEntry(RawZipFile zip, RawZipFile.Entry entry, String name, long time) throws IOException
+    {
+        InputStream in = zip.getRawInputStream(entry);
+        byte[] buffer = new byte[8192];
+        int count;
+        if (entry.getMethod() != DEFLATED || !isRawCopySupported())
+        {
+            ZipEntry newEntry = new ZipEntry(name);
+            if (time != -1)
+            {
+                newEntry.setTime(time);
+            }
+            putNextEntry(newEntry);
+            Inflater inflater = new Inflater(true);
+            try
+            {
+                InputStream content = in;
+                if (entry.getMethod() == DEFLATED)
+                {
+                    content = new InflaterInputStream(new ZeroPaddedInputStream(in), inflater);
+                }
+                while ((count = content.read(buffer)) != -1)
+                {
+                    write(buffer, 0, count);
+                }
+            }
+            finally
+            {
+                inflater.end();
+            }
+            closeEntry();
+            return;
+        }
+
+        writeRawEntry(name, time, in, entry.getCrc(), entry.getSize(), entry.getCompressedSize());
+    }
+
+    /**
+     * Writes an entry from data already deflated, without zlib header, at the level of this
+     * stream. Raw copy must be supported.
+     *
+     * @param name           the name of the entry
+     * @param time           the modification time of the entry, or -1 to use the current time
+     * @param in             the deflated data, read until its end
+     * @param crc            the CRC-32 of the inflated data
+     * @param size           the size of the inflated data
+     * @param compressedSize the size of the deflated data
+     */
+    public void writeRawEntry(String name, long time, InputStream in, long crc, long size, long compressedSize)
+            throws IOException
+    {
+        if (!isRawCopySupported())
+        {
+            throw new IllegalStateException("The entries of the stream are not deflated");
+        }
+        RawEntry rawEntry = new RawEntry(name, crc, size, compressedSize, !isSeekable());
+        if (time != -1)
+        {
+            rawEntry.setTime(time);
+        }
+        putNextEntry(rawEntry);
+        rawEntry.copying = true;
+        CRC32 dataCrc = new CRC32();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) != -1)
+        {
+            write(buffer, 0, count);
+            dataCrc.update(buffer, 0, count);
+        }
+        rawEntry.dataCrc = dataCrc.getValue();
+        closeEntry();
+    }
+
+    /**
+     * Called by <code>closeEntry</code> once the data of the entry is checked, the raw entry then
+     * describes the deflated entry again.
+     */
+    @Override
+    protected void writeDataDescriptor(ZipEntry ze) throws IOException
+    {
+        if (ze instanceof RawEntry)
+        {
+            ((RawEntry) ze).copying = false;
+        }
+        super.writeDataDescriptor(ze);
+    }
+
+    /**
+     * Entry whose deflated data is copied. While the data is copied, the entry is seen as stored
+     * so that the data is written as it is: its CRC and size are then those of the deflated data
+     * when the stream checks them, and the real ones when the stream writes them in the local
+     * header of a seekable file.
+     */
+    private static class RawEntry extends ZipEntry
+    {
+        private final long crc;
+
+        private final long size;
+
+        private final long compressedSize;
+
+        private final boolean checked;
+
+        private boolean copying = false;
+
+        private long dataCrc;
+
+        public RawEntry(String name, long crc, long size, long compressedSize, boolean checked)
+        {
+            super(name);
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = compressedSize;
+            this.checked = checked;
+        }
+
+        @Override
+        public int getMethod()
+        {
+            return copying ? STORED : DEFLATED;
+        }
+
+        @Override
+        public void setMethod(int method)
+        {
+            // always deflated
+        }
+
+        @Override
+        public long getCrc()
+        {
+            return copying && checked ? dataCrc : crc;
+        }
+
+        @Override
+        public void setCrc(long crc)
+        {
+            // known from the source
+        }
+
+        @Override
+        public long getSize()
+        {
+            return copying && checked ? compressedSize : size;
+        }
+
+        @Override
+        public void setSize(long size)
+        {
+            // known from the source
+        }
+
+        @Override
+        public long getCompressedSize()
+        {
+            return compressedSize;
+        }
+
+        @Override
+        public void setCompressedSize(long compressedSize)
+        {
+            // known from the source
+        }
+    }
+
+    /**
+     * Adds a zero byte after the deflated data, needed by an <code>Inflater</code> without
+     * wrapping to detect the end of the data.
+     */
+    private static class ZeroPaddedInputStream extends FilterInputStream
+    {
+        private boolean padded = false;
+
+        public ZeroPaddedInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            byte[] data = new byte[1];
+            return read(data, 0, 1) == 1 ? data[0] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException
+        {
+            int count = super.read(buffer, offset, length);
+            if (count == -1 && !padded && length > 0)
+            {
+                padded = true;
+                buffer[offset] = 0;
+                return 1;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.izforge.izpack.util.file;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test of the directory scanner
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class DirectoryScannerTest
+{
+    private File basedir;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        basedir = File.createTempFile("izpack-scan", "");
+        basedir.delete();
+        for (String dir : new String[]{"lib", "src", "src/skip", "src/main/java"})
+        {
+            for (int i = 0; i < 5; i++)
+            {
+                createFile(dir + "/file" + i + ".txt");
+                createFile(dir + "/file" + i + ".jar");
+            }
+        }
+        new File(basedir, "empty/nested").mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        delete(basedir);
+    }
+
+    @Test
+    public void threadedScanShouldGiveSameResults() throws Exception
+    {
+        DirectoryScanner scanner = scan(1);
+        DirectoryScanner threadedScanner = scan(4);
+
+        assertEquals(20, scanner.getIncludedFilesCount());
+        assertArrayEquals(scanner.getIncludedFiles(), threadedScanner.getIncludedFiles());
+        assertArrayEquals(scanner.getIncludedDirectories(), threadedScanner.getIncludedDirectories());
+        assertArrayEquals(scanner.getExcludedFiles(), threadedScanner.getExcludedFiles());
+        assertArrayEquals(scanner.getNotIncludedFiles(), threadedScanner.getNotIncludedFiles());
+        assertArrayEquals(scanner.getNotIncludedDirectories(), threadedScanner.getNotIncludedDirectories());
+    }
+
+    private DirectoryScanner scan(int threads) throws Exception
+    {
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(basedir);
+        scanner.setIncludes(new String[]{"**/*.txt", "lib/**", "empty/**"});
+        scanner.setExcludes(new String[]{"**/skip/**"});
+        scanner.setScanThreads(threads);
+        scanner.scan();
+        return scanner;
+    }
+
+    private void createFile(String path) throws IOException
+    {
+        File file = new File(basedir, path);
+        file.getParentFile().mkdirs();
+        FileWriter writer = new FileWriter(file);
+        writer.write(path);
+        writer.close();
+    }
+
+    private void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,129 @@
+package com.izforge.izpack.util.zip;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test of the raw copy of zip entries
+ *
+ * @author Anthonin Bonnefoy
+ */
+public class RawZipOutputStreamTest
+{
+    private static final byte[] DEFLATED_CONTENT = "deflated deflated deflated content".getBytes();
+
+    private static final byte[] STORED_CONTENT = "stored content".getBytes();
+
+    private File source;
+
+    private File target;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        source = File.createTempFile("izpack-raw", ".jar");
+        target = File.createTempFile("izpack-raw", ".jar");
+
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(source));
+        out.putNextEntry(new ZipEntry("dir/deflated.txt"));
+        out.write(DEFLATED_CONTENT);
+        out.closeEntry();
+        ZipEntry stored = new ZipEntry("dir/stored.txt");
+        stored.setMethod(ZipEntry.STORED);
+        stored.setSize(STORED_CONTENT.length);
+        CRC32 crc = new CRC32();
+        crc.update(STORED_CONTENT);
+        stored.setCrc(crc.getValue());
+        out.putNextEntry(stored);
+        out.write(STORED_CONTENT);
+        out.closeEntry();
+        out.close();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        source.delete();
+        target.delete();
+    }
+
+    @Test
+    public void entriesShouldBeCopiedToFile() throws Exception
+    {
+        copy(new RawZipOutputStream(target));
+        assertCopied();
+    }
+
+    @Test
+    public void entriesShouldBeCopiedToStream() throws Exception
+    {
+        copy(new RawZipOutputStream(new BufferedOutputStream(new FileOutputStream(target))));
+        assertCopied();
+    }
+
+    @Test
+    public void entriesShouldBeInflatedWithoutCompression() throws Exception
+    {
+        RawZipOutputStream out = new RawZipOutputStream(target);
+        out.setLevel(0);
+        copy(out);
+        assertCopied();
+    }
+
+    private void copy(RawZipOutputStream out) throws IOException
+    {
+        RawZipFile zip = RawZipFile.open(source);
+        assertEquals(2, zip.getEntries().size());
+        for (RawZipFile.Entry entry : zip.getEntries())
+        {
+            out.copyEntry(zip, entry, "copy/" + entry.getName(), entry.getTime());
+        }
+        zip.close();
+        out.close();
+    }
+
+    private void assertCopied() throws IOException
+    {
+        ZipFile zip = new ZipFile(target);
+        assertArrayEquals(DEFLATED_CONTENT, read(zip.getInputStream(zip.getEntry("copy/dir/deflated.txt"))));
+        assertArrayEquals(STORED_CONTENT, read(zip.getInputStream(zip.getEntry("copy/dir/stored.txt"))));
+        zip.close();
+
+        // the local headers must agree with the central directory
+        ZipInputStream in = new ZipInputStream(new FileInputStream(target));
+        assertEquals("copy/dir/deflated.txt", in.getNextEntry().getName());
+        assertArrayEquals(DEFLATED_CONTENT, read(in));
+        assertEquals("copy/dir/stored.txt", in.getNextEntry().getName());
+        assertArrayEquals(STORED_CONTENT, read(in));
+        in.close();
+    }
+
+    private static byte[] read(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = in.read(buffer)) != -1)
+        {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+}